@@ -0,0 +1,119 @@
+package dev.profitsoft.collector;
+
+import dev.profitsoft.generator.BenchmarkDataset;
+import dev.profitsoft.parser.FlightDataParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks of a single {@code accept} call of the statistics collectors,
+ * with values taken from a generated dataset.
+ * <p>{@code accept} runs on one thread, {@code acceptContended} runs on
+ * eight threads sharing one collector, {@code acceptContended16} and
+ * {@code acceptContended32} on sixteen and thirty-two threads, the thread
+ * counts the shared and sharded collectors were compared at.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatisticsCollectorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Values {
+
+        @Param({"services", "departure", "departureTime"})
+        String attribute;
+
+        @Param({"shared", "sharded", "services", "spilling", "hourly"})
+        String collectorType;
+
+        String[] strings;
+
+        char[][] buffers;
+
+        StatisticsCollector collector;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            Path directory = BenchmarkDataset.getOrGenerate(1, 20000);
+            List<String> values = new ArrayList<>();
+            new FlightDataParser(directory.toString(), 1, attribute, values::add).parse();
+            strings = values.toArray(String[]::new);
+            buffers = values.stream().map(String::toCharArray).toArray(char[][]::new);
+        }
+
+        @Setup(Level.Iteration)
+        public void createCollector() {
+            Supplier<StatisticsCollector> supplier = switch (collectorType) {
+                case "shared" -> StatisticsCollector::new;
+                case "sharded" -> ShardedStatisticsCollector::new;
+                case "services" -> ServicesStatisticsCollector::new;
+                case "spilling" -> () -> new SpillingStatisticsCollector(1024 * 1024);
+                case "hourly" -> () -> new TimeBucketStatisticsCollector(TimeBucket.HOUR);
+                default -> throw new IllegalArgumentException("Unknown collector type: " + collectorType);
+            };
+            collector = supplier.get();
+        }
+
+        @TearDown(Level.Iteration)
+        public void closeCollector() throws IOException {
+            if (collector instanceof SpillingStatisticsCollector spillingCollector) {
+                spillingCollector.close();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int index;
+
+        int next(int size) {
+            if (++index == size) {
+                index = 0;
+            }
+            return index;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void accept(Values values, Cursor cursor) {
+        consume(values, cursor.next(values.strings.length));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void acceptContended(Values values, Cursor cursor) {
+        consume(values, cursor.next(values.strings.length));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void acceptContended16(Values values, Cursor cursor) {
+        consume(values, cursor.next(values.strings.length));
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void acceptContended32(Values values, Cursor cursor) {
+        consume(values, cursor.next(values.strings.length));
+    }
+
+    private static void consume(Values values, int index) {
+        if (values.collector instanceof CharBufferConsumer bufferConsumer) {
+            char[] buffer = values.buffers[index];
+            bufferConsumer.accept(buffer, 0, buffer.length);
+        } else {
+            values.collector.accept(values.strings[index]);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package dev.profitsoft.generator;
+
+import io.airlift.compress.zstd.ZstdOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Class to provide datasets of generated flights for the benchmarks.
+ * <p>Datasets are generated with {@link ParallelFlightJsonDataGenerator} and a
+ * fixed seed into {@code target/benchmark-data} once and reused by later forks
+ * and runs, so every machine benchmarks the same flights.</p>
+ */
+public final class BenchmarkDataset {
+
+    /**
+     * Path to the directory where the datasets are stored
+     */
+    private static final Path DATASETS_LOCATION = Paths.get("target/benchmark-data");
+
+    /**
+     * Maximum uncompressed size of a BGZF block
+     */
+    private static final int BGZF_BLOCK_SIZE = 0xff00;
+
+    /**
+     * Seed of the generated datasets
+     */
+    private static final long SEED = 42;
+
+    private BenchmarkDataset() {
+    }
+
+    /**
+     * Returns the directory of a dataset, generating it if it does not exist yet
+     *
+     * @param numberOfFiles          the number of files in the dataset
+     * @param numberOfFlightsPerFile the number of flights in each file
+     * @return path to the directory of the dataset
+     * @throws IOException if an I/O error occurs
+     */
+    public static synchronized Path getOrGenerate(int numberOfFiles, int numberOfFlightsPerFile) throws IOException {
+        Path directory = DATASETS_LOCATION.resolve(numberOfFiles + "x" + numberOfFlightsPerFile);
+        if (countJsonFiles(directory) != numberOfFiles) {
+            new ParallelFlightJsonDataGenerator(directory, SEED).generateFilesWithFlights(numberOfFiles, numberOfFlightsPerFile);
+        }
+        return directory;
+    }
+
+    /**
+     * Returns a compressed copy of a dataset, compressing it if it does not exist yet
+     *
+     * @param directory   path to the directory of the dataset
+     * @param compression {@code gzip}, {@code bgzf} or {@code zstd}
+     * @return path to the directory of the compressed dataset
+     * @throws IOException if an I/O error occurs
+     */
+    public static synchronized Path getOrCompress(Path directory, String compression) throws IOException {
+        Path compressedDirectory = directory.resolveSibling(directory.getFileName() + "-" + compression);
+        String suffix = "zstd".equals(compression) ? ".zst" : ".gz";
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(file -> file.toString().endsWith(".json")).sorted().toList();
+        }
+        Files.createDirectories(compressedDirectory);
+        for (Path file : files) {
+            Path compressedFile = compressedDirectory.resolve(file.getFileName() + suffix);
+            if (Files.exists(compressedFile)) {
+                continue;
+            }
+            byte[] content = Files.readAllBytes(file);
+            try (OutputStream output = switch (compression) {
+                case "gzip" -> new GZIPOutputStream(Files.newOutputStream(compressedFile), BGZF_BLOCK_SIZE);
+                case "zstd" -> new ZstdOutputStream(Files.newOutputStream(compressedFile));
+                case "bgzf" -> new BufferedOutputStream(Files.newOutputStream(compressedFile), BGZF_BLOCK_SIZE);
+                default -> throw new IllegalArgumentException("Unknown compression: " + compression);
+            }) {
+                if ("bgzf".equals(compression)) {
+                    writeBgzf(output, content);
+                } else {
+                    output.write(content);
+                }
+            }
+        }
+        return compressedDirectory;
+    }
+
+    /**
+     * Returns the first file of a dataset
+     *
+     * @param directory path to the directory of the dataset
+     * @return path to the first file
+     * @throws IOException if an I/O error occurs
+     */
+    public static Path firstFile(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".json")).sorted().findFirst()
+                    .orElseThrow(() -> new IllegalStateException("Dataset is empty: " + directory));
+        }
+    }
+
+    /**
+     * Method to write content as BGZF blocks, gzip members that record
+     * their compressed size in the header, followed by the end of file block
+     *
+     * @param output  stream to write to
+     * @param content content to compress
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeBgzf(OutputStream output, byte[] content) throws IOException {
+        for (int offset = 0; offset < content.length; offset += BGZF_BLOCK_SIZE) {
+            writeBgzfBlock(output, Arrays.copyOfRange(content, offset, Math.min(offset + BGZF_BLOCK_SIZE, content.length)));
+        }
+        writeBgzfBlock(output, new byte[0]);
+    }
+
+    /**
+     * Method to write one BGZF block
+     *
+     * @param output stream to write to
+     * @param data   uncompressed data of the block
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeBgzfBlock(OutputStream output, byte[] data) throws IOException {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = new byte[data.length + 1024];
+        int compressedLength = deflater.deflate(buffer);
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer block = ByteBuffer.allocate(18 + compressedLength + 8).order(ByteOrder.LITTLE_ENDIAN);
+        block.put(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff});
+        block.putShort((short) 6).put((byte) 'B').put((byte) 'C').putShort((short) 2);
+        block.putShort((short) (block.capacity() - 1));
+        block.put(buffer, 0, compressedLength);
+        block.putInt((int) crc.getValue()).putInt(data.length);
+        output.write(block.array());
+    }
+
+    /**
+     * Method to count the JSON files in a directory
+     *
+     * @param directory path to the directory
+     * @return number of JSON files, {@code 0} if the directory does not exist
+     * @throws IOException if an I/O error occurs
+     */
+    private static long countJsonFiles(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".json")).count();
+        }
+    }
+}
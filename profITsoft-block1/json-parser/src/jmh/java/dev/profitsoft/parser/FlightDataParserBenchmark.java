@@ -0,0 +1,170 @@
+package dev.profitsoft.parser;
+
+import dev.profitsoft.FlightParserApp;
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.generator.BenchmarkDataset;
+import dev.profitsoft.snapshot.ColumnarSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link FlightDataParser} over a generated dataset.
+ * <p>{@code parse} measures a whole run over the dataset directory,
+ * {@code parseCompressed} measures the same run over gzip, BGZF and zstd
+ * compressed copies of the dataset, {@code parseSnapshot} measures the same
+ * aggregation read from a columnar snapshot of the dataset, {@code parseSmallFiles} measures a whole run over a directory of many small
+ * files, where reading the files dominates, {@code processFile} measures
+ * a single file parsed on one thread, {@code processFileFiltered} measures
+ * the same file counted only for flights passing a selective or a pass-all
+ * filter. Runs are measured both on a fixed pool of platform threads and on
+ * virtual threads.</p>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FlightDataParserBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Dataset {
+
+        @Param({"16"})
+        int numberOfFiles;
+
+        @Param({"20000"})
+        int numberOfFlightsPerFile;
+
+        @Param({"services", "departure", "flightNumber"})
+        String attribute;
+
+        Path directory;
+
+        Path file;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = BenchmarkDataset.getOrGenerate(numberOfFiles, numberOfFlightsPerFile);
+            file = BenchmarkDataset.firstFile(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SmallFiles {
+
+        @Param({"2000"})
+        int numberOfFiles;
+
+        @Param({"50"})
+        int numberOfFlightsPerFile;
+
+        Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = BenchmarkDataset.getOrGenerate(numberOfFiles, numberOfFlightsPerFile);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CompressedDataset {
+
+        @Param({"gzip", "bgzf", "zstd"})
+        String compression;
+
+        Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp(Dataset dataset) throws IOException {
+            directory = BenchmarkDataset.getOrCompress(dataset.directory, compression);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SnapshotDataset {
+
+        Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp(Dataset dataset) throws IOException {
+            directory = dataset.directory.resolveSibling(dataset.directory.getFileName() + "-snapshot");
+            if (!ColumnarSnapshot.exists(directory)) {
+                new SnapshotConverter(1).convert(dataset.directory, directory);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Filter {
+
+        @Param({"departure>=Z", "departure>=A"})
+        String expression;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Workers {
+
+        @Param({"1", "2", "4", "8"})
+        int numberOfThreads;
+
+        @Param({"platform", "virtual"})
+        String executor;
+
+        FlightDataParser createParser(Path directory, String attribute, StatisticsCollector collector) {
+            FlightDataParser parser = new FlightDataParser(directory.toString(), numberOfThreads, attribute, collector);
+            parser.setVirtualThreads("virtual".equals(executor));
+            return parser;
+        }
+    }
+
+    @Benchmark
+    public Map<String, Long> parse(Dataset dataset, Workers workers) throws IOException {
+        StatisticsCollector collector = FlightParserApp.createCollector(dataset.attribute);
+        workers.createParser(dataset.directory, dataset.attribute, collector).parse();
+        return collector.getStatistics();
+    }
+
+    @Benchmark
+    public Map<String, Long> parseCompressed(Dataset dataset, CompressedDataset compressedDataset, Workers workers)
+            throws IOException {
+        StatisticsCollector collector = FlightParserApp.createCollector(dataset.attribute);
+        workers.createParser(compressedDataset.directory, dataset.attribute, collector).parse();
+        return collector.getStatistics();
+    }
+
+    @Benchmark
+    public Map<String, Long> parseSnapshot(Dataset dataset, SnapshotDataset snapshotDataset) throws IOException {
+        StatisticsCollector collector = FlightParserApp.createCollector(dataset.attribute);
+        new FlightDataParser(dataset.directory.toString(), 1, dataset.attribute, collector)
+                .parseSnapshot(snapshotDataset.directory);
+        return collector.getStatistics();
+    }
+
+    @Benchmark
+    public Map<String, Long> parseSmallFiles(SmallFiles dataset, Workers workers) throws IOException {
+        StatisticsCollector collector = FlightParserApp.createCollector("services");
+        workers.createParser(dataset.directory, "services", collector).parse();
+        return collector.getStatistics();
+    }
+
+    @Benchmark
+    public Map<String, Long> processFile(Dataset dataset) throws IOException {
+        StatisticsCollector collector = FlightParserApp.createCollector(dataset.attribute);
+        FlightDataParser parser = new FlightDataParser(dataset.directory.toString(), 1, dataset.attribute, collector);
+        parser.processFile(dataset.file);
+        return collector.getStatistics();
+    }
+
+    @Benchmark
+    public Map<String, Long> processFileFiltered(Dataset dataset, Filter filter) throws IOException {
+        StatisticsCollector collector = FlightParserApp.createCollector(dataset.attribute);
+        FlightDataParser parser = new FlightDataParser(dataset.directory.toString(), 1,
+                Map.of(dataset.attribute, collector), FlightFilter.parse(filter.expression));
+        parser.processFile(dataset.file);
+        return collector.getStatistics();
+    }
+}
@@ -0,0 +1,54 @@
+package dev.profitsoft.writer;
+
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.generator.BenchmarkDataset;
+import dev.profitsoft.parser.FlightDataParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link XMLStatisticsWriter#writeStatistics(String)} with statistics
+ * collected from a generated dataset, from a few keys for {@code services}
+ * to one key per flight for {@code flightNumber}, in each output format
+ * and in all formats at once.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XMLStatisticsWriterBenchmark {
+
+    @Param({"16"})
+    int numberOfFiles;
+
+    @Param({"20000"})
+    int numberOfFlightsPerFile;
+
+    @Param({"services", "departure", "flightNumber"})
+    String attribute;
+
+    @Param({"xml", "json", "csv", "binary", "xml,json,csv,binary"})
+    String formats;
+
+    XMLStatisticsWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path directory = BenchmarkDataset.getOrGenerate(numberOfFiles, numberOfFlightsPerFile);
+        StatisticsCollector collector = new StatisticsCollector();
+        new FlightDataParser(directory.toString(), 1, attribute, collector).parse();
+        writer = new XMLStatisticsWriter(collector, Files.createTempDirectory("statistics"),
+                OutputFormat.createSinks(formats));
+    }
+
+    @Benchmark
+    public void writeStatistics() {
+        writer.writeStatistics(attribute);
+    }
+}
@@ -1,30 +1,381 @@
 package dev.profitsoft;
 
+import dev.profitsoft.cache.StatisticsCache;
+import dev.profitsoft.checkpoint.Checkpoint;
+import dev.profitsoft.collector.RouteStatisticsCollector;
+import dev.profitsoft.collector.ServicesStatisticsCollector;
+import dev.profitsoft.collector.ShardedStatisticsCollector;
+import dev.profitsoft.collector.SpillingStatisticsCollector;
 import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.TimeBucket;
+import dev.profitsoft.collector.TimeBucketStatisticsCollector;
+import dev.profitsoft.collector.TopKStatisticsCollector;
+import dev.profitsoft.engine.QueryEngine;
+import dev.profitsoft.engine.QueryServer;
+import dev.profitsoft.metrics.MetricsRegistry;
+import dev.profitsoft.metrics.ParserMetrics;
+import dev.profitsoft.metrics.ProgressReporter;
 import dev.profitsoft.parser.FlightDataParser;
+import dev.profitsoft.parser.FlightDataWatcher;
+import dev.profitsoft.parser.FlightFilter;
+import dev.profitsoft.parser.InputFormat;
+import dev.profitsoft.parser.SnapshotConverter;
+import dev.profitsoft.writer.OutputFormat;
+import dev.profitsoft.writer.StatisticsSink;
 import dev.profitsoft.writer.XMLStatisticsWriter;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * The main class of the application.
  * Coordinates the work of the parser and writer.
  */
 public class FlightParserApp {
+
+    /**
+     * Default path to the directory where the statistics files are saved
+     */
+    private static final Path STATISTICS_LOCATION = Paths.get("src/main/resources/");
+
+    /**
+     * Option to set the formats of the statistics files, a comma-separated
+     * list of xml, json, csv and binary, xml by default
+     */
+    private static final String OUTPUT_OPTION = "--output=";
+
+    /**
+     * Option to set the directory where the statistics files are saved
+     */
+    private static final String OUTPUT_DIR_OPTION = "--output-dir=";
+
+    /**
+     * Option to collect approximate statistics of the K most frequent values only
+     */
+    private static final String TOP_K_OPTION = "--top-k=";
+
+    /**
+     * Option to set the upper bound of the count error of the approximate statistics,
+     * relative to the number of consumed values
+     */
+    private static final String ERROR_RATE_OPTION = "--error-rate=";
+
+    /**
+     * Option to collect exact statistics within the given memory limit in megabytes,
+     * spilling partial counts to temporary files when it is exceeded
+     */
+    private static final String MEMORY_LIMIT_OPTION = "--memory-limit=";
+
+    /**
+     * Option to reuse the statistics of unchanged files cached in the given file
+     */
+    private static final String CACHE_OPTION = "--cache=";
+
+    /**
+     * Option to set the number of files parsed at the same time
+     */
+    private static final String THREADS_OPTION = "--threads=";
+
+    /**
+     * Option to process each file on its own virtual thread
+     */
+    private static final String VIRTUAL_THREADS_OPTION = "--virtual-threads";
+
+    /**
+     * Option to set the layout of the input files: auto, array or ndjson
+     */
+    private static final String FORMAT_OPTION = "--format=";
+
+    /**
+     * Option to count the timestamp attributes per minute, hour, day or weekday
+     * instead of per distinct timestamp, the statistics are written as a time series
+     */
+    private static final String TIME_BUCKET_OPTION = "--time-bucket=";
+
+    /**
+     * Option to aggregate the attributes from a columnar snapshot in the given directory,
+     * converting the JSON files into it first if it does not exist yet
+     */
+    private static final String SNAPSHOT_OPTION = "--snapshot=";
+
+    /**
+     * Option to count only the flights passing a filter, such as
+     * {@code departure=KBP,LWO;departureTime>=2024-04-17T00:00}
+     */
+    private static final String FILTER_OPTION = "--filter=";
+
+    /**
+     * Option to print the progress of the run every given number of seconds, 5 by default,
+     * and a summary of the run at the end
+     */
+    private static final String METRICS_OPTION = "--metrics";
+
+    /**
+     * Default interval of the progress lines, in seconds
+     */
+    private static final int DEFAULT_METRICS_INTERVAL = 5;
+
+    /**
+     * Option to save the progress of the run to the given file periodically
+     */
+    private static final String CHECKPOINT_OPTION = "--checkpoint=";
+
+    /**
+     * Option to set the interval between two saves of the checkpoint, in seconds
+     */
+    private static final String CHECKPOINT_INTERVAL_OPTION = "--checkpoint-interval=";
+
+    /**
+     * Option to resume the run saved in the checkpoint, skipping the files it has recorded
+     */
+    private static final String RESUME_OPTION = "--resume";
+
+    /**
+     * Option to set the maximum time the run may take, in minutes
+     */
+    private static final String TIMEOUT_OPTION = "--timeout=";
+
+    /**
+     * Option to keep running and update the statistics while new files arrive
+     */
+    private static final String WATCH_OPTION = "--watch";
+
+    /**
+     * Option to keep the JVM running and answer queries read from the standard input,
+     * or from clients of a local socket on the given port, one query per line
+     */
+    private static final String SERVE_OPTION = "--serve";
+
     public static void main(String[] args) throws IOException {
 
+        if (args.length > 0 && (args[0].equals(SERVE_OPTION) || args[0].startsWith(SERVE_OPTION + "="))) {
+            serve(args);
+            return;
+        }
+
         if (args.length < 2) {
-            System.err.println("Use: java -jar yourprogram.jar <dirPath> <attribute>");
+            System.err.println("Use: java -jar yourprogram.jar --serve[=<port>] [--threads=<n>] [--output-dir=<dir>]");
+            System.err.println("Use: java -jar yourprogram.jar <dirPath> <attribute>[,<attribute>...] [--top-k=<k> [--error-rate=<rate>]] [--memory-limit=<megabytes>] [--cache=<file>] [--threads=<n>] [--virtual-threads] [--format=auto|array|ndjson] [--time-bucket=minute|hour|day|weekday] [--snapshot=<dir>] [--filter=<condition>[;<condition>...]] [--metrics[=<seconds>]] [--output=xml|json|csv|binary[,...]] [--output-dir=<dir>] [--checkpoint=<file> [--checkpoint-interval=<seconds>] [--resume]] [--timeout=<minutes>] [--watch]");
             System.exit(1);
         }
 
         String dirPath = args[0];
-        String attribute = args[1];
+        int topK = 0;
+        double errorRate = TopKStatisticsCollector.DEFAULT_ERROR_RATE;
+        long memoryLimit = 0;
+        StatisticsCache cache = null;
+        int numberOfThreads = Runtime.getRuntime().availableProcessors();
+        boolean virtualThreads = false;
+        boolean watch = false;
+        InputFormat inputFormat = InputFormat.AUTO;
+        Path snapshotDirectory = null;
+        TimeBucket timeBucket = null;
+        FlightFilter filter = null;
+        int metricsInterval = 0;
+        List<StatisticsSink> sinks = List.of(OutputFormat.XML.createSink());
+        Path statisticsLocation = STATISTICS_LOCATION;
+        Path checkpointFile = null;
+        Duration checkpointInterval = Checkpoint.DEFAULT_INTERVAL;
+        boolean resume = false;
+        Duration timeout = FlightDataParser.DEFAULT_TIMEOUT;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].startsWith(TOP_K_OPTION)) {
+                topK = Integer.parseInt(args[i].substring(TOP_K_OPTION.length()));
+            } else if (args[i].startsWith(ERROR_RATE_OPTION)) {
+                errorRate = Double.parseDouble(args[i].substring(ERROR_RATE_OPTION.length()));
+            } else if (args[i].startsWith(MEMORY_LIMIT_OPTION)) {
+                memoryLimit = Long.parseLong(args[i].substring(MEMORY_LIMIT_OPTION.length())) * 1024 * 1024;
+            } else if (args[i].startsWith(CACHE_OPTION)) {
+                cache = new StatisticsCache(Paths.get(args[i].substring(CACHE_OPTION.length())));
+            } else if (args[i].startsWith(THREADS_OPTION)) {
+                numberOfThreads = Integer.parseInt(args[i].substring(THREADS_OPTION.length()));
+            } else if (args[i].equals(VIRTUAL_THREADS_OPTION)) {
+                virtualThreads = true;
+            } else if (args[i].startsWith(FORMAT_OPTION)) {
+                inputFormat = InputFormat.valueOf(args[i].substring(FORMAT_OPTION.length()).toUpperCase(Locale.ROOT));
+            } else if (args[i].startsWith(TIME_BUCKET_OPTION)) {
+                timeBucket = TimeBucket.valueOf(args[i].substring(TIME_BUCKET_OPTION.length()).toUpperCase(Locale.ROOT));
+            } else if (args[i].startsWith(SNAPSHOT_OPTION)) {
+                snapshotDirectory = Paths.get(args[i].substring(SNAPSHOT_OPTION.length()));
+            } else if (args[i].startsWith(FILTER_OPTION)) {
+                filter = FlightFilter.parse(args[i].substring(FILTER_OPTION.length()));
+            } else if (args[i].equals(METRICS_OPTION)) {
+                metricsInterval = DEFAULT_METRICS_INTERVAL;
+            } else if (args[i].startsWith(METRICS_OPTION + "=")) {
+                metricsInterval = Integer.parseInt(args[i].substring(METRICS_OPTION.length() + 1));
+            } else if (args[i].startsWith(OUTPUT_OPTION)) {
+                sinks = OutputFormat.createSinks(args[i].substring(OUTPUT_OPTION.length()));
+            } else if (args[i].startsWith(OUTPUT_DIR_OPTION)) {
+                statisticsLocation = Paths.get(args[i].substring(OUTPUT_DIR_OPTION.length()));
+            } else if (args[i].startsWith(CHECKPOINT_OPTION)) {
+                checkpointFile = Paths.get(args[i].substring(CHECKPOINT_OPTION.length()));
+            } else if (args[i].startsWith(CHECKPOINT_INTERVAL_OPTION)) {
+                checkpointInterval = Duration.ofSeconds(Long.parseLong(args[i].substring(CHECKPOINT_INTERVAL_OPTION.length())));
+            } else if (args[i].equals(RESUME_OPTION)) {
+                resume = true;
+            } else if (args[i].startsWith(TIMEOUT_OPTION)) {
+                timeout = Duration.ofMinutes(Long.parseLong(args[i].substring(TIMEOUT_OPTION.length())));
+            } else if (args[i].equals(WATCH_OPTION)) {
+                watch = true;
+            }
+        }
 
-        StatisticsCollector collector = new StatisticsCollector();
+        if (cache != null && (topK > 0 || memoryLimit > 0)) {
+            throw new IllegalArgumentException(CACHE_OPTION + "<file> cannot be combined with "
+                    + TOP_K_OPTION + " or " + MEMORY_LIMIT_OPTION);
+        }
+        Map<String, StatisticsCollector> collectors = new LinkedHashMap<>();
+        for (String attribute : args[1].split(",")) {
+            if (RouteStatisticsCollector.ATTRIBUTE.equals(attribute.trim())) {
+                collectors.put(attribute.trim(), new RouteStatisticsCollector());
+            } else if (timeBucket != null && isTimeAttribute(attribute.trim())) {
+                collectors.put(attribute.trim(), new TimeBucketStatisticsCollector(timeBucket));
+            } else if (topK > 0) {
+                collectors.put(attribute.trim(), new TopKStatisticsCollector(topK, errorRate));
+            } else if (memoryLimit > 0 && !"services".equals(attribute.trim())) {
+                collectors.put(attribute.trim(), new SpillingStatisticsCollector(memoryLimit));
+            } else {
+                collectors.put(attribute.trim(), createCollector(attribute.trim()));
+            }
+        }
 
-        new FlightDataParser(dirPath, 4, attribute, collector).parse();
-        new XMLStatisticsWriter(collector).writeStatistics(attribute);
+        FlightDataParser parser = new FlightDataParser(dirPath, numberOfThreads, collectors, filter);
+        parser.setChunkSize(cache == null ? FlightDataParser.DEFAULT_CHUNK_SIZE : 0);
+        parser.setStopAfterAllAttributes(true);
+        parser.setStatisticsCache(cache);
+        parser.setVirtualThreads(virtualThreads);
+        parser.setInputFormat(inputFormat);
+        parser.setTimeout(timeout);
+        if (resume && checkpointFile == null) {
+            throw new IllegalArgumentException(RESUME_OPTION + " requires " + CHECKPOINT_OPTION + "<file>");
+        }
+        if (checkpointFile != null) {
+            Checkpoint checkpoint = new Checkpoint(checkpointFile, collectors, checkpointInterval);
+            if (resume && checkpoint.resume()) {
+                System.err.println("Resumed from checkpoint with " + checkpoint.getFileCount() + " processed files");
+            }
+            parser.setCheckpoint(checkpoint);
+        }
+        ProgressReporter reporter = null;
+        if (metricsInterval > 0) {
+            MetricsRegistry registry = new MetricsRegistry();
+            parser.setMetrics(registry);
+            reporter = new ProgressReporter(registry, System.err, Duration.ofSeconds(metricsInterval));
+        }
+        try {
+            if (watch) {
+                try (FlightDataWatcher watcher = new FlightDataWatcher(parser, collectors, statisticsLocation)) {
+                    watcher.setSinks(sinks);
+                    watcher.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (snapshotDirectory != null) {
+                if (!SnapshotConverter.isCurrent(Paths.get(dirPath), snapshotDirectory)) {
+                    long start = System.nanoTime();
+                    new SnapshotConverter(numberOfThreads).convert(Paths.get(dirPath), snapshotDirectory);
+                    parser.getMetrics().stageCompleted("convert", System.nanoTime() - start);
+                }
+                parser.parseSnapshot(snapshotDirectory);
+                writeStatistics(collectors, statisticsLocation, sinks, parser.getMetrics());
+            } else {
+                parser.parse();
+                writeStatistics(collectors, statisticsLocation, sinks, parser.getMetrics());
+            }
+        } finally {
+            if (reporter != null) {
+                reporter.close();
+            }
+            if (parser.getMalformedLineCount() > 0) {
+                System.err.println("Skipped malformed lines: " + parser.getMalformedLineCount());
+            }
+            for (StatisticsCollector collector : collectors.values()) {
+                if (collector instanceof Closeable closeable) {
+                    closeable.close();
+                }
+            }
+        }
 
     }
+
+    /**
+     * Runs a query engine answering the queries read from the standard input,
+     * or from clients of a local socket when a port is given, until the input ends
+     *
+     * @param args {@code --serve[=<port>]} followed by the options of the engine
+     * @throws IOException if an I/O error occurs
+     */
+    private static void serve(String[] args) throws IOException {
+        int port = args[0].equals(SERVE_OPTION) ? -1 : Integer.parseInt(args[0].substring(SERVE_OPTION.length() + 1));
+        int numberOfThreads = Runtime.getRuntime().availableProcessors();
+        Path statisticsLocation = STATISTICS_LOCATION;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith(THREADS_OPTION)) {
+                numberOfThreads = Integer.parseInt(args[i].substring(THREADS_OPTION.length()));
+            } else if (args[i].startsWith(OUTPUT_DIR_OPTION)) {
+                statisticsLocation = Paths.get(args[i].substring(OUTPUT_DIR_OPTION.length()));
+            }
+        }
+        try (QueryEngine engine = new QueryEngine(numberOfThreads, statisticsLocation)) {
+            QueryServer server = new QueryServer(engine);
+            if (port < 0) {
+                server.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                        new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+            } else {
+                server.listen(port);
+            }
+        }
+    }
+
+    /**
+     * Writes the statistics of all collectors to a file per sink, measuring the time it takes
+     *
+     * @param collectors         collectors keyed by attribute
+     * @param statisticsLocation path to the directory where the statistics files are saved
+     * @param sinks              sinks writing the statistics files
+     * @param metrics            receiver of the duration of the writing
+     */
+    private static void writeStatistics(Map<String, StatisticsCollector> collectors, Path statisticsLocation,
+                                        List<StatisticsSink> sinks, ParserMetrics metrics) {
+        long start = System.nanoTime();
+        XMLStatisticsWriter.writeAll(collectors, statisticsLocation, sinks);
+        metrics.stageCompleted("write", System.nanoTime() - start);
+    }
+
+    /**
+     * Checks whether an attribute holds timestamps
+     *
+     * @param attribute attribute to check
+     * @return {@code true} for {@code departureTime} and {@code arrivalTime}
+     */
+    private static boolean isTimeAttribute(String attribute) {
+        return "departureTime".equals(attribute) || "arrivalTime".equals(attribute);
+    }
+
+    /**
+     * Creates the statistics collector best suited for the attribute
+     *
+     * @param attribute attribute to collect statistics of
+     * @return statistics collector for the attribute
+     */
+    public static StatisticsCollector createCollector(String attribute) {
+        if (RouteStatisticsCollector.ATTRIBUTE.equals(attribute)) {
+            return new RouteStatisticsCollector();
+        }
+        return "services".equals(attribute)
+                ? new ServicesStatisticsCollector()
+                : new ShardedStatisticsCollector();
+    }
 }
\ No newline at end of file
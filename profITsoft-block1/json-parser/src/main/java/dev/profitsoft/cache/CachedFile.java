@@ -0,0 +1,27 @@
+package dev.profitsoft.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Representing of a cached file: its fingerprint
+ * and the partial statistics collected from it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedFile {
+
+    private long size;
+    private long lastModified;
+    private long hash;
+
+    /**
+     * Partial statistics of the file, keyed by attribute.
+     */
+    private Map<String, Map<String, Long>> statistics = new ConcurrentHashMap<>();
+}
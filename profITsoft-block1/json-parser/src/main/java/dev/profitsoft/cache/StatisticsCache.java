@@ -0,0 +1,238 @@
+package dev.profitsoft.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Class to cache partial statistics of parsed files between runs.
+ * <p>Each file is stored with its size, modification time and a CRC32C hash of its
+ * content. A cached file is reused while its size is unchanged and either its
+ * modification time or, when only the modification time differs, its content hash
+ * matches. The statistics of new attributes are added to those of the file
+ * as long as it is unchanged, so queries of different attributes reuse each
+ * other's entries. Files that are not seen during a run are dropped from the
+ * cache when it is saved.</p>
+ * <p>The class is thread-safe.</p>
+ */
+public class StatisticsCache {
+
+    /**
+     * Size of the buffer used to hash file contents
+     */
+    private static final int HASH_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Path to the file where the cache is stored
+     */
+    private final Path cacheFile;
+
+    /**
+     * Cached files keyed by their absolute path
+     */
+    private final Map<String, CachedFile> files;
+
+    /**
+     * Paths of the files looked up or stored since the cache was loaded
+     */
+    private final Set<String> seenFiles = ConcurrentHashMap.newKeySet();
+
+    /**
+     * JSON mapper to read and write the cache file
+     */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Number of lookups answered from the cache
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of lookups that required parsing the file
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor, loads the cache from the file if it exists
+     *
+     * @param cacheFile path to the file where the cache is stored
+     * @throws IOException if an I/O error occurs
+     */
+    public StatisticsCache(Path cacheFile) throws IOException {
+        this.cacheFile = cacheFile;
+        this.files = new ConcurrentHashMap<>();
+        if (Files.exists(cacheFile)) {
+            try (InputStream input = Files.newInputStream(cacheFile)) {
+                files.putAll(mapper.readValue(input, new TypeReference<Map<String, CachedFile>>() {
+                }));
+            }
+        }
+    }
+
+    /**
+     * Returns the cached statistics of a file for every attribute,
+     * if the file has not changed since it was cached
+     *
+     * @param file       path to the file
+     * @param attributes attributes the statistics are required for
+     * @return cached statistics keyed by attribute, or empty if any of them is missing
+     * @throws IOException if an I/O error occurs
+     */
+    public Optional<Map<String, Map<String, Long>>> get(Path file, Set<String> attributes) throws IOException {
+        String key = keyOf(file);
+        seenFiles.add(key);
+        CachedFile cachedFile = files.get(key);
+        if (cachedFile == null
+                || !cachedFile.getStatistics().keySet().containsAll(attributes)
+                || !isUnchanged(file, cachedFile)) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        return Optional.of(cachedFile.getStatistics());
+    }
+
+    /**
+     * Method to take the fingerprint of a file before it is parsed,
+     * so changes made while parsing invalidate the cached statistics
+     *
+     * @param file path to the file
+     * @return cache entry without statistics
+     * @throws IOException if an I/O error occurs
+     */
+    public CachedFile fingerprint(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new CachedFile(attributes.size(), attributes.lastModifiedTime().toMillis(), hash(file),
+                new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Method to store the statistics of a parsed file. If the cached entry of the file
+     * has the same fingerprint, the statistics are added to it, keeping the statistics
+     * of the other attributes, otherwise they replace it
+     *
+     * @param file        path to the file
+     * @param fingerprint fingerprint of the file taken before it was parsed
+     * @param statistics  statistics of the file keyed by attribute
+     */
+    public void put(Path file, CachedFile fingerprint, Map<String, ? extends Map<String, Long>> statistics) {
+        String key = keyOf(file);
+        seenFiles.add(key);
+        statistics.forEach((attribute, values) -> fingerprint.getStatistics().put(attribute, Map.copyOf(values)));
+        files.merge(key, fingerprint, (cached, parsed) -> {
+            if (cached.getSize() != parsed.getSize() || cached.getLastModified() != parsed.getLastModified()
+                    || cached.getHash() != parsed.getHash()) {
+                return parsed;
+            }
+            Map<String, Map<String, Long>> merged = new ConcurrentHashMap<>(cached.getStatistics());
+            merged.putAll(parsed.getStatistics());
+            return new CachedFile(parsed.getSize(), parsed.getLastModified(), parsed.getHash(), merged);
+        });
+    }
+
+    /**
+     * Method to save the cache atomically, dropping the files
+     * that were not seen since the cache was loaded
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void save() throws IOException {
+        files.keySet().retainAll(seenFiles);
+        Path directory = cacheFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+        try {
+            mapper.writeValue(tempFile.toFile(), files);
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache
+     *
+     * @return number of cache hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that required parsing the file
+     *
+     * @return number of cache misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Method to check whether a file is unchanged since it was cached. The content
+     * is only hashed when the size matches but the modification time does not
+     *
+     * @param file       path to the file
+     * @param cachedFile cached fingerprint of the file
+     * @return {@code true} if the file is unchanged
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean isUnchanged(Path file, CachedFile cachedFile) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (attributes.size() != cachedFile.getSize()) {
+            return false;
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (lastModified == cachedFile.getLastModified()) {
+            return true;
+        }
+        if (hash(file) != cachedFile.getHash()) {
+            return false;
+        }
+        cachedFile.setLastModified(lastModified);
+        return true;
+    }
+
+    /**
+     * Method to compute the CRC32C hash of the content of a file
+     *
+     * @param file path to the file
+     * @return hash of the content
+     * @throws IOException if an I/O error occurs
+     */
+    private static long hash(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) > 0) {
+                crc.update(buffer.flip());
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Method to build the cache key of a file
+     *
+     * @param file path to the file
+     * @return absolute normalized path of the file
+     */
+    private static String keyOf(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+}
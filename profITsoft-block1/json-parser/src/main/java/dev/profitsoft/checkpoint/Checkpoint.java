@@ -0,0 +1,461 @@
+package dev.profitsoft.checkpoint;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.StatisticsIterator;
+import dev.profitsoft.parser.FileSegment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Class to save the progress of a long run, so that it can be resumed after a crash or a timeout.
+ * <p>A checkpoint holds the statistics of the collectors together with the files,
+ * and the byte ranges of split files, they were collected from. Workers process
+ * each segment between {@link #beginSegment()} and {@link #endSegment(FileSegment, boolean)},
+ * holding a read lock, while a save takes the write lock, so the statistics are
+ * saved between segments and always match the recorded segments. A save holds
+ * the workers back while the statistics are streamed with
+ * {@link StatisticsCollector#iterate()} to a temporary file, which then atomically
+ * replaces the checkpoint file, so collectors that spill to disk are saved from
+ * their runs within their memory limit. Approximate collectors are resumed from
+ * their estimates. A segment that fails on its content is recorded as well, its
+ * values read so far stay in the statistics, as they do in a run without a
+ * checkpoint. A segment interrupted by a stop of the run is not recorded; the
+ * statistics then hold some of its values and no longer match the recorded
+ * segments, so the checkpoint is not saved again and resuming processes
+ * everything after the last save again.</p>
+ * <p>The class is thread-safe.</p>
+ */
+public class Checkpoint {
+
+    /**
+     * Default interval between two saves
+     */
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(1);
+
+    /**
+     * Name of the field holding the attributes of the collectors
+     */
+    private static final String ATTRIBUTES_FIELD = "attributes";
+
+    /**
+     * Name of the field holding the processed files
+     */
+    private static final String FILES_FIELD = "files";
+
+    /**
+     * Name of the field holding the statistics keyed by attribute
+     */
+    private static final String STATISTICS_FIELD = "statistics";
+
+    /**
+     * Number of saved entries merged into a collector at once when resuming
+     */
+    private static final int MERGE_BATCH_SIZE = 4096;
+
+    /**
+     * Path to the file where the checkpoint is stored
+     */
+    private final Path checkpointFile;
+
+    /**
+     * Collectors whose statistics are saved, keyed by attribute
+     */
+    private final Map<String, ? extends StatisticsCollector> collectors;
+
+    /**
+     * Interval between two saves while a run is in progress
+     */
+    private final Duration interval;
+
+    /**
+     * Processed files keyed by their absolute path
+     */
+    private final Map<String, CompletedFile> files = new ConcurrentHashMap<>();
+
+    /**
+     * Lock held for reading by the workers while they process a segment and for writing while saving
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * JSON mapper to read and write the checkpoint file
+     */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Scheduler of the saves, running while a run is in progress
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Whether the run is being stopped, no more segments are then started
+     */
+    private volatile boolean sealed;
+
+    /**
+     * Whether a segment has been interrupted, the statistics then no longer match the recorded segments
+     */
+    private volatile boolean interrupted;
+
+    /**
+     * Constructor, configures the checkpoint
+     *
+     * @param checkpointFile path to the file where the checkpoint is stored
+     * @param collectors     collectors whose statistics are saved, keyed by attribute
+     * @param interval       interval between two saves while a run is in progress
+     */
+    public Checkpoint(Path checkpointFile, Map<String, ? extends StatisticsCollector> collectors, Duration interval) {
+        this.checkpointFile = checkpointFile;
+        this.collectors = collectors;
+        this.interval = interval;
+    }
+
+    /**
+     * Method to resume from the checkpoint file if it exists: the saved statistics
+     * are merged into the collectors in batches as they are read and the saved
+     * segments are marked as processed
+     *
+     * @return {@code true} if the checkpoint file existed, {@code false} to start from scratch
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the checkpoint was saved for other attributes
+     */
+    public boolean resume() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return false;
+        }
+        Map<String, CompletedFile> savedFiles = Map.of();
+        boolean attributesChecked = false;
+        try (InputStream input = Files.newInputStream(checkpointFile);
+             JsonParser parser = mapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Not a checkpoint file: " + checkpointFile);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case ATTRIBUTES_FIELD -> {
+                        List<String> attributes = mapper.readValue(parser, new TypeReference<List<String>>() {
+                        });
+                        if (!attributes.equals(new ArrayList<>(collectors.keySet()))) {
+                            throw new IllegalStateException("Checkpoint was saved for attributes " + attributes);
+                        }
+                        attributesChecked = true;
+                    }
+                    case FILES_FIELD -> savedFiles = mapper.readValue(parser,
+                            new TypeReference<Map<String, CompletedFile>>() {
+                            });
+                    case STATISTICS_FIELD -> {
+                        if (!attributesChecked) {
+                            throw new IOException("Checkpoint has no attributes before its statistics: " + checkpointFile);
+                        }
+                        readStatistics(parser);
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        savedFiles.forEach((key, file) -> files.put(key, new CompletedFile(file.getSize(),
+                file.getLastModified(), file.isWhole(), new ConcurrentHashMap<>(file.getSegments()))));
+        return true;
+    }
+
+    /**
+     * Method to merge the saved statistics of each attribute into its collector
+     *
+     * @param parser JSON parser positioned at the start of the statistics object
+     * @throws IOException if an I/O error occurs
+     */
+    private void readStatistics(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            StatisticsCollector collector = collectors.get(parser.currentName());
+            parser.nextToken();
+            Map<String, Long> batch = new HashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String value = parser.currentName();
+                parser.nextToken();
+                batch.put(value, parser.getLongValue());
+                if (batch.size() == MERGE_BATCH_SIZE) {
+                    collector.merge(batch);
+                    batch.clear();
+                }
+            }
+            collector.merge(batch);
+        }
+    }
+
+    /**
+     * Method to check whether a whole file has been processed before the checkpoint was saved
+     *
+     * @param file path to the file
+     * @return {@code true} if the file has been processed as one segment
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the file has changed since it was processed
+     */
+    public boolean isFileCompleted(Path file) throws IOException {
+        CompletedFile completedFile = completedFile(file);
+        return completedFile != null && completedFile.isWhole();
+    }
+
+    /**
+     * Method to check whether a segment has been processed before the checkpoint was saved
+     *
+     * @param segment segment to check
+     * @return {@code true} if the segment or its whole file has been processed
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the file has changed since it was processed, or if processed
+     *                               segments of the file overlap the segment without matching it
+     */
+    public boolean isCompleted(FileSegment segment) throws IOException {
+        CompletedFile completedFile = completedFile(segment.getFile());
+        if (completedFile == null) {
+            return false;
+        }
+        if (completedFile.isWhole()) {
+            return true;
+        }
+        Long length = completedFile.getSegments().get(segment.getOffset());
+        if (length != null && length == segment.getLength()) {
+            return true;
+        }
+        long end = segment.isWholeFile() ? Long.MAX_VALUE : segment.getOffset() + segment.getLength();
+        completedFile.getSegments().forEach((offset, completedLength) -> {
+            if (offset < end && segment.getOffset() < offset + completedLength) {
+                throw new IllegalStateException("Segments of " + segment.getFile()
+                        + " do not match the checkpoint, resume with the same chunk size");
+            }
+        });
+        return false;
+    }
+
+    /**
+     * Method to get the processed parts of a file, checking that the file has not changed since
+     *
+     * @param file path to the file
+     * @return processed parts of the file, {@code null} if no part of it has been processed
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the file has changed since it was processed
+     */
+    private CompletedFile completedFile(Path file) throws IOException {
+        CompletedFile completedFile = files.get(keyOf(file));
+        if (completedFile == null) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (attributes.size() != completedFile.getSize()
+                || attributes.lastModifiedTime().toMillis() != completedFile.getLastModified()) {
+            throw new IllegalStateException("File changed since the checkpoint: " + file);
+        }
+        return completedFile;
+    }
+
+    /**
+     * Method to start processing a segment, waiting while the checkpoint is being saved
+     *
+     * @throws IOException if the checkpoint is sealed or the thread is interrupted while waiting
+     */
+    public void beginSegment() throws IOException {
+        try {
+            lock.readLock().lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while the checkpoint was saved");
+        }
+        if (sealed) {
+            lock.readLock().unlock();
+            throw new IOException("Checkpoint is sealed");
+        }
+    }
+
+    /**
+     * Method to finish processing a segment started with {@link #beginSegment()}. A segment
+     * is recorded whether it was processed or failed on its content, an interrupted one is
+     * not, so it is processed again when the run is resumed, and the checkpoint is no longer
+     * saved as the statistics hold some of its values
+     *
+     * @param segment     segment that was processed
+     * @param interrupted {@code true} if the segment was interrupted by a stop of the run
+     * @throws IOException if an I/O error occurs
+     */
+    public void endSegment(FileSegment segment, boolean interrupted) throws IOException {
+        try {
+            if (interrupted) {
+                this.interrupted = true;
+                return;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(segment.getFile(), BasicFileAttributes.class);
+            CompletedFile completedFile = files.computeIfAbsent(keyOf(segment.getFile()), key -> new CompletedFile(
+                    attributes.size(), attributes.lastModifiedTime().toMillis(), false, new ConcurrentHashMap<>()));
+            if (segment.isWholeFile()) {
+                completedFile.setWhole(true);
+            } else {
+                completedFile.getSegments().put(segment.getOffset(), segment.getLength());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Method to start saving the checkpoint periodically, until {@link #stopSaving()} is called
+     */
+    public synchronized void startSaving() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = Math.max(1, interval.toMillis());
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                save();
+            } catch (IOException e) {
+                System.err.println("Error saving checkpoint: " + e.getMessage());
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to stop saving the checkpoint periodically
+     */
+    public synchronized void stopSaving() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Method to save the checkpoint atomically, unless a segment has been interrupted. Waits
+     * for the segments in progress to finish and holds new segments back while
+     * the statistics are written
+     *
+     * @return {@code true} if the checkpoint was saved, {@code false} if a segment has been interrupted
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized boolean save() throws IOException {
+        if (interrupted) {
+            return false;
+        }
+        Path directory = checkpointFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, checkpointFile.getFileName().toString(), ".tmp");
+        try {
+            lock.writeLock().lock();
+            try {
+                if (interrupted) {
+                    return false;
+                }
+                write(tempFile);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Method to write the attributes, the processed files and the statistics to a file,
+     * streaming the statistics of each collector
+     *
+     * @param file path to the file
+     * @throws IOException if an I/O error occurs
+     */
+    private void write(Path file) throws IOException {
+        try (OutputStream output = Files.newOutputStream(file);
+             JsonGenerator generator = mapper.getFactory().createGenerator(output)) {
+            generator.writeStartObject();
+            generator.writeFieldName(ATTRIBUTES_FIELD);
+            generator.writeObject(new ArrayList<>(collectors.keySet()));
+            generator.writeFieldName(FILES_FIELD);
+            generator.writeObject(files);
+            generator.writeObjectFieldStart(STATISTICS_FIELD);
+            for (Map.Entry<String, ? extends StatisticsCollector> entry : collectors.entrySet()) {
+                generator.writeObjectFieldStart(entry.getKey());
+                try (StatisticsIterator entries = entry.getValue().iterate()) {
+                    while (entries.next()) {
+                        generator.writeNumberField(entries.getValue(), entries.getCount());
+                    }
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Method to stop saving periodically and to save the checkpoint for the last time.
+     * Segments started afterwards fail and segments finished afterwards are not saved,
+     * so a run that is being stopped does not change the saved progress. The segments
+     * in progress are waited for within the grace period only, if they do not finish
+     * in time the last saved checkpoint is kept
+     *
+     * @param grace maximum time to wait for the segments in progress
+     * @return {@code true} if the checkpoint was saved, {@code false} if the segments in progress
+     * did not finish in time or a segment has been interrupted
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean seal(Duration grace) throws IOException {
+        stopSaving();
+        sealed = true;
+        try {
+            if (!lock.writeLock().tryLock(grace.toNanos(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        lock.writeLock().unlock();
+        return save();
+    }
+
+    /**
+     * Returns the number of files with processed segments
+     *
+     * @return number of files
+     */
+    public int getFileCount() {
+        return files.size();
+    }
+
+    /**
+     * Method to build the checkpoint key of a file
+     *
+     * @param file path to the file
+     * @return absolute normalized path of the file
+     */
+    private static String keyOf(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+}
@@ -0,0 +1,31 @@
+package dev.profitsoft.checkpoint;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Representing of a file in a checkpoint: its fingerprint
+ * and the parts of it that have been processed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompletedFile {
+
+    private long size;
+    private long lastModified;
+
+    /**
+     * Whether the whole file has been processed as one segment.
+     */
+    private boolean whole;
+
+    /**
+     * Lengths of the processed segments of a split file, keyed by their offsets.
+     */
+    private Map<Long, Long> segments = new ConcurrentHashMap<>();
+}
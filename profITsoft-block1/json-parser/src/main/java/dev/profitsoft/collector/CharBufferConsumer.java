@@ -0,0 +1,21 @@
+package dev.profitsoft.collector;
+
+import java.util.function.Consumer;
+
+/**
+ * Consumer of values that can be read straight from the
+ * character buffer of a parser, without creating a String
+ */
+public interface CharBufferConsumer extends Consumer<String> {
+
+    /**
+     * Method to accept a value stored in a character buffer.
+     * The buffer is owned by the caller and is only valid
+     * for the duration of the call
+     *
+     * @param buffer buffer holding the value
+     * @param offset offset of the first character of the value
+     * @param length number of characters in the value
+     */
+    void accept(char[] buffer, int offset, int length);
+}
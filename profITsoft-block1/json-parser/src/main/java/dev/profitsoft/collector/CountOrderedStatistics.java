@@ -0,0 +1,20 @@
+package dev.profitsoft.collector;
+
+import java.io.IOException;
+
+/**
+ * Collector that can stream its statistics in count order,
+ * without building the whole map of statistics in memory
+ */
+public interface CountOrderedStatistics {
+
+    /**
+     * Method to iterate over the statistics sorted by count in descending
+     * order, entries with equal counts are sorted by value.
+     * Must not be called while values are still being consumed
+     *
+     * @return iterator over the statistics, to be closed by the caller
+     * @throws IOException if an I/O error occurs
+     */
+    StatisticsIterator iterateByCount() throws IOException;
+}
@@ -0,0 +1,50 @@
+package dev.profitsoft.collector;
+
+/**
+ * Utility class to order entries of statistics by count without
+ * creating an object per entry
+ */
+public final class CountSort {
+
+    /**
+     * Constructor, not used as the class only has static methods
+     */
+    private CountSort() {
+    }
+
+    /**
+     * Method to sort entry positions by count in descending order
+     * with a stable bottom-up merge sort, so entries with equal
+     * counts keep their original order
+     *
+     * @param counts counts of the entries
+     * @param size   number of entries to sort
+     * @return sorted positions of the entries
+     */
+    public static int[] sortByCountDescending(long[] counts, int size) {
+        int[] source = new int[size];
+        for (int i = 0; i < size; i++) {
+            source[i] = i;
+        }
+        int[] target = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int left = 0; left < size; left += 2 * width) {
+                int middle = Math.min(left + width, size);
+                int right = Math.min(left + 2 * width, size);
+                int i = left;
+                int j = middle;
+                for (int k = left; k < right; k++) {
+                    if (i < middle && (j >= right || counts[source[i]] >= counts[source[j]])) {
+                        target[k] = source[i++];
+                    } else {
+                        target[k] = source[j++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        return source;
+    }
+}
@@ -0,0 +1,184 @@
+package dev.profitsoft.collector;
+
+import java.util.Arrays;
+
+/**
+ * Map of non-negative int keys to long counts with open addressing.
+ * <p>Keys and counts are stored in two parallel primitive arrays probed
+ * linearly, so adding to a count creates no object and the memory used
+ * depends only on the number of distinct keys. The table is kept at most
+ * half full and doubles when it grows. The class is not thread-safe.</p>
+ */
+public final class IntLongHashMap {
+
+    /**
+     * Marker of an empty slot, keys must not be negative
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * Default number of slots of a new map
+     */
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+
+    /**
+     * Keys of the slots, {@link #EMPTY} for free slots
+     */
+    private int[] keys;
+
+    /**
+     * Counts of the slots
+     */
+    private long[] counts;
+
+    /**
+     * Number of keys in the map
+     */
+    private int size;
+
+    /**
+     * Consumer of the entries of the map
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * Method to accept an entry
+         *
+         * @param key   key of the entry
+         * @param count count of the entry
+         */
+        void accept(int key, long count);
+    }
+
+    /**
+     * Constructor, creates an empty map
+     */
+    public IntLongHashMap() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Method to add to the count of a key, inserting the key if it is missing
+     *
+     * @param key   non-negative key
+     * @param delta count to add
+     */
+    public void add(int key, long delta) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Key must not be negative: " + key);
+        }
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            int current = keys[slot];
+            if (current == key) {
+                counts[slot] += delta;
+                return;
+            }
+            if (current == EMPTY) {
+                keys[slot] = key;
+                counts[slot] = delta;
+                if (++size > keys.length >>> 1) {
+                    rehash(keys.length << 1);
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Method to get the count of a key
+     *
+     * @param key non-negative key
+     * @return count of the key, {@code 0} if the key is missing
+     */
+    public long get(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of keys in the map
+     *
+     * @return number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Method to pass every entry to a consumer in slot order
+     *
+     * @param consumer consumer of the entries
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                consumer.accept(keys[slot], counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Method to remove all entries, shrinking the table to its default size
+     */
+    public void clear() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Method to move the entries into a table with the given number of slots
+     *
+     * @param capacity number of slots, a power of two
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldCounts = counts;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Method to allocate an empty table
+     *
+     * @param capacity number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        counts = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Method to spread the bits of a key, so that keys differing
+     * only in their high bits land in different slots
+     *
+     * @param key key to hash
+     * @return hash of the key
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,46 @@
+package dev.profitsoft.collector;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Consumer of the values of several attributes of the same flight object.
+ * <p>The parser extracts each attribute of the list, starts every flight object
+ * with {@link #startRecord()}, passes its values with the position of the
+ * attribute in the list, and ends the object with {@link #endRecord()} on the
+ * same thread, so a consumer can combine the attributes of one object, for
+ * example into a route. Objects that fail to parse may be dropped without
+ * their record being ended, so a consumer discards the values of the current
+ * object when the next one starts.</p>
+ */
+public interface RecordConsumer extends Consumer<String> {
+
+    /**
+     * Returns the attributes to extract from each flight object
+     *
+     * @return names of the attributes
+     */
+    List<String> getAttributes();
+
+    /**
+     * Method to start the next object, discarding the values of an object that was not ended
+     */
+    void startRecord();
+
+    /**
+     * Method to accept a value of an attribute of the current object.
+     * The buffer is owned by the caller and is only valid
+     * for the duration of the call
+     *
+     * @param attribute position of the attribute in {@link #getAttributes()}
+     * @param buffer    buffer holding the value
+     * @param offset    offset of the first character of the value
+     * @param length    number of characters in the value
+     */
+    void accept(int attribute, char[] buffer, int offset, int length);
+
+    /**
+     * Method to end the current object after all its values were accepted
+     */
+    void endRecord();
+}
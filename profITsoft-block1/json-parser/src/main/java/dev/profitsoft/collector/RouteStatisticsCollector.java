@@ -0,0 +1,233 @@
+package dev.profitsoft.collector;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Class to collect statistics of routes, the pairs of the {@code departure}
+ * and {@code destination} attributes of each flight.
+ * <p>An IATA code of three uppercase letters is packed into 15 bits, so a
+ * route fits in one int and is counted in a per-thread {@link IntLongHashMap}
+ * without any object being created per flight. Routes whose codes are not
+ * IATA codes fall back to the generic statistics map, flights missing either
+ * attribute are not counted. Routes are labelled like {@code KBP-LWO}.
+ * Per-thread maps are merged when the statistics are requested.</p>
+ */
+public class RouteStatisticsCollector extends StatisticsCollector implements RecordConsumer {
+
+    /**
+     * Name under which the statistics of routes are requested and written
+     */
+    public static final String ATTRIBUTE = "route";
+
+    /**
+     * Attributes making up a route, in the order of the pair
+     */
+    private static final List<String> ATTRIBUTES = List.of("departure", "destination");
+
+    /**
+     * Separator of the codes in the labels of routes
+     */
+    private static final char SEPARATOR = '-';
+
+    /**
+     * Number of bits of a packed IATA code
+     */
+    private static final int CODE_BITS = 15;
+
+    /**
+     * Value of a code that has not been seen in the current flight
+     */
+    private static final int MISSING = -1;
+
+    /**
+     * Value of a code that is not an IATA code
+     */
+    private static final int OTHER = -2;
+
+    /**
+     * Counters and current flight of all threads that have consumed values
+     */
+    private final ThreadShards<ThreadRoutes> counters = new ThreadShards<>(ThreadRoutes::new);
+
+    /**
+     * Returns the attributes making up a route
+     *
+     * @return {@code departure} and {@code destination}
+     */
+    @Override
+    public List<String> getAttributes() {
+        return ATTRIBUTES;
+    }
+
+    /**
+     * Method to start the next flight, discarding the codes of a flight that failed to parse
+     */
+    @Override
+    public void startRecord() {
+        ThreadRoutes routes = counters.get();
+        routes.codes[0] = MISSING;
+        routes.codes[1] = MISSING;
+    }
+
+    /**
+     * Method to accept the departure or destination of the current flight
+     *
+     * @param attribute position of the attribute, {@code 0} for departure and {@code 1} for destination
+     * @param buffer    buffer holding the value
+     * @param offset    offset of the first character of the value
+     * @param length    number of characters in the value
+     */
+    @Override
+    public void accept(int attribute, char[] buffer, int offset, int length) {
+        ThreadRoutes routes = counters.get();
+        int code = pack(buffer, offset, length);
+        routes.codes[attribute] = code;
+        routes.values[attribute] = code == OTHER ? new String(buffer, offset, length) : null;
+    }
+
+    /**
+     * Method to count the route of the current flight and to reset it for the next flight
+     */
+    @Override
+    public void endRecord() {
+        ThreadRoutes routes = counters.get();
+        int departure = routes.codes[0];
+        int destination = routes.codes[1];
+        if (departure >= 0 && destination >= 0) {
+            routes.counts.add(departure << CODE_BITS | destination, 1);
+        } else if (departure != MISSING && destination != MISSING) {
+            super.accept(label(routes, 0) + SEPARATOR + label(routes, 1));
+        }
+        routes.codes[0] = MISSING;
+        routes.codes[1] = MISSING;
+    }
+
+    /**
+     * Method to accept a route labelled like {@code KBP-LWO}
+     *
+     * @param value the value to be consumed
+     */
+    @Override
+    public void accept(String value) {
+        char[] chars = value.toCharArray();
+        int separator = value.indexOf(SEPARATOR);
+        int departure = separator < 0 ? OTHER : pack(chars, 0, separator);
+        int destination = separator < 0 ? OTHER : pack(chars, separator + 1, chars.length - separator - 1);
+        if (departure >= 0 && destination >= 0) {
+            counters.get().counts.add(departure << CODE_BITS | destination, 1);
+        } else {
+            super.accept(value);
+        }
+    }
+
+    /**
+     * Returns the statistics of routes, merging the per-thread maps
+     * into the generic map first. Must not be called while
+     * values are still being consumed
+     *
+     * @return map of route labels and their counts
+     */
+    @Override
+    public synchronized ConcurrentMap<String, Long> getStatistics() {
+        mergeShards();
+        return super.getStatistics();
+    }
+
+    /**
+     * Method to merge the per-thread maps into the generic map and to clear them.
+     * Must not be called while values are still being consumed
+     *
+     * @return number of routes merged
+     */
+    @Override
+    public synchronized int mergeShards() {
+        ConcurrentMap<String, Long> statistics = super.getStatistics();
+        char[] label = new char[7];
+        label[3] = SEPARATOR;
+        int merged = 0;
+        for (ThreadRoutes routes : counters) {
+            routes.counts.forEach((route, count) -> {
+                unpack(route >>> CODE_BITS, label, 0);
+                unpack(route & ((1 << CODE_BITS) - 1), label, 4);
+                statistics.merge(new String(label), count, Long::sum);
+            });
+            merged += routes.counts.size();
+            routes.counts.clear();
+        }
+        return merged;
+    }
+
+    /**
+     * Method to pack an IATA code of three uppercase letters into an int
+     *
+     * @param buffer buffer holding the code
+     * @param offset offset of the first letter
+     * @param length number of characters in the code
+     * @return packed code in base 26, or {@link #OTHER} if the value is not an IATA code
+     */
+    private static int pack(char[] buffer, int offset, int length) {
+        if (length != 3) {
+            return OTHER;
+        }
+        int code = 0;
+        for (int i = offset; i < offset + 3; i++) {
+            int letter = buffer[i] - 'A';
+            if (letter < 0 || letter >= 26) {
+                return OTHER;
+            }
+            code = code * 26 + letter;
+        }
+        return code;
+    }
+
+    /**
+     * Method to write the letters of a packed IATA code
+     *
+     * @param code   packed code
+     * @param label  buffer to write the letters to
+     * @param offset offset of the first letter
+     */
+    private static void unpack(int code, char[] label, int offset) {
+        label[offset + 2] = (char) ('A' + code % 26);
+        label[offset + 1] = (char) ('A' + code / 26 % 26);
+        label[offset] = (char) ('A' + code / 676);
+    }
+
+    /**
+     * Method to get the label of a code of the current flight
+     *
+     * @param routes    current flight of the thread
+     * @param attribute position of the attribute
+     * @return value of the code
+     */
+    private static String label(ThreadRoutes routes, int attribute) {
+        if (routes.codes[attribute] == OTHER) {
+            return routes.values[attribute];
+        }
+        char[] letters = new char[3];
+        unpack(routes.codes[attribute], letters, 0);
+        return new String(letters);
+    }
+
+    /**
+     * Route counts and current flight of one thread
+     */
+    private static class ThreadRoutes {
+
+        /**
+         * Counts of packed routes
+         */
+        private final IntLongHashMap counts = new IntLongHashMap();
+
+        /**
+         * Packed codes of the current flight, indexed like the attributes
+         */
+        private final int[] codes = {MISSING, MISSING};
+
+        /**
+         * Values of the codes of the current flight that are not IATA codes
+         */
+        private final String[] values = new String[2];
+    }
+}
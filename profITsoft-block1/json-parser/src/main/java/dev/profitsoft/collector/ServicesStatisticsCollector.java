@@ -0,0 +1,201 @@
+package dev.profitsoft.collector;
+
+import dev.profitsoft.entity.Flight;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.IntStream;
+
+/**
+ * Class to collect statistics of the {@code services} attribute.
+ * <p>Service names from {@link Flight#AVAILABLE_SERVICES} are matched straight
+ * from the parser's character buffer and counted into a per-thread array
+ * indexed by the position of the service in the list, so known services
+ * are counted without allocations. Unknown values fall back to the generic
+ * statistics map. Per-thread counters are merged into the map when
+ * the statistics are requested.</p>
+ */
+public class ServicesStatisticsCollector extends StatisticsCollector implements CharBufferConsumer {
+
+    /**
+     * Names of the known services, indexed by their position in the list
+     */
+    private static final List<String> SERVICES = Flight.AVAILABLE_SERVICES;
+
+    /**
+     * Characters of the known services, indexed by their position in the list
+     */
+    private static final char[][] SERVICE_CHARS = SERVICES.stream()
+            .map(String::toCharArray)
+            .toArray(char[][]::new);
+
+    /**
+     * Indices of the known services grouped by the length of their names
+     */
+    private static final int[][] SERVICES_BY_LENGTH = groupServicesByLength();
+
+    /**
+     * Counters of all threads that have consumed values
+     */
+    private final ThreadShards<long[]> counters = new ThreadShards<>(() -> new long[SERVICES.size()]);
+
+    /**
+     * Method to accept a value and update the statistics
+     *
+     * @param value the value to be consumed
+     */
+    @Override
+    public void accept(String value) {
+        char[] chars = value.toCharArray();
+        accept(chars, 0, chars.length);
+    }
+
+    /**
+     * Method to accept a comma-separated list of services stored
+     * in a character buffer and update the statistics
+     *
+     * @param buffer buffer holding the value
+     * @param offset offset of the first character of the value
+     * @param length number of characters in the value
+     */
+    @Override
+    public void accept(char[] buffer, int offset, int length) {
+        long[] threadCounter = counters.get();
+        int end = offset + length;
+        boolean trim = indexOf(buffer, ',', offset, end) >= 0;
+        while (trim && end > offset && buffer[end - 1] == ',') {
+            end--;
+        }
+        if (trim && end == offset) {
+            return;
+        }
+        int start = offset;
+        while (start <= end) {
+            int comma = indexOf(buffer, ',', start, end);
+            int pieceEnd = comma < 0 ? end : comma;
+            int pieceStart = start;
+            if (trim) {
+                while (pieceStart < pieceEnd && Character.isWhitespace(buffer[pieceStart])) {
+                    pieceStart++;
+                }
+                while (pieceEnd > pieceStart && Character.isWhitespace(buffer[pieceEnd - 1])) {
+                    pieceEnd--;
+                }
+            }
+            int service = findService(buffer, pieceStart, pieceEnd - pieceStart);
+            if (service >= 0) {
+                threadCounter[service]++;
+            } else {
+                super.accept(new String(buffer, pieceStart, pieceEnd - pieceStart));
+            }
+            start = (comma < 0 ? end : comma) + 1;
+        }
+    }
+
+    /**
+     * Returns the statistics of consumed values, merging the per-thread
+     * counters into the map first. Must not be called while
+     * values are still being consumed
+     *
+     * @return map of consumed values and their counts
+     */
+    @Override
+    public synchronized ConcurrentMap<String, Long> getStatistics() {
+        mergeShards();
+        return super.getStatistics();
+    }
+
+    /**
+     * Method to merge the per-thread counters into the map and to reset them.
+     * Must not be called while values are still being consumed
+     *
+     * @return number of values merged
+     */
+    @Override
+    public synchronized int mergeShards() {
+        ConcurrentMap<String, Long> statistics = super.getStatistics();
+        int merged = 0;
+        for (long[] threadCounter : counters) {
+            for (int service = 0; service < threadCounter.length; service++) {
+                if (threadCounter[service] > 0) {
+                    statistics.merge(SERVICES.get(service), threadCounter[service], Long::sum);
+                    threadCounter[service] = 0;
+                    merged++;
+                }
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Method to find the index of a known service by its name
+     *
+     * @param buffer buffer holding the name
+     * @param offset offset of the first character of the name
+     * @param length number of characters in the name
+     * @return index of the service, or {@code -1} if the service is unknown
+     */
+    private static int findService(char[] buffer, int offset, int length) {
+        if (length >= SERVICES_BY_LENGTH.length) {
+            return -1;
+        }
+        for (int service : SERVICES_BY_LENGTH[length]) {
+            if (matches(SERVICE_CHARS[service], buffer, offset)) {
+                return service;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method to compare a service name with the characters of a buffer
+     *
+     * @param name   name of the service
+     * @param buffer buffer holding at least {@code name.length} characters from the offset
+     * @param offset offset of the first character to compare
+     * @return {@code true} if the characters are equal
+     */
+    private static boolean matches(char[] name, char[] buffer, int offset) {
+        for (int i = 0; i < name.length; i++) {
+            if (name[i] != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method to find the first occurrence of a character in a buffer range
+     *
+     * @param buffer buffer to search in
+     * @param c      character to find
+     * @param from   offset to start searching from
+     * @param to     offset to stop searching at, exclusive
+     * @return offset of the character, or {@code -1} if it is not found
+     */
+    private static int indexOf(char[] buffer, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method to group the indices of the known services by the length of their names
+     *
+     * @return array of service indices indexed by name length
+     */
+    private static int[][] groupServicesByLength() {
+        int maxLength = SERVICES.stream().mapToInt(String::length).max().orElse(0);
+        int[][] servicesByLength = new int[maxLength + 1][];
+        for (int length = 0; length <= maxLength; length++) {
+            int nameLength = length;
+            servicesByLength[length] = IntStream.range(0, SERVICES.size())
+                    .filter(service -> SERVICES.get(service).length() == nameLength)
+                    .toArray();
+        }
+        return servicesByLength;
+    }
+}
@@ -0,0 +1,74 @@
+package dev.profitsoft.collector;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Slot of the per-thread counts of the collectors, bound to a thread while it consumes values.
+ * <p>Collectors count into a shard per thread. Threads that live shorter than the
+ * collectors, such as a virtual thread per segment, would each leave a shard behind
+ * until the statistics are requested, and threads that live longer, such as the
+ * workers of a pool shared by many runs, would keep the shards of every run in their
+ * thread-locals after the collectors are discarded. A thread that binds a slot uses
+ * the shard of the slot instead of its own, and a released slot is reused by the next
+ * thread that binds one, so there are never more slots, and shards per collector, than
+ * threads consuming values at the same time. The last released slot is reused first, and the slot is
+ * handed over through a concurrent deque, so the next thread sees the counts
+ * of the previous one.</p>
+ */
+public final class ShardSlot {
+
+    /**
+     * Slots that are not bound to any thread, the last released first
+     */
+    private static final Deque<Integer> FREE_SLOTS = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Number of slots created so far
+     */
+    private static final AtomicInteger SLOT_COUNT = new AtomicInteger();
+
+    /**
+     * Slot bound to the current thread, {@code null} if it has none
+     */
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardSlot() {
+    }
+
+    /**
+     * Method to bind a free slot to the current thread, creating one if all slots are bound
+     *
+     * @return {@code true} if a slot was bound, {@code false} if the thread already had one,
+     * which is then kept and must not be unbound by the caller
+     */
+    public static boolean bind() {
+        if (CURRENT.get() != null) {
+            return false;
+        }
+        Integer slot = FREE_SLOTS.pollFirst();
+        CURRENT.set(slot != null ? slot : SLOT_COUNT.getAndIncrement());
+        return true;
+    }
+
+    /**
+     * Method to release the slot bound to the current thread by {@link #bind()}
+     */
+    public static void unbind() {
+        Integer slot = CURRENT.get();
+        if (slot != null) {
+            CURRENT.remove();
+            FREE_SLOTS.addFirst(slot);
+        }
+    }
+
+    /**
+     * Returns the slot bound to the current thread
+     *
+     * @return slot, {@code null} if the thread has none
+     */
+    static Integer current() {
+        return CURRENT.get();
+    }
+}
@@ -0,0 +1,85 @@
+package dev.profitsoft.collector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Class to collect statistics of consumed values without contention between threads.
+ * <p>Each thread counts into its own non-concurrent map, so threads never compete
+ * for the same map bins. The per-thread maps are reduced into the shared
+ * statistics map once, when the statistics are requested after parsing.</p>
+ */
+public class ShardedStatisticsCollector extends StatisticsCollector {
+
+    /**
+     * Maps of all threads that have consumed values, counts are kept
+     * in single-element arrays to avoid boxing on update
+     */
+    private final ThreadShards<Map<String, long[]>> shards = new ThreadShards<>(HashMap::new);
+
+    /**
+     * Method to accept a value and update the statistics
+     * of the current thread
+     *
+     * @param value the value to be consumed
+     */
+    @Override
+    public void accept(String value) {
+        Map<String, long[]> shard = shards.get();
+        if (value.contains(",")) {
+            String[] values = value.split(",");
+            for (String val : values) {
+                increment(shard, val.trim());
+            }
+        } else {
+            increment(shard, value);
+        }
+    }
+
+    /**
+     * Returns the statistics of consumed values, reducing the per-thread
+     * maps into the shared map first. Must not be called while
+     * values are still being consumed
+     *
+     * @return map of consumed values and their counts
+     */
+    @Override
+    public synchronized ConcurrentMap<String, Long> getStatistics() {
+        mergeShards();
+        return super.getStatistics();
+    }
+
+    /**
+     * Method to reduce the per-thread maps into the shared map and to clear them.
+     * Must not be called while values are still being consumed
+     *
+     * @return number of values merged
+     */
+    @Override
+    public synchronized int mergeShards() {
+        ConcurrentMap<String, Long> statistics = super.getStatistics();
+        int merged = 0;
+        for (Map<String, long[]> shard : shards) {
+            shard.forEach((value, count) -> statistics.merge(value, count[0], Long::sum));
+            merged += shard.size();
+            shard.clear();
+        }
+        return merged;
+    }
+
+    /**
+     * Method to increment the count of a value in a per-thread map
+     *
+     * @param shard map of the current thread
+     * @param value the value to be counted
+     */
+    private static void increment(Map<String, long[]> shard, String value) {
+        long[] count = shard.get(value);
+        if (count == null) {
+            shard.put(value, new long[]{1});
+        } else {
+            count[0]++;
+        }
+    }
+}
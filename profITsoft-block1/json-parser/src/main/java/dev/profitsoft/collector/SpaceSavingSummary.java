@@ -0,0 +1,285 @@
+package dev.profitsoft.collector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Space-Saving summary of the most frequent values of a stream.
+ * <p>The summary keeps at most {@code capacity} counters. When a value without
+ * a counter arrives and the summary is full, the counter with the smallest
+ * count is taken over by the new value, and its count becomes the error of
+ * the new counter. Every count is an overestimate by at most its error,
+ * which never exceeds {@code total / capacity}. Counters are ordered
+ * in a min-heap, so each update takes logarithmic time.</p>
+ * <p>The class is not thread-safe.</p>
+ */
+class SpaceSavingSummary {
+
+    /**
+     * Maximum number of counters
+     */
+    private final int capacity;
+
+    /**
+     * Slots of the counters keyed by value
+     */
+    private final Map<String, Integer> slots;
+
+    /**
+     * Values of the counters, indexed by slot
+     */
+    private final String[] values;
+
+    /**
+     * Counts of the counters, indexed by slot
+     */
+    private final long[] counts;
+
+    /**
+     * Errors of the counters, indexed by slot
+     */
+    private final long[] errors;
+
+    /**
+     * Min-heap of slots ordered by count
+     */
+    private final int[] heap;
+
+    /**
+     * Positions of the slots in the heap, indexed by slot
+     */
+    private final int[] heapPositions;
+
+    /**
+     * Number of counters in use
+     */
+    private int size;
+
+    /**
+     * Sum of all counts offered to the summary
+     */
+    private long total;
+
+    /**
+     * Constructor, creates an empty summary
+     *
+     * @param capacity maximum number of counters
+     */
+    SpaceSavingSummary(int capacity) {
+        this.capacity = capacity;
+        this.slots = new HashMap<>();
+        this.values = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.heapPositions = new int[capacity];
+    }
+
+    /**
+     * Method to count an occurrence of a value
+     *
+     * @param value the value to be counted
+     */
+    void offer(String value) {
+        offer(value, 1, 0);
+    }
+
+    /**
+     * Method to count a value with a given weight and error
+     *
+     * @param value the value to be counted
+     * @param count weight of the value
+     * @param error error already contained in the weight
+     */
+    void offer(String value, long count, long error) {
+        total += count;
+        Integer slot = slots.get(value);
+        if (slot != null) {
+            counts[slot] += count;
+            errors[slot] += error;
+            siftDown(heapPositions[slot]);
+        } else if (size < capacity) {
+            int newSlot = size++;
+            values[newSlot] = value;
+            counts[newSlot] = count;
+            errors[newSlot] = error;
+            slots.put(value, newSlot);
+            heap[newSlot] = newSlot;
+            heapPositions[newSlot] = newSlot;
+            siftUp(newSlot);
+        } else {
+            int minSlot = heap[0];
+            slots.remove(values[minSlot]);
+            values[minSlot] = value;
+            errors[minSlot] = counts[minSlot] + error;
+            counts[minSlot] += count;
+            slots.put(value, minSlot);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Method to remove all counters from the summary
+     */
+    void clear() {
+        slots.clear();
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        total = 0;
+    }
+
+    /**
+     * Returns the smallest count of the summary if it is full. Any value
+     * without a counter has occurred at most that many times
+     *
+     * @return smallest count, or {@code 0} if the summary is not full
+     */
+    long getMinimumCount() {
+        return size < capacity ? 0 : counts[heap[0]];
+    }
+
+    /**
+     * Returns the sum of all counts offered to the summary
+     *
+     * @return total count
+     */
+    long getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the upper bound of the error of any count in the summary
+     *
+     * @return maximum error
+     */
+    long getMaximumError() {
+        return total / capacity;
+    }
+
+    /**
+     * Method to pass each counter to the consumer
+     *
+     * @param consumer consumer of the values and their counts
+     */
+    void forEach(ObjLongConsumer<String> consumer) {
+        for (int slot = 0; slot < size; slot++) {
+            consumer.accept(values[slot], counts[slot]);
+        }
+    }
+
+    /**
+     * Method to pass each counter to the consumer
+     *
+     * @param consumer consumer of the values, their counts and errors
+     */
+    void forEachWithError(CounterConsumer consumer) {
+        for (int slot = 0; slot < size; slot++) {
+            consumer.accept(values[slot], counts[slot], errors[slot]);
+        }
+    }
+
+    /**
+     * Method to merge several summaries into one. Counts of values missing from
+     * a full summary are raised by its smallest count, as the value may have
+     * occurred that many times there, which keeps the error bound
+     * of the merged summary at {@code total / capacity}
+     *
+     * @param summaries summaries to merge
+     * @param capacity  maximum number of counters of the merged summary
+     * @return merged summary
+     */
+    static SpaceSavingSummary merge(Iterable<SpaceSavingSummary> summaries, int capacity) {
+        Map<String, long[]> combined = new HashMap<>();
+        long total = 0;
+        long minimumCounts = 0;
+        for (SpaceSavingSummary summary : summaries) {
+            total += summary.total;
+            long minimumCount = summary.getMinimumCount();
+            minimumCounts += minimumCount;
+            summary.forEachWithError((value, count, error) -> {
+                long[] counter = combined.computeIfAbsent(value, key -> new long[2]);
+                counter[0] += count - minimumCount;
+                counter[1] += error - minimumCount;
+            });
+        }
+        SpaceSavingSummary merged = new SpaceSavingSummary(capacity);
+        long sharedMinimum = minimumCounts;
+        combined.entrySet().stream()
+                .sorted((entry1, entry2) -> Long.compare(entry2.getValue()[0], entry1.getValue()[0]))
+                .limit(capacity)
+                .forEach(entry -> merged.offer(entry.getKey(),
+                        entry.getValue()[0] + sharedMinimum, entry.getValue()[1] + sharedMinimum));
+        merged.total = total;
+        return merged;
+    }
+
+    /**
+     * Method to restore the heap order from a position towards the root
+     *
+     * @param position position in the heap
+     */
+    private void siftUp(int position) {
+        int slot = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(slot, position);
+    }
+
+    /**
+     * Method to restore the heap order from a position towards the leaves
+     *
+     * @param position position in the heap
+     */
+    private void siftDown(int position) {
+        int slot = heap[position];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && counts[heap[right]] < counts[heap[child]]) {
+                child = right;
+            }
+            if (counts[slot] <= counts[heap[child]]) {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(slot, position);
+    }
+
+    /**
+     * Method to put a slot at a position of the heap
+     *
+     * @param slot     slot of the counter
+     * @param position position in the heap
+     */
+    private void place(int slot, int position) {
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
+
+    /**
+     * Consumer of a counter of the summary
+     */
+    @FunctionalInterface
+    interface CounterConsumer {
+
+        /**
+         * Method to accept a counter
+         *
+         * @param value value of the counter
+         * @param count count of the value
+         * @param error error of the count
+         */
+        void accept(String value, long count, long error);
+    }
+}
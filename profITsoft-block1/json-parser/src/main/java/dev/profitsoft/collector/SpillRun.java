@@ -0,0 +1,312 @@
+package dev.profitsoft.collector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorted run of value counts spilled to a file.
+ * <p>Each entry is stored as the length and the UTF-8 bytes of the value
+ * followed by its count, a negative length marks the end of the run.</p>
+ */
+final class SpillRun {
+
+    /**
+     * Size of the buffers used to read and write runs
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Order of runs sorted by value
+     */
+    static final Comparator<StatisticsIterator> BY_VALUE = Comparator.comparing(StatisticsIterator::getValue);
+
+    /**
+     * Order of runs sorted by count in descending order and then by value
+     */
+    static final Comparator<StatisticsIterator> BY_COUNT = Comparator
+            .comparingLong(StatisticsIterator::getCount).reversed()
+            .thenComparing(StatisticsIterator::getValue);
+
+    /**
+     * Constructor, not used as the class only has static members
+     */
+    private SpillRun() {
+    }
+
+    /**
+     * Method to write entries to a new run
+     *
+     * @param file    path to the run file
+     * @param entries entries in the order of the run
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(Path file, StatisticsIterator entries) throws IOException {
+        try (Writer writer = new Writer(file)) {
+            while (entries.next()) {
+                writer.write(entries.getValue(), entries.getCount());
+            }
+        }
+    }
+
+    /**
+     * Method to open several runs sorted in the same order as one iterator
+     *
+     * @param files          paths to the run files
+     * @param order          order of the runs
+     * @param sumEqualValues whether the counts of equal values of different runs are summed
+     * @param deleteOnClose  whether the run files are deleted when the iterator is closed
+     * @return iterator over the merged runs
+     * @throws IOException if an I/O error occurs
+     */
+    static StatisticsIterator open(List<Path> files, Comparator<StatisticsIterator> order,
+                                   boolean sumEqualValues, boolean deleteOnClose) throws IOException {
+        List<StatisticsIterator> readers = new ArrayList<>(files.size());
+        try {
+            for (Path file : files) {
+                readers.add(new Reader(file));
+            }
+            return new Merger(readers, order, sumEqualValues, deleteOnClose ? List.copyOf(files) : List.of());
+        } catch (IOException e) {
+            for (StatisticsIterator reader : readers) {
+                reader.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writer of a run
+     */
+    static final class Writer implements Closeable {
+
+        /**
+         * Output stream of the run file
+         */
+        private final DataOutputStream output;
+
+        /**
+         * Constructor, creates or truncates the run file
+         *
+         * @param file path to the run file
+         * @throws IOException if an I/O error occurs
+         */
+        Writer(Path file) throws IOException {
+            this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+        }
+
+        /**
+         * Method to append an entry to the run
+         *
+         * @param value value of the entry
+         * @param count count of the entry
+         * @throws IOException if an I/O error occurs
+         */
+        void write(String value, long count) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+            output.writeLong(count);
+        }
+
+        /**
+         * Method to end the run and close the file
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                output.writeInt(-1);
+            } finally {
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * Reader of a run
+     */
+    static final class Reader implements StatisticsIterator {
+
+        /**
+         * Input stream of the run file
+         */
+        private final DataInputStream input;
+
+        /**
+         * Value of the current entry
+         */
+        private String value;
+
+        /**
+         * Count of the current entry
+         */
+        private long count;
+
+        /**
+         * Constructor, opens the run file
+         *
+         * @param file path to the run file
+         * @throws IOException if an I/O error occurs
+         */
+        Reader(Path file) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            int length = input.readInt();
+            if (length < 0) {
+                return false;
+            }
+            byte[] bytes = new byte[length];
+            input.readFully(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            count = input.readLong();
+            return true;
+        }
+
+        @Override
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    /**
+     * K-way merge of several sorted iterators, the iterator with the
+     * smallest current entry is kept at the top of a priority queue
+     */
+    private static final class Merger implements StatisticsIterator {
+
+        /**
+         * All merged iterators
+         */
+        private final List<StatisticsIterator> sources;
+
+        /**
+         * Iterators that have a current entry, ordered by it
+         */
+        private final PriorityQueue<StatisticsIterator> queue;
+
+        /**
+         * Whether the counts of equal values of different iterators are summed
+         */
+        private final boolean sumEqualValues;
+
+        /**
+         * Run files to delete when the merger is closed
+         */
+        private final List<Path> filesToDelete;
+
+        /**
+         * Value of the current entry
+         */
+        private String value;
+
+        /**
+         * Count of the current entry
+         */
+        private long count;
+
+        /**
+         * Constructor, reads the first entry of every iterator
+         *
+         * @param sources        sorted iterators to merge
+         * @param order          order of the iterators
+         * @param sumEqualValues whether the counts of equal values are summed
+         * @param filesToDelete  run files to delete when the merger is closed
+         * @throws IOException if an I/O error occurs
+         */
+        private Merger(List<StatisticsIterator> sources, Comparator<StatisticsIterator> order,
+                       boolean sumEqualValues, List<Path> filesToDelete) throws IOException {
+            this.sources = sources;
+            this.queue = new PriorityQueue<>(Math.max(1, sources.size()), order);
+            this.sumEqualValues = sumEqualValues;
+            this.filesToDelete = filesToDelete;
+            for (StatisticsIterator source : sources) {
+                if (source.next()) {
+                    queue.add(source);
+                }
+            }
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            StatisticsIterator top = queue.poll();
+            if (top == null) {
+                return false;
+            }
+            value = top.getValue();
+            count = top.getCount();
+            advance(top);
+            while (sumEqualValues && !queue.isEmpty() && queue.peek().getValue().equals(value)) {
+                StatisticsIterator equal = queue.poll();
+                count += equal.getCount();
+                advance(equal);
+            }
+            return true;
+        }
+
+        /**
+         * Method to move an iterator to its next entry and
+         * to put it back into the queue if it has one
+         *
+         * @param source iterator taken from the queue
+         * @throws IOException if an I/O error occurs
+         */
+        private void advance(StatisticsIterator source) throws IOException {
+            if (source.next()) {
+                queue.add(source);
+            }
+        }
+
+        @Override
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (StatisticsIterator source : sources) {
+                try {
+                    source.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            for (Path file : filesToDelete) {
+                Files.deleteIfExists(file);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
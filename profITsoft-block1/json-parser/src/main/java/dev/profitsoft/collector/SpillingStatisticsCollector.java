@@ -0,0 +1,492 @@
+package dev.profitsoft.collector;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+/**
+ * Class to collect exact statistics of consumed values within a memory limit.
+ * <p>Intended for attributes with more distinct values than fit in the heap,
+ * such as {@code flightNumber} or timestamps over billions of records. Each
+ * thread counts into its own map; when the estimated size of the map exceeds
+ * the thread's share of the memory limit, the map is sorted by value and
+ * spilled to a run file in a temporary directory. The statistics are then
+ * produced by a k-way merge of the runs that sums the counts of each value,
+ * followed by an external sort by count, so the entries can be streamed to
+ * the writer in count order without holding them all in memory.</p>
+ * <p>The memory limit bounds the estimated size of the counted entries, not
+ * the whole heap of the application. The collector must be closed
+ * to delete its run files.</p>
+ */
+public class SpillingStatisticsCollector extends StatisticsCollector implements CountOrderedStatistics, Closeable {
+
+    /**
+     * Default memory limit of the counted entries in bytes
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 256L * 1024 * 1024;
+
+    /**
+     * Estimated heap size of a counted entry without the characters of its value:
+     * the map node, the table slot, the string and its array, and the count array
+     */
+    private static final int ENTRY_OVERHEAD = 112;
+
+    /**
+     * Estimated heap size of an entry being sorted by count without the characters
+     * of its value: the string and its array, and the array slots of the sort
+     */
+    private static final int SORT_ENTRY_OVERHEAD = 72;
+
+    /**
+     * Maximum number of runs merged at once, more runs are first
+     * merged in groups to keep the number of open files bounded
+     */
+    private static final int MAX_MERGE_WIDTH = 64;
+
+    /**
+     * Memory limit of the counted entries in bytes
+     */
+    @Getter
+    private final long memoryLimit;
+
+    /**
+     * Directory where the temporary directory of the runs is created
+     */
+    private final Path spillLocation;
+
+    /**
+     * Maps of all threads that have consumed values
+     */
+    private final ThreadShards<Shard> shards = new ThreadShards<>(Shard::new);
+
+    /**
+     * Run files sorted by value
+     */
+    private final List<Path> runs = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Temporary directory of the run files, created on the first spill
+     */
+    private Path spillDirectory;
+
+    /**
+     * Constructor, configures the collector to spill
+     * to the default temporary directory
+     *
+     * @param memoryLimit memory limit of the counted entries in bytes
+     */
+    public SpillingStatisticsCollector(long memoryLimit) {
+        this(memoryLimit, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Constructor, configures the collector
+     *
+     * @param memoryLimit   memory limit of the counted entries in bytes
+     * @param spillLocation directory where the temporary directory of the runs is created
+     */
+    public SpillingStatisticsCollector(long memoryLimit, Path spillLocation) {
+        if (memoryLimit <= 0) {
+            throw new IllegalArgumentException("Memory limit must be positive");
+        }
+        this.memoryLimit = memoryLimit;
+        this.spillLocation = spillLocation;
+    }
+
+    /**
+     * Method to accept a value and update the statistics
+     * of the current thread
+     *
+     * @param value the value to be consumed
+     */
+    @Override
+    public void accept(String value) {
+        Shard shard = shards.get();
+        if (value.contains(",")) {
+            String[] values = value.split(",");
+            for (String val : values) {
+                add(shard, val.trim(), 1);
+            }
+        } else {
+            add(shard, value, 1);
+        }
+    }
+
+    /**
+     * Method to add counts of values to the statistics of the current thread
+     *
+     * @param counts map of values and the number of times they were consumed
+     */
+    @Override
+    public void merge(Map<String, Long> counts) {
+        Shard shard = shards.get();
+        counts.forEach((value, count) -> add(shard, value, count));
+    }
+
+    /**
+     * Returns the statistics of consumed values as a map, merging all runs
+     * into it. The whole map is held in memory, so {@link #iterateByCount()}
+     * should be preferred. Must not be called while values are still being consumed
+     *
+     * @return map of consumed values and their counts
+     */
+    @Override
+    public synchronized ConcurrentMap<String, Long> getStatistics() {
+        ConcurrentMap<String, Long> statistics = super.getStatistics();
+        statistics.clear();
+        try (StatisticsIterator entries = iterateByValue()) {
+            while (entries.next()) {
+                statistics.put(entries.getValue(), entries.getCount());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return statistics;
+    }
+
+    /**
+     * Method to iterate over the statistics sorted by value. The runs are merged
+     * while iterating, so the statistics are not held in memory.
+     * Must not be called while values are still being consumed
+     *
+     * @return iterator over the statistics, to be closed by the caller
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public synchronized StatisticsIterator iterate() throws IOException {
+        return iterateByValue();
+    }
+
+    /**
+     * Method to iterate over the statistics sorted by count in descending order.
+     * Entries merged from the runs are sorted in chunks that fit in the memory
+     * limit, chunks are spilled and merged again if there is more than one
+     *
+     * @return iterator over the statistics, to be closed by the caller
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public synchronized StatisticsIterator iterateByCount() throws IOException {
+        List<Path> countRuns = new ArrayList<>();
+        String[] values = new String[16];
+        long[] counts = new long[16];
+        int size = 0;
+        long memory = 0;
+        try (StatisticsIterator entries = iterateByValue()) {
+            while (entries.next()) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                    counts = Arrays.copyOf(counts, size * 2);
+                }
+                values[size] = entries.getValue();
+                counts[size] = entries.getCount();
+                size++;
+                memory += SORT_ENTRY_OVERHEAD + 2L * entries.getValue().length();
+                if (memory > memoryLimit) {
+                    Path run = newRunFile();
+                    countRuns.add(run);
+                    SpillRun.write(run, sortByCount(values, counts, size));
+                    Arrays.fill(values, 0, size, null);
+                    size = 0;
+                    memory = 0;
+                }
+            }
+        }
+        if (countRuns.isEmpty()) {
+            return sortByCount(values, counts, size);
+        }
+        if (size > 0) {
+            Path run = newRunFile();
+            countRuns.add(run);
+            SpillRun.write(run, sortByCount(values, counts, size));
+        }
+        reduceRuns(countRuns, SpillRun.BY_COUNT, false);
+        return SpillRun.open(countRuns, SpillRun.BY_COUNT, false, true);
+    }
+
+    /**
+     * Returns the number of runs spilled to disk
+     *
+     * @return number of run files
+     */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Method to delete the run files and to discard the statistics
+     *
+     * @throws IOException if the files cannot be deleted
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+        runs.clear();
+        super.getStatistics().clear();
+        if (spillDirectory != null) {
+            try (Stream<Path> files = Files.list(spillDirectory)) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(spillDirectory);
+            spillDirectory = null;
+        }
+    }
+
+    /**
+     * Method to add a count of a value to a per-thread map, spilling
+     * the map if it exceeds the thread's share of the memory limit
+     *
+     * @param shard map of the current thread
+     * @param value the value to be counted
+     * @param count number of times the value was consumed
+     */
+    private void add(Shard shard, String value, long count) {
+        long[] total = shard.counts.get(value);
+        if (total != null) {
+            total[0] += count;
+            return;
+        }
+        shard.counts.put(value, new long[]{count});
+        shard.memory += ENTRY_OVERHEAD + 2L * value.length();
+        if (shard.memory > memoryLimit / shards.size()) {
+            try {
+                spill(shard);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Method to write a per-thread map to a new run sorted by value and to clear it
+     *
+     * @param shard map to spill
+     * @throws IOException if an I/O error occurs
+     */
+    private void spill(Shard shard) throws IOException {
+        Path run = newRunFile();
+        SpillRun.write(run, sortByValue(shard));
+        runs.add(run);
+        shard.clear();
+    }
+
+    /**
+     * Method to iterate over the statistics sorted by value. If nothing has been
+     * spilled, the per-thread maps are combined in memory, otherwise they are
+     * spilled as well and all runs are merged
+     *
+     * @return iterator over the statistics, to be closed by the caller
+     * @throws IOException if an I/O error occurs
+     */
+    private StatisticsIterator iterateByValue() throws IOException {
+        if (runs.isEmpty()) {
+            return sortByValue(combineShards());
+        }
+        for (Shard shard : shards) {
+            if (!shard.counts.isEmpty()) {
+                spill(shard);
+            }
+        }
+        reduceRuns(runs, SpillRun.BY_VALUE, true);
+        return SpillRun.open(List.copyOf(runs), SpillRun.BY_VALUE, true, false);
+    }
+
+    /**
+     * Method to merge runs in groups until they can be merged at once
+     *
+     * @param files          paths to the run files, replaced by the merged runs
+     * @param order          order of the runs
+     * @param sumEqualValues whether the counts of equal values of different runs are summed
+     * @throws IOException if an I/O error occurs
+     */
+    private void reduceRuns(List<Path> files, Comparator<StatisticsIterator> order,
+                            boolean sumEqualValues) throws IOException {
+        while (files.size() > MAX_MERGE_WIDTH) {
+            List<Path> merged = new ArrayList<>();
+            for (int from = 0; from < files.size(); from += MAX_MERGE_WIDTH) {
+                List<Path> group = files.subList(from, Math.min(from + MAX_MERGE_WIDTH, files.size()));
+                Path run = newRunFile();
+                try (StatisticsIterator entries = SpillRun.open(group, order, sumEqualValues, true)) {
+                    SpillRun.write(run, entries);
+                }
+                merged.add(run);
+            }
+            files.clear();
+            files.addAll(merged);
+        }
+    }
+
+    /**
+     * Method to combine all per-thread maps into one of them
+     *
+     * @return map holding the counts of all threads
+     */
+    private Shard combineShards() {
+        Shard combined = new Shard();
+        for (Shard shard : shards) {
+            if (combined.counts.isEmpty()) {
+                combined = shard;
+            } else if (!shard.counts.isEmpty()) {
+                Map<String, long[]> totals = combined.counts;
+                shard.counts.forEach((value, count) -> {
+                    long[] total = totals.putIfAbsent(value, count);
+                    if (total != null) {
+                        total[0] += count[0];
+                    }
+                });
+                combined.memory += shard.memory;
+                shard.clear();
+            }
+        }
+        return combined;
+    }
+
+    /**
+     * Method to create a new run file in the temporary directory
+     *
+     * @return path to the run file
+     * @throws IOException if an I/O error occurs
+     */
+    private synchronized Path newRunFile() throws IOException {
+        if (spillDirectory == null) {
+            spillDirectory = Files.createTempDirectory(spillLocation, "statistics-spill");
+        }
+        return Files.createTempFile(spillDirectory, "run", ".bin");
+    }
+
+    /**
+     * Method to iterate over the entries of a per-thread map sorted by value
+     *
+     * @param shard map to iterate over
+     * @return iterator over the entries
+     */
+    private static StatisticsIterator sortByValue(Shard shard) {
+        String[] values = shard.counts.keySet().toArray(new String[0]);
+        Arrays.sort(values);
+        long[] counts = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            counts[i] = shard.counts.get(values[i])[0];
+        }
+        return new ArrayIterator(values, counts, null, values.length);
+    }
+
+    /**
+     * Method to iterate over entries sorted by value in the order of their counts.
+     * The sort is stable, so entries with equal counts stay sorted by value
+     *
+     * @param values values of the entries sorted by value
+     * @param counts counts of the entries
+     * @param size   number of entries
+     * @return iterator over the entries
+     */
+    private static StatisticsIterator sortByCount(String[] values, long[] counts, int size) {
+        return new ArrayIterator(values, counts, CountSort.sortByCountDescending(counts, size), size);
+    }
+
+    /**
+     * Map of counts of one thread with its estimated size
+     */
+    private static class Shard {
+
+        /**
+         * Counts of the values, kept in single-element arrays to avoid boxing on update
+         */
+        private Map<String, long[]> counts = new HashMap<>();
+
+        /**
+         * Estimated size of the map in bytes
+         */
+        private long memory;
+
+        /**
+         * Method to release the counts of the map
+         */
+        private void clear() {
+            counts = new HashMap<>();
+            memory = 0;
+        }
+    }
+
+    /**
+     * Iterator over entries held in arrays
+     */
+    private static class ArrayIterator implements StatisticsIterator {
+
+        /**
+         * Values of the entries
+         */
+        private final String[] values;
+
+        /**
+         * Counts of the entries
+         */
+        private final long[] counts;
+
+        /**
+         * Positions of the entries in iteration order, or {@code null} for the array order
+         */
+        private final int[] order;
+
+        /**
+         * Number of entries
+         */
+        private final int size;
+
+        /**
+         * Position of the current entry in iteration order
+         */
+        private int index = -1;
+
+        /**
+         * Constructor, creates an iterator positioned before the first entry
+         *
+         * @param values values of the entries
+         * @param counts counts of the entries
+         * @param order  positions of the entries in iteration order, or {@code null} for the array order
+         * @param size   number of entries
+         */
+        private ArrayIterator(String[] values, long[] counts, int[] order, int size) {
+            this.values = values;
+            this.counts = counts;
+            this.order = order;
+            this.size = size;
+        }
+
+        @Override
+        public boolean next() {
+            return ++index < size;
+        }
+
+        @Override
+        public String getValue() {
+            return values[order == null ? index : order[index]];
+        }
+
+        @Override
+        public long getCount() {
+            return counts[order == null ? index : order[index]];
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
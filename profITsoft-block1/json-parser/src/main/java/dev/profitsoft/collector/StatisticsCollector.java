@@ -2,6 +2,9 @@ package dev.profitsoft.collector;
 
 import lombok.Getter;
 
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
@@ -33,4 +36,80 @@ public class StatisticsCollector implements Consumer<String> {
             statistics.merge(value, 1L, Long::sum);
         }
     }
+
+    /**
+     * Method to add counts of values, as if each value
+     * was accepted the given number of times
+     *
+     * @param counts map of values and the number of times they were consumed
+     */
+    public void merge(Map<String, Long> counts) {
+        counts.forEach((value, count) -> statistics.merge(value, count, Long::sum));
+    }
+
+    /**
+     * Method to merge the counts kept by each thread into the statistics.
+     * Must not be called while values are still being consumed
+     *
+     * @return number of values merged, {@code 0} if the values are counted into the statistics directly
+     */
+    public int mergeShards() {
+        return 0;
+    }
+
+    /**
+     * Method to iterate over the statistics in no particular order without copying them.
+     * Must not be called while values are still being consumed
+     *
+     * @return iterator over the statistics, to be closed by the caller
+     * @throws IOException if an I/O error occurs
+     */
+    public StatisticsIterator iterate() throws IOException {
+        Iterator<Map.Entry<String, Long>> entries = getStatistics().entrySet().iterator();
+        return new StatisticsIterator() {
+
+            /**
+             * Current entry, {@code null} before the first one
+             */
+            private Map.Entry<String, Long> entry;
+
+            @Override
+            public boolean next() {
+                entry = entries.hasNext() ? entries.next() : null;
+                return entry != null;
+            }
+
+            @Override
+            public String getValue() {
+                return entry.getKey();
+            }
+
+            @Override
+            public long getCount() {
+                return entry.getValue();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Returns whether the counts of the statistics are estimates
+     *
+     * @return {@code true} if the counts are estimates, {@code false} if they are exact
+     */
+    public boolean isEstimated() {
+        return false;
+    }
+
+    /**
+     * Returns the upper bound of the error of the counts
+     *
+     * @return maximum error of the counts, {@code 0} for exact counts
+     */
+    public long getMaximumError() {
+        return 0;
+    }
 }
@@ -0,0 +1,33 @@
+package dev.profitsoft.collector;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Cursor over the entries of collected statistics, which may be
+ * read from disk. Must be closed to release the underlying files
+ */
+public interface StatisticsIterator extends Closeable {
+
+    /**
+     * Method to move to the next entry
+     *
+     * @return {@code true} if there is a next entry, {@code false} if all entries have been read
+     * @throws IOException if an I/O error occurs
+     */
+    boolean next() throws IOException;
+
+    /**
+     * Returns the value of the current entry
+     *
+     * @return value of the entry
+     */
+    String getValue();
+
+    /**
+     * Returns the count of the current entry
+     *
+     * @return count of the entry
+     */
+    long getCount();
+}
@@ -0,0 +1,122 @@
+package dev.profitsoft.collector;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Per-thread shards of a collector: the shard of the {@link ShardSlot} bound to
+ * the current thread, or the shard of the thread itself if it has no slot.
+ * <p>A shard is only used by one thread at a time, so it needs no synchronization.
+ * Shards of slots are published in an array that is copied when a shard is added,
+ * so a lookup reads a volatile field and an array element.</p>
+ *
+ * @param <T> type of the shards
+ */
+class ThreadShards<T> implements Iterable<T> {
+
+    /**
+     * Factory of new shards
+     */
+    private final Supplier<T> factory;
+
+    /**
+     * All shards that have been created
+     */
+    private final Queue<T> shards = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of shards that have been created
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Shard of the current thread, used when it has no slot
+     */
+    private final ThreadLocal<T> threadShard = ThreadLocal.withInitial(this::create);
+
+    /**
+     * Shards of the slots, indexed by slot
+     */
+    private volatile Object[] slotShards = new Object[0];
+
+    /**
+     * Constructor, configures the factory of new shards
+     *
+     * @param factory factory of new shards
+     */
+    ThreadShards(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the shard of the current thread, creating it on first use
+     *
+     * @return shard of the slot bound to the thread, or of the thread itself
+     */
+    @SuppressWarnings("unchecked")
+    T get() {
+        Integer slot = ShardSlot.current();
+        if (slot == null) {
+            return threadShard.get();
+        }
+        Object[] shardsOfSlots = slotShards;
+        if (slot < shardsOfSlots.length && shardsOfSlots[slot] != null) {
+            return (T) shardsOfSlots[slot];
+        }
+        return createInSlot(slot);
+    }
+
+    /**
+     * Returns the number of shards that have been created
+     *
+     * @return number of shards
+     */
+    int size() {
+        return count.get();
+    }
+
+    /**
+     * Returns an iterator over all shards that have been created
+     *
+     * @return iterator over the shards
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return shards.iterator();
+    }
+
+    /**
+     * Method to create a shard and to add it to the shards
+     *
+     * @return new shard
+     */
+    private T create() {
+        T shard = factory.get();
+        shards.add(shard);
+        count.incrementAndGet();
+        return shard;
+    }
+
+    /**
+     * Method to create the shard of a slot
+     *
+     * @param slot slot without a shard
+     * @return new shard of the slot
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized T createInSlot(int slot) {
+        Object[] shardsOfSlots = slotShards;
+        if (slot < shardsOfSlots.length && shardsOfSlots[slot] != null) {
+            return (T) shardsOfSlots[slot];
+        }
+        Object[] grown = Arrays.copyOf(shardsOfSlots, Math.max(shardsOfSlots.length, slot + 1));
+        T shard = create();
+        grown[slot] = shard;
+        slotShards = grown;
+        return shard;
+    }
+}
@@ -0,0 +1,174 @@
+package dev.profitsoft.collector;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Granularity of the buckets that timestamps are counted in.
+ * <p>Buckets are numbered consecutively in time order: minutes, hours and days
+ * since the epoch, or the ISO day of the week starting from Monday as
+ * {@code 0}. Timestamps are bucketed by their local date and time fields,
+ * any seconds, fraction or offset that follow are ignored.</p>
+ */
+public enum TimeBucket {
+
+    /**
+     * Buckets of one minute, labelled like {@code 2024-04-17T21:05}
+     */
+    MINUTE,
+
+    /**
+     * Buckets of one hour, labelled like {@code 2024-04-17T21}
+     */
+    HOUR,
+
+    /**
+     * Buckets of one day, labelled like {@code 2024-04-17}
+     */
+    DAY,
+
+    /**
+     * Buckets of one day of the week, labelled like {@code WEDNESDAY}
+     */
+    WEEKDAY;
+
+    /**
+     * Value returned for characters that do not start with an ISO-8601 local date-time
+     */
+    public static final int INVALID = Integer.MIN_VALUE;
+
+    /**
+     * Number of days from the start of the 400-year era to the epoch
+     */
+    private static final int EPOCH_DAY_OF_ERA = 719_468;
+
+    /**
+     * Method to get the bucket of an ISO-8601 local date-time stored in a
+     * character buffer, like {@code 2024-04-17T21:05:29.767}. No object is created
+     *
+     * @param buffer buffer holding the timestamp
+     * @param offset offset of the first character of the timestamp
+     * @param length number of characters in the timestamp
+     * @return number of the bucket, or {@link #INVALID} if the characters do not
+     * start with a date, a {@code T} or a space, and hours and minutes, or if the minute
+     * is too far from the epoch to be numbered in an int
+     */
+    public int bucketOf(char[] buffer, int offset, int length) {
+        if (length < 16 || buffer[offset + 4] != '-' || buffer[offset + 7] != '-'
+                || buffer[offset + 10] != 'T' && buffer[offset + 10] != ' ' || buffer[offset + 13] != ':') {
+            return INVALID;
+        }
+        int year = digits(buffer, offset, 4);
+        int month = digits(buffer, offset + 5, 2);
+        int day = digits(buffer, offset + 8, 2);
+        int hour = digits(buffer, offset + 11, 2);
+        int minute = digits(buffer, offset + 14, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return INVALID;
+        }
+        int epochDay = epochDay(year, month, day);
+        return switch (this) {
+            case MINUTE -> {
+                long minutes = (epochDay * 24L + hour) * 60 + minute;
+                yield minutes == (int) minutes ? (int) minutes : INVALID;
+            }
+            case HOUR -> epochDay * 24 + hour;
+            case DAY -> epochDay;
+            case WEEKDAY -> Math.floorMod(epochDay + 3, 7);
+        };
+    }
+
+    /**
+     * Method to get the label of a bucket
+     *
+     * @param bucket number of the bucket
+     * @return ISO-8601 label of the start of the bucket, or the name of the day of the week
+     */
+    public String labelOf(int bucket) {
+        return switch (this) {
+            case MINUTE -> LocalDateTime.ofEpochSecond(bucket * 60L, 0, ZoneOffset.UTC).toString();
+            case HOUR -> LocalDate.ofEpochDay(Math.floorDiv(bucket, 24))
+                    + "T" + String.format("%02d", Math.floorMod(bucket, 24));
+            case DAY -> LocalDate.ofEpochDay(bucket).toString();
+            case WEEKDAY -> DayOfWeek.of(bucket + 1).name();
+        };
+    }
+
+    /**
+     * Method to get the bucket of a label returned by {@link #labelOf(int)}
+     *
+     * @param label label of the bucket
+     * @return number of the bucket, or {@link #INVALID} if the label is not a label of this granularity
+     */
+    public int bucketOfLabel(String label) {
+        if (this == WEEKDAY) {
+            for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+                if (dayOfWeek.name().equals(label)) {
+                    return dayOfWeek.getValue() - 1;
+                }
+            }
+            return INVALID;
+        }
+        String timestamp = switch (this) {
+            case MINUTE -> label;
+            case HOUR -> label + ":00";
+            default -> label + "T00:00";
+        };
+        return timestamp.length() == 16 ? bucketOf(timestamp.toCharArray(), 0, timestamp.length()) : INVALID;
+    }
+
+    /**
+     * Method to parse a number of decimal digits
+     *
+     * @param buffer buffer holding the digits
+     * @param offset offset of the first digit
+     * @param count  number of digits
+     * @return value of the digits, or {@code -1} if a character is not a digit
+     */
+    private static int digits(char[] buffer, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Method to get the number of days in a month
+     *
+     * @param year  year
+     * @param month month from 1 to 12
+     * @return number of days in the month
+     */
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * Method to count the days from the epoch to a date of the proleptic Gregorian calendar
+     *
+     * @param year  year
+     * @param month month from 1 to 12
+     * @param day   day of the month
+     * @return number of days since 1970-01-01
+     */
+    private static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - EPOCH_DAY_OF_ERA;
+    }
+}
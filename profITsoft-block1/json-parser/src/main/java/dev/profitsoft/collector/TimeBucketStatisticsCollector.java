@@ -0,0 +1,255 @@
+package dev.profitsoft.collector;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Class to collect statistics of timestamp attributes, such as
+ * {@code departureTime}, counted per time bucket instead of per distinct value.
+ * <p>Timestamps are parsed straight from the parser's character buffer and
+ * counted into a per-thread array indexed by bucket, so no {@code String} or
+ * {@code LocalDateTime} is created per value. The array covers the range of
+ * buckets seen so far and grows at either end. Values that are not ISO-8601
+ * local date-times, or that would stretch the array beyond its maximum
+ * span, fall back to the generic statistics map. Per-thread arrays are
+ * merged when the statistics are requested.</p>
+ */
+public class TimeBucketStatisticsCollector extends StatisticsCollector
+        implements CharBufferConsumer, TimeSeriesStatistics {
+
+    /**
+     * Maximum number of buckets covered by the array of one thread
+     */
+    static final int MAX_SPAN = 1 << 22;
+
+    /**
+     * Granularity of the buckets
+     */
+    @Getter
+    private final TimeBucket bucket;
+
+    /**
+     * Counters of all threads that have consumed values
+     */
+    private final ThreadShards<BucketCounts> counters = new ThreadShards<>(BucketCounts::new);
+
+    /**
+     * Counts merged from the counters of all threads
+     */
+    private final BucketCounts totals = new BucketCounts();
+
+    /**
+     * Constructor, configures the granularity of the buckets
+     *
+     * @param bucket granularity of the buckets
+     */
+    public TimeBucketStatisticsCollector(TimeBucket bucket) {
+        this.bucket = bucket;
+    }
+
+    /**
+     * Method to accept a timestamp and update the statistics
+     *
+     * @param value the value to be consumed
+     */
+    @Override
+    public void accept(String value) {
+        char[] chars = value.toCharArray();
+        accept(chars, 0, chars.length);
+    }
+
+    /**
+     * Method to accept a timestamp stored in a character buffer and update the statistics
+     *
+     * @param buffer buffer holding the value
+     * @param offset offset of the first character of the value
+     * @param length number of characters in the value
+     */
+    @Override
+    public void accept(char[] buffer, int offset, int length) {
+        int index = bucket.bucketOf(buffer, offset, length);
+        if (index == TimeBucket.INVALID || !counters.get().add(index, 1)) {
+            super.accept(new String(buffer, offset, length));
+        }
+    }
+
+    /**
+     * Method to add counts of timestamps, as if each timestamp
+     * was accepted the given number of times. Bucket labels, as returned
+     * by {@link #getStatistics()}, are counted in their buckets,
+     * so saved statistics can be merged back
+     *
+     * @param counts map of timestamps or bucket labels and the number of times they were consumed
+     */
+    @Override
+    public void merge(Map<String, Long> counts) {
+        BucketCounts threadCounter = counters.get();
+        counts.forEach((value, count) -> {
+            int index = bucket.bucketOf(value.toCharArray(), 0, value.length());
+            if (index == TimeBucket.INVALID) {
+                index = bucket.bucketOfLabel(value);
+            }
+            if (index == TimeBucket.INVALID || !threadCounter.add(index, count)) {
+                super.merge(Map.of(value, count));
+            }
+        });
+    }
+
+    /**
+     * Returns the statistics of consumed values keyed by bucket label, merging
+     * the per-thread counters first. Must not be called while
+     * values are still being consumed
+     *
+     * @return map of bucket labels and values that are not timestamps, and their counts
+     */
+    @Override
+    public synchronized ConcurrentMap<String, Long> getStatistics() {
+        mergeShards();
+        ConcurrentMap<String, Long> statistics = new ConcurrentHashMap<>(super.getStatistics());
+        for (int i = 0; i < totals.counts.length; i++) {
+            if (totals.counts[i] > 0) {
+                statistics.merge(bucket.labelOf(totals.origin + i), totals.counts[i], Long::sum);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Method to iterate over the statistics in time order, bucket by bucket
+     *
+     * @return iterator over the statistics
+     */
+    @Override
+    public synchronized StatisticsIterator iterateByTime() {
+        mergeShards();
+        long[] counts = totals.counts.clone();
+        int origin = totals.origin;
+        String[] others = super.getStatistics().keySet().stream().sorted().toArray(String[]::new);
+        Map<String, Long> otherCounts = Map.copyOf(super.getStatistics());
+        return new StatisticsIterator() {
+
+            /**
+             * Position of the current entry, buckets first and then other values
+             */
+            private int position = -1;
+
+            @Override
+            public boolean next() {
+                do {
+                    position++;
+                } while (position < counts.length && counts[position] == 0);
+                return position < counts.length + others.length;
+            }
+
+            @Override
+            public String getValue() {
+                return position < counts.length
+                        ? bucket.labelOf(origin + position)
+                        : others[position - counts.length];
+            }
+
+            @Override
+            public long getCount() {
+                return position < counts.length
+                        ? counts[position]
+                        : otherCounts.get(others[position - counts.length]);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Method to move the counts of all threads into the totals. Counts that
+     * would stretch the totals beyond the maximum span fall back to the generic map.
+     * Must not be called while values are still being consumed
+     *
+     * @return number of buckets merged
+     */
+    @Override
+    public synchronized int mergeShards() {
+        int merged = 0;
+        for (BucketCounts threadCounter : counters) {
+            for (int i = 0; i < threadCounter.counts.length; i++) {
+                long count = threadCounter.counts[i];
+                if (count > 0) {
+                    if (!totals.add(threadCounter.origin + i, count)) {
+                        super.merge(Map.of(bucket.labelOf(threadCounter.origin + i), count));
+                    }
+                    merged++;
+                }
+            }
+            Arrays.fill(threadCounter.counts, 0);
+        }
+        return merged;
+    }
+
+    /**
+     * Counts of a contiguous range of buckets, growing at either end
+     * up to the maximum span
+     */
+    private static class BucketCounts {
+
+        /**
+         * Number of the bucket counted at index {@code 0}
+         */
+        private int origin;
+
+        /**
+         * Counts of the buckets starting from the origin
+         */
+        private long[] counts = new long[0];
+
+        /**
+         * Method to add to the count of a bucket
+         *
+         * @param index number of the bucket
+         * @param count count to add
+         * @return {@code true} if the count was added, {@code false} if the bucket
+         * is too far from the buckets already counted
+         */
+        boolean add(int index, long count) {
+            long position = (long) index - origin;
+            if (position < 0 || position >= counts.length) {
+                if (!grow(index)) {
+                    return false;
+                }
+                position = (long) index - origin;
+            }
+            counts[(int) position] += count;
+            return true;
+        }
+
+        /**
+         * Method to grow the range of buckets to cover a bucket, at least doubling it
+         *
+         * @param index number of the bucket to cover
+         * @return {@code true} if the range covers the bucket, {@code false} if it would exceed the maximum span
+         */
+        private boolean grow(int index) {
+            if (counts.length == 0) {
+                origin = index;
+                counts = new long[64];
+                return true;
+            }
+            long low = Math.min(origin, index);
+            long high = Math.max((long) origin + counts.length, (long) index + 1);
+            if (high - low > MAX_SPAN) {
+                return false;
+            }
+            int length = (int) Math.min(MAX_SPAN, Math.max(high - low, 2L * counts.length));
+            long newOrigin = index < origin ? Math.max(high - length, (long) Integer.MIN_VALUE + 1) : origin;
+            long[] grown = new long[length];
+            System.arraycopy(counts, 0, grown, (int) (origin - newOrigin), counts.length);
+            origin = (int) newOrigin;
+            counts = grown;
+            return true;
+        }
+    }
+}
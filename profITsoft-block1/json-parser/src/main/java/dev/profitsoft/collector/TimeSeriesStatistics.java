@@ -0,0 +1,25 @@
+package dev.profitsoft.collector;
+
+/**
+ * Collector of statistics over time buckets that can stream
+ * its statistics in time order
+ */
+public interface TimeSeriesStatistics {
+
+    /**
+     * Returns the granularity of the buckets
+     *
+     * @return granularity of the buckets
+     */
+    TimeBucket getBucket();
+
+    /**
+     * Method to iterate over the statistics in time order, bucket by bucket.
+     * Buckets without values are skipped, values that are not timestamps
+     * follow the buckets in value order.
+     * Must not be called while values are still being consumed
+     *
+     * @return iterator over the statistics
+     */
+    StatisticsIterator iterateByTime();
+}
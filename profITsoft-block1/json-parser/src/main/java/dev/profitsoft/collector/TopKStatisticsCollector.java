@@ -0,0 +1,159 @@
+package dev.profitsoft.collector;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Class to collect approximate statistics of the most frequent consumed values.
+ * <p>Intended for attributes with millions of distinct values, such as
+ * {@code flightNumber}, where only the top values are of interest. Each thread
+ * counts into its own Space-Saving summary of bounded size, the summaries are
+ * merged when the statistics are requested after parsing. Reported counts are
+ * estimates that exceed the real counts by at most {@link #getMaximumError()},
+ * memory usage depends only on the configured error rate.</p>
+ */
+public class TopKStatisticsCollector extends StatisticsCollector {
+
+    /**
+     * Default upper bound of the count error relative to the number of consumed values
+     */
+    public static final double DEFAULT_ERROR_RATE = 0.0001;
+
+    /**
+     * Number of most frequent values to report
+     */
+    @Getter
+    private final int k;
+
+    /**
+     * Number of counters in each summary
+     */
+    private final int capacity;
+
+    /**
+     * Summaries of all threads that have consumed values
+     */
+    private final ThreadShards<SpaceSavingSummary> summaries;
+
+    /**
+     * Summary of the values consumed before the last statistics request
+     */
+    private SpaceSavingSummary mergedSummary;
+
+    /**
+     * Constructor, configures the collector with the default error rate
+     *
+     * @param k number of most frequent values to report
+     */
+    public TopKStatisticsCollector(int k) {
+        this(k, DEFAULT_ERROR_RATE);
+    }
+
+    /**
+     * Constructor, configures the collector
+     *
+     * @param k         number of most frequent values to report
+     * @param errorRate upper bound of the count error relative to the number of consumed values
+     */
+    public TopKStatisticsCollector(int k, double errorRate) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("K must be positive");
+        }
+        if (errorRate <= 0 || errorRate >= 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1");
+        }
+        this.k = k;
+        this.capacity = (int) Math.max(k, Math.ceil(1 / errorRate));
+        this.mergedSummary = new SpaceSavingSummary(capacity);
+        this.summaries = new ThreadShards<>(() -> new SpaceSavingSummary(capacity));
+    }
+
+    /**
+     * Method to accept a value and update the summary
+     * of the current thread
+     *
+     * @param value the value to be consumed
+     */
+    @Override
+    public void accept(String value) {
+        SpaceSavingSummary summary = summaries.get();
+        if (value.contains(",")) {
+            String[] values = value.split(",");
+            for (String val : values) {
+                summary.offer(val.trim());
+            }
+        } else {
+            summary.offer(value);
+        }
+    }
+
+    /**
+     * Method to add counts of values to the summary of the current thread
+     *
+     * @param counts map of values and the number of times they were consumed
+     */
+    @Override
+    public void merge(Map<String, Long> counts) {
+        SpaceSavingSummary summary = summaries.get();
+        counts.forEach((value, count) -> summary.offer(value, count, 0));
+    }
+
+    /**
+     * Returns the estimated counts of the top K values, merging the
+     * per-thread summaries first. Must not be called while
+     * values are still being consumed
+     *
+     * @return map of the top values and their estimated counts
+     */
+    @Override
+    public synchronized ConcurrentMap<String, Long> getStatistics() {
+        mergeSummaries();
+        ConcurrentMap<String, Long> statistics = super.getStatistics();
+        statistics.clear();
+        SpaceSavingSummary.merge(List.of(mergedSummary), k).forEach(statistics::put);
+        return statistics;
+    }
+
+    /**
+     * Returns that the counts are estimates
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean isEstimated() {
+        return true;
+    }
+
+    /**
+     * Returns the upper bound of the overestimation of any reported count
+     *
+     * @return maximum error of the counts
+     */
+    @Override
+    public synchronized long getMaximumError() {
+        mergeSummaries();
+        return mergedSummary.getMaximumError();
+    }
+
+    /**
+     * Method to merge the per-thread summaries into the merged
+     * summary and to clear them for further use
+     */
+    private void mergeSummaries() {
+        List<SpaceSavingSummary> pending = new ArrayList<>();
+        pending.add(mergedSummary);
+        for (SpaceSavingSummary summary : summaries) {
+            if (summary.getTotal() > 0) {
+                pending.add(summary);
+            }
+        }
+        if (pending.size() > 1) {
+            mergedSummary = SpaceSavingSummary.merge(pending, capacity);
+            summaries.forEach(SpaceSavingSummary::clear);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package dev.profitsoft.engine;
+
+import dev.profitsoft.parser.FlightFilter;
+import dev.profitsoft.writer.OutputFormat;
+import lombok.Value;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Job of the query engine: the attributes to collect statistics of
+ * from the JSON files of a directory and how to write the statistics
+ */
+@Value
+public class Query {
+
+    /**
+     * Option to count only the flights passing a filter
+     */
+    private static final String FILTER_OPTION = "--filter=";
+
+    /**
+     * Option to collect approximate statistics of the K most frequent values only
+     */
+    private static final String TOP_K_OPTION = "--top-k=";
+
+    /**
+     * Option to set the formats of the statistics files
+     */
+    private static final String OUTPUT_OPTION = "--output=";
+
+    /**
+     * Option to set the directory where the statistics files are saved
+     */
+    private static final String OUTPUT_DIR_OPTION = "--output-dir=";
+
+    /**
+     * Path to the directory containing JSON files
+     */
+    Path directory;
+
+    /**
+     * Attributes to collect statistics of
+     */
+    List<String> attributes;
+
+    /**
+     * Filter of the flight objects, {@code null} to count every object
+     */
+    FlightFilter filter;
+
+    /**
+     * Number of most frequent values to collect approximate statistics of, {@code 0} for exact statistics
+     */
+    int topK;
+
+    /**
+     * Formats of the statistics files
+     */
+    List<OutputFormat> formats;
+
+    /**
+     * Path to the directory where the statistics files are saved, {@code null} for the default of the engine.
+     * A relative path is resolved against the output directory of the engine, and the engine rejects
+     * directories outside of it
+     */
+    Path outputDirectory;
+
+    /**
+     * Creates a query writing exact statistics of every flight object as XML to the default directory
+     *
+     * @param directory  path to the directory containing JSON files
+     * @param attributes attributes to collect statistics of
+     * @return query
+     */
+    public static Query of(Path directory, List<String> attributes) {
+        return new Query(directory, List.copyOf(attributes), null, 0, List.of(OutputFormat.XML), null);
+    }
+
+    /**
+     * Method to parse a query from a command line of the form
+     * {@code <dirPath> <attribute>[,<attribute>...] [--filter=<condition>[;<condition>...]]
+     * [--top-k=<k>] [--output=xml|json|csv|binary[,...]] [--output-dir=<dir>]},
+     * whose parts are separated by whitespace. Whitespace between double quotes
+     * belongs to the part, so a part like {@code --output-dir="my stats"} may hold
+     * spaces; within quotes a backslash escapes a double quote or a backslash
+     *
+     * @param line command line
+     * @return query
+     * @throws IllegalArgumentException if the line is not a valid query
+     */
+    public static Query parse(String line) {
+        String[] parts = split(line);
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("Query requires <dirPath> <attribute>[,<attribute>...]");
+        }
+        List<String> attributes = new ArrayList<>();
+        for (String attribute : parts[1].split(",")) {
+            if (!attribute.isBlank()) {
+                attributes.add(attribute.trim());
+            }
+        }
+        if (attributes.isEmpty()) {
+            throw new IllegalArgumentException("At least one attribute is required");
+        }
+        FlightFilter filter = null;
+        int topK = 0;
+        List<OutputFormat> formats = List.of(OutputFormat.XML);
+        Path outputDirectory = null;
+        for (int i = 2; i < parts.length; i++) {
+            if (parts[i].startsWith(FILTER_OPTION)) {
+                filter = FlightFilter.parse(parts[i].substring(FILTER_OPTION.length()));
+            } else if (parts[i].startsWith(TOP_K_OPTION)) {
+                topK = Integer.parseInt(parts[i].substring(TOP_K_OPTION.length()));
+            } else if (parts[i].startsWith(OUTPUT_OPTION)) {
+                formats = new ArrayList<>();
+                for (String format : parts[i].substring(OUTPUT_OPTION.length()).split(",")) {
+                    formats.add(OutputFormat.valueOf(format.trim().toUpperCase(Locale.ROOT)));
+                }
+            } else if (parts[i].startsWith(OUTPUT_DIR_OPTION)) {
+                outputDirectory = Paths.get(parts[i].substring(OUTPUT_DIR_OPTION.length()));
+            } else {
+                throw new IllegalArgumentException("Unknown query option: " + parts[i]);
+            }
+        }
+        return new Query(Paths.get(parts[0]), List.copyOf(attributes), filter, topK, List.copyOf(formats),
+                outputDirectory);
+    }
+
+    /**
+     * Method to split a command line into its parts at whitespace outside double quotes
+     *
+     * @param line command line
+     * @return parts of the line without the quotes
+     * @throws IllegalArgumentException if a quote is not closed
+     */
+    private static String[] split(String line) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder part = new StringBuilder();
+        boolean inPart = false;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    quoted = false;
+                } else if (c == '\\' && i + 1 < line.length()
+                        && (line.charAt(i + 1) == '"' || line.charAt(i + 1) == '\\')) {
+                    part.append(line.charAt(++i));
+                } else {
+                    part.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (inPart) {
+                    parts.add(part.toString());
+                    part.setLength(0);
+                    inPart = false;
+                }
+            } else {
+                inPart = true;
+                if (c == '"') {
+                    quoted = true;
+                } else {
+                    part.append(c);
+                }
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quote in query: " + line);
+        }
+        if (inPart) {
+            parts.add(part.toString());
+        }
+        return parts.toArray(String[]::new);
+    }
+}
@@ -0,0 +1,374 @@
+package dev.profitsoft.engine;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import dev.profitsoft.FlightParserApp;
+import dev.profitsoft.collector.RouteStatisticsCollector;
+import dev.profitsoft.collector.ShardSlot;
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.TopKStatisticsCollector;
+import dev.profitsoft.metrics.LatencyHistogram;
+import dev.profitsoft.parser.FlightDataParser;
+import dev.profitsoft.writer.OutputFormat;
+import dev.profitsoft.writer.StatisticsSink;
+import dev.profitsoft.writer.XMLStatisticsWriter;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engine running queries one after another in a long-lived JVM, so that the
+ * cost of starting the JVM and of warming up the code is paid once for
+ * many queries instead of once per query.
+ * <p>The engine keeps the state a run of {@link FlightParserApp} builds
+ * and throws away: one JSON factory shared by the parsers of every query,
+ * whose symbol table of field names is built once, one fork/join pool
+ * whose workers, with their thread-local Jackson buffer recyclers, stay
+ * alive between queries, one pool decompressing compressed files, one
+ * sink per output format and one executor writing the statistics files. The collectors and the parser of
+ * each query are created for it, as they hold its statistics. The workers
+ * process each segment with a {@link ShardSlot} bound, so the per-thread
+ * counts of a query are kept in its collectors and not in thread-locals
+ * of the workers, which outlive the query.</p>
+ * <p>Queries are taken from a queue by a dispatcher thread and run in the
+ * order they were submitted, each one on the whole pool. The latency of every
+ * query, from its submission until its statistics are written, is recorded.</p>
+ * <p>The class is thread-safe.</p>
+ */
+public class QueryEngine implements Closeable {
+
+    /**
+     * Time after which an idle worker of the pool is stopped, to be replaced when queries arrive again
+     */
+    public static final Duration KEEP_ALIVE = Duration.ofHours(1);
+
+    /**
+     * Number of workers the pool may add to the number of threads while workers are blocked
+     */
+    private static final int MAX_SPARE_THREADS = 256;
+
+    /**
+     * Marker taken from the queue to stop the dispatcher
+     */
+    private static final Job CLOSE = new Job(null, 0);
+
+    /**
+     * Number of threads to use for processing files
+     */
+    @Getter
+    private final int numberOfThreads;
+
+    /**
+     * Absolute path to the directory where the statistics files are saved, the output
+     * directories of the queries are resolved against it and must be inside it
+     */
+    private final Path outputDirectory;
+
+    /**
+     * JSON factory shared by the parsers of every query
+     */
+    private final JsonFactory factory = new JsonFactory();
+
+    /**
+     * Fork/join pool processing the files of every query
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Pool decompressing the compressed files of every query
+     */
+    private final ExecutorService decompressionPool;
+
+    /**
+     * Executor writing the statistics files of several formats at the same time
+     */
+    private final ExecutorService writerExecutor;
+
+    /**
+     * Sinks writing the statistics files, created once per format
+     */
+    private final Map<OutputFormat, StatisticsSink> sinks = new EnumMap<>(OutputFormat.class);
+
+    /**
+     * Queries waiting to be run, in the order they were submitted
+     */
+    private final BlockingQueue<Job> jobs = new LinkedBlockingQueue<>();
+
+    /**
+     * Latencies of the completed queries, in nanoseconds
+     */
+    @Getter
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * Thread running the queries taken from the queue
+     */
+    private final Thread dispatcher;
+
+    /**
+     * Whether the engine has been closed, no more queries are then accepted
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructor, starts the pools of the engine
+     *
+     * @param numberOfThreads number of threads to use for processing files
+     * @param outputDirectory path to the directory where the statistics files are saved, queries may only
+     *                        set their own directory inside it
+     */
+    public QueryEngine(int numberOfThreads, Path outputDirectory) {
+        this.numberOfThreads = numberOfThreads;
+        this.outputDirectory = outputDirectory.toAbsolutePath().normalize();
+        this.pool = new ForkJoinPool(numberOfThreads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null,
+                false, numberOfThreads, numberOfThreads + MAX_SPARE_THREADS, 1, null,
+                KEEP_ALIVE.toMillis(), TimeUnit.MILLISECONDS);
+        this.decompressionPool = FlightDataParser.newDecompressionPool(numberOfThreads);
+        this.writerExecutor = Executors.newFixedThreadPool(Math.min(OutputFormat.values().length, numberOfThreads),
+                Thread.ofPlatform().name("query-writer-", 0).daemon().factory());
+        for (OutputFormat format : OutputFormat.values()) {
+            sinks.put(format, format.createSink());
+        }
+        this.dispatcher = Thread.ofPlatform().name("query-engine").daemon().start(this::dispatch);
+    }
+
+    /**
+     * Method to add a query to the queue of the engine. The engine is checked again
+     * once the query is queued: a query queued after {@link #close()} has drained
+     * the queue is taken back, any other one is completed by the dispatcher or by
+     * {@link #close()}
+     *
+     * @param query query to run
+     * @return future completed with the result of the query, or with the exception it failed with
+     * @throws IllegalStateException if the engine is closed
+     */
+    public CompletableFuture<QueryResult> submit(Query query) {
+        if (closed) {
+            throw new IllegalStateException("Query engine is closed");
+        }
+        Job job = new Job(query, System.nanoTime());
+        jobs.add(job);
+        if (closed && jobs.remove(job)) {
+            throw new IllegalStateException("Query engine is closed");
+        }
+        return job.result;
+    }
+
+    /**
+     * Method to run a query after the queries submitted before it, waiting for its result
+     *
+     * @param query query to run
+     * @return result of the query
+     * @throws IOException           if an I/O error occurs or the thread is interrupted while waiting
+     * @throws IllegalStateException if the engine is closed
+     */
+    public QueryResult execute(Query query) throws IOException {
+        try {
+            return submit(query).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the query");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Method to describe the latencies of the completed queries in one line
+     *
+     * @return latency line
+     */
+    public String latencySummary() {
+        return String.format(Locale.ROOT, "Queries: %d, latency ms: p50=%.2f p90=%.2f p99=%.2f max=%.2f",
+                latencies.getCount(), latencies.getValueAtPercentile(50) / 1e6,
+                latencies.getValueAtPercentile(90) / 1e6, latencies.getValueAtPercentile(99) / 1e6,
+                latencies.getMax() / 1e6);
+    }
+
+    /**
+     * Method to run the queries taken from the queue until the engine is closed
+     */
+    private void dispatch() {
+        while (true) {
+            Job job;
+            try {
+                job = jobs.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job == CLOSE) {
+                return;
+            }
+            try {
+                job.result.complete(run(job.query, System.nanoTime() - job.submittedAt));
+            } catch (Exception e) {
+                job.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Method to run a query: its files are parsed on the pool of the engine
+     * and its statistics are written by the sinks of the engine, to the output
+     * directory of the query, which is created if it does not exist
+     *
+     * @param query       query to run
+     * @param queuedNanos time the query waited in the queue, in nanoseconds
+     * @return result of the query
+     * @throws IOException if an I/O error occurs, such as a statistics file that cannot be written
+     */
+    private QueryResult run(Query query, long queuedNanos) throws IOException {
+        Path queryOutputDirectory = outputDirectoryOf(query);
+        Files.createDirectories(queryOutputDirectory);
+        Map<String, StatisticsCollector> collectors = createCollectors(query);
+        try {
+            FlightDataParser parser = new FlightDataParser(query.getDirectory().toString(), numberOfThreads,
+                    collectors, query.getFilter(), factory);
+            parser.setChunkSize(FlightDataParser.DEFAULT_CHUNK_SIZE);
+            parser.setStopAfterAllAttributes(true);
+            parser.setSharedPool(pool);
+            parser.setDecompressionPool(decompressionPool);
+            long start = System.nanoTime();
+            parser.parse();
+            long parseNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            List<StatisticsSink> querySinks = new ArrayList<>();
+            for (OutputFormat format : query.getFormats()) {
+                querySinks.add(sinks.get(format));
+            }
+            XMLStatisticsWriter.writeAll(collectors, queryOutputDirectory, querySinks, writerExecutor);
+            QueryResult result = new QueryResult(query, queuedNanos, parseNanos, System.nanoTime() - start,
+                    parser.getMalformedLineCount());
+            latencies.record(result.getLatencyNanos());
+            return result;
+        } finally {
+            for (StatisticsCollector collector : collectors.values()) {
+                if (collector instanceof Closeable closeable) {
+                    closeable.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to resolve the directory where the statistics files of a query are saved.
+     * The directory of the query is resolved against the output directory of the engine
+     * and normalized, so clients of the engine cannot make it write outside that directory
+     *
+     * @param query query to resolve the directory of
+     * @return absolute path to the directory
+     * @throws IllegalArgumentException if the directory of the query is outside the output directory of the engine
+     */
+    private Path outputDirectoryOf(Query query) {
+        if (query.getOutputDirectory() == null) {
+            return outputDirectory;
+        }
+        Path directory = outputDirectory.resolve(query.getOutputDirectory()).normalize();
+        if (!directory.startsWith(outputDirectory)) {
+            throw new IllegalArgumentException("Output directory must be inside " + outputDirectory);
+        }
+        return directory;
+    }
+
+    /**
+     * Method to create the collectors of a query, the same ones {@link FlightParserApp} uses
+     *
+     * @param query query to create the collectors of
+     * @return collectors keyed by attribute
+     */
+    private static Map<String, StatisticsCollector> createCollectors(Query query) {
+        Map<String, StatisticsCollector> collectors = new LinkedHashMap<>();
+        for (String attribute : query.getAttributes()) {
+            if (query.getTopK() > 0 && !RouteStatisticsCollector.ATTRIBUTE.equals(attribute)) {
+                collectors.put(attribute, new TopKStatisticsCollector(query.getTopK()));
+            } else {
+                collectors.put(attribute, FlightParserApp.createCollector(attribute));
+            }
+        }
+        return collectors;
+    }
+
+    /**
+     * Method to stop accepting queries, to wait for the queued queries to complete
+     * and to stop the pools of the engine
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        jobs.add(CLOSE);
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dispatcher.interrupt();
+        }
+        Job job;
+        while ((job = jobs.poll()) != null) {
+            if (job != CLOSE) {
+                job.result.completeExceptionally(new IllegalStateException("Query engine is closed"));
+            }
+        }
+        pool.shutdown();
+        decompressionPool.shutdown();
+        writerExecutor.shutdown();
+    }
+
+    /**
+     * Query waiting in the queue of the engine
+     */
+    private static class Job {
+
+        /**
+         * Query to run
+         */
+        private final Query query;
+
+        /**
+         * Time the query was submitted, from {@link System#nanoTime()}
+         */
+        private final long submittedAt;
+
+        /**
+         * Future completed with the result of the query
+         */
+        private final CompletableFuture<QueryResult> result = new CompletableFuture<>();
+
+        /**
+         * Constructor, configures the job
+         *
+         * @param query       query to run
+         * @param submittedAt time the query was submitted, from {@link System#nanoTime()}
+         */
+        Job(Query query, long submittedAt) {
+            this.query = query;
+            this.submittedAt = submittedAt;
+        }
+    }
+}
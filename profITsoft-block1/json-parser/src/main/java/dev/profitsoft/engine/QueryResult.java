@@ -0,0 +1,57 @@
+package dev.profitsoft.engine;
+
+import lombok.Value;
+
+import java.util.Locale;
+
+/**
+ * Outcome of a query run by the query engine, with the time each stage took
+ */
+@Value
+public class QueryResult {
+
+    /**
+     * Query that was run
+     */
+    Query query;
+
+    /**
+     * Time the query waited in the queue of the engine, in nanoseconds
+     */
+    long queuedNanos;
+
+    /**
+     * Time the files took to parse, in nanoseconds
+     */
+    long parseNanos;
+
+    /**
+     * Time the statistics files took to write, in nanoseconds
+     */
+    long writeNanos;
+
+    /**
+     * Number of malformed lines of newline-delimited JSON files that were skipped
+     */
+    long malformedLines;
+
+    /**
+     * Returns the latency of the query, from the time it was submitted until its statistics were written
+     *
+     * @return latency in nanoseconds
+     */
+    public long getLatencyNanos() {
+        return queuedNanos + parseNanos + writeNanos;
+    }
+
+    /**
+     * Method to describe the latency of the query in one line
+     *
+     * @return latency line
+     */
+    public String describe() {
+        return String.format(Locale.ROOT, "%.1f ms (queued %.1f ms, parse %.1f ms, write %.1f ms)%s",
+                getLatencyNanos() / 1e6, queuedNanos / 1e6, parseNanos / 1e6, writeNanos / 1e6,
+                malformedLines > 0 ? ", skipped malformed lines: " + malformedLines : "");
+    }
+}
@@ -0,0 +1,142 @@
+package dev.profitsoft.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Command loop feeding the queries of a line-based protocol to a query engine,
+ * read from the standard input or from clients of a local socket.
+ * <p>Each line is a query in the form parsed by {@link Query#parse(String)},
+ * answered by one line: {@code OK} followed by the latency of the query, or
+ * {@code ERROR} followed by the reason it failed. The line {@code stats} is
+ * answered with the latencies of the completed queries and the line
+ * {@code quit} ends the loop. Clients of the socket are served at the same
+ * time, their queries are queued by the engine.</p>
+ */
+public class QueryServer {
+
+    /**
+     * Command ending the loop
+     */
+    private static final String QUIT_COMMAND = "quit";
+
+    /**
+     * Command answered with the latencies of the completed queries
+     */
+    private static final String STATS_COMMAND = "stats";
+
+    /**
+     * Engine running the queries
+     */
+    private final QueryEngine engine;
+
+    /**
+     * Constructor, configures the engine running the queries
+     *
+     * @param engine engine running the queries
+     */
+    public QueryServer(QueryEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Method to answer the commands read from the input until it ends or {@code quit} is read
+     *
+     * @param input  reader of the commands, one per line
+     * @param output writer of the answers, one line per command
+     * @throws IOException if an I/O error occurs while reading the commands
+     */
+    public void serve(BufferedReader input, PrintWriter output) throws IOException {
+        String line;
+        while ((line = input.readLine()) != null) {
+            String command = line.trim();
+            if (command.isEmpty()) {
+                continue;
+            }
+            if (QUIT_COMMAND.equals(command)) {
+                return;
+            }
+            output.println(answer(command));
+            output.flush();
+        }
+    }
+
+    /**
+     * Method to run a command
+     *
+     * @param command command to run
+     * @return answer line
+     */
+    private String answer(String command) {
+        if (STATS_COMMAND.equals(command)) {
+            return "OK " + engine.latencySummary();
+        }
+        try {
+            return "OK " + engine.execute(Query.parse(command)).describe();
+        } catch (IOException | RuntimeException e) {
+            return "ERROR " + e.getMessage();
+        }
+    }
+
+    /**
+     * Method to serve the clients of a socket bound to the loopback address, until the thread is interrupted
+     *
+     * @param port port of the socket, {@code 0} for any free port
+     * @throws IOException if the socket cannot be bound
+     */
+    public void listen(int port) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+            System.err.println("Listening on " + serverSocket.getLocalSocketAddress());
+            listen(serverSocket);
+        }
+    }
+
+    /**
+     * Method to serve the clients of a socket, each on its own virtual thread,
+     * until the socket is closed or the thread is interrupted
+     *
+     * @param serverSocket bound socket
+     * @throws IOException if an I/O error occurs while accepting a client
+     */
+    public void listen(ServerSocket serverSocket) throws IOException {
+        while (!Thread.currentThread().isInterrupted()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            Thread.ofVirtual().start(() -> serveClient(socket));
+        }
+    }
+
+    /**
+     * Method to answer the commands of a client of the socket until it disconnects or sends {@code quit}
+     *
+     * @param socket socket of the client, closed by the method
+     */
+    private void serveClient(Socket socket) {
+        try (
+                socket;
+                BufferedReader input = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter output = new PrintWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))
+        ) {
+            serve(input, output);
+        } catch (IOException e) {
+            System.err.println("Error serving client: " + e.getMessage());
+        }
+    }
+}
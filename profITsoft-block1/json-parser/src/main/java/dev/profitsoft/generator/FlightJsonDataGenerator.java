@@ -25,7 +25,7 @@ import static dev.profitsoft.entity.Flight.AVAILABLE_SERVICES;
 public class FlightJsonDataGenerator {
 
     /**
-     * The location of the directory where the generated files will be stored.
+     * The default location of the directory where the generated files will be stored.
      */
     private static final Path DATA_LOCATION = Paths.get("src/main/resources/data");
 
@@ -56,13 +56,29 @@ public class FlightJsonDataGenerator {
      */
     private final ObjectMapper mapper;
 
+    /**
+     * The location of the directory where the generated files will be stored.
+     */
+    private final Path dataLocation;
+
+    /**
+     * Constructs a new {@code FlightJsonDataGenerator} object that stores
+     * the generated files in the {@code src/main/resources/data} directory.
+     */
+    public FlightJsonDataGenerator() {
+        this(DATA_LOCATION);
+    }
+
     /**
      * Constructs a new {@code FlightJsonDataGenerator} object.
      * <p>Initializes the {@link ObjectMapper} object with the {@link JavaTimeModule} module and the
      * {@link SerializationFeature#WRITE_DATES_AS_TIMESTAMPS} feature set to {@code false} to write
      * dates as strings in the ISO-8601 format.</p>
+     *
+     * @param dataLocation the directory where the generated files will be stored
      */
-    public FlightJsonDataGenerator() {
+    public FlightJsonDataGenerator(Path dataLocation) {
+        this.dataLocation = dataLocation;
         mapper = new ObjectMapper();
         mapper.registerModule(new JavaTimeModule());
         mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
@@ -103,7 +119,7 @@ public class FlightJsonDataGenerator {
      */
     private void createDataLocationDirectory() {
         try {
-            Files.createDirectories(DATA_LOCATION);
+            Files.createDirectories(dataLocation);
         } catch (IOException e) {
             System.err.println("Error creating directory: " + e.getMessage());
         }
@@ -116,7 +132,7 @@ public class FlightJsonDataGenerator {
      * @return the path to the file
      */
     private Path buildDataFilePath(String filename) {
-        return DATA_LOCATION.resolve(filename + DATA_FILE_EXTENSION);
+        return dataLocation.resolve(filename + DATA_FILE_EXTENSION);
     }
 
     /**
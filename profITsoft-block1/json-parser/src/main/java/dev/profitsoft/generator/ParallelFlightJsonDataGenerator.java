@@ -0,0 +1,400 @@
+package dev.profitsoft.generator;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import static dev.profitsoft.entity.Flight.AVAILABLE_SERVICES;
+
+/**
+ * <p>An object that generates benchmark-scale JSON files with random flight data.</p>
+ * <p>Unlike {@link FlightJsonDataGenerator}, files are written in parallel, one
+ * file per task, and each flight is streamed through a {@link JsonGenerator}
+ * as soon as it is drawn, so no flight is held in memory. Values are drawn from
+ * a {@link SplittableRandom} split off the seed for every file in file order,
+ * so the same seed gives the same files whatever the number of threads.
+ * Flights follow the distributions of {@link FlightJsonDataGenerator}, with
+ * times counted from a fixed start time instead of the current time and
+ * written to the second. Files are written as JSON arrays or as
+ * newline-delimited JSON, optionally gzip-compressed.</p>
+ */
+public class ParallelFlightJsonDataGenerator {
+
+    /**
+     * The name of the generated files.
+     */
+    private static final String DATA_FILE_NAME = "flights";
+
+    /**
+     * Size of the buffer of each generated file.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Number of seconds in a day.
+     */
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    /**
+     * Default time the departure and arrival times are counted from.
+     */
+    public static final LocalDateTime DEFAULT_START_TIME = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    /**
+     * Field names of a flight, in the order they are written.
+     */
+    private static final SerializedString FLIGHT_NUMBER = new SerializedString("flightNumber");
+    private static final SerializedString DEPARTURE = new SerializedString("departure");
+    private static final SerializedString DESTINATION = new SerializedString("destination");
+    private static final SerializedString DEPARTURE_TIME = new SerializedString("departureTime");
+    private static final SerializedString ARRIVAL_TIME = new SerializedString("arrivalTime");
+    private static final SerializedString SERVICES = new SerializedString("services");
+
+    /**
+     * The location of the directory where the generated files will be stored.
+     */
+    private final Path dataLocation;
+
+    /**
+     * Seed of the random values, equal seeds give equal files.
+     */
+    private final long seed;
+
+    /**
+     * Factory of the JSON generators.
+     */
+    private final JsonFactory factory = new JsonFactory();
+
+    /**
+     * Number of files written at the same time.
+     */
+    @Getter
+    @Setter
+    private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Whether files are written as newline-delimited JSON, one flight per line,
+     * with the {@code .ndjson} extension instead of a JSON array.
+     */
+    @Getter
+    @Setter
+    private boolean ndjson;
+
+    /**
+     * Whether files are gzip-compressed, with the {@code .gz} extension added.
+     */
+    @Getter
+    @Setter
+    private boolean gzip;
+
+    /**
+     * Time the departure and arrival times are counted from.
+     */
+    @Getter
+    @Setter
+    private LocalDateTime startTime = DEFAULT_START_TIME;
+
+    /**
+     * Constructs a new {@code ParallelFlightJsonDataGenerator} object.
+     *
+     * @param dataLocation the directory where the generated files will be stored
+     * @param seed         the seed of the random values
+     */
+    public ParallelFlightJsonDataGenerator(Path dataLocation, long seed) {
+        this.dataLocation = dataLocation;
+        this.seed = seed;
+    }
+
+    /**
+     * Generates JSON files from the command line.
+     * <p>Arguments are the directory, the number of files, the number of flights
+     * in each file, and the options {@code --seed=<n>}, {@code --threads=<n>},
+     * {@code --ndjson} and {@code --gzip}.</p>
+     *
+     * @param args the command line arguments
+     * @throws IOException if an I/O error occurs
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Use: java -cp yourprogram.jar " + ParallelFlightJsonDataGenerator.class.getName()
+                    + " <dirPath> <files> <flightsPerFile> [--seed=<n>] [--threads=<n>] [--ndjson] [--gzip]");
+            System.exit(1);
+        }
+        long seed = 0;
+        int numberOfThreads = Runtime.getRuntime().availableProcessors();
+        boolean ndjson = false;
+        boolean gzip = false;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].startsWith("--seed=")) {
+                seed = Long.parseLong(args[i].substring("--seed=".length()));
+            } else if (args[i].startsWith("--threads=")) {
+                numberOfThreads = Integer.parseInt(args[i].substring("--threads=".length()));
+            } else if (args[i].equals("--ndjson")) {
+                ndjson = true;
+            } else if (args[i].equals("--gzip")) {
+                gzip = true;
+            }
+        }
+        ParallelFlightJsonDataGenerator generator = new ParallelFlightJsonDataGenerator(Paths.get(args[0]), seed);
+        generator.setNumberOfThreads(numberOfThreads);
+        generator.setNdjson(ndjson);
+        generator.setGzip(gzip);
+        long start = System.nanoTime();
+        generator.generateFilesWithFlights(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        System.out.println("Generated in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * <p>Generates a specified number of JSON files with random flight data of a specified number of flights in each file.</p>
+     *
+     * @param numberOfFiles          the number of files to generate
+     * @param numberOfFlightsPerFile the number of flights to generate in each file
+     * @throws IOException if an I/O error occurs
+     */
+    public void generateFilesWithFlights(int numberOfFiles, int numberOfFlightsPerFile) throws IOException {
+        Files.createDirectories(dataLocation);
+        SplittableRandom random = new SplittableRandom(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numberOfThreads));
+        try {
+            List<Future<?>> files = new ArrayList<>();
+            for (int i = 0; i < numberOfFiles; i++) {
+                Path file = buildDataFilePath(DATA_FILE_NAME + i);
+                SplittableRandom fileRandom = random.split();
+                files.add(executor.submit(() -> {
+                    generateFileWithFlights(file, numberOfFlightsPerFile, fileRandom);
+                    return null;
+                }));
+            }
+            for (Future<?> file : files) {
+                file.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating files", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generates a JSON file with random flight data.
+     *
+     * @param file            the path to the file to generate
+     * @param numberOfFlights the number of flights to generate
+     * @param random          the random values of the file
+     * @throws IOException if an I/O error occurs
+     */
+    private void generateFileWithFlights(Path file, int numberOfFlights, SplittableRandom random) throws IOException {
+        OutputStream output = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+        if (gzip) {
+            output = new GZIPOutputStream(output, BUFFER_SIZE);
+        }
+        try (JsonGenerator generator = factory.createGenerator(output, JsonEncoding.UTF8)) {
+            FlightWriter writer = new FlightWriter(generator, random);
+            if (ndjson) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+            } else {
+                generator.writeStartArray();
+            }
+            for (int i = 0; i < numberOfFlights; i++) {
+                writer.writeFlight();
+            }
+            if (ndjson) {
+                generator.writeRaw('\n');
+            } else {
+                generator.writeEndArray();
+            }
+        }
+    }
+
+    /**
+     * Builds the path to the file with the specified name.
+     *
+     * @param filename the name of the file
+     * @return the path to the file
+     */
+    private Path buildDataFilePath(String filename) {
+        return dataLocation.resolve(filename + (ndjson ? ".ndjson" : ".json") + (gzip ? ".gz" : ""));
+    }
+
+    /**
+     * Writer of random flights of one file, reusing its buffers for every flight.
+     */
+    private class FlightWriter {
+
+        /**
+         * Generator of the file.
+         */
+        private final JsonGenerator generator;
+
+        /**
+         * Random values of the file.
+         */
+        private final SplittableRandom random;
+
+        /**
+         * Buffer of the characters of a value.
+         */
+        private final char[] chars = new char[256];
+
+        /**
+         * Indexes of the available services, shuffled for every flight.
+         */
+        private final int[] services = new int[AVAILABLE_SERVICES.size()];
+
+        /**
+         * Start time in seconds since the epoch.
+         */
+        private final long startSecond = startTime.toEpochSecond(ZoneOffset.UTC);
+
+        /**
+         * Day of the cached date, in days since the epoch.
+         */
+        private long cachedDay = Long.MIN_VALUE;
+
+        /**
+         * Characters of the cached date.
+         */
+        private char[] cachedDate;
+
+        /**
+         * Constructs a new {@code FlightWriter} object.
+         *
+         * @param generator the generator of the file
+         * @param random    the random values of the file
+         */
+        FlightWriter(JsonGenerator generator, SplittableRandom random) {
+            this.generator = generator;
+            this.random = random;
+            for (int i = 0; i < services.length; i++) {
+                services[i] = i;
+            }
+        }
+
+        /**
+         * Writes a random flight.
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        void writeFlight() throws IOException {
+            generator.writeStartObject();
+            generator.writeFieldName(FLIGHT_NUMBER);
+            letters(0, 2);
+            for (int i = 2; i < 5; i++) {
+                chars[i] = (char) ('0' + random.nextInt(10));
+            }
+            generator.writeString(chars, 0, 5);
+            generator.writeFieldName(DEPARTURE);
+            letters(0, 3);
+            generator.writeString(chars, 0, 3);
+            generator.writeFieldName(DESTINATION);
+            letters(0, 3);
+            generator.writeString(chars, 0, 3);
+            generator.writeFieldName(DEPARTURE_TIME);
+            writeTime(random.nextInt(1, 1000) * 60L + random.nextInt(60));
+            generator.writeFieldName(ARRIVAL_TIME);
+            writeTime(random.nextInt(1001, 2000) * 60L + random.nextInt(60));
+            generator.writeFieldName(SERVICES);
+            writeServices();
+            generator.writeEndObject();
+        }
+
+        /**
+         * Draws random uppercase letters into the buffer.
+         *
+         * @param offset the offset of the first letter
+         * @param count  the number of letters
+         */
+        private void letters(int offset, int count) {
+            for (int i = offset; i < offset + count; i++) {
+                chars[i] = (char) ('A' + random.nextInt(26));
+            }
+        }
+
+        /**
+         * Writes a time as an ISO-8601 local date-time to the second.
+         *
+         * @param secondsFromStart the number of seconds after the start time
+         * @throws IOException if an I/O error occurs
+         */
+        private void writeTime(long secondsFromStart) throws IOException {
+            long second = startSecond + secondsFromStart;
+            long day = Math.floorDiv(second, SECONDS_PER_DAY);
+            if (day != cachedDay) {
+                cachedDay = day;
+                cachedDate = LocalDate.ofEpochDay(day).toString().toCharArray();
+            }
+            int length = cachedDate.length;
+            System.arraycopy(cachedDate, 0, chars, 0, length);
+            int secondOfDay = Math.floorMod(second, SECONDS_PER_DAY);
+            chars[length] = 'T';
+            twoDigits(length + 1, secondOfDay / 3600);
+            chars[length + 3] = ':';
+            twoDigits(length + 4, secondOfDay / 60 % 60);
+            chars[length + 6] = ':';
+            twoDigits(length + 7, secondOfDay % 60);
+            generator.writeString(chars, 0, length + 9);
+        }
+
+        /**
+         * Writes a number below 100 as two digits into the buffer.
+         *
+         * @param offset the offset of the first digit
+         * @param value  the number
+         */
+        private void twoDigits(int offset, int value) {
+            chars[offset] = (char) ('0' + value / 10);
+            chars[offset + 1] = (char) ('0' + value % 10);
+        }
+
+        /**
+         * Writes a random number of distinct services, between 2 and the number of
+         * available services minus one, separated by commas.
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        private void writeServices() throws IOException {
+            int count = random.nextInt(FlightJsonDataGenerator.MIN_SERVICES_COUNT, services.length);
+            int length = 0;
+            for (int i = 0; i < count; i++) {
+                int j = i + random.nextInt(services.length - i);
+                int service = services[j];
+                services[j] = services[i];
+                services[i] = service;
+                if (i > 0) {
+                    chars[length++] = ',';
+                }
+                String name = AVAILABLE_SERVICES.get(service);
+                name.getChars(0, name.length(), chars, length);
+                length += name.length();
+            }
+            generator.writeString(chars, 0, length);
+        }
+    }
+}
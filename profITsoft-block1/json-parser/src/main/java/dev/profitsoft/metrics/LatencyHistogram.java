@@ -0,0 +1,122 @@
+package dev.profitsoft.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies with log-linear buckets, in the style of HdrHistogram.
+ * <p>Values below {@code 128} get a bucket each, bigger values are counted in
+ * {@code 64} buckets per power of two, so a value is reported at most about
+ * 1.6% above its real value across the whole range of a {@code long}. The
+ * buckets are a fixed array of atomic counters, so recording is lock-free
+ * and creates no object. The class is thread-safe.</p>
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Number of bits of a value kept exactly in the index of its bucket
+     */
+    private static final int PRECISION_BITS = 7;
+
+    /**
+     * Number of buckets per power of two
+     */
+    private static final int HALF_BUCKETS = 1 << (PRECISION_BITS - 1);
+
+    /**
+     * Counts of the buckets
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(Long.MAX_VALUE) + 1);
+
+    /**
+     * Number of recorded values
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Largest recorded value
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Method to record a value
+     *
+     * @param value non-negative value, negative values are recorded as {@code 0}
+     */
+    public void record(long value) {
+        long recorded = Math.max(0, value);
+        counts.incrementAndGet(indexOf(recorded));
+        count.incrementAndGet();
+        max.accumulateAndGet(recorded, Math::max);
+    }
+
+    /**
+     * Returns the number of recorded values
+     *
+     * @return number of values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the largest recorded value
+     *
+     * @return largest value, {@code 0} if no value was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Method to get the value at a percentile of the recorded values
+     *
+     * @param percentile percentile from {@code 0} to {@code 100}
+     * @return highest value of the bucket holding the percentile, at most the largest
+     * recorded value, {@code 0} if no value was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * total));
+        long seen = 0;
+        for (int index = 0; index < counts.length(); index++) {
+            seen += counts.get(index);
+            if (seen >= target) {
+                return Math.min(highestValueOf(index), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Method to get the bucket of a value
+     *
+     * @param value non-negative value
+     * @return index of the bucket
+     */
+    static int indexOf(long value) {
+        if (value < 2 * HALF_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (PRECISION_BITS - 1);
+        return shift * HALF_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Method to get the highest value counted in a bucket
+     *
+     * @param index index of the bucket
+     * @return highest value of the bucket
+     */
+    static long highestValueOf(int index) {
+        if (index < 2 * HALF_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_BUCKETS - 1;
+        long top = index - (long) shift * HALF_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
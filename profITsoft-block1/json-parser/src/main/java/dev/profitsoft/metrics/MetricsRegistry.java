@@ -0,0 +1,248 @@
+package dev.profitsoft.metrics;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process registry of the measurements of the parser.
+ * <p>Counters are {@link LongAdder} instances, so workers recording at the same
+ * time do not contend, per-segment latencies go to a {@link LatencyHistogram}
+ * and throughput is kept per worker thread, all virtual threads sharing one
+ * entry. The time workers spend in segments is split into waiting for input,
+ * waiting for permits and the rest, which is parsing and aggregating, so a
+ * summary can tell whether a run was I/O-bound or CPU-bound.
+ * The class is thread-safe.</p>
+ */
+@Getter
+public class MetricsRegistry implements ParserMetrics {
+
+    /**
+     * Name of the worker entry shared by all virtual threads
+     */
+    public static final String VIRTUAL_WORKER = "virtual";
+
+    /**
+     * Number of nanoseconds in a second
+     */
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Number of bytes in a megabyte
+     */
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    /**
+     * Time the registry was created, in nanoseconds
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Number of segments queued for the workers
+     */
+    private final LongAdder queuedSegments = new LongAdder();
+
+    /**
+     * Number of segments processed
+     */
+    private final LongAdder segments = new LongAdder();
+
+    /**
+     * Number of flight objects read
+     */
+    private final LongAdder records = new LongAdder();
+
+    /**
+     * Number of bytes of the processed segments on disk
+     */
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * Time workers spent waiting for input, in nanoseconds
+     */
+    private final LongAdder readNanos = new LongAdder();
+
+    /**
+     * Time workers spent waiting for permits, in nanoseconds
+     */
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * Time workers spent in segments, in nanoseconds
+     */
+    private final LongAdder busyNanos = new LongAdder();
+
+    /**
+     * Number of segments that failed
+     */
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Number of merges of statistics into collectors
+     */
+    private final LongAdder merges = new LongAdder();
+
+    /**
+     * Number of values merged into collectors
+     */
+    private final LongAdder mergedValues = new LongAdder();
+
+    /**
+     * Latencies of the processed segments, in nanoseconds
+     */
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * Throughput of each worker, keyed by thread name
+     */
+    private final ConcurrentMap<String, WorkerMetrics> workers = new ConcurrentHashMap<>();
+
+    /**
+     * Durations of the completed stages, in nanoseconds, keyed by stage name in the order they first completed
+     */
+    private final Map<String, Long> stages = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    @Override
+    public void segmentsQueued(int count) {
+        queuedSegments.add(count);
+    }
+
+    @Override
+    public void segmentProcessed(long bytes, long records, long readNanos, long waitNanos, long totalNanos) {
+        this.segments.increment();
+        this.records.add(records);
+        this.bytes.add(bytes);
+        this.readNanos.add(readNanos);
+        this.waitNanos.add(waitNanos);
+        this.busyNanos.add(totalNanos);
+        latencies.record(totalNanos);
+        WorkerMetrics worker = workers.computeIfAbsent(workerName(), name -> new WorkerMetrics());
+        worker.segments.increment();
+        worker.records.add(records);
+        worker.bytes.add(bytes);
+        worker.busyNanos.add(totalNanos - waitNanos);
+    }
+
+    @Override
+    public void segmentFailed(Path file, Exception error) {
+        errors.increment();
+    }
+
+    @Override
+    public void collectorMerged(String attribute, int values) {
+        merges.increment();
+        mergedValues.add(values);
+    }
+
+    @Override
+    public void stageCompleted(String stage, long nanos) {
+        stages.merge(stage, nanos, Long::sum);
+    }
+
+    /**
+     * Returns the number of queued segments that have not been processed or failed yet
+     *
+     * @return number of pending segments, {@code 0} if segments were processed without being queued
+     */
+    public long getPendingSegments() {
+        return Math.max(0, queuedSegments.sum() - segments.sum() - errors.sum());
+    }
+
+    /**
+     * Method to describe the progress of the run in one line
+     *
+     * @return progress line
+     */
+    public String progress() {
+        double seconds = (System.nanoTime() - startNanos) / NANOS_PER_SECOND;
+        return String.format(Locale.ROOT,
+                "Progress: %d segments done, %d pending, %d errors, %d records, %.1f MB, %.0f records/s, %.1f MB/s",
+                segments.sum(), getPendingSegments(), errors.sum(), records.sum(), bytes.sum() / BYTES_PER_MEGABYTE,
+                records.sum() / seconds, bytes.sum() / BYTES_PER_MEGABYTE / seconds);
+    }
+
+    /**
+     * Method to describe the whole run: the duration of each stage, the totals,
+     * the segment latencies, the throughput of each worker and whether the
+     * workers spent most of their time waiting for input or computing
+     *
+     * @return summary lines
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder();
+        synchronized (stages) {
+            stages.forEach((stage, nanos) -> summary.append(String.format(Locale.ROOT,
+                    "Stage %s: %.1f ms%n", stage, nanos / 1e6)));
+        }
+        summary.append(String.format(Locale.ROOT,
+                "Segments: %d, records: %d, bytes: %.1f MB, errors: %d, collector merges: %d (%d values)%n",
+                segments.sum(), records.sum(), bytes.sum() / BYTES_PER_MEGABYTE, errors.sum(),
+                merges.sum(), mergedValues.sum()));
+        summary.append(String.format(Locale.ROOT,
+                "Segment latency ms: p50=%.2f p90=%.2f p99=%.2f max=%.2f%n",
+                latencies.getValueAtPercentile(50) / 1e6, latencies.getValueAtPercentile(90) / 1e6,
+                latencies.getValueAtPercentile(99) / 1e6, latencies.getMax() / 1e6));
+        workers.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
+            WorkerMetrics worker = entry.getValue();
+            double seconds = Math.max(1, worker.busyNanos.sum()) / NANOS_PER_SECOND;
+            summary.append(String.format(Locale.ROOT,
+                    "Worker %s: %d segments, %d records, %.0f records/s, %.1f MB/s%n",
+                    entry.getKey(), worker.segments.sum(), worker.records.sum(),
+                    worker.records.sum() / seconds, worker.bytes.sum() / BYTES_PER_MEGABYTE / seconds));
+        });
+        long read = readNanos.sum();
+        long wait = waitNanos.sum();
+        long compute = Math.max(0, busyNanos.sum() - read - wait);
+        long total = Math.max(1, read + wait + compute);
+        summary.append(String.format(Locale.ROOT,
+                "Worker time: read %.1f ms (%.0f%%), wait %.1f ms (%.0f%%), parse %.1f ms (%.0f%%), %s%n",
+                read / 1e6, 100.0 * read / total, wait / 1e6, 100.0 * wait / total,
+                compute / 1e6, 100.0 * compute / total, read > compute ? "I/O-bound" : "CPU-bound"));
+        return summary.toString();
+    }
+
+    /**
+     * Method to get the name of the worker entry of the current thread
+     *
+     * @return thread name, or {@link #VIRTUAL_WORKER} on a virtual thread
+     */
+    private static String workerName() {
+        Thread thread = Thread.currentThread();
+        return thread.isVirtual() ? VIRTUAL_WORKER : thread.getName();
+    }
+
+    /**
+     * Throughput of one worker
+     */
+    @Getter
+    public static class WorkerMetrics {
+
+        /**
+         * Number of segments processed by the worker
+         */
+        private final LongAdder segments = new LongAdder();
+
+        /**
+         * Number of flight objects read by the worker
+         */
+        private final LongAdder records = new LongAdder();
+
+        /**
+         * Number of bytes of the segments processed by the worker
+         */
+        private final LongAdder bytes = new LongAdder();
+
+        /**
+         * Time the worker spent in segments without waiting for permits, in nanoseconds
+         */
+        private final LongAdder busyNanos = new LongAdder();
+    }
+}
@@ -0,0 +1,80 @@
+package dev.profitsoft.metrics;
+
+import java.nio.file.Path;
+
+/**
+ * Receiver of the measurements the parser takes while it runs.
+ * <p>Every method does nothing by default, and {@link #NOOP} is the default
+ * of the parser, which then takes no measurement at all. Methods are called
+ * concurrently from the parser workers, so implementations must be
+ * thread-safe and cheap.</p>
+ */
+public interface ParserMetrics {
+
+    /**
+     * Metrics that ignore every measurement
+     */
+    ParserMetrics NOOP = new ParserMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * Returns whether measurements are used, so the parser can skip taking them
+     *
+     * @return {@code true} if measurements are recorded
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Method to record that segments of files were queued for the workers
+     *
+     * @param count number of queued segments
+     */
+    default void segmentsQueued(int count) {
+    }
+
+    /**
+     * Method to record a segment processed by the current thread
+     *
+     * @param bytes      number of bytes of the segment on disk
+     * @param records    number of flight objects read from the segment
+     * @param readNanos  time spent waiting for input, in nanoseconds
+     * @param waitNanos  time spent waiting for a permit to open or parse the file, in nanoseconds
+     * @param totalNanos time from the start to the end of the segment, in nanoseconds
+     */
+    default void segmentProcessed(long bytes, long records, long readNanos, long waitNanos, long totalNanos) {
+    }
+
+    /**
+     * Method to record a segment that failed
+     *
+     * @param file  path to the file of the segment
+     * @param error error of the segment
+     */
+    default void segmentFailed(Path file, Exception error) {
+    }
+
+    /**
+     * Method to record statistics merged into a collector, either the per-thread
+     * counts of a sharded collector after a run or cached or snapshot statistics
+     *
+     * @param attribute attribute of the collector
+     * @param values    number of merged values
+     */
+    default void collectorMerged(String attribute, int values) {
+    }
+
+    /**
+     * Method to record the duration of a stage of a run, such as listing or processing the files
+     *
+     * @param stage name of the stage
+     * @param nanos duration of the stage, in nanoseconds
+     */
+    default void stageCompleted(String stage, long nanos) {
+    }
+}
@@ -0,0 +1,60 @@
+package dev.profitsoft.metrics;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class to print the progress of a run periodically and its summary at the end.
+ * <p>The progress line is printed from a daemon thread at a fixed interval
+ * until the reporter is closed, closing it prints the summary.</p>
+ */
+public class ProgressReporter implements Closeable {
+
+    /**
+     * Registry whose measurements are reported
+     */
+    private final MetricsRegistry registry;
+
+    /**
+     * Stream to print the reports to
+     */
+    private final PrintStream out;
+
+    /**
+     * Scheduler of the progress lines
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor, starts printing the progress at the given interval
+     *
+     * @param registry registry whose measurements are reported
+     * @param out      stream to print the reports to
+     * @param interval interval between progress lines
+     */
+    public ProgressReporter(MetricsRegistry registry, PrintStream out, Duration interval) {
+        this.registry = registry;
+        this.out = out;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = Math.max(1, interval.toMillis());
+        scheduler.scheduleAtFixedRate(() -> out.println(registry.progress()), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to stop printing the progress and to print the summary
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        out.print(registry.summary());
+        out.flush();
+    }
+}
@@ -0,0 +1,286 @@
+package dev.profitsoft.parser;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Utility class to read gzip and zstd compressed JSON files.
+ * <p>Files are decompressed ahead of the parser by a decompression pool shared
+ * by all files being read, so decompression overlaps with tokenization and the
+ * number of decompressing threads stays bounded however many files are read at
+ * the same time. Gzip files made of independent BGZF blocks, which record their
+ * compressed size in the header, are split into groups of blocks that are
+ * decompressed in parallel and read in order. Other files are decompressed
+ * chunk after chunk, as the member boundaries of a multi-member gzip file are
+ * only known after decompression.</p>
+ */
+final class CompressedInput {
+
+    /**
+     * Extension of gzip compressed files
+     */
+    static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * Extension of zstd compressed files
+     */
+    static final String ZSTD_EXTENSION = ".zst";
+
+    /**
+     * Size of the decompressed chunks handed over to the parser
+     */
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * Size of the buffer used to read compressed files
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Number of chunks decompressed ahead of the parser
+     */
+    private static final int SEQUENTIAL_WINDOW = 4;
+
+    /**
+     * Compressed size of the groups of BGZF blocks decompressed by one task
+     */
+    private static final long BGZF_GROUP_SIZE = 1024 * 1024;
+
+    /**
+     * Size of the header of a BGZF block up to the block size field
+     */
+    private static final int BGZF_HEADER_SIZE = 18;
+
+    /**
+     * Time after which an idle thread of a decompression pool is stopped
+     */
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Factory of the daemon threads decompressing files
+     */
+    private static final ThreadFactory DECOMPRESSOR_THREADS = Thread.ofPlatform()
+            .name("decompressor-", 0)
+            .daemon(true)
+            .factory();
+
+    /**
+     * Constructor, not used as the class only has static methods
+     */
+    private CompressedInput() {
+    }
+
+    /**
+     * Method to check whether a file is compressed
+     *
+     * @param file path to the file
+     * @return {@code true} if the file has a gzip or zstd extension
+     */
+    static boolean isCompressed(Path file) {
+        String name = file.toString();
+        return name.endsWith(GZIP_EXTENSION) || name.endsWith(ZSTD_EXTENSION);
+    }
+
+    /**
+     * Method to create a pool of decompressing threads to be shared by all files a parser
+     * reads. Its threads are daemons that stop when idle, so the pool need not be shut down
+     *
+     * @param numberOfThreads maximum number of threads decompressing at the same time
+     * @return decompression pool
+     */
+    static ExecutorService newDecompressionPool(int numberOfThreads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(numberOfThreads, numberOfThreads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), DECOMPRESSOR_THREADS);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Method to open a compressed file as a stream of its decompressed content
+     *
+     * @param file            path to the compressed file
+     * @param decompressors   pool decompressing the file, shared with other files
+     * @param numberOfThreads maximum number of BGZF block groups decompressed in parallel
+     * @return stream of the decompressed content
+     * @throws IOException if an I/O error occurs
+     */
+    static InputStream open(Path file, ExecutorService decompressors, int numberOfThreads) throws IOException {
+        return open(file, decompressors, numberOfThreads, BGZF_GROUP_SIZE);
+    }
+
+    /**
+     * Method to open a compressed file as a stream of its decompressed content
+     *
+     * @param file            path to the compressed file
+     * @param decompressors   pool decompressing the file, shared with other files
+     * @param numberOfThreads maximum number of BGZF block groups decompressed in parallel
+     * @param groupSize       compressed size of the groups of BGZF blocks decompressed by one task
+     * @return stream of the decompressed content
+     * @throws IOException if an I/O error occurs
+     */
+    static InputStream open(Path file, ExecutorService decompressors, int numberOfThreads, long groupSize)
+            throws IOException {
+        if (file.toString().endsWith(ZSTD_EXTENSION)) {
+            return pipeline(new ZstdInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)),
+                    decompressors);
+        }
+        if (numberOfThreads > 1) {
+            List<long[]> groups = findBgzfGroups(file, groupSize);
+            if (groups.size() > 1) {
+                return decompressInParallel(file, groups, decompressors, numberOfThreads);
+            }
+        }
+        return pipeline(new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), decompressors);
+    }
+
+    /**
+     * Method to read a decompressing stream in chunks ahead of the caller,
+     * one chunk after another
+     *
+     * @param decompressor  stream of the decompressed content
+     * @param decompressors pool reading the chunks
+     * @return stream of the decompressed content read ahead of the caller
+     */
+    private static InputStream pipeline(InputStream decompressor, ExecutorService decompressors) {
+        Callable<byte[]> readChunk = () -> {
+            byte[] chunk = decompressor.readNBytes(CHUNK_SIZE);
+            return chunk.length == 0 ? null : chunk;
+        };
+        Iterator<Callable<byte[]>> tasks = Stream.generate(() -> readChunk).iterator();
+        return new PipelinedInputStream(tasks, decompressors, true, SEQUENTIAL_WINDOW, decompressor);
+    }
+
+    /**
+     * Method to decompress groups of BGZF blocks in parallel and read them in order
+     *
+     * @param file            path to the BGZF file
+     * @param groups          offsets and compressed sizes of the groups of blocks
+     * @param decompressors   pool decompressing the groups
+     * @param numberOfThreads maximum number of groups decompressed in parallel
+     * @return stream of the decompressed content
+     */
+    private static InputStream decompressInParallel(Path file, List<long[]> groups, ExecutorService decompressors,
+                                                    int numberOfThreads) {
+        Iterator<Callable<byte[]>> tasks = groups.stream()
+                .map(group -> (Callable<byte[]>) () -> decompressGroup(file, group[0], (int) group[1]))
+                .iterator();
+        return new PipelinedInputStream(tasks, decompressors, false, 2 * numberOfThreads, null);
+    }
+
+    /**
+     * Method to decompress a group of consecutive gzip members
+     *
+     * @param file   path to the gzip file
+     * @param offset offset of the first member
+     * @param length compressed size of the group
+     * @return decompressed content of the group
+     * @throws IOException if an I/O error occurs
+     */
+    private static byte[] decompressGroup(Path file, long offset, int length) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            readFully(channel, compressed, offset);
+        }
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed.array()), BUFFER_SIZE)) {
+            return input.readAllBytes();
+        }
+    }
+
+    /**
+     * Method to find the BGZF blocks of a gzip file by walking their headers
+     * and to group consecutive blocks into tasks of about the group size
+     *
+     * @param file      path to the gzip file
+     * @param groupSize compressed size of the groups of blocks
+     * @return offsets and compressed sizes of the groups, empty if the file is not BGZF
+     * @throws IOException if an I/O error occurs
+     */
+    static List<long[]> findBgzfGroups(Path file, long groupSize) throws IOException {
+        List<long[]> groups = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(BGZF_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            long groupStart = 0;
+            while (position < size) {
+                header.clear();
+                try {
+                    readFully(channel, header, position);
+                } catch (EOFException e) {
+                    return List.of();
+                }
+                if (!isBgzfHeader(header)) {
+                    return List.of();
+                }
+                position += (header.getShort(16) & 0xffff) + 1;
+                if (position - groupStart >= groupSize) {
+                    groups.add(new long[]{groupStart, position - groupStart});
+                    groupStart = position;
+                }
+            }
+            if (position != size) {
+                return List.of();
+            }
+            if (groupStart < size) {
+                groups.add(new long[]{groupStart, size - groupStart});
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Method to check whether a gzip member header carries the BGZF block size
+     *
+     * @param header first bytes of the member
+     * @return {@code true} if the header is a BGZF block header
+     */
+    private static boolean isBgzfHeader(ByteBuffer header) {
+        return (header.get(0) & 0xff) == 0x1f
+                && (header.get(1) & 0xff) == 0x8b
+                && header.get(2) == 8
+                && (header.get(3) & 0x04) != 0
+                && (header.getShort(10) & 0xffff) >= 6
+                && header.get(12) == 'B'
+                && header.get(13) == 'C'
+                && header.getShort(14) == 2;
+    }
+
+    /**
+     * Method to fill a buffer from a file channel
+     *
+     * @param channel  file channel to read from
+     * @param buffer   buffer to fill
+     * @param position position in the file of the first byte to read
+     * @throws IOException if an I/O error occurs or the file ends before the buffer is full
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file");
+            }
+        }
+    }
+}
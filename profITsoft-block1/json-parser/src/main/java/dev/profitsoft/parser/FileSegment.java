@@ -0,0 +1,57 @@
+package dev.profitsoft.parser;
+
+import lombok.Value;
+
+import java.nio.file.Path;
+
+/**
+ * Unit of work for the parser workers: either a whole JSON file, or a byte
+ * range of a file holding a run of top-level array elements or whole lines
+ */
+@Value
+public class FileSegment {
+
+    /**
+     * Length marker for segments that cover the whole file
+     */
+    private static final long WHOLE_FILE = -1;
+
+    /**
+     * Path to the JSON file
+     */
+    Path file;
+
+    /**
+     * Offset of the first byte of the segment
+     */
+    long offset;
+
+    /**
+     * Number of bytes in the segment, or {@code -1} for the whole file
+     */
+    long length;
+
+    /**
+     * Layout of the content of the segment, {@link InputFormat#AUTO} if it is not known yet
+     */
+    InputFormat format;
+
+    /**
+     * Creates a segment that covers the whole file
+     *
+     * @param file path to the JSON file
+     * @return segment for the whole file
+     */
+    public static FileSegment wholeFile(Path file) {
+        return new FileSegment(file, 0, WHOLE_FILE, InputFormat.AUTO);
+    }
+
+    /**
+     * Method to check whether the segment covers the whole file
+     *
+     * @return {@code true} if the segment covers the whole file
+     */
+    public boolean isWholeFile() {
+        return length == WHOLE_FILE;
+    }
+}
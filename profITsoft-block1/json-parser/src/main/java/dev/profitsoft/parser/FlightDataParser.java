@@ -2,15 +2,51 @@ package dev.profitsoft.parser;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import dev.profitsoft.cache.CachedFile;
+import dev.profitsoft.cache.StatisticsCache;
+import dev.profitsoft.checkpoint.Checkpoint;
+import dev.profitsoft.collector.CharBufferConsumer;
+import dev.profitsoft.collector.RecordConsumer;
+import dev.profitsoft.collector.ShardSlot;
+import dev.profitsoft.collector.SpillingStatisticsCollector;
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.TopKStatisticsCollector;
+import dev.profitsoft.metrics.ParserMetrics;
+import dev.profitsoft.snapshot.ColumnarSnapshot;
+import lombok.Getter;
+import lombok.Setter;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -19,20 +55,72 @@ import java.util.stream.Stream;
  */
 public class FlightDataParser {
 
+    /**
+     * Default size of a segment when large files are split between threads
+     */
+    public static final long DEFAULT_CHUNK_SIZE = 32L * 1024 * 1024;
+
+    /**
+     * Default size limit of files and segments that are memory-mapped
+     */
+    public static final long DEFAULT_MAPPING_LIMIT = Integer.MAX_VALUE;
+
+    /**
+     * Extension of JSON files
+     */
+    private static final String JSON_EXTENSION = ".json";
+
+    /**
+     * Extensions of newline-delimited JSON files
+     */
+    private static final List<String> NDJSON_EXTENSIONS = List.of(".ndjson", ".jsonl");
+
+    /**
+     * Default maximum time a run may take
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofHours(1);
+
+    /**
+     * Time the segments in progress are given to finish after a run is stopped,
+     * before the checkpoint is left as it was last saved
+     */
+    static final Duration STOP_GRACE = Duration.ofSeconds(5);
+
+    /**
+     * Default maximum number of files open at the same time on virtual threads
+     */
+    public static final int DEFAULT_MAX_OPEN_FILES = 256;
+
+    /**
+     * Size limit of files that are read into memory before parsing on virtual threads
+     */
+    private static final long PREFETCH_LIMIT = 16L * 1024 * 1024;
+
+    /**
+     * Maximum number of kilobytes of files read into memory and not parsed yet on virtual threads
+     */
+    private static final int PREFETCH_BUDGET_KILOBYTES = (int) (4 * PREFETCH_LIMIT / 1024);
+
+    /**
+     * Initial size of the buffer holding the lines of a newline-delimited JSON file
+     */
+    private static final int LINE_BUFFER_SIZE = 1 << 20;
+
     /**
      * Path to the directory containing JSON files
      */
+    @Getter
     private final Path directory;
 
     /**
-     * Queue to store paths to JSON files to be processed
+     * Queue to store segments of JSON files to be processed on virtual threads, largest first
      */
-    private final BlockingQueue<Path> fileQueue = new LinkedBlockingQueue<>();
+    private final BlockingQueue<FileSegment> fileQueue = new LinkedBlockingQueue<>();
 
     /**
-     * Executor service to manage threads
+     * Executor service to manage threads, created for each run
      */
-    private final ExecutorService executorService;
+    private ExecutorService executorService;
 
     /**
      * JSON factory to create JSON parsers
@@ -45,14 +133,165 @@ public class FlightDataParser {
     private final int numberOfThreads;
 
     /**
-     * Attribute to extract from JSON objects
+     * Interned names of the attributes to extract from JSON objects. Field names
+     * are interned by the JSON factory, so they are matched by reference
+     */
+    private final String[] attributes;
+
+    /**
+     * Consumers to process extracted values, indexed like the attributes
+     */
+    private final Consumer<String>[] consumers;
+
+    /**
+     * Consumers of several attributes of each flight object, whose
+     * records are ended after every object
+     */
+    private final RecordConsumer[] recordConsumers;
+
+    /**
+     * Filter of the flight objects whose values reach the consumers, {@code null} to consume every object
+     */
+    @Getter
+    private final FlightFilter filter;
+
+    /**
+     * Masks of the filter conditions on each attribute, indexed like the attributes
+     */
+    private final long[] attributeConditions;
+
+    /**
+     * Size of the segments that files bigger than it are split into,
+     * so one large file can be processed by several threads.
+     * Compressed files are never split.
+     * Splitting is disabled if the value is not positive
+     */
+    @Getter
+    @Setter
+    private long chunkSize;
+
+    /**
+     * Size limit of files and segments that are memory-mapped, bigger ones
+     * are streamed from disk. Mapping is disabled if the value is not positive
+     */
+    @Getter
+    @Setter
+    private long mappingLimit = DEFAULT_MAPPING_LIMIT;
+
+    /**
+     * Whether the remaining fields of an object are skipped without being
+     * matched once every attribute has been read from it. Duplicate
+     * attributes in an object are then ignored after the first one
+     */
+    @Getter
+    @Setter
+    private boolean stopAfterAllAttributes;
+
+    /**
+     * Cache of partial statistics of previously parsed files. When set, unchanged
+     * files are not parsed again, their cached statistics are merged into
+     * the consumers, which must then be {@link StatisticsCollector} instances.
+     * The cache holds the exact statistics of each whole file, so it cannot be used
+     * with a positive chunk size, nor with top-K or spilling collectors, whose
+     * memory it would no longer bound
+     */
+    @Getter
+    @Setter
+    private StatisticsCache statisticsCache;
+
+    /**
+     * Whether each file is processed on its own virtual thread instead of a fixed
+     * pool of platform threads. Files are then read while other files are parsed:
+     * the number of threads bounds how many files are parsed at the same time and
+     * the open files limit bounds how many files are read at the same time
+     */
+    @Getter
+    @Setter
+    private boolean virtualThreads;
+
+    /**
+     * Maximum number of files open at the same time on virtual threads
+     */
+    @Getter
+    @Setter
+    private int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+
+    /**
+     * Layout of the input files. With {@link InputFormat#AUTO} files named
+     * {@code .ndjson} or {@code .jsonl} are read as newline-delimited JSON and
+     * other files are detected from their first significant character
+     */
+    @Getter
+    @Setter
+    private InputFormat inputFormat = InputFormat.AUTO;
+
+    /**
+     * Number of malformed lines of newline-delimited JSON files that were skipped
+     */
+    private final AtomicLong malformedLines = new AtomicLong();
+
+    /**
+     * Receiver of the measurements of the runs, {@link ParserMetrics#NOOP} to take no measurement
+     */
+    @Getter
+    @Setter
+    private ParserMetrics metrics = ParserMetrics.NOOP;
+
+    /**
+     * Checkpoint recording the processed segments and saving the statistics periodically
+     * during a run, {@code null} to run without checkpoints. Segments already recorded
+     * in it, when resuming, are skipped
+     */
+    @Getter
+    @Setter
+    private Checkpoint checkpoint;
+
+    /**
+     * Maximum time a run may take. A run that exceeds it is stopped and fails,
+     * the checkpoint is saved first if it is set
+     */
+    @Getter
+    @Setter
+    private Duration timeout = DEFAULT_TIMEOUT;
+
+    /**
+     * Fork/join pool shared by the runs of several parsers, so that its workers and
+     * their thread-local buffers stay warm from one run to the next, {@code null} to
+     * create a pool for each run. A shared pool is used on platform threads only and
+     * is never shut down by the parser: when a run exceeds the timeout its remaining
+     * segments are skipped, while the segments in progress finish on the pool
+     */
+    @Getter
+    @Setter
+    private ForkJoinPool sharedPool;
+
+    /**
+     * Pool decompressing the compressed files, shared by all files read at the same
+     * time so that the number of decompressing threads stays bounded. If it is not
+     * set, a pool with one thread per processing thread is created on first use,
+     * whose idle threads stop on their own. A pool that is set is never shut down
+     * by the parser
+     */
+    @Getter
+    @Setter
+    private ExecutorService decompressionPool;
+
+    /**
+     * Whether the current run has been stopped, segments that have not started are then skipped
      */
-    private final String attribute;
+    private volatile boolean stopped;
 
     /**
-     * Consumer to process extracted attribute values
+     * Failure that aborts the current run once the segments in progress have finished,
+     * such as a file that does not match the checkpoint, {@code null} if there is none
      */
-    private final Consumer<String> valueConsumer;
+    private final AtomicReference<RuntimeException> runFailure = new AtomicReference<>();
+
+    /**
+     * Measurements of the segment processed by the current thread, removed when the
+     * segment ends, so no measurements stay on the workers of a shared pool
+     */
+    private final ThreadLocal<SegmentStats> segmentStats = ThreadLocal.withInitial(SegmentStats::new);
 
     /**
      * Constructor, configures the parser with the necessary parameters
@@ -63,12 +302,117 @@ public class FlightDataParser {
      * @param valueConsumer   consumer to process extracted attribute values
      */
     public FlightDataParser(String dirPath, int numberOfThreads, String attribute, Consumer<String> valueConsumer) {
+        this(dirPath, numberOfThreads, Map.of(attribute, valueConsumer));
+    }
+
+    /**
+     * Constructor, configures the parser to extract several attributes
+     * in a single pass over the files, each attribute is routed
+     * to its own consumer. A {@link RecordConsumer} is routed the values
+     * of all of its attributes instead of the attribute it is keyed by,
+     * attributes requested several times are routed to every consumer
+     *
+     * @param dirPath            path to the directory containing JSON files
+     * @param numberOfThreads    number of threads to use for processing files
+     * @param attributeConsumers consumers to process extracted values, keyed by attribute
+     */
+    public FlightDataParser(String dirPath, int numberOfThreads,
+                            Map<String, ? extends Consumer<String>> attributeConsumers) {
+        this(dirPath, numberOfThreads, attributeConsumers, null);
+    }
+
+    /**
+     * Constructor, configures the parser to extract several attributes of the
+     * flight objects passing a filter. The conditions of the filter are checked
+     * while each object is read, values of the object are held back until
+     * the outcome is known and are dropped if the object does not pass
+     *
+     * @param dirPath            path to the directory containing JSON files
+     * @param numberOfThreads    number of threads to use for processing files
+     * @param attributeConsumers consumers to process extracted values, keyed by attribute
+     * @param filter             filter of the flight objects, {@code null} to consume every object
+     */
+    public FlightDataParser(String dirPath, int numberOfThreads,
+                            Map<String, ? extends Consumer<String>> attributeConsumers, FlightFilter filter) {
+        this(dirPath, numberOfThreads, attributeConsumers, filter, new JsonFactory());
+    }
+
+    /**
+     * Constructor, configures the parser to create its JSON parsers with a factory
+     * shared by several parsers, so that the symbol table of the field names
+     * is built once and reused by the runs of every parser
+     *
+     * @param dirPath            path to the directory containing JSON files
+     * @param numberOfThreads    number of threads to use for processing files
+     * @param attributeConsumers consumers to process extracted values, keyed by attribute
+     * @param filter             filter of the flight objects, {@code null} to consume every object
+     * @param factory            JSON factory to create JSON parsers
+     */
+    public FlightDataParser(String dirPath, int numberOfThreads,
+                            Map<String, ? extends Consumer<String>> attributeConsumers, FlightFilter filter,
+                            JsonFactory factory) {
+        if (attributeConsumers.isEmpty()) {
+            throw new IllegalArgumentException("At least one attribute is required");
+        }
         this.directory = Paths.get(dirPath);
         this.numberOfThreads = numberOfThreads;
-        this.executorService = Executors.newFixedThreadPool(numberOfThreads);
-        this.factory = new JsonFactory();
-        this.attribute = attribute;
-        this.valueConsumer = valueConsumer;
+        this.factory = factory;
+        Map<String, List<Consumer<String>>> routedConsumers = new LinkedHashMap<>();
+        List<RecordConsumer> records = new ArrayList<>();
+        for (Map.Entry<String, ? extends Consumer<String>> entry : attributeConsumers.entrySet()) {
+            if (entry.getValue() instanceof RecordConsumer recordConsumer) {
+                List<String> recordAttributes = recordConsumer.getAttributes();
+                for (int i = 0; i < recordAttributes.size(); i++) {
+                    routedConsumers.computeIfAbsent(recordAttributes.get(i), name -> new ArrayList<>())
+                            .add(new RecordAttributeConsumer(recordConsumer, i));
+                }
+                records.add(recordConsumer);
+            } else {
+                routedConsumers.computeIfAbsent(entry.getKey(), name -> new ArrayList<>()).add(entry.getValue());
+            }
+        }
+        if (filter != null) {
+            for (String attribute : filter.getAttributes()) {
+                routedConsumers.putIfAbsent(attribute, List.of());
+            }
+        }
+        this.filter = filter;
+        this.attributes = new String[routedConsumers.size()];
+        this.attributeConditions = new long[routedConsumers.size()];
+        this.consumers = newConsumerArray(routedConsumers.size());
+        this.recordConsumers = records.toArray(RecordConsumer[]::new);
+        int index = 0;
+        for (Map.Entry<String, List<Consumer<String>>> entry : routedConsumers.entrySet()) {
+            attributes[index] = entry.getKey().intern();
+            attributeConditions[index] = filter == null ? 0 : filter.conditionsOf(entry.getKey());
+            consumers[index] = switch (entry.getValue().size()) {
+                case 0 -> null;
+                case 1 -> entry.getValue().get(0);
+                default -> new FanOutConsumer(entry.getValue().toArray(newConsumerArray(0)));
+            };
+            index++;
+        }
+    }
+
+    /**
+     * Method to create an array of consumers
+     *
+     * @param size size of the array
+     * @return array of consumers
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Consumer<String>[] newConsumerArray(int size) {
+        return (Consumer<String>[]) new Consumer[size];
+    }
+
+    /**
+     * Method to get the number of malformed lines of newline-delimited JSON files
+     * that were skipped, counted over all runs of the parser
+     *
+     * @return number of skipped lines
+     */
+    public long getMalformedLineCount() {
+        return malformedLines.get();
     }
 
     /**
@@ -77,97 +421,1416 @@ public class FlightDataParser {
      * @throws IOException if an I/O error occurs
      */
     public void parse() throws IOException {
-        listJsonFiles();
-        processFiles();
-        waitForCompletion();
+        long start = System.nanoTime();
+        List<Path> files = findJsonFiles();
+        metrics.stageCompleted("list", System.nanoTime() - start);
+        parse(files);
+    }
+
+    /**
+     * Method to process the given JSON files, largest first. On platform threads
+     * each file is split into segments by a task of a fork/join pool, whose idle
+     * workers steal the remaining segments of files that are still being
+     * processed, so a large file is not left to one thread at the end of the run.
+     * On virtual threads all files are split first and their segments are
+     * started largest first. With a checkpoint, the segments it has recorded
+     * are skipped and it is saved periodically and at the end of the run
+     *
+     * @param files paths to the JSON files
+     * @throws IOException           if an I/O error occurs or the run exceeds the timeout
+     * @throws IllegalStateException if a file has changed since the checkpoint was saved, or if the
+     *                               statistics cache is used with a filter, a positive chunk size or
+     *                               collectors it does not support
+     */
+    void parse(List<Path> files) throws IOException {
+        if (statisticsCache != null && filter != null) {
+            throw new IllegalStateException("Statistics cache does not support filters");
+        }
+        if (statisticsCache != null && chunkSize > 0) {
+            throw new IllegalStateException("Statistics cache does not support splitting files, "
+                    + "set the chunk size to 0");
+        }
+        if (statisticsCache != null) {
+            checkCollectorConsumers();
+        }
+        if (checkpoint != null) {
+            checkpoint.startSaving();
+        }
+        try {
+            processFiles(files);
+        } finally {
+            if (checkpoint != null) {
+                checkpoint.stopSaving();
+            }
+        }
+        if (checkpoint != null && !checkpoint.save()) {
+            System.err.println("Checkpoint was not saved after a segment was interrupted, "
+                    + "resuming processes the rest again");
+        }
+    }
+
+    /**
+     * Method to schedule and process the given JSON files, largest first
+     *
+     * @param files paths to the JSON files
+     * @throws IOException if an I/O error occurs or the run exceeds the timeout
+     */
+    private void processFiles(List<Path> files) throws IOException {
+        long start = System.nanoTime();
+        Map<Path, Long> sizes = largestFirst(files);
+        if (virtualThreads) {
+            List<FileSegment> segments = new ArrayList<>();
+            for (Path file : sizes.keySet()) {
+                segments.addAll(pendingSegments(file));
+            }
+            segments.sort(Comparator.comparingLong((FileSegment segment) -> segment.isWholeFile()
+                    ? sizes.get(segment.getFile())
+                    : segment.getLength()).reversed());
+            fileQueue.addAll(segments);
+            metrics.segmentsQueued(segments.size());
+        }
+        metrics.stageCompleted("schedule", System.nanoTime() - start);
+        start = System.nanoTime();
+        stopped = false;
+        runFailure.set(null);
+        if (virtualThreads) {
+            executorService = Executors.newVirtualThreadPerTaskExecutor();
+            processFilesOnVirtualThreads();
+            waitForCompletion();
+        } else if (sharedPool != null) {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (Path file : sizes.keySet()) {
+                tasks.add(sharedPool.submit(new FileTask(file)));
+            }
+            waitForCompletion(tasks);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+            executorService = pool;
+            for (Path file : sizes.keySet()) {
+                pool.execute(new FileTask(file));
+            }
+            waitForCompletion();
+        }
+        RuntimeException failure = runFailure.get();
+        if (failure != null) {
+            throw failure;
+        }
+        metrics.stageCompleted("process", System.nanoTime() - start);
+        mergeCollectorShards();
+        if (statisticsCache != null) {
+            statisticsCache.save();
+        }
+    }
+
+    /**
+     * Method to merge the per-thread counts of the statistics collectors
+     * once all files are processed, recording every merge in the metrics
+     */
+    private void mergeCollectorShards() {
+        for (int i = 0; i < attributes.length; i++) {
+            if (consumers[i] instanceof StatisticsCollector collector) {
+                reportShardMerge(attributes[i], collector);
+            }
+        }
+        for (RecordConsumer recordConsumer : recordConsumers) {
+            if (recordConsumer instanceof StatisticsCollector collector) {
+                reportShardMerge(String.join(",", recordConsumer.getAttributes()), collector);
+            }
+        }
+    }
+
+    /**
+     * Method to merge the per-thread counts of a collector and to record the merge
+     * in the metrics, unless the collector had nothing to merge
+     *
+     * @param attribute attribute of the collector
+     * @param collector collector to merge
+     */
+    private void reportShardMerge(String attribute, StatisticsCollector collector) {
+        int values = collector.mergeShards();
+        if (values > 0) {
+            metrics.collectorMerged(attribute, values);
+        }
+    }
+
+    /**
+     * Method to aggregate every attribute from the columns of a snapshot
+     * written by {@link SnapshotConverter} instead of parsing the JSON files.
+     * Only the column of each attribute is memory-mapped. Statistics collectors
+     * get the counts merged, other consumers get each value once per count.
+     * Record consumers and filters are not supported, as the columns are aggregated separately
+     *
+     * @param snapshotDirectory path to the snapshot directory
+     * @throws IOException if an I/O error occurs
+     */
+    public void parseSnapshot(Path snapshotDirectory) throws IOException {
+        if (recordConsumers.length > 0) {
+            throw new IllegalStateException("Snapshot aggregation does not support record consumers");
+        }
+        if (filter != null) {
+            throw new IllegalStateException("Snapshot aggregation does not support filters");
+        }
+        long start = System.nanoTime();
+        ColumnarSnapshot snapshot = new ColumnarSnapshot(snapshotDirectory);
+        for (int i = 0; i < attributes.length; i++) {
+            Map<String, Long> counts = snapshot.aggregate(attributes[i]);
+            if (consumers[i] instanceof StatisticsCollector collector) {
+                collector.merge(counts);
+                metrics.collectorMerged(attributes[i], counts.size());
+            } else {
+                Consumer<String> consumer = consumers[i];
+                counts.forEach((value, count) -> {
+                    for (long n = 0; n < count; n++) {
+                        consumer.accept(value);
+                    }
+                });
+            }
+        }
+        metrics.stageCompleted("snapshot", System.nanoTime() - start);
+    }
+
+    /**
+     * Method to check that all consumers are statistics collectors, which is required
+     * to merge cached statistics into them, and that none of them bounds its memory,
+     * as the cache holds the exact statistics of every file
+     */
+    private void checkCollectorConsumers() {
+        for (Consumer<String> consumer : consumers) {
+            if (!(consumer instanceof StatisticsCollector)) {
+                throw new IllegalStateException("Statistics cache requires StatisticsCollector consumers");
+            }
+            if (consumer instanceof TopKStatisticsCollector || consumer instanceof SpillingStatisticsCollector) {
+                throw new IllegalStateException("Statistics cache does not support top-K or spilling collectors");
+            }
+        }
     }
 
     /**
      * Method to list all JSON files in the given directory
      *
+     * @return paths to the JSON files
      * @throws IOException if an I/O error occurs
      */
-    private void listJsonFiles() throws IOException {
+    List<Path> findJsonFiles() throws IOException {
         try (Stream<Path> stream = Files.walk(directory)) {
-            List<Path> files = stream.filter(path -> path.toString().endsWith(".json")).toList();
-            fileQueue.addAll(files);
+            return stream.filter(FlightDataParser::isJsonFile).toList();
         }
     }
 
     /**
-     * Method to process JSON files using the executor service
+     * Method to check whether a path names a JSON file
+     *
+     * @param path path to check
+     * @return {@code true} if the path has the JSON or a newline-delimited JSON
+     * extension, optionally followed by a gzip or zstd extension
      */
-    private void processFiles() {
-        for (int i = 0; i < numberOfThreads; i++) {
-            executorService.submit(() -> {
-                Path file;
-                while ((file = fileQueue.poll()) != null) {
-                    try {
-                        processFile(file);
-                    } catch (Exception e) {
-                        System.err.println("Error processing file: " + e.getMessage());
-                    }
-                }
-            });
+    static boolean isJsonFile(Path path) {
+        String name = path.toString();
+        if (CompressedInput.isCompressed(path)) {
+            name = name.substring(0, name.lastIndexOf('.'));
         }
+        return name.endsWith(JSON_EXTENSION) || NDJSON_EXTENSIONS.stream().anyMatch(name::endsWith);
     }
 
     /**
-     * Method to process a JSON file
+     * Method to get the layout of a file known before reading it
+     *
+     * @param file path to the file
+     * @return configured layout, or the layout implied by the file name
+     * if the layout is detected automatically
+     */
+    private InputFormat formatOf(Path file) {
+        return inputFormat != InputFormat.AUTO ? inputFormat : InputFormat.ofFileName(file);
+    }
+
+    /**
+     * Method to split a JSON file into segments if splitting is enabled
      *
      * @param file path to the JSON file
+     * @return segments of the file
      * @throws IOException if an I/O error occurs
      */
-    void processFile(Path file) throws IOException {
-        try (
-                BufferedReader reader = Files.newBufferedReader(file);
-                JsonParser parser = factory.createParser(reader)
-        ) {
-            if (parser.nextToken() != JsonToken.START_ARRAY) {
-                throw new IllegalStateException("Expected content to be an array");
-            }
-            while (parser.nextToken() != JsonToken.END_ARRAY) {
-                if (parser.currentToken() == JsonToken.START_OBJECT) {
-                    processJsonObject(parser);
-                }
+    private List<FileSegment> splitFile(Path file) throws IOException {
+        if (chunkSize <= 0 || CompressedInput.isCompressed(file)
+                || Files.size(file) <= chunkSize) {
+            return List.of(FileSegment.wholeFile(file));
+        }
+        InputFormat format = formatOf(file);
+        if (format == InputFormat.AUTO) {
+            try (PushbackInputStream input = new PushbackInputStream(Files.newInputStream(file))) {
+                format = InputFormat.detect(input);
+            }
+        }
+        return format == InputFormat.NDJSON
+                ? new NdjsonSplitter(chunkSize).split(file)
+                : new JsonArraySplitter(chunkSize).split(file);
+    }
+
+    /**
+     * Method to split a JSON file into the segments that are still to be processed,
+     * leaving out the segments recorded in the checkpoint
+     *
+     * @param file path to the JSON file
+     * @return segments of the file that have not been processed
+     * @throws IOException if an I/O error occurs
+     */
+    private List<FileSegment> pendingSegments(Path file) throws IOException {
+        if (checkpoint == null) {
+            return splitFile(file);
+        }
+        if (checkpoint.isFileCompleted(file)) {
+            return List.of();
+        }
+        List<FileSegment> segments = new ArrayList<>();
+        for (FileSegment segment : splitFile(file)) {
+            if (!checkpoint.isCompleted(segment)) {
+                segments.add(segment);
             }
         }
+        return segments;
     }
 
     /**
-     * Method to process a JSON object, delegating the
-     * processing of the attribute value to the consumer
+     * Method to order files by size, largest first, so the files that take
+     * longest are started first and do not run on alone at the end
      *
-     * @param parser JSON parser
+     * @param files paths to the files
+     * @return sizes of the files in bytes, keyed by file in descending order of size
      * @throws IOException if an I/O error occurs
      */
-    private void processJsonObject(JsonParser parser) throws IOException {
-        String currentFieldName = null;
-        while (parser.nextToken() != JsonToken.END_OBJECT) {
-            JsonToken token = parser.currentToken();
-            if (token == JsonToken.FIELD_NAME) {
-                currentFieldName = parser.getCurrentName();
-            } else if (
-                    token != null && currentFieldName != null && currentFieldName.equals(attribute)
-            ) {
-                String value = parser.getText();
-                valueConsumer.accept(value);
+    static Map<Path, Long> largestFirst(List<Path> files) throws IOException {
+        Map<Path, Long> sizes = new HashMap<>();
+        for (Path file : files) {
+            sizes.put(file, Files.size(file));
+        }
+        Map<Path, Long> ordered = new LinkedHashMap<>();
+        sizes.entrySet().stream()
+                .sorted(Map.Entry.<Path, Long>comparingByValue().reversed())
+                .forEach(entry -> ordered.put(entry.getKey(), entry.getValue()));
+        return ordered;
+    }
+
+    /**
+     * Method to process a segment on a worker of a fork/join pool, reporting its failure
+     * instead of throwing it. The worker binds a {@link ShardSlot} while it processes
+     * the segment, so the collectors keep their shards in the slots and no shard stays
+     * on the workers of a shared pool once the collectors of the run are discarded
+     *
+     * @param segment segment to process
+     */
+    private void processSegmentOrReport(FileSegment segment) {
+        if (stopped) {
+            return;
+        }
+        boolean bound = ShardSlot.bind();
+        try {
+            beginSegment();
+            boolean processed = false;
+            try {
+                processSegment(segment);
+                processed = true;
+            } finally {
+                endSegment(segment, processed);
+            }
+        } catch (Exception e) {
+            System.err.println("Error processing file: " + e.getMessage());
+        } finally {
+            if (bound) {
+                ShardSlot.unbind();
             }
         }
     }
 
     /**
-     * Method to wait for the completion of all threads in the executor service
+     * Method to process JSON files on virtual threads, one thread per segment.
+     * A thread binds a {@link ShardSlot} while it holds a parse permit, so the
+     * collectors keep as many shards as files parsed at the same time
+     * instead of one per segment
      */
-    private void waitForCompletion() {
-        executorService.shutdown();
+    private void processFilesOnVirtualThreads() {
+        Semaphore parsePermits = new Semaphore(numberOfThreads);
+        Semaphore openFilePermits = new Semaphore(maxOpenFiles);
+        Semaphore prefetchPermits = new Semaphore(PREFETCH_BUDGET_KILOBYTES, true);
+        FileSegment segment;
+        while ((segment = fileQueue.poll()) != null) {
+            FileSegment task = segment;
+            executorService.submit(() -> {
+                try {
+                    processSegment(task, parsePermits, openFilePermits, prefetchPermits);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    System.err.println("Error processing file: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Method to process a segment of a JSON file on a virtual thread. Small
+     * whole files are read into memory holding only an open file permit and
+     * are parsed holding only a parse permit, other segments are
+     * processed holding both permits. The bytes of a small file are held
+     * from its read until its parse within the prefetch budget
+     *
+     * @param segment         segment to process
+     * @param parsePermits    permits of the files parsed at the same time
+     * @param openFilePermits permits of the files open at the same time
+     * @param prefetchPermits permits of the kilobytes read into memory and not parsed yet
+     * @throws IOException          if an I/O error occurs
+     * @throws InterruptedException if the thread is interrupted while waiting for a permit
+     */
+    private void processSegment(FileSegment segment, Semaphore parsePermits, Semaphore openFilePermits,
+                                Semaphore prefetchPermits) throws IOException, InterruptedException {
+        boolean measured = startSegment();
         try {
-            if (!executorService.awaitTermination(1, TimeUnit.HOURS)) {
-                executorService.shutdownNow();
+            processSegmentWithPermits(segment, parsePermits, openFilePermits, prefetchPermits);
+            if (measured) {
+                finishSegment(segment);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (measured) {
+                metrics.segmentFailed(segment.getFile(), e);
+            }
+            throw e;
+        } finally {
+            if (measured) {
+                segmentStats.remove();
+            }
+        }
+    }
+
+    /**
+     * Method to process a segment of a JSON file on a virtual thread, acquiring
+     * the permits it needs
+     *
+     * @param segment         segment to process
+     * @param parsePermits    permits of the files parsed at the same time
+     * @param openFilePermits permits of the files open at the same time
+     * @param prefetchPermits permits of the kilobytes read into memory and not parsed yet
+     * @throws IOException          if an I/O error occurs
+     * @throws InterruptedException if the thread is interrupted while waiting for a permit
+     */
+    private void processSegmentWithPermits(FileSegment segment, Semaphore parsePermits, Semaphore openFilePermits,
+                                           Semaphore prefetchPermits) throws IOException, InterruptedException {
+        long size = Files.size(segment.getFile());
+        if (segment.isWholeFile() && statisticsCache == null && !CompressedInput.isCompressed(segment.getFile())
+                && size <= PREFETCH_LIMIT) {
+            int kilobytes = (int) ((size + 1023) / 1024);
+            acquire(prefetchPermits, kilobytes);
+            try {
+                byte[] content;
+                acquire(openFilePermits, 1);
+                try {
+                    long start = System.nanoTime();
+                    content = Files.readAllBytes(segment.getFile());
+                    if (metrics.isEnabled()) {
+                        segmentStats.get().readNanos += System.nanoTime() - start;
+                    }
+                } finally {
+                    openFilePermits.release();
+                }
+                acquire(parsePermits, 1);
+                boolean bound = ShardSlot.bind();
+                try {
+                    beginSegment();
+                    boolean processed = false;
+                    try {
+                        processContent(segment.getFile(), content);
+                        processed = true;
+                    } finally {
+                        endSegment(segment, processed);
+                    }
+                } finally {
+                    if (bound) {
+                        ShardSlot.unbind();
+                    }
+                    parsePermits.release();
+                }
+            } finally {
+                prefetchPermits.release(kilobytes);
+            }
+            return;
+        }
+        acquire(openFilePermits, 1);
+        try {
+            acquire(parsePermits, 1);
+            boolean bound = ShardSlot.bind();
+            try {
+                beginSegment();
+                boolean processed = false;
+                try {
+                    processSegment(segment);
+                    processed = true;
+                } finally {
+                    endSegment(segment, processed);
+                }
+            } finally {
+                if (bound) {
+                    ShardSlot.unbind();
+                }
+                parsePermits.release();
+            }
+        } finally {
+            openFilePermits.release();
+        }
+    }
+
+    /**
+     * Method to process a segment of a JSON file
+     *
+     * @param segment segment to process
+     * @throws IOException if an I/O error occurs
+     */
+    void processSegment(FileSegment segment) throws IOException {
+        boolean measured = startSegment();
+        try {
+            if (segment.isWholeFile() && statisticsCache != null) {
+                processFileWithCache(segment.getFile());
+            } else if (segment.isWholeFile()) {
+                processFile(segment.getFile());
+            } else {
+                processFileRange(segment.getFile(), segment.getOffset(), segment.getLength(), segment.getFormat());
+            }
+            if (measured) {
+                finishSegment(segment);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (measured) {
+                metrics.segmentFailed(segment.getFile(), e);
+            }
+            throw e;
+        } finally {
+            if (measured) {
+                segmentStats.remove();
+            }
+        }
+    }
+
+    /**
+     * Method to start processing a segment recorded in the checkpoint, if it is set,
+     * waiting while the checkpoint is saved
+     *
+     * @throws IOException if the checkpoint is sealed or the thread is interrupted while waiting
+     */
+    private void beginSegment() throws IOException {
+        if (checkpoint != null) {
+            checkpoint.beginSegment();
+        }
+    }
+
+    /**
+     * Method to finish a segment started with {@link #beginSegment()} in the checkpoint, if it is set.
+     * A segment that failed once the run was stopped is taken as interrupted by the stop, any
+     * other one is recorded, like a failed file is reported and skipped in a run without a checkpoint
+     *
+     * @param segment   segment that was processed
+     * @param processed {@code true} if the segment was processed successfully
+     * @throws IOException if an I/O error occurs
+     */
+    private void endSegment(FileSegment segment, boolean processed) throws IOException {
+        if (checkpoint != null) {
+            checkpoint.endSegment(segment, !processed && stopped);
+        }
+    }
+
+    /**
+     * Method to start measuring a segment on the current thread
+     *
+     * @return {@code true} if the segment is measured by the caller, {@code false} if
+     * metrics are disabled or the segment is already measured by an outer call
+     */
+    private boolean startSegment() {
+        if (!metrics.isEnabled()) {
+            return false;
+        }
+        SegmentStats stats = segmentStats.get();
+        if (stats.active) {
+            return false;
+        }
+        stats.reset();
+        stats.active = true;
+        return true;
+    }
+
+    /**
+     * Method to report the measurements of the segment processed by the current thread
+     *
+     * @param segment processed segment
+     * @throws IOException if an I/O error occurs
+     */
+    private void finishSegment(FileSegment segment) throws IOException {
+        SegmentStats stats = segmentStats.get();
+        long bytes = segment.isWholeFile() ? Files.size(segment.getFile()) : segment.getLength();
+        metrics.segmentProcessed(bytes, stats.records, stats.readNanos, stats.waitNanos,
+                System.nanoTime() - stats.startNanos);
+    }
+
+    /**
+     * Method to acquire permits, measuring the time spent waiting for them
+     *
+     * @param permits permits to acquire some of
+     * @param count   number of permits to acquire
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private void acquire(Semaphore permits, int count) throws InterruptedException {
+        if (!metrics.isEnabled()) {
+            permits.acquire(count);
+            return;
+        }
+        long start = System.nanoTime();
+        permits.acquire(count);
+        segmentStats.get().waitNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Method to measure the time spent reading a stream, if metrics are enabled
+     *
+     * @param input stream to read from
+     * @return stream measuring its reads, or the given stream
+     */
+    private InputStream timed(InputStream input) {
+        return metrics.isEnabled() ? new TimedInputStream(input, segmentStats.get()) : input;
+    }
+
+    /**
+     * Method to count flight objects read from the current segment, if metrics are enabled
+     *
+     * @param records number of flight objects
+     */
+    private void countRecords(long records) {
+        if (metrics.isEnabled()) {
+            segmentStats.get().records += records;
+        }
+    }
+
+    /**
+     * Method to process a JSON file using the statistics cache. Cached statistics
+     * of an unchanged file are merged into the collectors, otherwise the file is
+     * parsed into fresh collectors whose statistics are cached and then merged
+     *
+     * @param file path to the JSON file
+     * @throws IOException if an I/O error occurs
+     */
+    private void processFileWithCache(Path file) throws IOException {
+        Optional<Map<String, Map<String, Long>>> cached = statisticsCache.get(file, Set.of(attributes));
+        if (cached.isPresent()) {
+            for (int i = 0; i < attributes.length; i++) {
+                ((StatisticsCollector) consumers[i]).merge(cached.get().get(attributes[i]));
+                metrics.collectorMerged(attributes[i], cached.get().get(attributes[i]).size());
+            }
+            return;
+        }
+        CachedFile fingerprint = statisticsCache.fingerprint(file);
+        StatisticsCollector[] partials = new StatisticsCollector[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            partials[i] = new StatisticsCollector();
+        }
+        processFile(file, partials);
+        Map<String, Map<String, Long>> statistics = new HashMap<>();
+        for (int i = 0; i < attributes.length; i++) {
+            statistics.put(attributes[i], partials[i].getStatistics());
+            ((StatisticsCollector) consumers[i]).merge(partials[i].getStatistics());
+            metrics.collectorMerged(attributes[i], partials[i].getStatistics().size());
+        }
+        statisticsCache.put(file, fingerprint, statistics);
+    }
+
+    /**
+     * Method to process a JSON file
+     *
+     * @param file path to the JSON file
+     * @throws IOException if an I/O error occurs
+     */
+    void processFile(Path file) throws IOException {
+        processFile(file, consumers);
+    }
+
+    /**
+     * Returns the pool decompressing the compressed files, creating it on first use
+     *
+     * @return decompression pool
+     */
+    private synchronized ExecutorService decompressors() {
+        if (decompressionPool == null) {
+            decompressionPool = newDecompressionPool(numberOfThreads);
+        }
+        return decompressionPool;
+    }
+
+    /**
+     * Method to create a pool decompressing compressed files, to be shared by
+     * the parsers of several runs. Its threads are daemons that stop when idle
+     *
+     * @param numberOfThreads maximum number of threads decompressing at the same time
+     * @return decompression pool
+     */
+    public static ExecutorService newDecompressionPool(int numberOfThreads) {
+        return CompressedInput.newDecompressionPool(numberOfThreads);
+    }
+
+    /**
+     * Method to process a JSON file. Files up to the mapping limit are
+     * memory-mapped, bigger ones are streamed from the file channel;
+     * in both cases Jackson parses the raw UTF-8 bytes. Compressed files
+     * are decompressed on other threads while they are parsed
+     *
+     * @param file          path to the JSON file
+     * @param fileConsumers consumers of the attribute values, indexed like the attributes
+     * @throws IOException if an I/O error occurs
+     */
+    private void processFile(Path file, Consumer<String>[] fileConsumers) throws IOException {
+        if (CompressedInput.isCompressed(file)) {
+            try (InputStream input = CompressedInput.open(file, decompressors(), numberOfThreads)) {
+                processInput(file, timed(input), fileConsumers);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            InputStream input = isMappable(size)
+                    ? new ByteBufferBackedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size))
+                    : Channels.newInputStream(channel);
+            processInput(file, timed(input), fileConsumers);
+        }
+    }
+
+    /**
+     * Method to process the content of a JSON file read from a stream,
+     * detecting its layout from the first significant character
+     * if it is not known from the configuration or the file name
+     *
+     * @param file          path to the JSON file
+     * @param input         stream of the content of the file
+     * @param fileConsumers consumers of the attribute values, indexed like the attributes
+     * @throws IOException if an I/O error occurs
+     */
+    private void processInput(Path file, InputStream input, Consumer<String>[] fileConsumers) throws IOException {
+        InputFormat format = formatOf(file);
+        if (format == InputFormat.AUTO) {
+            PushbackInputStream pushbackInput = new PushbackInputStream(input);
+            format = InputFormat.detect(pushbackInput);
+            input = pushbackInput;
+        }
+        if (format == InputFormat.NDJSON) {
+            processLines(input, fileConsumers);
+            return;
+        }
+        try (JsonParser parser = factory.createParser(input)) {
+            processJsonArray(parser, fileConsumers);
+        }
+    }
+
+    /**
+     * Method to process the content of a JSON file read into memory
+     *
+     * @param file    path to the JSON file
+     * @param content content of the file
+     * @throws IOException if an I/O error occurs
+     */
+    private void processContent(Path file, byte[] content) throws IOException {
+        InputFormat format = formatOf(file);
+        if (format == InputFormat.NDJSON
+                || format == InputFormat.AUTO && InputFormat.detect(content) == InputFormat.NDJSON) {
+            processLines(new ByteArrayInputStream(content), consumers);
+            return;
+        }
+        try (JsonParser parser = factory.createParser(content)) {
+            processJsonArray(parser, consumers);
+        }
+    }
+
+    /**
+     * Method to process a byte range of a JSON file holding top-level
+     * array elements or whole lines of a newline-delimited JSON file.
+     * Array elements are wrapped into brackets, so they can be
+     * parsed as an array on their own. Ranges up to the mapping limit are
+     * memory-mapped, bigger ones are read into memory
+     *
+     * @param file   path to the JSON file
+     * @param offset offset of the first byte of the range
+     * @param length number of bytes in the range
+     * @param format layout of the content of the range
+     * @throws IOException if an I/O error occurs
+     */
+    void processFileRange(Path file, long offset, long length, InputFormat format) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long start = System.nanoTime();
+            InputStream input = timed(isMappable(length)
+                    ? new ByteBufferBackedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, offset, length))
+                    : new ByteArrayInputStream(readRange(channel, file, offset, length)));
+            if (metrics.isEnabled() && !isMappable(length)) {
+                segmentStats.get().readNanos += System.nanoTime() - start;
+            }
+            if (format == InputFormat.NDJSON) {
+                processLines(input, consumers);
+                return;
+            }
+            try (JsonParser parser = factory.createParser(wrapInArray(input))) {
+                processJsonArray(parser, consumers);
+            }
+        }
+    }
+
+    /**
+     * Method to process newline-delimited JSON, one flight object per line.
+     * Lines are read into a reused buffer and each one is parsed from it on its
+     * own, so a malformed line is skipped and counted without affecting the
+     * other lines. Values of a line reach the consumers only once the whole
+     * line has been parsed. Blank lines are ignored
+     *
+     * @param input         stream of the lines
+     * @param lineConsumers consumers of the attribute values, indexed like the attributes
+     * @throws IOException if an I/O error occurs
+     */
+    private void processLines(InputStream input, Consumer<String>[] lineConsumers) throws IOException {
+        LineValues values = new LineValues(newConsumerArray(attributes.length));
+        byte[] buffer = new byte[LINE_BUFFER_SIZE];
+        int start = 0;
+        int end = 0;
+        int scanned = 0;
+        boolean eof = false;
+        long records = 0;
+        while (true) {
+            int lineEnd = -1;
+            for (int i = scanned; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    lineEnd = i;
+                    break;
+                }
+            }
+            if (lineEnd >= 0) {
+                records += processLine(buffer, start, lineEnd - start, values, lineConsumers) ? 1 : 0;
+                start = lineEnd + 1;
+                scanned = start;
+                continue;
+            }
+            if (eof) {
+                records += processLine(buffer, start, end - start, values, lineConsumers) ? 1 : 0;
+                countRecords(records);
+                return;
+            }
+            scanned = end;
+            if (end == buffer.length) {
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    scanned -= start;
+                    start = 0;
+                } else {
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                }
+            }
+            int read = input.read(buffer, end, buffer.length - end);
+            if (read < 0) {
+                eof = true;
+            } else {
+                end += read;
+            }
+        }
+    }
+
+    /**
+     * Method to process one line of a newline-delimited JSON file. The line must
+     * hold exactly one object, otherwise it is counted as malformed and its
+     * values are discarded. Values of an object not passing the filter are discarded too
+     *
+     * @param buffer        buffer holding the line
+     * @param offset        offset of the first byte of the line
+     * @param length        number of bytes in the line, without the line feed
+     * @param values        buffer of the values of the line
+     * @param lineConsumers consumers of the attribute values, indexed like the attributes
+     * @return {@code true} if the line holds a flight object, whether it passed the filter or not
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean processLine(byte[] buffer, int offset, int length, LineValues values,
+                                Consumer<String>[] lineConsumers) throws IOException {
+        if (isBlank(buffer, offset, length)) {
+            return false;
+        }
+        try (JsonParser parser = factory.createParser(buffer, offset, length)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                boolean passed = true;
+                if (filter == null) {
+                    processJsonObject(parser, values.getDeferredConsumers());
+                } else {
+                    passed = processFilteredObject(parser, values.getDeferredConsumers());
+                }
+                if (parser.nextToken() == null) {
+                    if (passed) {
+                        startRecords();
+                        values.commit(lineConsumers);
+                        endRecords();
+                    } else {
+                        values.clear();
+                    }
+                    return true;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // the line is counted as malformed below
+        }
+        values.clear();
+        malformedLines.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Method to check whether a line holds only whitespace
+     *
+     * @param buffer buffer holding the line
+     * @param offset offset of the first byte of the line
+     * @param length number of bytes in the line
+     * @return {@code true} if the line is blank
+     */
+    private static boolean isBlank(byte[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            byte b = buffer[i];
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method to check whether a region of the given size should be memory-mapped
+     *
+     * @param size size of the region in bytes
+     * @return {@code true} if the region is not bigger than the mapping limit
+     */
+    private boolean isMappable(long size) {
+        return mappingLimit > 0 && size <= Math.min(mappingLimit, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Method to read a byte range of a file into memory
+     *
+     * @param channel channel to read the file from
+     * @param file    path to the file, used in error messages
+     * @param offset  offset of the first byte of the range
+     * @param length  number of bytes in the range
+     * @return content of the range
+     * @throws IOException if an I/O error occurs
+     */
+    private static byte[] readRange(FileChannel channel, Path file, long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Segment is too large: " + length + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file " + file);
+            }
+            position += read;
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Method to wrap the content of a segment into array brackets
+     *
+     * @param content content of the segment
+     * @return stream of the content enclosed in brackets
+     */
+    private static InputStream wrapInArray(InputStream content) {
+        return new SequenceInputStream(Collections.enumeration(List.of(
+                new ByteArrayInputStream(new byte[]{'['}),
+                content,
+                new ByteArrayInputStream(new byte[]{']'})
+        )));
+    }
+
+    /**
+     * Method to process a JSON array of flight objects. With a filter, the
+     * values of each object are held back until the object has passed it
+     *
+     * @param parser          JSON parser positioned before the array
+     * @param objectConsumers consumers of the attribute values, indexed like the attributes
+     * @throws IOException if an I/O error occurs
+     */
+    private void processJsonArray(JsonParser parser, Consumer<String>[] objectConsumers) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IllegalStateException("Expected content to be an array");
+        }
+        LineValues values = filter == null ? null : new LineValues(newConsumerArray(attributes.length));
+        long records = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                continue;
+            }
+            records++;
+            if (values == null) {
+                startRecords();
+                processJsonObject(parser, objectConsumers);
+                endRecords();
+            } else if (processFilteredObject(parser, values.getDeferredConsumers())) {
+                startRecords();
+                values.commit(objectConsumers);
+                endRecords();
+            } else {
+                values.clear();
+            }
+        }
+        countRecords(records);
+    }
+
+    /**
+     * Method to start the next flight object of every record consumer
+     */
+    private void startRecords() {
+        for (RecordConsumer recordConsumer : recordConsumers) {
+            recordConsumer.startRecord();
+        }
+    }
+
+    /**
+     * Method to end the current flight object of every record consumer
+     */
+    private void endRecords() {
+        for (RecordConsumer recordConsumer : recordConsumers) {
+            recordConsumer.endRecord();
+        }
+    }
+
+    /**
+     * Method to process a JSON object, delegating the processing
+     * of each attribute value to the consumer of the attribute.
+     * Values of other fields are skipped without being decoded
+     *
+     * @param parser          JSON parser
+     * @param objectConsumers consumers of the attribute values, indexed like the attributes
+     * @throws IOException if an I/O error occurs
+     */
+    private void processJsonObject(JsonParser parser, Consumer<String>[] objectConsumers) throws IOException {
+        long remaining = stopAfterAllAttributes && attributes.length < Long.SIZE ? (1L << attributes.length) - 1 : -1;
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            int index = indexOfAttribute(fieldName);
+            JsonToken token = parser.nextToken();
+            if (index < 0) {
+                parser.skipChildren();
+            } else if (token == JsonToken.START_ARRAY) {
+                consumeArrayValues(parser, objectConsumers[index]);
+            } else if (token.isScalarValue()) {
+                consumeValue(parser, objectConsumers[index]);
+            } else {
+                parser.skipChildren();
+            }
+            if (index >= 0 && remaining > 0 && (remaining &= ~(1L << index)) == 0) {
+                skipRemainingFields(parser);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Method to process a JSON object, checking the filter conditions on each
+     * attribute value and passing the values of consumed attributes to
+     * the deferred consumers, which hold them back until the outcome is known.
+     * As soon as a condition fails on a value the remaining fields are skipped
+     * without being matched. Values of other fields are skipped without being decoded
+     *
+     * @param parser            JSON parser
+     * @param deferredConsumers consumers holding back the attribute values, indexed like the attributes
+     * @return {@code true} if every condition of the filter holds for the object
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean processFilteredObject(JsonParser parser, Consumer<String>[] deferredConsumers)
+            throws IOException {
+        long remaining = stopAfterAllAttributes && attributes.length < Long.SIZE ? (1L << attributes.length) - 1 : -1;
+        long satisfied = 0;
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            int index = indexOfAttribute(fieldName);
+            JsonToken token = parser.nextToken();
+            if (index < 0) {
+                parser.skipChildren();
+                continue;
+            }
+            long conditions = attributeConditions[index];
+            CharBufferConsumer consumer = consumers[index] == null
+                    ? null
+                    : (CharBufferConsumer) deferredConsumers[index];
+            long matched = 0;
+            if (token == JsonToken.START_ARRAY) {
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token.isScalarValue()) {
+                        matched |= filterValue(parser, conditions, consumer);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else if (token.isScalarValue()) {
+                matched = filterValue(parser, conditions, consumer);
+            } else {
+                parser.skipChildren();
+            }
+            if (matched != conditions) {
+                skipRemainingFields(parser);
+                return false;
+            }
+            satisfied |= matched;
+            if (remaining > 0 && (remaining &= ~(1L << index)) == 0) {
+                skipRemainingFields(parser);
+                break;
+            }
+        }
+        return satisfied == filter.getAllConditions();
+    }
+
+    /**
+     * Method to check the current value against filter conditions
+     * and to pass it to the consumer, without creating a String
+     *
+     * @param parser     JSON parser positioned at the value
+     * @param conditions mask of the conditions on the attribute
+     * @param consumer   consumer of the value, {@code null} if the attribute is only filtered on
+     * @return mask of the conditions that hold for the value
+     * @throws IOException if an I/O error occurs
+     */
+    private long filterValue(JsonParser parser, long conditions, CharBufferConsumer consumer) throws IOException {
+        char[] buffer = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        if (consumer != null) {
+            consumer.accept(buffer, offset, length);
+        }
+        return conditions == 0 ? 0 : filter.test(conditions, buffer, offset, length);
+    }
+
+    /**
+     * Method to find the attribute matching a field name
+     *
+     * @param fieldName name of the field
+     * @return index of the attribute, or {@code -1} if no attribute matches
+     */
+    private int indexOfAttribute(String fieldName) {
+        for (int i = 0; i < attributes.length; i++) {
+            if (attributes[i] == fieldName) {
+                return i;
+            }
+        }
+        if (!factory.isEnabled(JsonFactory.Feature.INTERN_FIELD_NAMES)) {
+            for (int i = 0; i < attributes.length; i++) {
+                if (attributes[i].equals(fieldName)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method to pass each scalar element of an array value to the consumer,
+     * nested arrays and objects are skipped
+     *
+     * @param parser        JSON parser positioned at the start of the array
+     * @param valueConsumer consumer of the elements
+     * @throws IOException if an I/O error occurs
+     */
+    private void consumeArrayValues(JsonParser parser, Consumer<String> valueConsumer) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token.isScalarValue()) {
+                consumeValue(parser, valueConsumer);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Method to skip the remaining fields of an object
+     *
+     * @param parser JSON parser positioned inside the object
+     * @throws IOException if an I/O error occurs
+     */
+    private static void skipRemainingFields(JsonParser parser) throws IOException {
+        while (parser.nextToken() != JsonToken.END_OBJECT) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Method to pass the current value to the consumer. Consumers that
+     * accept character buffers get the parser's buffer without
+     * a String being created for the value
+     *
+     * @param parser        JSON parser positioned at the value
+     * @param valueConsumer consumer of the value
+     * @throws IOException if an I/O error occurs
+     */
+    private void consumeValue(JsonParser parser, Consumer<String> valueConsumer) throws IOException {
+        if (valueConsumer instanceof CharBufferConsumer bufferConsumer) {
+            bufferConsumer.accept(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        } else {
+            valueConsumer.accept(parser.getText());
+        }
+    }
+
+    /**
+     * Method to wait for the completion of all threads in the executor service.
+     * If the run exceeds the timeout or the waiting thread is interrupted, the
+     * threads are interrupted and the checkpoint is sealed, so it keeps the
+     * segments processed so far
+     *
+     * @throws IOException if the run exceeds the timeout or the waiting thread is interrupted
+     */
+    private void waitForCompletion() throws IOException {
+        executorService.shutdown();
+        try {
+            if (executorService.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                return;
+            }
+            stop();
+            throw new IOException(timeoutMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop();
+            throw new InterruptedIOException("Interrupted while parsing");
+        }
+    }
+
+    /**
+     * Method to wait for the tasks of a run on the shared pool to complete within the timeout
+     *
+     * @param tasks tasks of the run
+     * @throws IOException if the run exceeds the timeout or the thread is interrupted
+     */
+    private void waitForCompletion(List<ForkJoinTask<?>> tasks) throws IOException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            for (ForkJoinTask<?> task : tasks) {
+                task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            stop(tasks);
+            throw new IOException(timeoutMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop(tasks);
+            throw new InterruptedIOException("Interrupted while parsing");
+        } catch (ExecutionException e) {
+            throw new IOException("Error processing files", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the message of a run that exceeded the timeout
+     *
+     * @return message of the failure
+     */
+    private String timeoutMessage() {
+        return "Parsing did not complete within " + timeout
+                + (checkpoint != null ? ", resume from the checkpoint" : "");
+    }
+
+    /**
+     * Method to interrupt the threads and then to seal the checkpoint, if it is set
+     *
+     * @throws IOException if the checkpoint cannot be saved
+     */
+    private void stop() throws IOException {
+        stopped = true;
+        executorService.shutdownNow();
+        sealCheckpoint();
+    }
+
+    /**
+     * Method to cancel the tasks of a run on the shared pool, whose workers
+     * are left running, and then to seal the checkpoint, if it is set
+     *
+     * @param tasks tasks of the run
+     * @throws IOException if the checkpoint cannot be saved
+     */
+    private void stop(List<ForkJoinTask<?>> tasks) throws IOException {
+        stopped = true;
+        tasks.forEach(task -> task.cancel(true));
+        sealCheckpoint();
+    }
+
+    /**
+     * Method to seal the checkpoint, if it is set, giving the segments in progress
+     * {@link #STOP_GRACE} to finish. If they do not or are interrupted, the last saved checkpoint is kept
+     *
+     * @throws IOException if the checkpoint cannot be saved
+     */
+    private void sealCheckpoint() throws IOException {
+        if (checkpoint != null && !checkpoint.seal(STOP_GRACE)) {
+            System.err.println("Checkpoint was left as last saved, "
+                    + "as segments in progress did not finish or were interrupted");
+        }
+    }
+
+    /**
+     * Task splitting one file into segments on a worker of the fork/join pool
+     * and processing the segments as a {@link SegmentsTask}. A file that does
+     * not match the checkpoint stops the run and fails it, like it does on
+     * virtual threads, where all files are split before the run starts
+     */
+    @SuppressWarnings("serial")
+    private class FileTask extends RecursiveAction {
+
+        /**
+         * Path to the JSON file
+         */
+        private final Path file;
+
+        /**
+         * Constructor, configures the file of the task
+         *
+         * @param file path to the JSON file
+         */
+        FileTask(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        protected void compute() {
+            List<FileSegment> segments;
+            try {
+                segments = pendingSegments(file);
+            } catch (IllegalStateException e) {
+                runFailure.compareAndSet(null, e);
+                stopped = true;
+                return;
+            } catch (Exception e) {
+                System.err.println("Error processing file: " + e.getMessage());
+                return;
+            }
+            metrics.segmentsQueued(segments.size());
+            new SegmentsTask(segments, 0, segments.size()).compute();
+        }
+    }
+
+    /**
+     * Task processing a run of segments of one file. A run of several segments
+     * is halved and the second half is forked, so idle workers of the pool
+     * steal the biggest remaining ranges of the file
+     */
+    @SuppressWarnings("serial")
+    private class SegmentsTask extends RecursiveAction {
+
+        /**
+         * Segments of the file
+         */
+        private final List<FileSegment> segments;
+
+        /**
+         * Index of the first segment of the run
+         */
+        private final int from;
+
+        /**
+         * Index after the last segment of the run
+         */
+        private final int to;
+
+        /**
+         * Constructor, configures the run of segments
+         *
+         * @param segments segments of the file
+         * @param from     index of the first segment of the run
+         * @param to       index after the last segment of the run
+         */
+        SegmentsTask(List<FileSegment> segments, int from, int to) {
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                processSegmentOrReport(segments.get(from));
+            } else if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SegmentsTask(segments, from, middle), new SegmentsTask(segments, middle, to));
+            }
+        }
+    }
+
+    /**
+     * Consumer routing the values of one attribute to a record consumer
+     */
+    private static class RecordAttributeConsumer implements CharBufferConsumer {
+
+        /**
+         * Consumer of the values of the flight object
+         */
+        private final RecordConsumer recordConsumer;
+
+        /**
+         * Position of the attribute in the attributes of the record consumer
+         */
+        private final int attribute;
+
+        /**
+         * Constructor, configures the record consumer and the attribute
+         *
+         * @param recordConsumer consumer of the values of the flight object
+         * @param attribute      position of the attribute in the attributes of the record consumer
+         */
+        RecordAttributeConsumer(RecordConsumer recordConsumer, int attribute) {
+            this.recordConsumer = recordConsumer;
+            this.attribute = attribute;
+        }
+
+        @Override
+        public void accept(char[] buffer, int offset, int length) {
+            recordConsumer.accept(attribute, buffer, offset, length);
+        }
+
+        @Override
+        public void accept(String value) {
+            recordConsumer.accept(attribute, value.toCharArray(), 0, value.length());
+        }
+    }
+
+    /**
+     * Consumer passing the values of one attribute to several consumers. A String
+     * is only created for consumers that do not accept character buffers
+     */
+    private static class FanOutConsumer implements CharBufferConsumer {
+
+        /**
+         * Consumers of the values
+         */
+        private final Consumer<String>[] targets;
+
+        /**
+         * Constructor, configures the consumers of the values
+         *
+         * @param targets consumers of the values
+         */
+        FanOutConsumer(Consumer<String>[] targets) {
+            this.targets = targets;
+        }
+
+        @Override
+        public void accept(char[] buffer, int offset, int length) {
+            String value = null;
+            for (Consumer<String> target : targets) {
+                if (target instanceof CharBufferConsumer bufferConsumer) {
+                    bufferConsumer.accept(buffer, offset, length);
+                } else {
+                    if (value == null) {
+                        value = new String(buffer, offset, length);
+                    }
+                    target.accept(value);
+                }
+            }
+        }
+
+        @Override
+        public void accept(String value) {
+            for (Consumer<String> target : targets) {
+                target.accept(value);
             }
-        } catch (InterruptedException e) {
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
         }
     }
-}
\ No newline at end of file
+}
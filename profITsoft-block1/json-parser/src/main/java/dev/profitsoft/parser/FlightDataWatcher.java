@@ -0,0 +1,360 @@
+package dev.profitsoft.parser;
+
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.writer.StatisticsSink;
+import dev.profitsoft.writer.XMLStatisticsWriter;
+import dev.profitsoft.writer.XmlStatisticsSink;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Class to keep statistics of a directory up to date while new JSON files arrive.
+ * <p>Files present at start that have not been modified for the settle delay are
+ * parsed once by the {@link FlightDataParser}, afterwards the directory tree is
+ * watched with a {@link WatchService}. A new file, or a file that was still being
+ * written at start, is parsed as soon as it is complete, that is when no events
+ * have been reported for it and its size has not changed for the settle delay,
+ * and its values are added to the long-lived collectors. The XML statistics are
+ * rewritten at most once per write interval, only if something has changed.</p>
+ * <p>Files are parsed and statistics are written on the thread running the
+ * watcher, so the collectors are never read while values are consumed.
+ * Changes to files that have already been parsed are ignored.</p>
+ */
+public class FlightDataWatcher implements Closeable {
+
+    /**
+     * Default time a file must stay unchanged before it is parsed
+     */
+    public static final long DEFAULT_SETTLE_MILLIS = 500;
+
+    /**
+     * Default minimum time between two rewrites of the statistics
+     */
+    public static final long DEFAULT_WRITE_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Parser of the watched directory
+     */
+    private final FlightDataParser parser;
+
+    /**
+     * Collectors consuming the values of the parser, keyed by attribute
+     */
+    private final Map<String, ? extends StatisticsCollector> collectors;
+
+    /**
+     * Location of the statistics files
+     */
+    private final Path statisticsLocation;
+
+    /**
+     * Watch service of the directory tree
+     */
+    private final WatchService watchService;
+
+    /**
+     * Directories of the registered watch keys
+     */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * Files waiting to be complete, keyed by path
+     */
+    private final Map<Path, PendingFile> pendingFiles = new HashMap<>();
+
+    /**
+     * Files that have already been parsed
+     */
+    private final Set<Path> parsedFiles = new HashSet<>();
+
+    /**
+     * Time a file must stay unchanged before it is parsed
+     */
+    @Getter
+    @Setter
+    private long settleMillis = DEFAULT_SETTLE_MILLIS;
+
+    /**
+     * Minimum time between two rewrites of the statistics
+     */
+    @Getter
+    @Setter
+    private long writeIntervalMillis = DEFAULT_WRITE_INTERVAL_MILLIS;
+
+    /**
+     * Sinks writing the statistics files, XML by default
+     */
+    @Getter
+    @Setter
+    private List<StatisticsSink> sinks = List.of(new XmlStatisticsSink());
+
+    /**
+     * Whether values have been consumed since the statistics were last written
+     */
+    private boolean changed;
+
+    /**
+     * Time of the last rewrite of the statistics in nanoseconds
+     */
+    private long lastWriteNanos;
+
+    /**
+     * Whether the watcher has been closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructor, prepares the watch service
+     *
+     * @param parser             parser of the directory to watch
+     * @param collectors         collectors the parser was created with, keyed by attribute
+     * @param statisticsLocation location of the statistics files
+     * @throws IOException if the watch service cannot be created
+     */
+    public FlightDataWatcher(FlightDataParser parser, Map<String, ? extends StatisticsCollector> collectors,
+                             Path statisticsLocation) throws IOException {
+        this.parser = parser;
+        this.collectors = collectors;
+        this.statisticsLocation = statisticsLocation;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Method to parse the existing files and to process the arriving ones
+     * until the watcher is closed
+     *
+     * @throws IOException          if an I/O error occurs
+     * @throws InterruptedException if the thread is interrupted while waiting for events
+     */
+    public void run() throws IOException, InterruptedException {
+        registerAll(parser.getDirectory());
+        List<Path> files = settledFiles(parser.findJsonFiles());
+        parsedFiles.addAll(files);
+        parser.parse(files);
+        writeStatistics();
+        long pollMillis = Math.max(1, Math.min(settleMillis, writeIntervalMillis) / 2);
+        try {
+            while (!closed) {
+                WatchKey key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    processEvents(key);
+                    key = watchService.poll();
+                }
+                parseSettledFiles();
+                if (changed && System.nanoTime() - lastWriteNanos >= TimeUnit.MILLISECONDS.toNanos(writeIntervalMillis)) {
+                    writeStatistics();
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed while waiting for events
+        }
+        if (changed) {
+            writeStatistics();
+        }
+    }
+
+    /**
+     * Method to stop the watcher, the statistics are written
+     * one last time if they have changed
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+    }
+
+    /**
+     * Method to register a directory and all its subdirectories
+     * with the watch service
+     *
+     * @param directory root of the directories to register
+     * @throws IOException if an I/O error occurs
+     */
+    private void registerAll(Path directory) throws IOException {
+        try (Stream<Path> stream = Files.walk(directory)) {
+            for (Path path : stream.filter(Files::isDirectory).toList()) {
+                WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                directories.put(key, path);
+            }
+        }
+    }
+
+    /**
+     * Method to select the files that have not been modified for the settle delay,
+     * the other files are made pending, so a file that is still being written is
+     * parsed once it is complete
+     *
+     * @param files paths to the files present at start
+     * @return paths to the files that can be parsed right away
+     * @throws IOException if an I/O error occurs
+     */
+    private List<Path> settledFiles(List<Path> files) throws IOException {
+        long settledBefore = System.currentTimeMillis() - settleMillis;
+        List<Path> settled = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                if (Files.getLastModifiedTime(file).toMillis() <= settledBefore) {
+                    settled.add(file);
+                } else {
+                    addPendingFile(file);
+                }
+            } catch (NoSuchFileException e) {
+                // deleted since it was listed
+            }
+        }
+        return settled;
+    }
+
+    /**
+     * Method to process the events of a watch key. New directories are registered
+     * and their files become pending, new or modified files become pending or
+     * have their settle delay restarted. Lost events cause a rescan
+     *
+     * @param key watch key with the events
+     * @throws IOException if an I/O error occurs
+     */
+    private void processEvents(WatchKey key) throws IOException {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                registerAll(parser.getDirectory());
+                addPendingFiles(parser.getDirectory());
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                registerAll(path);
+                addPendingFiles(path);
+            } else if (FlightDataParser.isJsonFile(path)) {
+                addPendingFile(path);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    /**
+     * Method to make all JSON files of a directory tree pending
+     *
+     * @param directory root of the directory tree
+     * @throws IOException if an I/O error occurs
+     */
+    private void addPendingFiles(Path directory) throws IOException {
+        try (Stream<Path> stream = Files.walk(directory)) {
+            stream.filter(FlightDataParser::isJsonFile)
+                    .filter(file -> !parsedFiles.contains(file))
+                    .forEach(this::addPendingFile);
+        }
+    }
+
+    /**
+     * Method to make a file pending or to restart its settle delay
+     *
+     * @param file path to the file
+     */
+    private void addPendingFile(Path file) {
+        if (parsedFiles.contains(file)) {
+            System.err.println("Changes to an already parsed file are ignored: " + file);
+            return;
+        }
+        pendingFiles.put(file, new PendingFile(System.nanoTime()));
+    }
+
+    /**
+     * Method to parse the pending files that have not changed for the settle delay
+     */
+    private void parseSettledFiles() {
+        long now = System.nanoTime();
+        long settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        Iterator<Map.Entry<Path, PendingFile>> iterator = pendingFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, PendingFile> entry = iterator.next();
+            PendingFile pending = entry.getValue();
+            if (now - pending.lastChangeNanos < settleNanos) {
+                continue;
+            }
+            Path file = entry.getKey();
+            try {
+                long size = Files.size(file);
+                if (size != pending.size) {
+                    pending.size = size;
+                    pending.lastChangeNanos = now;
+                    continue;
+                }
+                iterator.remove();
+                parsedFiles.add(file);
+                parser.processSegment(FileSegment.wholeFile(file));
+                changed = true;
+            } catch (NoSuchFileException e) {
+                iterator.remove();
+            } catch (Exception e) {
+                System.err.println("Error processing file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Method to rewrite the statistics of all attributes and to save
+     * the statistics cache of the parser if it is set
+     *
+     * @throws IOException if the statistics cache cannot be saved
+     */
+    private void writeStatistics() throws IOException {
+        XMLStatisticsWriter.writeAll(collectors, statisticsLocation, sinks);
+        if (parser.getStatisticsCache() != null) {
+            parser.getStatisticsCache().save();
+        }
+        changed = false;
+        lastWriteNanos = System.nanoTime();
+    }
+
+    /**
+     * File waiting to be complete
+     */
+    private static class PendingFile {
+
+        /**
+         * Time of the last observed change in nanoseconds
+         */
+        private long lastChangeNanos;
+
+        /**
+         * Size of the file at the last check, or {@code -1} if it has not been checked
+         */
+        private long size = -1;
+
+        /**
+         * Constructor, creates an unchecked pending file
+         *
+         * @param lastChangeNanos time of the last observed change in nanoseconds
+         */
+        private PendingFile(long lastChangeNanos) {
+            this.lastChangeNanos = lastChangeNanos;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package dev.profitsoft.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Filter of flight objects checked by the parser while it reads them.
+ * <p>A filter is a list of conditions on attributes, all of which must hold.
+ * An equality condition holds if a value of the attribute equals one of its
+ * values, a range condition compares the characters of a value
+ * lexicographically, which orders ISO-8601 timestamps such as
+ * {@code departureTime} by time. A condition on an attribute missing
+ * from an object does not hold, for an array attribute it holds if any
+ * element matches. Values are matched against the parser's character buffer,
+ * so no String is created. The class is immutable and thread-safe.</p>
+ */
+public final class FlightFilter {
+
+    /**
+     * Separator of the conditions of an expression
+     */
+    private static final String CONDITION_SEPARATOR = ";";
+
+    /**
+     * Separator of the values of an equality condition
+     */
+    private static final String VALUE_SEPARATOR = ",";
+
+    /**
+     * Conditions of the filter, at most one per bit of a {@code long}
+     */
+    private final Condition[] conditions;
+
+    /**
+     * Distinct attributes of the conditions, in the order of the expression
+     */
+    private final List<String> attributes;
+
+    /**
+     * Constructor, configures the conditions of the filter
+     *
+     * @param conditions conditions of the filter
+     */
+    private FlightFilter(Condition[] conditions) {
+        this.conditions = conditions;
+        List<String> names = new ArrayList<>();
+        for (Condition condition : conditions) {
+            if (!names.contains(condition.attribute)) {
+                names.add(condition.attribute);
+            }
+        }
+        this.attributes = List.copyOf(names);
+    }
+
+    /**
+     * Method to parse a filter expression. Conditions are separated by
+     * {@code ;} and are written like {@code departure=KBP},
+     * {@code departure=KBP,LWO} for a set of values, or
+     * {@code departureTime>=2024-04-17T00:00} with one of the operators
+     * {@code <}, {@code <=}, {@code >} and {@code >=}
+     *
+     * @param expression filter expression
+     * @return filter of the expression
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    public static FlightFilter parse(String expression) {
+        List<Condition> conditions = new ArrayList<>();
+        for (String part : expression.split(CONDITION_SEPARATOR)) {
+            if (!part.isBlank()) {
+                conditions.add(Condition.parse(part.trim()));
+            }
+        }
+        if (conditions.isEmpty()) {
+            throw new IllegalArgumentException("Filter has no conditions: " + expression);
+        }
+        if (conditions.size() > Long.SIZE) {
+            throw new IllegalArgumentException("Filter has more than " + Long.SIZE + " conditions");
+        }
+        return new FlightFilter(conditions.toArray(Condition[]::new));
+    }
+
+    /**
+     * Returns the distinct attributes the conditions are on
+     *
+     * @return names of the attributes
+     */
+    public List<String> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Returns the conditions of the filter as a bit mask
+     *
+     * @return mask with one bit set per condition
+     */
+    long getAllConditions() {
+        return conditions.length == Long.SIZE ? -1L : (1L << conditions.length) - 1;
+    }
+
+    /**
+     * Method to get the conditions on an attribute
+     *
+     * @param attribute name of the attribute
+     * @return mask of the conditions on the attribute, {@code 0} if there are none
+     */
+    long conditionsOf(String attribute) {
+        long mask = 0;
+        for (int i = 0; i < conditions.length; i++) {
+            if (conditions[i].attribute.equals(attribute)) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Method to check a value stored in a character buffer against some conditions
+     *
+     * @param candidates mask of the conditions to check
+     * @param buffer     buffer holding the value
+     * @param offset     offset of the first character of the value
+     * @param length     number of characters in the value
+     * @return mask of the checked conditions that hold for the value
+     */
+    long test(long candidates, char[] buffer, int offset, int length) {
+        long matched = 0;
+        for (long remaining = candidates; remaining != 0; remaining &= remaining - 1) {
+            int index = Long.numberOfTrailingZeros(remaining);
+            if (conditions[index].test(buffer, offset, length)) {
+                matched |= 1L << index;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Comparison a condition makes
+     */
+    private enum Operator {
+        EQUAL("="), LESS("<"), LESS_OR_EQUAL("<="), GREATER(">"), GREATER_OR_EQUAL(">=");
+
+        /**
+         * Symbol of the operator in expressions
+         */
+        private final String symbol;
+
+        /**
+         * Constructor, configures the symbol of the operator
+         *
+         * @param symbol symbol of the operator
+         */
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    /**
+     * Condition on the values of one attribute
+     */
+    private static final class Condition {
+
+        /**
+         * Name of the attribute
+         */
+        private final String attribute;
+
+        /**
+         * Comparison of the condition
+         */
+        private final Operator operator;
+
+        /**
+         * Values compared with, several only for an equality condition
+         */
+        private final char[][] values;
+
+        /**
+         * Constructor, configures the condition
+         *
+         * @param attribute name of the attribute
+         * @param operator  comparison of the condition
+         * @param values    values compared with
+         */
+        private Condition(String attribute, Operator operator, char[][] values) {
+            this.attribute = attribute;
+            this.operator = operator;
+            this.values = values;
+        }
+
+        /**
+         * Method to parse a condition like {@code departure=KBP,LWO}
+         *
+         * @param expression expression of the condition
+         * @return condition of the expression
+         */
+        static Condition parse(String expression) {
+            int position = indexOfOperator(expression);
+            if (position <= 0) {
+                throw new IllegalArgumentException("Filter condition has no attribute or operator: " + expression);
+            }
+            boolean orEqual = position + 1 < expression.length() && expression.charAt(position + 1) == '=';
+            String symbol = expression.substring(position, position + (orEqual ? 2 : 1));
+            Operator operator = Arrays.stream(Operator.values())
+                    .filter(candidate -> candidate.symbol.equals(symbol))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown filter operator in " + expression));
+            String attribute = expression.substring(0, position).trim();
+            String value = expression.substring(position + symbol.length()).trim();
+            char[][] values = operator == Operator.EQUAL
+                    ? Arrays.stream(value.split(VALUE_SEPARATOR)).map(String::trim).map(String::toCharArray)
+                    .toArray(char[][]::new)
+                    : new char[][]{value.toCharArray()};
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("Filter condition has no value: " + expression);
+            }
+            return new Condition(attribute, operator, values);
+        }
+
+        /**
+         * Method to find the operator of a condition
+         *
+         * @param expression expression of the condition
+         * @return position of the first character of the operator, or {@code -1} if there is none
+         */
+        private static int indexOfOperator(String expression) {
+            for (int i = 0; i < expression.length(); i++) {
+                char c = expression.charAt(i);
+                if (c == '=' || c == '<' || c == '>') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Method to check a value stored in a character buffer
+         *
+         * @param buffer buffer holding the value
+         * @param offset offset of the first character of the value
+         * @param length number of characters in the value
+         * @return {@code true} if the condition holds for the value
+         */
+        boolean test(char[] buffer, int offset, int length) {
+            if (operator == Operator.EQUAL) {
+                for (char[] value : values) {
+                    if (value.length == length && Arrays.equals(buffer, offset, offset + length, value, 0, length)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int comparison = Arrays.compare(buffer, offset, offset + length, values[0], 0, values[0].length);
+            return switch (operator) {
+                case LESS -> comparison < 0;
+                case LESS_OR_EQUAL -> comparison <= 0;
+                case GREATER -> comparison > 0;
+                default -> comparison >= 0;
+            };
+        }
+    }
+}
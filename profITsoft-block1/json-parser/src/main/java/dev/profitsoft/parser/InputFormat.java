@@ -0,0 +1,90 @@
+package dev.profitsoft.parser;
+
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.nio.file.Path;
+
+/**
+ * Layout of the flight objects in an input file
+ */
+public enum InputFormat {
+
+    /**
+     * Layout is detected from the file name and, failing that, from the first
+     * significant character of the content: {@code {} for NDJSON, anything else for an array
+     */
+    AUTO,
+
+    /**
+     * One top-level JSON array of flight objects
+     */
+    ARRAY,
+
+    /**
+     * Newline-delimited JSON, one flight object per line
+     */
+    NDJSON;
+
+    /**
+     * Method to get the layout implied by the extension of a file name
+     *
+     * @param file path to the file
+     * @return {@link #NDJSON} for {@code .ndjson} and {@code .jsonl} files, optionally compressed,
+     * {@link #AUTO} otherwise
+     */
+    static InputFormat ofFileName(Path file) {
+        String name = file.toString();
+        if (CompressedInput.isCompressed(file)) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl") ? NDJSON : AUTO;
+    }
+
+    /**
+     * Method to detect the layout from the first significant byte of the content.
+     * Leading whitespace and byte order mark bytes are consumed,
+     * the first significant byte is pushed back
+     *
+     * @param input stream positioned at the start of the content
+     * @return {@link #NDJSON} if the content starts with an object, {@link #ARRAY} otherwise
+     * @throws IOException if an I/O error occurs
+     */
+    static InputFormat detect(PushbackInputStream input) throws IOException {
+        int next;
+        do {
+            next = input.read();
+        } while (next >= 0 && isLeadingByte((byte) next));
+        if (next < 0) {
+            return ARRAY;
+        }
+        input.unread(next);
+        return next == '{' ? NDJSON : ARRAY;
+    }
+
+    /**
+     * Method to detect the layout from the first significant byte of the content
+     *
+     * @param content content of the file
+     * @return {@link #NDJSON} if the content starts with an object, {@link #ARRAY} otherwise
+     */
+    static InputFormat detect(byte[] content) {
+        for (byte b : content) {
+            if (!isLeadingByte(b)) {
+                return b == '{' ? NDJSON : ARRAY;
+            }
+        }
+        return ARRAY;
+    }
+
+    /**
+     * Method to check whether a byte may precede the first value,
+     * that is whether it is JSON whitespace or part of a UTF-8 BOM
+     *
+     * @param b byte to check
+     * @return {@code true} if the byte may precede the first value
+     */
+    private static boolean isLeadingByte(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t'
+                || b == (byte) 0xEF || b == (byte) 0xBB || b == (byte) 0xBF;
+    }
+}
@@ -0,0 +1,133 @@
+package dev.profitsoft.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to split a file holding one top-level JSON array into
+ * segments that can be parsed independently of each other.
+ * <p>The file is scanned once, tracking string and escape state, and is cut
+ * at the commas that separate top-level array elements. Each segment holds
+ * the bytes between two such commas, without the enclosing brackets.</p>
+ */
+public class JsonArraySplitter {
+
+    /**
+     * Size of the buffer used to scan the file
+     */
+    private static final int SCAN_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Minimum number of bytes in a segment
+     */
+    private final long chunkSize;
+
+    /**
+     * Constructor, configures the splitter with the segment size
+     *
+     * @param chunkSize minimum number of bytes in a segment
+     */
+    public JsonArraySplitter(long chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Method to split a JSON file into segments. Files that do not start with
+     * an array or are not bigger than one chunk are returned as a single
+     * whole-file segment, so the parser reports their errors as usual.
+     *
+     * @param file path to the JSON file
+     * @return segments of the file in file order
+     * @throws IOException if an I/O error occurs
+     */
+    public List<FileSegment> split(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= chunkSize) {
+                return List.of(FileSegment.wholeFile(file));
+            }
+            List<FileSegment> segments = scan(file, channel, size);
+            return segments.size() > 1 ? segments : List.of(FileSegment.wholeFile(file));
+        }
+    }
+
+    /**
+     * Method to scan the file and collect the segments of the top-level array
+     *
+     * @param file    path to the JSON file
+     * @param channel channel to read the file from
+     * @param size    size of the file
+     * @return segments of the file, empty if the file is not an array
+     * @throws IOException if an I/O error occurs
+     */
+    private List<FileSegment> scan(Path file, FileChannel channel, long size) throws IOException {
+        List<FileSegment> segments = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+
+        long segmentStart = -1;
+        long position = 0;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+
+        int read;
+        while ((read = channel.read(buffer.clear())) > 0) {
+            for (int i = 0; i < read; i++, position++) {
+                byte b = bytes[i];
+                if (segmentStart < 0) {
+                    if (b == '[') {
+                        segmentStart = position + 1;
+                        depth = 1;
+                    } else if (!isLeadingByte(b)) {
+                        return List.of();
+                    }
+                } else if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\') {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inString = false;
+                    }
+                } else if (b == '"') {
+                    inString = true;
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    if (--depth == 0) {
+                        segments.add(new FileSegment(file, segmentStart, position - segmentStart, InputFormat.ARRAY));
+                        return segments;
+                    }
+                } else if (b == ',' && depth == 1 && position - segmentStart >= chunkSize) {
+                    segments.add(new FileSegment(file, segmentStart, position - segmentStart, InputFormat.ARRAY));
+                    segmentStart = position + 1;
+                }
+            }
+        }
+        if (segmentStart >= 0) {
+            segments.add(new FileSegment(file, segmentStart, size - segmentStart, InputFormat.ARRAY));
+        }
+        return segments;
+    }
+
+    /**
+     * Method to check whether a byte may precede the opening bracket,
+     * that is whether it is JSON whitespace or part of a UTF-8 BOM
+     *
+     * @param b byte to check
+     * @return {@code true} if the byte may precede the opening bracket
+     */
+    private static boolean isLeadingByte(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t'
+                || b == (byte) 0xEF || b == (byte) 0xBB || b == (byte) 0xBF;
+    }
+}
@@ -0,0 +1,124 @@
+package dev.profitsoft.parser;
+
+import dev.profitsoft.collector.CharBufferConsumer;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Buffer of the attribute values extracted from one line of a newline-delimited
+ * JSON file. Values are held back until the whole line has been parsed,
+ * so a malformed line can be discarded without any of its values
+ * reaching the consumers. The buffer is reused for every line
+ * and is confined to one thread
+ */
+final class LineValues {
+
+    /**
+     * Characters of the buffered values, stored one after another
+     */
+    private char[] characters = new char[256];
+
+    /**
+     * End offsets of the buffered values in the characters
+     */
+    private int[] ends = new int[16];
+
+    /**
+     * Attribute indexes of the buffered values
+     */
+    private int[] attributes = new int[16];
+
+    /**
+     * Number of buffered values
+     */
+    private int count;
+
+    /**
+     * Consumers that buffer the values of each attribute, indexed like the attributes
+     */
+    private final Consumer<String>[] deferredConsumers;
+
+    /**
+     * Constructor, creates a deferred consumer for each attribute
+     *
+     * @param deferredConsumers empty array to fill with the deferred consumers,
+     *                          its length is the number of attributes
+     */
+    LineValues(Consumer<String>[] deferredConsumers) {
+        for (int i = 0; i < deferredConsumers.length; i++) {
+            int attribute = i;
+            deferredConsumers[i] = new CharBufferConsumer() {
+                @Override
+                public void accept(char[] buffer, int offset, int length) {
+                    add(attribute, buffer, offset, length);
+                }
+
+                @Override
+                public void accept(String value) {
+                    add(attribute, value.toCharArray(), 0, value.length());
+                }
+            };
+        }
+        this.deferredConsumers = deferredConsumers;
+    }
+
+    /**
+     * Method to get the consumers that buffer the values of each attribute
+     *
+     * @return deferred consumers, indexed like the attributes
+     */
+    Consumer<String>[] getDeferredConsumers() {
+        return deferredConsumers;
+    }
+
+    /**
+     * Method to buffer a value of an attribute
+     *
+     * @param attribute index of the attribute
+     * @param buffer    buffer holding the value
+     * @param offset    offset of the first character of the value
+     * @param length    number of characters in the value
+     */
+    private void add(int attribute, char[] buffer, int offset, int length) {
+        int start = count == 0 ? 0 : ends[count - 1];
+        if (start + length > characters.length) {
+            characters = Arrays.copyOf(characters, Math.max(2 * characters.length, start + length));
+        }
+        if (count == ends.length) {
+            ends = Arrays.copyOf(ends, 2 * count);
+            attributes = Arrays.copyOf(attributes, 2 * count);
+        }
+        System.arraycopy(buffer, offset, characters, start, length);
+        ends[count] = start + length;
+        attributes[count] = attribute;
+        count++;
+    }
+
+    /**
+     * Method to pass the buffered values to the consumers of their attributes
+     * and to clear the buffer
+     *
+     * @param consumers consumers of the attribute values, indexed like the attributes
+     */
+    void commit(Consumer<String>[] consumers) {
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            Consumer<String> consumer = consumers[attributes[i]];
+            if (consumer instanceof CharBufferConsumer bufferConsumer) {
+                bufferConsumer.accept(characters, start, ends[i] - start);
+            } else {
+                consumer.accept(new String(characters, start, ends[i] - start));
+            }
+            start = ends[i];
+        }
+        count = 0;
+    }
+
+    /**
+     * Method to discard the buffered values
+     */
+    void clear() {
+        count = 0;
+    }
+}
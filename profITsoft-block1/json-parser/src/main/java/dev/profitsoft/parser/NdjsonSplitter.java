@@ -0,0 +1,95 @@
+package dev.profitsoft.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to split a newline-delimited JSON file into segments
+ * of whole lines that can be parsed independently of each other.
+ * <p>Unlike an array, the file does not have to be scanned: the splitter
+ * seeks to every multiple of the chunk size and cuts the file after
+ * the next line feed, which cannot occur inside a JSON value.</p>
+ */
+public class NdjsonSplitter {
+
+    /**
+     * Size of the buffer used to look for the end of a line
+     */
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Minimum number of bytes in a segment
+     */
+    private final long chunkSize;
+
+    /**
+     * Constructor, configures the splitter with the segment size
+     *
+     * @param chunkSize minimum number of bytes in a segment
+     */
+    public NdjsonSplitter(long chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Method to split a newline-delimited JSON file into segments. Files
+     * that are not bigger than one chunk or hold a single line are returned
+     * as a single whole-file segment
+     *
+     * @param file path to the JSON file
+     * @return segments of the file in file order
+     * @throws IOException if an I/O error occurs
+     */
+    public List<FileSegment> split(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= chunkSize) {
+                return List.of(FileSegment.wholeFile(file));
+            }
+            List<FileSegment> segments = new ArrayList<>();
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long segmentStart = 0;
+            while (segmentStart < size) {
+                long segmentEnd = segmentStart + chunkSize >= size
+                        ? size
+                        : findLineEnd(channel, buffer, segmentStart + chunkSize - 1, size);
+                segments.add(new FileSegment(file, segmentStart, segmentEnd - segmentStart, InputFormat.NDJSON));
+                segmentStart = segmentEnd;
+            }
+            return segments.size() > 1 ? segments : List.of(FileSegment.wholeFile(file));
+        }
+    }
+
+    /**
+     * Method to find the end of the line containing the given position
+     *
+     * @param channel  channel to read the file from
+     * @param buffer   buffer to read the file into
+     * @param position position in the file to start looking from
+     * @param size     size of the file
+     * @return position following the next line feed, or the size of the file if there is none
+     * @throws IOException if an I/O error occurs
+     */
+    private static long findLineEnd(FileChannel channel, ByteBuffer buffer, long position, long size)
+            throws IOException {
+        byte[] bytes = buffer.array();
+        int read;
+        while (position < size && (read = channel.read(buffer.clear(), position)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+}
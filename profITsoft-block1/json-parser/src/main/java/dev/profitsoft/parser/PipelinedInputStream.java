@@ -0,0 +1,270 @@
+package dev.profitsoft.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input stream that produces its content ahead of the reader on other threads.
+ * <p>The content is the concatenation of the chunks returned by a sequence of
+ * tasks, a task returning {@code null} ends the stream. Up to a window of tasks
+ * run ahead of the chunk being read, so producing the content, for example
+ * decompressing it, overlaps with consuming it. Ordered tasks run one after
+ * another and may share state, other tasks must be independent. The executor
+ * is shared with other streams and is not shut down by the stream: when the
+ * stream is closed, the tasks that have not started are skipped and the running
+ * ones are waited for before the source is released.</p>
+ */
+final class PipelinedInputStream extends InputStream {
+
+    /**
+     * Time to wait for the running tasks when the stream is closed
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Tasks producing the chunks of the content in order
+     */
+    private final Iterator<Callable<byte[]>> tasks;
+
+    /**
+     * Executor running the tasks, shared with other streams
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Whether the tasks share state and run one after another
+     */
+    private final boolean ordered;
+
+    /**
+     * Resource released after the executor has stopped, may be {@code null}
+     */
+    private final Closeable source;
+
+    /**
+     * Submitted tasks in the order of their chunks
+     */
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    /**
+     * Chunk being read
+     */
+    private byte[] chunk = new byte[0];
+
+    /**
+     * Position of the next byte in the chunk
+     */
+    private int position;
+
+    /**
+     * Whether the end of the content has been reached
+     */
+    private boolean finished;
+
+    /**
+     * Run of the last submitted ordered task, the next one starts when it completes
+     */
+    private CompletableFuture<Void> last;
+
+    /**
+     * Lock guarding the number of running tasks and whether the stream is closed
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Number of tasks that are running
+     */
+    private int running;
+
+    /**
+     * Whether the stream has been closed, tasks that have not started are then skipped
+     */
+    private boolean closed;
+
+    /**
+     * Constructor, submits the first window of tasks
+     *
+     * @param tasks    tasks producing the chunks of the content in order
+     * @param executor executor running the tasks, shared with other streams and not shut down by the stream
+     * @param ordered  {@code true} if the tasks share state and must run one after another
+     * @param window   maximum number of tasks running ahead of the reader
+     * @param source   resource released when the stream is closed, may be {@code null}
+     */
+    PipelinedInputStream(Iterator<Callable<byte[]>> tasks, ExecutorService executor, boolean ordered, int window,
+                         Closeable source) {
+        this.tasks = tasks;
+        this.executor = executor;
+        this.ordered = ordered;
+        this.source = source;
+        for (int i = 0; i < window && tasks.hasNext(); i++) {
+            pending.add(submit(tasks.next()));
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return chunk[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, chunk.length - position);
+        System.arraycopy(chunk, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return chunk.length - position;
+    }
+
+    /**
+     * Method to stop the running tasks and to release the source
+     * once they have finished
+     *
+     * @throws IOException if the source cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        synchronized (lock) {
+            closed = true;
+        }
+        for (Future<byte[]> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        try {
+            awaitRunningTasks();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (source != null) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * Method to wait, up to {@link #CLOSE_TIMEOUT_SECONDS}, for the running tasks to finish
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private void awaitRunningTasks() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CLOSE_TIMEOUT_SECONDS);
+        synchronized (lock) {
+            while (running > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return;
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+        }
+    }
+
+    /**
+     * Method to submit a task to the executor. An ordered task starts when the task
+     * submitted before it completes. The task is skipped if the stream is closed
+     * before it starts, and is counted as running until it finishes otherwise
+     *
+     * @param task task producing a chunk
+     * @return future of the chunk
+     */
+    private Future<byte[]> submit(Callable<byte[]> task) {
+        Callable<byte[]> tracked = () -> {
+            synchronized (lock) {
+                if (closed) {
+                    return null;
+                }
+                running++;
+            }
+            try {
+                return task.call();
+            } finally {
+                synchronized (lock) {
+                    running--;
+                    lock.notifyAll();
+                }
+            }
+        };
+        FutureTask<byte[]> future = new FutureTask<>(tracked);
+        if (!ordered) {
+            executor.execute(future);
+        } else {
+            last = last == null ? CompletableFuture.runAsync(future, executor) : last.thenRunAsync(future, executor);
+        }
+        return future;
+    }
+
+    /**
+     * Method to make the next chunk current once the current one is read,
+     * submitting the next task to keep the window full
+     *
+     * @return {@code true} if there are bytes to read, {@code false} at the end of the content
+     * @throws IOException if a task has failed or the thread is interrupted
+     */
+    private boolean fill() throws IOException {
+        while (position == chunk.length) {
+            Future<byte[]> next = finished ? null : pending.poll();
+            if (next == null) {
+                finished = true;
+                return false;
+            }
+            byte[] result = await(next);
+            if (result == null) {
+                finished = true;
+                return false;
+            }
+            if (tasks.hasNext()) {
+                pending.add(submit(tasks.next()));
+            }
+            chunk = result;
+            position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Method to wait for the chunk of a task
+     *
+     * @param future future of the task
+     * @return chunk produced by the task, or {@code null} at the end of the content
+     * @throws IOException if the task has failed or the thread is interrupted
+     */
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for input");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Failed to produce input", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package dev.profitsoft.parser;
+
+/**
+ * Measurements of the segment processed by a worker, collected while the
+ * segment is read and reported once it is done. Each worker thread
+ * has its own instance, which is reset for every segment
+ */
+final class SegmentStats {
+
+    /**
+     * Whether a segment is being measured, so nested calls for the same segment are not measured again
+     */
+    boolean active;
+
+    /**
+     * Time the segment was started, in nanoseconds
+     */
+    long startNanos;
+
+    /**
+     * Number of flight objects read from the segment
+     */
+    long records;
+
+    /**
+     * Time spent waiting for input, in nanoseconds
+     */
+    long readNanos;
+
+    /**
+     * Time spent waiting for permits, in nanoseconds
+     */
+    long waitNanos;
+
+    /**
+     * Method to clear the measurements and to start measuring the next segment
+     */
+    void reset() {
+        startNanos = System.nanoTime();
+        records = 0;
+        readNanos = 0;
+        waitNanos = 0;
+    }
+}
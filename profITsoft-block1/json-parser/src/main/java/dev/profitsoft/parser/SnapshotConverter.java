@@ -0,0 +1,223 @@
+package dev.profitsoft.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import dev.profitsoft.entity.Flight;
+import dev.profitsoft.snapshot.ColumnarSnapshot;
+import dev.profitsoft.snapshot.ColumnarSnapshotWriter;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+/**
+ * Class to convert a directory of JSON files into a columnar snapshot, so
+ * later runs can aggregate attributes without parsing the JSON again.
+ * <p>Files are read in path order, as JSON arrays or newline-delimited JSON,
+ * plain or compressed, and every flight object becomes one row of the
+ * snapshot. The snapshot records the size and modification time of each
+ * file, so a changed, added or removed file makes it out of date. A file that fails to parse is reported and the conversion
+ * continues with the next file, keeping the rows read before the error.</p>
+ */
+public class SnapshotConverter {
+
+    /**
+     * Size of the buffer used to read plain files
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * JSON factory to create JSON parsers
+     */
+    private final JsonFactory factory = new JsonFactory();
+
+    /**
+     * Number of threads decompressing BGZF blocks in parallel
+     */
+    private final int numberOfThreads;
+
+    /**
+     * Pool decompressing the compressed files, whose idle threads stop on their own
+     */
+    private final ExecutorService decompressors;
+
+    /**
+     * Constructor, configures the converter
+     *
+     * @param numberOfThreads number of threads decompressing BGZF blocks in parallel
+     */
+    public SnapshotConverter(int numberOfThreads) {
+        this.numberOfThreads = numberOfThreads;
+        this.decompressors = CompressedInput.newDecompressionPool(numberOfThreads);
+    }
+
+    /**
+     * Method to convert all JSON files of a directory into a snapshot
+     *
+     * @param jsonDirectory     path to the directory containing JSON files
+     * @param snapshotDirectory path to the snapshot directory, created if it does not exist
+     * @return number of flights written
+     * @throws IOException if an I/O error occurs
+     */
+    public long convert(Path jsonDirectory, Path snapshotDirectory) throws IOException {
+        try (ColumnarSnapshotWriter writer = new ColumnarSnapshotWriter(snapshotDirectory)) {
+            for (Path file : listFiles(jsonDirectory)) {
+                try {
+                    writer.addSource(file);
+                    convertFile(file, writer);
+                } catch (IOException e) {
+                    System.err.println("Error processing file: " + e.getMessage());
+                }
+            }
+            return writer.getRowCount();
+        }
+    }
+
+    /**
+     * Method to check whether a snapshot was converted from the current JSON files of a directory
+     *
+     * @param jsonDirectory     path to the directory containing JSON files
+     * @param snapshotDirectory path to the snapshot directory
+     * @return {@code true} if the snapshot exists and no JSON file was changed, added or removed since
+     * @throws IOException if an I/O error occurs
+     */
+    public static boolean isCurrent(Path jsonDirectory, Path snapshotDirectory) throws IOException {
+        return ColumnarSnapshot.isCurrent(snapshotDirectory, listFiles(jsonDirectory));
+    }
+
+    /**
+     * Method to list the JSON files of a directory in the order they are converted
+     *
+     * @param jsonDirectory path to the directory containing JSON files
+     * @return paths to the JSON files in path order
+     * @throws IOException if an I/O error occurs
+     */
+    private static List<Path> listFiles(Path jsonDirectory) throws IOException {
+        try (Stream<Path> stream = Files.walk(jsonDirectory)) {
+            return stream.filter(FlightDataParser::isJsonFile).sorted().toList();
+        }
+    }
+
+    /**
+     * Method to append the flights of a JSON file to the snapshot
+     *
+     * @param file   path to the JSON file
+     * @param writer writer of the snapshot
+     * @throws IOException if an I/O error occurs
+     */
+    private void convertFile(Path file, ColumnarSnapshotWriter writer) throws IOException {
+        try (InputStream input = CompressedInput.isCompressed(file)
+                ? CompressedInput.open(file, decompressors, numberOfThreads)
+                : new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+             JsonParser parser = factory.createParser(input)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    convertValue(parser, token, writer);
+                }
+            } else {
+                while (token != null) {
+                    convertValue(parser, token, writer);
+                    token = parser.nextToken();
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to append a flight object to the snapshot, other values are skipped
+     *
+     * @param parser JSON parser positioned at the value
+     * @param token  current token
+     * @param writer writer of the snapshot
+     * @throws IOException if an I/O error occurs
+     */
+    private static void convertValue(JsonParser parser, JsonToken token, ColumnarSnapshotWriter writer)
+            throws IOException {
+        if (token == JsonToken.START_OBJECT) {
+            writer.add(readFlight(parser));
+        } else {
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Method to read the attributes of a flight object. Array values are joined
+     * with commas, nested objects, nulls and unparsable times are treated as missing
+     *
+     * @param parser JSON parser positioned at the start of the object
+     * @return flight read from the object
+     * @throws IOException if an I/O error occurs
+     */
+    private static Flight readFlight(JsonParser parser) throws IOException {
+        Flight flight = new Flight(null, null, null, null, null, null);
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            String value = readValue(parser, parser.nextToken());
+            switch (fieldName) {
+                case ColumnarSnapshotWriter.FLIGHT_NUMBER -> flight.setFlightNumber(value);
+                case ColumnarSnapshotWriter.DEPARTURE -> flight.setDeparture(value);
+                case ColumnarSnapshotWriter.DESTINATION -> flight.setDestination(value);
+                case ColumnarSnapshotWriter.DEPARTURE_TIME -> flight.setDepartureTime(parseTime(value));
+                case ColumnarSnapshotWriter.ARRIVAL_TIME -> flight.setArrivalTime(parseTime(value));
+                case ColumnarSnapshotWriter.SERVICES -> flight.setServices(value);
+                default -> {
+                }
+            }
+        }
+        return flight;
+    }
+
+    /**
+     * Method to read the current value as text
+     *
+     * @param parser JSON parser positioned at the value
+     * @param token  current token
+     * @return text of a scalar value, scalar elements of an array joined with commas,
+     * or {@code null} for nulls and objects
+     * @throws IOException if an I/O error occurs
+     */
+    private static String readValue(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.START_ARRAY) {
+            StringBuilder joined = new StringBuilder();
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                    joined.append(joined.isEmpty() ? "" : ",").append(parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return joined.isEmpty() ? null : joined.toString();
+        }
+        if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * Method to parse an ISO-8601 local date-time
+     *
+     * @param value text of the time, may be {@code null}
+     * @return parsed time, or {@code null} if the text is missing or not a local date-time
+     */
+    private static LocalDateTime parseTime(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package dev.profitsoft.parser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream adding the time spent in each read of the underlying stream to the
+ * measurements of a segment. For memory-mapped files this is the time of
+ * page faults, for compressed files the time waiting for decompression
+ */
+final class TimedInputStream extends FilterInputStream {
+
+    /**
+     * Measurements of the segment being read
+     */
+    private final SegmentStats stats;
+
+    /**
+     * Constructor, configures the stream and the measurements
+     *
+     * @param input stream to read from
+     * @param stats measurements of the segment being read
+     */
+    TimedInputStream(InputStream input, SegmentStats stats) {
+        super(input);
+        this.stats = stats;
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.read();
+        } finally {
+            stats.readNanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.read(buffer, offset, length);
+        } finally {
+            stats.readNanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.skip(count);
+        } finally {
+            stats.readNanos += System.nanoTime() - start;
+        }
+    }
+}
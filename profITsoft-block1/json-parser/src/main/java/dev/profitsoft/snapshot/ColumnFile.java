@@ -0,0 +1,224 @@
+package dev.profitsoft.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Layout of the column files of a snapshot and a buffered writer of them.
+ * <p>A column file starts with a fixed-size header: magic number, column type,
+ * width in bytes of a row value, number of rows, number of entries and offset
+ * of the entries. The row data follows the header and the entries, the names
+ * of dictionary codes or of bitsets, follow the row data. All numbers
+ * are little-endian.</p>
+ */
+final class ColumnFile implements Closeable {
+
+    /**
+     * Magic number at the start of every column file
+     */
+    static final int MAGIC = 0x31434C46;
+
+    /**
+     * Type of the columns of dictionary codes, code {@code 0} marks a missing value
+     */
+    static final byte DICTIONARY = 1;
+
+    /**
+     * Type of the columns of minutes since the epoch, {@link Integer#MIN_VALUE} marks a missing value
+     */
+    static final byte EPOCH_MINUTES = 2;
+
+    /**
+     * Type of the columns of one bitset of rows per entry
+     */
+    static final byte BITSETS = 3;
+
+    /**
+     * Size of the header of a column file
+     */
+    static final int HEADER_SIZE = 26;
+
+    /**
+     * Extension of column files
+     */
+    static final String EXTENSION = ".col";
+
+    /**
+     * Size of the write buffer
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Channel of the file being written
+     */
+    private final FileChannel channel;
+
+    /**
+     * Buffer of the bytes not yet written to the channel
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Constructor, creates or truncates the file and positions it after the header
+     *
+     * @param file path to the file
+     * @throws IOException if an I/O error occurs
+     */
+    ColumnFile(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(HEADER_SIZE);
+    }
+
+    /**
+     * Method to get the path of the column file of an attribute
+     *
+     * @param directory path to the snapshot directory
+     * @param attribute name of the attribute
+     * @return path to the column file
+     */
+    static Path of(Path directory, String attribute) {
+        return directory.resolve(attribute + EXTENSION);
+    }
+
+    /**
+     * Method to write a byte
+     *
+     * @param value byte to write
+     * @throws IOException if an I/O error occurs
+     */
+    void writeByte(int value) throws IOException {
+        ensureRemaining(Byte.BYTES);
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Method to write a short
+     *
+     * @param value short to write
+     * @throws IOException if an I/O error occurs
+     */
+    void writeShort(int value) throws IOException {
+        ensureRemaining(Short.BYTES);
+        buffer.putShort((short) value);
+    }
+
+    /**
+     * Method to write an int
+     *
+     * @param value int to write
+     * @throws IOException if an I/O error occurs
+     */
+    void writeInt(int value) throws IOException {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    /**
+     * Method to write a long
+     *
+     * @param value long to write
+     * @throws IOException if an I/O error occurs
+     */
+    void writeLong(long value) throws IOException {
+        ensureRemaining(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Method to write a string as its length followed by its UTF-8 bytes
+     *
+     * @param value string to write
+     * @throws IOException if an I/O error occurs
+     */
+    void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        for (int offset = 0; offset < bytes.length; ) {
+            ensureRemaining(1);
+            int count = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Method to get the offset in the file of the next byte written
+     *
+     * @return offset of the next byte
+     * @throws IOException if an I/O error occurs
+     */
+    long position() throws IOException {
+        return channel.position() + buffer.position();
+    }
+
+    /**
+     * Method to write the header once the rest of the file has been written
+     *
+     * @param type          type of the column
+     * @param width         width in bytes of a row value
+     * @param rowCount      number of rows
+     * @param entryCount    number of entries
+     * @param entriesOffset offset of the first entry
+     * @throws IOException if an I/O error occurs
+     */
+    void writeHeader(byte type, int width, long rowCount, int entryCount, long entriesOffset) throws IOException {
+        flush();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC)
+                .put(type)
+                .put((byte) width)
+                .putLong(rowCount)
+                .putInt(entryCount)
+                .putLong(entriesOffset)
+                .flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Method to write the buffered bytes and to close the file
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Method to make room for the given number of bytes in the buffer
+     *
+     * @param bytes number of bytes to make room for
+     * @throws IOException if an I/O error occurs
+     */
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Method to write the buffered bytes to the channel
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
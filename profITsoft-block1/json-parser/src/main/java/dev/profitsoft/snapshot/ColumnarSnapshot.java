@@ -0,0 +1,353 @@
+package dev.profitsoft.snapshot;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to aggregate the attributes of a columnar snapshot written by
+ * {@link ColumnarSnapshotWriter}.
+ * <p>Only the column file of the requested attribute is read. Its header and
+ * entries are read into memory and its rows are memory-mapped in windows and
+ * counted by code, by minute or by bit. The counts are turned into values at
+ * the end, so no string is created per row. Values are split at commas like the statistics collectors split
+ * them, and times are rendered to the minute as ISO-8601 local date-times.</p>
+ * <p>The class is thread-safe.</p>
+ */
+public class ColumnarSnapshot {
+
+    /**
+     * Maximum size of a memory-mapped window of a column file
+     */
+    static final long WINDOW_SIZE = 1L << 30;
+
+    /**
+     * Maximum range of minutes counted in an array instead of a map
+     */
+    private static final long MAX_DENSE_MINUTES = 1 << 22;
+
+    /**
+     * Path to the snapshot directory
+     */
+    private final Path directory;
+
+    /**
+     * Constructor, configures the snapshot directory
+     *
+     * @param directory path to the snapshot directory
+     */
+    public ColumnarSnapshot(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Method to check whether a directory holds a snapshot
+     *
+     * @param directory path to the directory
+     * @return {@code true} if the directory holds the column of every attribute
+     */
+    public static boolean exists(Path directory) {
+        for (String attribute : new String[]{
+                ColumnarSnapshotWriter.FLIGHT_NUMBER, ColumnarSnapshotWriter.DEPARTURE,
+                ColumnarSnapshotWriter.DESTINATION, ColumnarSnapshotWriter.DEPARTURE_TIME,
+                ColumnarSnapshotWriter.ARRIVAL_TIME, ColumnarSnapshotWriter.SERVICES}) {
+            if (!Files.isRegularFile(ColumnFile.of(directory, attribute))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method to check whether a directory holds a completed snapshot of the given source files,
+     * unchanged in size and modification time since the snapshot was written
+     *
+     * @param directory path to the directory
+     * @param sources   paths to the source files, in the order they are converted
+     * @return {@code true} if the snapshot exists and its manifest lists exactly the given files as they are now
+     * @throws IOException if an I/O error occurs
+     */
+    public static boolean isCurrent(Path directory, List<Path> sources) throws IOException {
+        Path manifest = directory.resolve(ColumnarSnapshotWriter.SOURCES_FILE);
+        if (!exists(directory) || !Files.isRegularFile(manifest)) {
+            return false;
+        }
+        List<String> lines = new ArrayList<>(sources.size());
+        for (Path source : sources) {
+            lines.add(ColumnarSnapshotWriter.sourceLine(source));
+        }
+        return lines.equals(Files.readAllLines(manifest));
+    }
+
+    /**
+     * Method to count the values of an attribute
+     *
+     * @param attribute name of the attribute
+     * @return map of the values and their counts
+     * @throws IOException if an I/O error occurs
+     */
+    public Map<String, Long> aggregate(String attribute) throws IOException {
+        Path file = ColumnFile.of(directory, attribute);
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("Snapshot has no column for attribute " + attribute);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel, 0, ColumnFile.HEADER_SIZE);
+            if (header.getInt() != ColumnFile.MAGIC) {
+                throw new IOException("Not a snapshot column file: " + file);
+            }
+            byte type = header.get();
+            int width = header.get();
+            long rowCount = header.getLong();
+            int entryCount = header.getInt();
+            long entriesOffset = header.getLong();
+            String[] entries = readEntries(channel, entriesOffset, entryCount);
+            return switch (type) {
+                case ColumnFile.DICTIONARY -> aggregateCodes(channel, width, rowCount, entries);
+                case ColumnFile.EPOCH_MINUTES -> aggregateMinutes(channel, rowCount);
+                case ColumnFile.BITSETS -> aggregateBitsets(channel, rowCount, entries);
+                default -> throw new IOException("Unknown column type " + type + " in " + file);
+            };
+        }
+    }
+
+    /**
+     * Method to count the rows of a dictionary column by code
+     *
+     * @param channel  channel of the column file
+     * @param width    width in bytes of a code
+     * @param rowCount number of rows
+     * @param values   values indexed by code minus one
+     * @return map of the values and their counts
+     * @throws IOException if an I/O error occurs
+     */
+    private static Map<String, Long> aggregateCodes(FileChannel channel, int width, long rowCount, String[] values)
+            throws IOException {
+        long[] counts = new long[values.length + 1];
+        long offset = ColumnFile.HEADER_SIZE;
+        long remaining = rowCount;
+        while (remaining > 0) {
+            int count = (int) Math.min(remaining, WINDOW_SIZE / width);
+            ByteBuffer window = map(channel, offset, (long) count * width);
+            switch (width) {
+                case Byte.BYTES -> {
+                    for (int i = 0; i < count; i++) {
+                        counts[window.get(i) & 0xff]++;
+                    }
+                }
+                case Short.BYTES -> {
+                    for (int i = 0; i < count; i++) {
+                        counts[window.getShort(i << 1) & 0xffff]++;
+                    }
+                }
+                default -> {
+                    for (int i = 0; i < count; i++) {
+                        counts[window.getInt(i << 2)]++;
+                    }
+                }
+            }
+            offset += (long) count * width;
+            remaining -= count;
+        }
+        Map<String, Long> statistics = HashMap.newHashMap(values.length);
+        for (int code = 1; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                mergeSplit(statistics, values[code - 1], counts[code]);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Method to count the rows of a time column by minute. Minutes are counted in
+     * an array when their range is small and in a map otherwise
+     *
+     * @param channel  channel of the column file
+     * @param rowCount number of rows
+     * @return map of the times and their counts
+     * @throws IOException if an I/O error occurs
+     */
+    private static Map<String, Long> aggregateMinutes(FileChannel channel, long rowCount) throws IOException {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        long offset = ColumnFile.HEADER_SIZE;
+        for (long remaining = rowCount; remaining > 0; ) {
+            int count = (int) Math.min(remaining, WINDOW_SIZE / Integer.BYTES);
+            ByteBuffer window = map(channel, offset, (long) count * Integer.BYTES);
+            for (int i = 0; i < count; i++) {
+                int minute = window.getInt(i << 2);
+                if (minute != ColumnarSnapshotWriter.MISSING_TIME) {
+                    min = Math.min(min, minute);
+                    max = Math.max(max, minute);
+                }
+            }
+            offset += (long) count * Integer.BYTES;
+            remaining -= count;
+        }
+        Map<String, Long> statistics = new HashMap<>();
+        if (min > max) {
+            return statistics;
+        }
+        boolean dense = (long) max - min < MAX_DENSE_MINUTES;
+        long[] denseCounts = dense ? new long[max - min + 1] : null;
+        Map<Integer, Long> sparseCounts = dense ? null : new HashMap<>();
+        offset = ColumnFile.HEADER_SIZE;
+        for (long remaining = rowCount; remaining > 0; ) {
+            int count = (int) Math.min(remaining, WINDOW_SIZE / Integer.BYTES);
+            ByteBuffer window = map(channel, offset, (long) count * Integer.BYTES);
+            for (int i = 0; i < count; i++) {
+                int minute = window.getInt(i << 2);
+                if (minute == ColumnarSnapshotWriter.MISSING_TIME) {
+                    continue;
+                }
+                if (dense) {
+                    denseCounts[minute - min]++;
+                } else {
+                    sparseCounts.merge(minute, 1L, Long::sum);
+                }
+            }
+            offset += (long) count * Integer.BYTES;
+            remaining -= count;
+        }
+        if (dense) {
+            for (int i = 0; i < denseCounts.length; i++) {
+                if (denseCounts[i] > 0) {
+                    statistics.put(formatMinute(min + i), denseCounts[i]);
+                }
+            }
+        } else {
+            sparseCounts.forEach((minute, count) -> statistics.put(formatMinute(minute), count));
+        }
+        return statistics;
+    }
+
+    /**
+     * Method to count the rows of each bitset of a bitset column
+     *
+     * @param channel  channel of the column file
+     * @param rowCount number of rows
+     * @param names    names of the bitsets
+     * @return map of the names and their counts
+     * @throws IOException if an I/O error occurs
+     */
+    private static Map<String, Long> aggregateBitsets(FileChannel channel, long rowCount, String[] names)
+            throws IOException {
+        long words = (rowCount + 63) >>> 6;
+        Map<String, Long> statistics = new HashMap<>();
+        long offset = ColumnFile.HEADER_SIZE;
+        for (String name : names) {
+            long count = 0;
+            for (long remaining = words; remaining > 0; ) {
+                int windowWords = (int) Math.min(remaining, WINDOW_SIZE / Long.BYTES);
+                ByteBuffer window = map(channel, offset, (long) windowWords * Long.BYTES);
+                for (int i = 0; i < windowWords; i++) {
+                    count += Long.bitCount(window.getLong(i << 3));
+                }
+                offset += (long) windowWords * Long.BYTES;
+                remaining -= windowWords;
+            }
+            if (count > 0) {
+                statistics.merge(name, count, Long::sum);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Method to read the entries of a column file
+     *
+     * @param channel       channel of the column file
+     * @param entriesOffset offset of the first entry
+     * @param entryCount    number of entries
+     * @return entries in file order
+     * @throws IOException if an I/O error occurs
+     */
+    private static String[] readEntries(FileChannel channel, long entriesOffset, int entryCount) throws IOException {
+        String[] entries = new String[entryCount];
+        if (entryCount == 0) {
+            return entries;
+        }
+        ByteBuffer buffer = read(channel, entriesOffset, channel.size() - entriesOffset);
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < entryCount; i++) {
+            int length = buffer.getInt();
+            if (length > bytes.length) {
+                bytes = new byte[length];
+            }
+            buffer.get(bytes, 0, length);
+            entries[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+        return entries;
+    }
+
+    /**
+     * Method to add the count of a value, split at commas like the statistics collectors split values
+     *
+     * @param statistics map of the values and their counts
+     * @param value      value to add
+     * @param count      count of the value
+     */
+    private static void mergeSplit(Map<String, Long> statistics, String value, long count) {
+        if (value.contains(",")) {
+            for (String piece : value.split(",")) {
+                statistics.merge(piece.trim(), count, Long::sum);
+            }
+        } else {
+            statistics.merge(value, count, Long::sum);
+        }
+    }
+
+    /**
+     * Method to render minutes since the epoch in UTC as an ISO-8601 local date-time
+     *
+     * @param minute minutes since the epoch
+     * @return local date-time to the minute
+     */
+    private static String formatMinute(int minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60L, 0, ZoneOffset.UTC).toString();
+    }
+
+    /**
+     * Method to read a region of a column file into memory
+     *
+     * @param channel channel of the column file
+     * @param offset  offset of the region
+     * @param length  length of the region
+     * @return little-endian buffer of the region
+     * @throws IOException if an I/O error occurs
+     */
+    private static ByteBuffer read(FileChannel channel, long offset, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(length)).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of snapshot column");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Method to memory-map a region of a column file
+     *
+     * @param channel channel of the column file
+     * @param offset  offset of the region
+     * @param length  length of the region
+     * @return little-endian buffer of the region
+     * @throws IOException if an I/O error occurs
+     */
+    private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
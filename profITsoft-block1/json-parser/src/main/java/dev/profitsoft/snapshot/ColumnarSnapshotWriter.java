@@ -0,0 +1,433 @@
+package dev.profitsoft.snapshot;
+
+import dev.profitsoft.entity.Flight;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to write flights into a columnar snapshot, one file per attribute.
+ * <p>{@code flightNumber}, {@code departure} and {@code destination} are
+ * dictionary-encoded: each row holds the code of its value, stored in the
+ * fewest bytes that fit the dictionary. {@code departureTime} and
+ * {@code arrivalTime} are stored as minutes since the epoch in UTC, so
+ * seconds are dropped. {@code services} are split like the statistics
+ * collectors split them and stored as one bitset of rows per service,
+ * starting with {@link Flight#AVAILABLE_SERVICES}; a service listed twice
+ * for one flight is stored once.</p>
+ * <p>Rows are appended in order and the files are completed when the writer
+ * is closed. The size and modification time of each source file are recorded
+ * in a manifest written last, so a snapshot whose manifest is missing was not
+ * completed. The class is not thread-safe.</p>
+ */
+public class ColumnarSnapshotWriter implements Closeable {
+
+    /**
+     * Name of the flight number attribute
+     */
+    public static final String FLIGHT_NUMBER = "flightNumber";
+
+    /**
+     * Name of the departure attribute
+     */
+    public static final String DEPARTURE = "departure";
+
+    /**
+     * Name of the destination attribute
+     */
+    public static final String DESTINATION = "destination";
+
+    /**
+     * Name of the departure time attribute
+     */
+    public static final String DEPARTURE_TIME = "departureTime";
+
+    /**
+     * Name of the arrival time attribute
+     */
+    public static final String ARRIVAL_TIME = "arrivalTime";
+
+    /**
+     * Name of the services attribute
+     */
+    public static final String SERVICES = "services";
+
+    /**
+     * Value of a time column marking a missing time
+     */
+    static final int MISSING_TIME = Integer.MIN_VALUE;
+
+    /**
+     * Extension of the temporary files holding the codes of dictionary columns
+     */
+    private static final String CODES_EXTENSION = ".codes.tmp";
+
+    /**
+     * Name of the manifest of the source files
+     */
+    static final String SOURCES_FILE = "sources.txt";
+
+    /**
+     * Path to the snapshot directory
+     */
+    private final Path directory;
+
+    /**
+     * Dictionary-encoded columns, in the order of the attributes
+     */
+    private final DictionaryColumn[] dictionaryColumns;
+
+    /**
+     * Time columns, in the order of the attributes
+     */
+    private final ColumnFile[] timeColumns;
+
+    /**
+     * Bitsets of rows of each service, indexed by service code
+     */
+    private final List<long[]> serviceBitsets = new ArrayList<>();
+
+    /**
+     * Codes of the services keyed by service name
+     */
+    private final Map<String, Integer> serviceCodes = new HashMap<>();
+
+    /**
+     * Names of the services indexed by service code
+     */
+    private final List<String> serviceNames = new ArrayList<>();
+
+    /**
+     * Lines of the manifest of the source files
+     */
+    private final List<String> sources = new ArrayList<>();
+
+    /**
+     * Number of rows written
+     */
+    private long rowCount;
+
+    /**
+     * Constructor, creates the snapshot directory and opens the column files
+     *
+     * @param directory path to the snapshot directory
+     * @throws IOException if an I/O error occurs
+     */
+    public ColumnarSnapshotWriter(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Files.deleteIfExists(directory.resolve(SOURCES_FILE));
+        this.dictionaryColumns = new DictionaryColumn[]{
+                new DictionaryColumn(FLIGHT_NUMBER), new DictionaryColumn(DEPARTURE), new DictionaryColumn(DESTINATION)
+        };
+        this.timeColumns = new ColumnFile[]{
+                new ColumnFile(ColumnFile.of(directory, DEPARTURE_TIME)),
+                new ColumnFile(ColumnFile.of(directory, ARRIVAL_TIME))
+        };
+        for (String service : Flight.AVAILABLE_SERVICES) {
+            codeOfService(service);
+        }
+    }
+
+    /**
+     * Method to append a flight as the next row. Missing attributes are stored as missing values
+     *
+     * @param flight flight to append
+     * @throws IOException if an I/O error occurs
+     */
+    public void add(Flight flight) throws IOException {
+        dictionaryColumns[0].add(flight.getFlightNumber());
+        dictionaryColumns[1].add(flight.getDeparture());
+        dictionaryColumns[2].add(flight.getDestination());
+        timeColumns[0].writeInt(toEpochMinutes(flight.getDepartureTime()));
+        timeColumns[1].writeInt(toEpochMinutes(flight.getArrivalTime()));
+        if (flight.getServices() != null) {
+            addServices(flight.getServices());
+        }
+        rowCount++;
+    }
+
+    /**
+     * Method to record a source file of the snapshot with its current size and modification time
+     *
+     * @param file path to the source file
+     * @throws IOException if an I/O error occurs
+     */
+    public void addSource(Path file) throws IOException {
+        sources.add(sourceLine(file));
+    }
+
+    /**
+     * Method to get the number of rows written
+     *
+     * @return number of rows
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Method to complete the column files and to write the manifest of the source files.
+     * Every column file is closed even if completing another one fails, and the manifest
+     * is only written when all columns were completed
+     *
+     * @throws IOException the first error that occurred, with the later ones suppressed
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (DictionaryColumn column : dictionaryColumns) {
+            try {
+                column.complete();
+            } catch (IOException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        for (ColumnFile column : timeColumns) {
+            try (column) {
+                column.writeHeader(ColumnFile.EPOCH_MINUTES, Integer.BYTES, rowCount, 0, column.position());
+            } catch (IOException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        try {
+            writeServices();
+        } catch (IOException e) {
+            failure = addFailure(failure, e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        Files.write(directory.resolve(SOURCES_FILE), sources);
+    }
+
+    /**
+     * Method to get the manifest line of a source file
+     *
+     * @param file path to the source file
+     * @return size, modification time in milliseconds and absolute path, separated by tabs
+     * @throws IOException if an I/O error occurs
+     */
+    static String sourceLine(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return attributes.size() + "\t" + attributes.lastModifiedTime().toMillis() + "\t"
+                + file.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Method to keep the first error of closing the columns
+     *
+     * @param failure first error so far, may be {@code null}
+     * @param e       new error
+     * @return first error, with the new one suppressed if it is not the first
+     */
+    private static IOException addFailure(IOException failure, IOException e) {
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    /**
+     * Method to convert a time to minutes since the epoch in UTC
+     *
+     * @param time time to convert, may be {@code null}
+     * @return minutes since the epoch, or {@link #MISSING_TIME} for a missing time
+     */
+    private static int toEpochMinutes(LocalDateTime time) {
+        return time == null ? MISSING_TIME : Math.toIntExact(time.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    /**
+     * Method to set the bits of the current row for each service of a comma-separated list
+     *
+     * @param services comma-separated list of services
+     */
+    private void addServices(String services) {
+        if (services.contains(",")) {
+            for (String service : services.split(",")) {
+                setServiceBit(codeOfService(service.trim()));
+            }
+        } else {
+            setServiceBit(codeOfService(services));
+        }
+    }
+
+    /**
+     * Method to set the bit of the current row in the bitset of a service
+     *
+     * @param code code of the service
+     */
+    private void setServiceBit(int code) {
+        long[] bitset = serviceBitsets.get(code);
+        int word = (int) (rowCount >>> 6);
+        if (word >= bitset.length) {
+            bitset = Arrays.copyOf(bitset, Math.max(2 * bitset.length, word + 1));
+            serviceBitsets.set(code, bitset);
+        }
+        bitset[word] |= 1L << rowCount;
+    }
+
+    /**
+     * Method to get the code of a service, adding the service to the dictionary if it is new
+     *
+     * @param service name of the service
+     * @return code of the service
+     */
+    private int codeOfService(String service) {
+        return serviceCodes.computeIfAbsent(service, name -> {
+            serviceNames.add(name);
+            serviceBitsets.add(new long[16]);
+            return serviceNames.size() - 1;
+        });
+    }
+
+    /**
+     * Method to write the services column, the bitset of each service
+     * padded to the number of rows followed by the service names
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeServices() throws IOException {
+        int words = (int) ((rowCount + 63) >>> 6);
+        try (ColumnFile column = new ColumnFile(ColumnFile.of(directory, SERVICES))) {
+            for (long[] bitset : serviceBitsets) {
+                for (int word = 0; word < words; word++) {
+                    column.writeLong(word < bitset.length ? bitset[word] : 0);
+                }
+            }
+            long entriesOffset = column.position();
+            for (String service : serviceNames) {
+                column.writeString(service);
+            }
+            column.writeHeader(ColumnFile.BITSETS, 0, rowCount, serviceNames.size(), entriesOffset);
+        }
+    }
+
+    /**
+     * Dictionary-encoded column. Codes are written to a temporary file while
+     * rows are added and are narrowed to the width that fits the dictionary
+     * when the column is completed
+     */
+    private class DictionaryColumn {
+
+        /**
+         * Name of the attribute
+         */
+        private final String attribute;
+
+        /**
+         * Temporary file holding the codes as ints
+         */
+        private final Path codesFile;
+
+        /**
+         * Writer of the temporary file
+         */
+        private final ColumnFile codes;
+
+        /**
+         * Codes of the values keyed by value, starting from {@code 1}
+         */
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        /**
+         * Values in the order of their codes
+         */
+        private final List<String> values = new ArrayList<>();
+
+        /**
+         * Constructor, opens the temporary file of the codes
+         *
+         * @param attribute name of the attribute
+         * @throws IOException if an I/O error occurs
+         */
+        DictionaryColumn(String attribute) throws IOException {
+            this.attribute = attribute;
+            this.codesFile = directory.resolve(attribute + CODES_EXTENSION);
+            this.codes = new ColumnFile(codesFile);
+        }
+
+        /**
+         * Method to append the code of a value
+         *
+         * @param value value to append, may be {@code null}
+         * @throws IOException if an I/O error occurs
+         */
+        void add(String value) throws IOException {
+            if (value == null) {
+                codes.writeInt(0);
+                return;
+            }
+            codes.writeInt(dictionary.computeIfAbsent(value, key -> {
+                values.add(key);
+                return values.size();
+            }));
+        }
+
+        /**
+         * Method to close the temporary file, to write the column file from it
+         * and to delete it, also when writing the column file fails
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        void complete() throws IOException {
+            try {
+                codes.close();
+                writeColumn();
+            } finally {
+                Files.deleteIfExists(codesFile);
+            }
+        }
+
+        /**
+         * Method to write the column file with the codes of the temporary file,
+         * narrowed to the width that fits the dictionary, followed by the dictionary
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        private void writeColumn() throws IOException {
+            int width = values.size() < (1 << 8) ? Byte.BYTES : values.size() < (1 << 16) ? Short.BYTES : Integer.BYTES;
+            try (FileChannel input = FileChannel.open(codesFile, StandardOpenOption.READ);
+                 ColumnFile column = new ColumnFile(ColumnFile.of(directory, attribute))) {
+                long offset = ColumnFile.HEADER_SIZE;
+                long remaining = rowCount;
+                while (remaining > 0) {
+                    int count = (int) Math.min(remaining, ColumnarSnapshot.WINDOW_SIZE / Integer.BYTES);
+                    MappedByteBuffer window = input.map(FileChannel.MapMode.READ_ONLY, offset, (long) count * Integer.BYTES);
+                    window.order(ByteOrder.LITTLE_ENDIAN);
+                    for (int i = 0; i < count; i++) {
+                        int code = window.getInt();
+                        switch (width) {
+                            case Byte.BYTES -> column.writeByte(code);
+                            case Short.BYTES -> column.writeShort(code);
+                            default -> column.writeInt(code);
+                        }
+                    }
+                    offset += (long) count * Integer.BYTES;
+                    remaining -= count;
+                }
+                long entriesOffset = column.position();
+                for (String value : values) {
+                    column.writeString(value);
+                }
+                column.writeHeader(ColumnFile.DICTIONARY, width, rowCount, values.size(), entriesOffset);
+            }
+        }
+    }
+}
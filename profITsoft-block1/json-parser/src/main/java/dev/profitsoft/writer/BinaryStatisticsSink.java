@@ -0,0 +1,262 @@
+package dev.profitsoft.writer;
+
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.StatisticsIterator;
+import dev.profitsoft.collector.TimeSeriesStatistics;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sink writing statistics in a compact binary format, the cheapest to load.
+ * <p>The file starts with the {@code FSTB} magic bytes, the format version and
+ * a flags byte, bit {@code 0} marking estimated counts followed by the maximum
+ * error as a varint, bit {@code 1} marking time series followed by the name
+ * of the bucket. Each entry follows as the length of the UTF-8 bytes of its
+ * value as a varint, the bytes and the count as a varint, until the end of
+ * the file. Varints are unsigned LEB128, seven bits per byte, lowest first,
+ * so small counts take a single byte.</p>
+ */
+public class BinaryStatisticsSink implements StatisticsSink {
+
+    /**
+     * Magic bytes at the start of the statistics files
+     */
+    private static final byte[] MAGIC = {'F', 'S', 'T', 'B'};
+
+    /**
+     * Version of the format
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Flag of estimated counts
+     */
+    private static final int ESTIMATED_FLAG = 1;
+
+    /**
+     * Flag of time series
+     */
+    private static final int TIME_SERIES_FLAG = 2;
+
+    /**
+     * Size of the buffer entries are encoded into
+     */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    /**
+     * Maximum number of bytes of a varint
+     */
+    private static final int MAX_VARINT_LENGTH = 10;
+
+    @Override
+    public String getExtension() {
+        return "bin";
+    }
+
+    @Override
+    public void write(OutputStream output, StatisticsCollector collector, StatisticsIterator statistics)
+            throws IOException {
+        Encoder encoder = new Encoder(output);
+        encoder.writeBytes(MAGIC, MAGIC.length);
+        encoder.ensure(2);
+        encoder.buffer[encoder.position++] = VERSION;
+        if (collector instanceof TimeSeriesStatistics timeSeries) {
+            encoder.buffer[encoder.position++] = TIME_SERIES_FLAG;
+            encoder.writeString(timeSeries.getBucket().name().toLowerCase(Locale.ROOT));
+        } else if (collector.isEstimated()) {
+            encoder.buffer[encoder.position++] = ESTIMATED_FLAG;
+            encoder.writeVarint(collector.getMaximumError());
+        } else {
+            encoder.buffer[encoder.position++] = 0;
+        }
+        while (statistics.next()) {
+            encoder.writeString(statistics.getValue());
+            encoder.writeVarint(statistics.getCount());
+        }
+        encoder.flush();
+    }
+
+    /**
+     * Method to read statistics written by the sink
+     *
+     * @param input stream to read from, positioned at the start of the file
+     * @return counts keyed by value, in the order they were written
+     * @throws IOException if an I/O error occurs or the stream is not in the format of the sink
+     */
+    public static Map<String, Long> read(InputStream input) throws IOException {
+        byte[] magic = input.readNBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC) || input.read() != VERSION) {
+            throw new IOException("Not a binary statistics file");
+        }
+        int flags = input.read();
+        if ((flags & ESTIMATED_FLAG) != 0) {
+            readVarint(input);
+        }
+        if ((flags & TIME_SERIES_FLAG) != 0) {
+            readString(input, (int) readVarint(input));
+        }
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        int first;
+        while ((first = input.read()) != -1) {
+            String value = readString(input, (int) readVarint(input, first));
+            statistics.put(value, readVarint(input));
+        }
+        return statistics;
+    }
+
+    /**
+     * Method to read a varint
+     *
+     * @param input stream to read from
+     * @return value of the varint
+     * @throws IOException if an I/O error occurs or the stream ends
+     */
+    private static long readVarint(InputStream input) throws IOException {
+        return readVarint(input, input.read());
+    }
+
+    /**
+     * Method to read a varint whose first byte has been read
+     *
+     * @param input stream to read from
+     * @param first first byte of the varint
+     * @return value of the varint
+     * @throws IOException if an I/O error occurs or the stream ends
+     */
+    private static long readVarint(InputStream input, int first) throws IOException {
+        long value = 0;
+        int current = first;
+        for (int shift = 0; ; shift += 7) {
+            if (current == -1) {
+                throw new EOFException("Truncated binary statistics file");
+            }
+            value |= (long) (current & 0x7f) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+            current = input.read();
+        }
+    }
+
+    /**
+     * Method to read a UTF-8 string
+     *
+     * @param input  stream to read from
+     * @param length number of bytes of the string
+     * @return the string
+     * @throws IOException if an I/O error occurs or the stream ends
+     */
+    private static String readString(InputStream input, int length) throws IOException {
+        byte[] bytes = input.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("Truncated binary statistics file");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encoder of entries into a buffer flushed to the output stream when full
+     */
+    private static class Encoder {
+
+        /**
+         * Stream to write to
+         */
+        private final OutputStream output;
+
+        /**
+         * Buffer of the encoded bytes
+         */
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        /**
+         * Number of bytes in the buffer
+         */
+        private int position;
+
+        /**
+         * Constructor, sets the stream to write to
+         *
+         * @param output stream to write to
+         */
+        Encoder(OutputStream output) {
+            this.output = output;
+        }
+
+        /**
+         * Method to write a string as the varint length of its UTF-8 bytes followed by the bytes
+         *
+         * @param value string to write
+         * @throws IOException if an I/O error occurs
+         */
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes, bytes.length);
+        }
+
+        /**
+         * Method to write a non-negative number as a varint
+         *
+         * @param value number to write
+         * @throws IOException if an I/O error occurs
+         */
+        void writeVarint(long value) throws IOException {
+            ensure(MAX_VARINT_LENGTH);
+            long remaining = value;
+            while ((remaining & ~0x7fL) != 0) {
+                buffer[position++] = (byte) ((remaining & 0x7f) | 0x80);
+                remaining >>>= 7;
+            }
+            buffer[position++] = (byte) remaining;
+        }
+
+        /**
+         * Method to write bytes
+         *
+         * @param bytes  bytes to write
+         * @param length number of bytes to write
+         * @throws IOException if an I/O error occurs
+         */
+        void writeBytes(byte[] bytes, int length) throws IOException {
+            if (length > buffer.length) {
+                flush();
+                output.write(bytes, 0, length);
+                return;
+            }
+            ensure(length);
+            System.arraycopy(bytes, 0, buffer, position, length);
+            position += length;
+        }
+
+        /**
+         * Method to make room for a number of bytes in the buffer
+         *
+         * @param length number of bytes
+         * @throws IOException if an I/O error occurs
+         */
+        void ensure(int length) throws IOException {
+            if (position + length > buffer.length) {
+                flush();
+            }
+        }
+
+        /**
+         * Method to write the buffered bytes to the stream
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        void flush() throws IOException {
+            output.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package dev.profitsoft.writer;
+
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.StatisticsIterator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sink writing statistics as CSV.
+ * <p>The first line is the {@code value,count} header, followed by a line per
+ * entry. Values holding a comma, a quote or a line break are quoted as in
+ * RFC 4180. Whether the counts are estimated is not written.</p>
+ */
+public class CsvStatisticsSink implements StatisticsSink {
+
+    /**
+     * Header line of the statistics files
+     */
+    private static final String HEADER = "value,count\n";
+
+    /**
+     * Size of the buffer of characters
+     */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    @Override
+    public String getExtension() {
+        return "csv";
+    }
+
+    @Override
+    public void write(OutputStream output, StatisticsCollector collector, StatisticsIterator statistics)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write(HEADER);
+        while (statistics.next()) {
+            writeValue(writer, statistics.getValue());
+            writer.write(',');
+            writer.write(Long.toString(statistics.getCount()));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Method to write a value, quoting it if needed
+     *
+     * @param writer writer to write to
+     * @param value  value to write
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeValue(Writer writer, String value) throws IOException {
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,64 @@
+package dev.profitsoft.writer;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.StatisticsIterator;
+import dev.profitsoft.collector.TimeSeriesStatistics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Sink writing statistics as a JSON object.
+ * <p>The object holds an {@code items} array with an object per entry, like
+ * {@code {"items":[{"value":"KBP","count":2}]}}, preceded by the
+ * {@code estimated} and {@code maxError} fields for estimated counts or the
+ * {@code bucket} field for time series.</p>
+ */
+public class JsonStatisticsSink implements StatisticsSink {
+
+    /**
+     * Field names of an entry
+     */
+    private static final SerializedString VALUE = new SerializedString("value");
+    private static final SerializedString COUNT = new SerializedString("count");
+
+    /**
+     * Factory of the JSON generators
+     */
+    private final JsonFactory factory = new JsonFactory();
+
+    @Override
+    public String getExtension() {
+        return "json";
+    }
+
+    @Override
+    public void write(OutputStream output, StatisticsCollector collector, StatisticsIterator statistics)
+            throws IOException {
+        try (JsonGenerator generator = factory.createGenerator(output, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            if (collector instanceof TimeSeriesStatistics timeSeries) {
+                generator.writeStringField("bucket", timeSeries.getBucket().name().toLowerCase(Locale.ROOT));
+            } else if (collector.isEstimated()) {
+                generator.writeBooleanField("estimated", true);
+                generator.writeNumberField("maxError", collector.getMaximumError());
+            }
+            generator.writeArrayFieldStart("items");
+            while (statistics.next()) {
+                generator.writeStartObject();
+                generator.writeFieldName(VALUE);
+                generator.writeString(statistics.getValue());
+                generator.writeFieldName(COUNT);
+                generator.writeNumber(statistics.getCount());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package dev.profitsoft.writer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Format of the statistics files
+ */
+public enum OutputFormat {
+
+    /**
+     * XML, written by {@link XmlStatisticsSink}
+     */
+    XML,
+
+    /**
+     * JSON object, written by {@link JsonStatisticsSink}
+     */
+    JSON,
+
+    /**
+     * CSV with a header line, written by {@link CsvStatisticsSink}
+     */
+    CSV,
+
+    /**
+     * Length-prefixed values and varint counts, written by {@link BinaryStatisticsSink}
+     */
+    BINARY;
+
+    /**
+     * Method to create the sink writing the format
+     *
+     * @return new sink
+     */
+    public StatisticsSink createSink() {
+        return switch (this) {
+            case XML -> new XmlStatisticsSink();
+            case JSON -> new JsonStatisticsSink();
+            case CSV -> new CsvStatisticsSink();
+            case BINARY -> new BinaryStatisticsSink();
+        };
+    }
+
+    /**
+     * Method to create the sinks of a comma-separated list of formats
+     *
+     * @param formats formats like {@code xml,json,csv,binary}, case-insensitive
+     * @return sinks in the order of the list
+     * @throws IllegalArgumentException if a format is unknown
+     */
+    public static List<StatisticsSink> createSinks(String formats) {
+        List<StatisticsSink> sinks = new ArrayList<>();
+        for (String format : formats.split(",")) {
+            sinks.add(valueOf(format.trim().toUpperCase(Locale.ROOT)).createSink());
+        }
+        return sinks;
+    }
+}
@@ -0,0 +1,158 @@
+package dev.profitsoft.writer;
+
+import dev.profitsoft.collector.CountSort;
+import dev.profitsoft.collector.StatisticsIterator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Snapshot of collected statistics sorted by count in descending order.
+ * <p>Entries are kept in parallel primitive arrays and ordered through an index
+ * array, so sorting takes a constant amount of memory per entry and no
+ * object is created per entry. Entries with equal counts keep
+ * the iteration order of the source map.</p>
+ */
+public class SortedStatistics {
+
+    /**
+     * Values of the entries in the iteration order of the source map
+     */
+    private final String[] values;
+
+    /**
+     * Counts of the entries in the iteration order of the source map
+     */
+    private final long[] counts;
+
+    /**
+     * Positions of the entries sorted by count in descending order
+     */
+    private final int[] order;
+
+    /**
+     * Constructor, copies the statistics and sorts them by count
+     *
+     * @param statistics map of values and their counts
+     */
+    public SortedStatistics(Map<String, Long> statistics) {
+        int size = statistics.size();
+        String[] entryValues = new String[size];
+        long[] entryCounts = new long[size];
+        int index = 0;
+        for (Map.Entry<String, Long> entry : statistics.entrySet()) {
+            if (index == size) {
+                break;
+            }
+            entryValues[index] = entry.getKey();
+            entryCounts[index] = entry.getValue();
+            index++;
+        }
+        this.values = entryValues;
+        this.counts = entryCounts;
+        this.order = CountSort.sortByCountDescending(entryCounts, index);
+    }
+
+    /**
+     * Constructor, keeps entries that are already in order
+     *
+     * @param values values of the entries
+     * @param counts counts of the entries
+     * @param size   number of entries
+     */
+    private SortedStatistics(String[] values, long[] counts, int size) {
+        this.values = values;
+        this.counts = counts;
+        this.order = new int[size];
+        Arrays.setAll(order, rank -> rank);
+    }
+
+    /**
+     * Method to copy the entries of an iterator, keeping their order,
+     * so that they can be iterated several times, also at the same time
+     *
+     * @param statistics iterator over the entries, not closed by the method
+     * @return snapshot of the entries in the order of the iterator
+     * @throws IOException if an I/O error occurs
+     */
+    public static SortedStatistics copyOf(StatisticsIterator statistics) throws IOException {
+        String[] values = new String[16];
+        long[] counts = new long[16];
+        int size = 0;
+        while (statistics.next()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            values[size] = statistics.getValue();
+            counts[size] = statistics.getCount();
+            size++;
+        }
+        return new SortedStatistics(values, counts, size);
+    }
+
+    /**
+     * Returns the number of entries
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Returns the value of an entry
+     *
+     * @param rank position of the entry in the sorted order
+     * @return value of the entry
+     */
+    public String getValue(int rank) {
+        return values[order[rank]];
+    }
+
+    /**
+     * Returns the count of an entry
+     *
+     * @param rank position of the entry in the sorted order
+     * @return count of the entry
+     */
+    public long getCount(int rank) {
+        return counts[order[rank]];
+    }
+
+    /**
+     * Method to iterate over the entries in the sorted order.
+     * Each call returns an independent iterator
+     *
+     * @return iterator over the entries
+     */
+    public StatisticsIterator iterator() {
+        return new StatisticsIterator() {
+
+            /**
+             * Position of the current entry in the sorted order
+             */
+            private int rank = -1;
+
+            @Override
+            public boolean next() {
+                return ++rank < size();
+            }
+
+            @Override
+            public String getValue() {
+                return SortedStatistics.this.getValue(rank);
+            }
+
+            @Override
+            public long getCount() {
+                return SortedStatistics.this.getCount(rank);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package dev.profitsoft.writer;
+
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.StatisticsIterator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Format the statistics of an attribute are written in.
+ * <p>A sink streams the entries of an iterator to an output stream without
+ * keeping them, and is stateless, so one sink can write several files
+ * at the same time.</p>
+ */
+public interface StatisticsSink {
+
+    /**
+     * Returns the extension of the files written by the sink
+     *
+     * @return extension without the dot, for example {@code xml}
+     */
+    String getExtension();
+
+    /**
+     * Method to write the statistics of a collector
+     *
+     * @param output     stream to write to, closed by the caller
+     * @param collector  collector the statistics come from, describing whether the counts are
+     *                   estimated and whether the values are time buckets
+     * @param statistics statistics in the order they are written
+     * @throws IOException if an I/O error occurs
+     */
+    void write(OutputStream output, StatisticsCollector collector, StatisticsIterator statistics) throws IOException;
+}
@@ -1,29 +1,50 @@
 package dev.profitsoft.writer;
 
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
-import com.fasterxml.jackson.dataformat.xml.ser.ToXmlGenerator;
+import dev.profitsoft.collector.CountOrderedStatistics;
 import dev.profitsoft.collector.StatisticsCollector;
-import lombok.RequiredArgsConstructor;
+import dev.profitsoft.collector.StatisticsIterator;
+import dev.profitsoft.collector.TimeSeriesStatistics;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Class for writing statistics to XML file.
- * The class uses Jackson library for XML serialization.
+ * Class for writing statistics to files, XML by default.
+ * The format of the files is given by {@link StatisticsSink} instances,
+ * entries are streamed to each file through its sink
+ * without building an object per entry. With several sinks the sorted
+ * statistics are taken once as a {@link SortedStatistics} snapshot
+ * and the files are written from it at the same time.
  */
-@RequiredArgsConstructor
 public class XMLStatisticsWriter {
 
     /**
-     * Path to the directory where the statistics files will be saved.
+     * Default path to the directory where the statistics files will be saved.
      */
     private static final Path STATISTICS_LOCATION = Paths.get("src/main/resources/");
 
+    /**
+     * Size of the buffer used to write the statistics files.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
     /**
      * Statistics collector that contains
      * the statistics to be written.
@@ -31,90 +52,327 @@ public class XMLStatisticsWriter {
     private final StatisticsCollector collector;
 
     /**
-     * Jackson XML mapper for marshalling statistics to XML.
+     * Path to the directory where the statistics files will be saved.
      */
-    private final XmlMapper xmlMapper;
+    private final Path statisticsLocation;
+
+    /**
+     * Sinks writing the statistics files, one file per sink.
+     */
+    private final List<StatisticsSink> sinks;
+
+    /**
+     * Executor writing the files of several sinks at the same time,
+     * {@code null} to create one for each write.
+     */
+    private final ExecutorService executor;
 
     /**
      * Constructor that configures the writer
      * and the statistics collector.
+     * The statistics files are saved to {@code src/main/resources/}.
      *
      * @param collector statistics collector
      */
     public XMLStatisticsWriter(StatisticsCollector collector) {
+        this(collector, STATISTICS_LOCATION);
+    }
+
+    /**
+     * Constructor that configures the writer, the statistics
+     * collector and the directory for the XML statistics files.
+     *
+     * @param collector          statistics collector
+     * @param statisticsLocation path to the directory where the statistics files will be saved
+     */
+    public XMLStatisticsWriter(StatisticsCollector collector, Path statisticsLocation) {
+        this(collector, statisticsLocation, List.of(new XmlStatisticsSink()));
+    }
+
+    /**
+     * Constructor that configures the writer, the statistics
+     * collector, the directory and the formats of the statistics files.
+     *
+     * @param collector          statistics collector
+     * @param statisticsLocation path to the directory where the statistics files will be saved
+     * @param sinks              sinks writing the statistics files, at least one
+     */
+    public XMLStatisticsWriter(StatisticsCollector collector, Path statisticsLocation, List<StatisticsSink> sinks) {
+        this(collector, statisticsLocation, sinks, null);
+    }
+
+    /**
+     * Constructor that configures the writer, the statistics
+     * collector, the directory and the formats of the statistics files,
+     * whose files are written by an executor shared by several writers.
+     *
+     * @param collector          statistics collector
+     * @param statisticsLocation path to the directory where the statistics files will be saved
+     * @param sinks              sinks writing the statistics files, at least one
+     * @param executor           executor writing the files of several sinks, {@code null} to create one
+     */
+    public XMLStatisticsWriter(StatisticsCollector collector, Path statisticsLocation, List<StatisticsSink> sinks,
+                               ExecutorService executor) {
+        if (sinks.isEmpty()) {
+            throw new IllegalArgumentException("At least one statistics sink is required");
+        }
         this.collector = collector;
-        this.xmlMapper = new XmlMapper();
-        this.xmlMapper.configure(ToXmlGenerator.Feature.WRITE_XML_DECLARATION, true);
+        this.statisticsLocation = statisticsLocation;
+        this.sinks = List.copyOf(sinks);
+        this.executor = executor;
     }
 
     /**
-     * Writes the statistics to an XML file.
-     * The file name is based on the attribute
-     * that the statistics are grouped by.
+     * Writes the statistics to a file per sink.
+     * The file names are based on the attribute
+     * that the statistics are grouped by. Errors are
+     * reported and do not stop the caller.
      *
      * @param attribute attribute to group statistics by
      */
     public void writeStatistics(String attribute) {
         try {
-            xmlMapper.writeValue(
-                    getOutputFile(attribute),
-                    getMappedCollectorStatistics()
-            );
+            write(attribute);
         } catch (IOException e) {
             System.out.println("Error writing statistics to file: " + e.getMessage());
         }
     }
 
     /**
-     * Returns the statistics object based on the
-     * statistics collector.
+     * Writes the statistics to a file per sink.
+     * The file names are based on the attribute
+     * that the statistics are grouped by. A single sink streams the
+     * statistics straight from the collector, several sinks write
+     * in parallel from one snapshot of the sorted statistics.
+     * Every file is attempted even if another one fails.
      *
-     * @return statistics object
+     * @param attribute attribute to group statistics by
+     * @throws IOException if a file cannot be written, the errors of the other files are suppressed by it
      */
-    private Statistics getMappedCollectorStatistics() {
-        return new Statistics(
-                collector.getStatistics().entrySet().stream()
-                        .sorted((entry1, entry2) -> entry2.getValue().compareTo(entry1.getValue()))
-                        .map(entry -> new StatisticItem(entry.getKey(), entry.getValue()))
-                        .collect(Collectors.toList())
-        );
+    public void write(String attribute) throws IOException {
+        if (sinks.size() == 1) {
+            writeStatistics(attribute, sinks.get(0), iterate());
+            return;
+        }
+        SortedStatistics snapshot = snapshot();
+        if (executor != null) {
+            write(attribute, snapshot, executor);
+            return;
+        }
+        int threads = Math.min(sinks.size(), Runtime.getRuntime().availableProcessors());
+        try (ExecutorService writeExecutor = Executors.newFixedThreadPool(threads)) {
+            write(attribute, snapshot, writeExecutor);
+        }
     }
 
     /**
-     * Returns the path to the output file
-     * based on the attribute that the statistics
-     * are grouped by.
+     * Writes the files of all sinks from a snapshot of the statistics
+     * at the same time, waiting for all of them to complete.
      *
-     * @param attribute attribute to group statistics by
-     * @return path to the output file
+     * @param attribute     attribute to group statistics by
+     * @param snapshot      snapshot of the sorted statistics
+     * @param writeExecutor executor writing the files
+     * @throws IOException if a file cannot be written or the thread is interrupted while waiting
      */
-    File getOutputFile(String attribute) {
-        return new File(STATISTICS_LOCATION.resolve("statistics_by_" + attribute + ".xml").toString());
+    private void write(String attribute, SortedStatistics snapshot, ExecutorService writeExecutor)
+            throws IOException {
+        List<Future<?>> writes = new ArrayList<>();
+        for (StatisticsSink sink : sinks) {
+            writes.add(writeExecutor.submit(() -> {
+                writeStatistics(attribute, sink, snapshot.iterator());
+                return null;
+            }));
+        }
+        IOException failure = null;
+        for (Future<?> write : writes) {
+            try {
+                write.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                writes.forEach(pending -> pending.cancel(true));
+                throw new InterruptedIOException("Interrupted while writing statistics");
+            } catch (ExecutionException e) {
+                IOException cause = e.getCause() instanceof IOException ioException
+                        ? ioException : new IOException(e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
     }
 
     /**
-     * Inner class for representing a statistic item.
-     * Used for marshalling statistics to XML as object template.
+     * Writes the statistics to the file of a sink.
+     * The statistics are written to a temporary file that then replaces
+     * the file, so readers never see a partially written file.
+     *
+     * @param attribute  attribute to group statistics by
+     * @param sink       sink writing the file
+     * @param statistics statistics in the order they are written, closed by the method
+     * @throws IOException if the file cannot be written, the temporary file is then deleted
      */
-    private static class StatisticItem {
-        public String value;
-        public Long count;
+    private void writeStatistics(String attribute, StatisticsSink sink, StatisticsIterator statistics)
+            throws IOException {
+        Path outputFile = getOutputFile(attribute, sink).toPath();
+        Path tempFile = outputFile.resolveSibling(outputFile.getFileName() + ".tmp");
+        try {
+            try (
+                    statistics;
+                    FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                    OutputStream output = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE)
+            ) {
+                sink.write(output, collector, statistics);
+            }
+            Files.move(tempFile, outputFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            throw e;
+        }
+    }
 
-        public StatisticItem(String value, Long count) {
-            this.value = value;
-            this.count = count;
+    /**
+     * Returns the statistics of the collector in time order for time series,
+     * sorted by count otherwise. Collectors that can stream their statistics
+     * in count order are read without building the map of statistics
+     *
+     * @return iterator over the statistics in the order they are written
+     * @throws IOException if an I/O error occurs
+     */
+    private StatisticsIterator iterate() throws IOException {
+        if (collector instanceof TimeSeriesStatistics timeSeries) {
+            return timeSeries.iterateByTime();
+        }
+        if (collector instanceof CountOrderedStatistics countOrderedStatistics) {
+            return countOrderedStatistics.iterateByCount();
         }
+        return new SortedStatistics(collector.getStatistics()).iterator();
     }
 
     /**
-     * Inner class for representing statistics list.
-     * Used for marshalling statistics to XML as object template.
+     * Returns the statistics of the collector in the order of {@link #iterate()}
+     * as a snapshot that can be iterated by several sinks at the same time
+     *
+     * @return snapshot of the statistics
+     * @throws IOException if an I/O error occurs
      */
-    private static class Statistics {
-        public List<StatisticItem> item;
+    private SortedStatistics snapshot() throws IOException {
+        if (collector instanceof TimeSeriesStatistics || collector instanceof CountOrderedStatistics) {
+            try (StatisticsIterator statistics = iterate()) {
+                return SortedStatistics.copyOf(statistics);
+            }
+        }
+        return new SortedStatistics(collector.getStatistics());
+    }
+
+    /**
+     * Deletes a temporary file if it exists,
+     * ignoring any error.
+     *
+     * @param file path to the file
+     */
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // nothing left to do
+        }
+    }
+
+    /**
+     * Writes the statistics of several attributes,
+     * one file per attribute and sink.
+     *
+     * @param collectors         statistics collectors keyed by attribute
+     * @param statisticsLocation path to the directory where the statistics files will be saved
+     * @param sinks              sinks writing the statistics files, at least one
+     */
+    public static void writeAll(Map<String, ? extends StatisticsCollector> collectors, Path statisticsLocation,
+                                List<StatisticsSink> sinks) {
+        collectors.forEach((attribute, collector) ->
+                new XMLStatisticsWriter(collector, statisticsLocation, sinks).writeStatistics(attribute));
+    }
 
-        public Statistics(List<StatisticItem> item) {
-            this.item = item;
+    /**
+     * Writes the statistics of several attributes,
+     * one file per attribute and sink, the files of the
+     * sinks of an attribute are written by a shared executor.
+     * Every attribute is attempted even if another one fails.
+     *
+     * @param collectors         statistics collectors keyed by attribute
+     * @param statisticsLocation path to the directory where the statistics files will be saved
+     * @param sinks              sinks writing the statistics files, at least one
+     * @param executor           executor writing the files of several sinks
+     * @throws IOException if a file cannot be written, the errors of the other files are suppressed by it
+     */
+    public static void writeAll(Map<String, ? extends StatisticsCollector> collectors, Path statisticsLocation,
+                                List<StatisticsSink> sinks, ExecutorService executor) throws IOException {
+        IOException failure = null;
+        for (Map.Entry<String, ? extends StatisticsCollector> entry : collectors.entrySet()) {
+            try {
+                new XMLStatisticsWriter(entry.getValue(), statisticsLocation, sinks, executor).write(entry.getKey());
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
         }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes the statistics of several attributes,
+     * one XML file per attribute.
+     *
+     * @param collectors         statistics collectors keyed by attribute
+     * @param statisticsLocation path to the directory where the statistics files will be saved
+     */
+    public static void writeAll(Map<String, ? extends StatisticsCollector> collectors, Path statisticsLocation) {
+        collectors.forEach((attribute, collector) ->
+                new XMLStatisticsWriter(collector, statisticsLocation).writeStatistics(attribute));
+    }
+
+    /**
+     * Writes the statistics of several attributes to
+     * {@code src/main/resources/}, one XML file per attribute.
+     *
+     * @param collectors statistics collectors keyed by attribute
+     */
+    public static void writeAll(Map<String, ? extends StatisticsCollector> collectors) {
+        writeAll(collectors, STATISTICS_LOCATION);
+    }
+
+    /**
+     * Returns the path to the output file of the first sink
+     * based on the attribute that the statistics
+     * are grouped by.
+     *
+     * @param attribute attribute to group statistics by
+     * @return path to the output file
+     */
+    File getOutputFile(String attribute) {
+        return getOutputFile(attribute, sinks.get(0));
+    }
+
+    /**
+     * Returns the path to the output file of a sink
+     * based on the attribute that the statistics
+     * are grouped by.
+     *
+     * @param attribute attribute to group statistics by
+     * @param sink      sink writing the file
+     * @return path to the output file
+     */
+    File getOutputFile(String attribute, StatisticsSink sink) {
+        return new File(statisticsLocation.resolve("statistics_by_" + attribute + "." + sink.getExtension()).toString());
     }
 }
@@ -0,0 +1,94 @@
+package dev.profitsoft.writer;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.dataformat.xml.ser.ToXmlGenerator;
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.StatisticsIterator;
+import dev.profitsoft.collector.TimeSeriesStatistics;
+
+import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Sink writing statistics as XML.
+ * <p>Entries are streamed through the Jackson XML generator as a
+ * {@code Statistics} root element holding an {@code item} wrapper element
+ * with an {@code item} element per entry, which is the layout Jackson
+ * produces for a wrapped list of items. Estimated counts are marked with the
+ * {@code estimated} and {@code maxError} attributes of the root element, time
+ * series with the {@code bucket} attribute.</p>
+ */
+public class XmlStatisticsSink implements StatisticsSink {
+
+    /**
+     * Name of the root element of the statistics files.
+     */
+    private static final QName ROOT_ELEMENT = new QName("Statistics");
+
+    /**
+     * Name of the wrapper element and of the elements of the statistic items.
+     */
+    private static final String ITEM_ELEMENT = "item";
+
+    /**
+     * Jackson XML mapper for marshalling statistics to XML.
+     */
+    private final XmlMapper xmlMapper;
+
+    /**
+     * Constructor, configures the mapper to write the XML declaration
+     */
+    public XmlStatisticsSink() {
+        this.xmlMapper = new XmlMapper();
+        this.xmlMapper.configure(ToXmlGenerator.Feature.WRITE_XML_DECLARATION, true);
+    }
+
+    @Override
+    public String getExtension() {
+        return "xml";
+    }
+
+    @Override
+    public void write(OutputStream output, StatisticsCollector collector, StatisticsIterator statistics)
+            throws IOException {
+        try (ToXmlGenerator generator = xmlMapper.getFactory().createGenerator(output)) {
+            generator.setNextName(ROOT_ELEMENT);
+            generator.initGenerator();
+            generator.writeStartObject();
+            if (collector instanceof TimeSeriesStatistics timeSeries) {
+                generator.setNextIsAttribute(true);
+                generator.writeStringField("bucket", timeSeries.getBucket().name().toLowerCase(Locale.ROOT));
+                generator.setNextIsAttribute(false);
+            } else if (collector.isEstimated()) {
+                generator.setNextIsAttribute(true);
+                generator.writeBooleanField("estimated", true);
+                generator.writeNumberField("maxError", collector.getMaximumError());
+                generator.setNextIsAttribute(false);
+            }
+            writeItems(generator, statistics);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes the {@code item} wrapper element holding an {@code item} element per entry.
+     *
+     * @param generator  XML generator to write to
+     * @param statistics statistics in the order they are written
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeItems(ToXmlGenerator generator, StatisticsIterator statistics) throws IOException {
+        generator.writeFieldName(ITEM_ELEMENT);
+        generator.writeStartObject();
+        while (statistics.next()) {
+            generator.writeFieldName(ITEM_ELEMENT);
+            generator.writeStartObject();
+            generator.writeStringField("value", statistics.getValue());
+            generator.writeNumberField("count", statistics.getCount());
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,147 @@
+package dev.profitsoft.cache;
+
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.TopKStatisticsCollector;
+import dev.profitsoft.parser.FlightDataParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatisticsCacheTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    private Path dataDirectory;
+
+    private Path cacheFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Given
+        dataDirectory = Files.createDirectory(tempDirectory.resolve("data"));
+        cacheFile = tempDirectory.resolve("cache.json");
+        Files.writeString(dataDirectory.resolve("flight1.json"), "[{\"departure\":\"KBP\"},{\"departure\":\"LHR\"}]");
+        Files.writeString(dataDirectory.resolve("flight2.json"), "[{\"departure\":\"KBP\"}]");
+    }
+
+    @Test
+    void testParse_ReusesStatisticsOfUnchangedFiles() throws IOException {
+        // Given
+        parseWithCache();
+
+        // When
+        StatisticsCache cache = new StatisticsCache(cacheFile);
+        StatisticsCollector collector = parseWithCache(cache);
+
+        // Then
+        assertEquals(Map.of("KBP", 2L, "LHR", 1L), collector.getStatistics());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    void testParse_ReparsesModifiedAndNewFiles() throws IOException {
+        // Given
+        parseWithCache();
+        Files.writeString(dataDirectory.resolve("flight2.json"), "[{\"departure\":\"WAW\"},{\"departure\":\"WAW\"}]");
+        Files.writeString(dataDirectory.resolve("flight3.json"), "[{\"departure\":\"LHR\"}]");
+
+        // When
+        StatisticsCache cache = new StatisticsCache(cacheFile);
+        StatisticsCollector collector = parseWithCache(cache);
+
+        // Then
+        assertEquals(Map.of("KBP", 1L, "LHR", 2L, "WAW", 2L), collector.getStatistics());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void testParse_ReusesTouchedFileWithSameContent() throws IOException {
+        // Given
+        parseWithCache();
+        Files.setLastModifiedTime(dataDirectory.resolve("flight1.json"), FileTime.from(Instant.now().plusSeconds(60)));
+
+        // When
+        StatisticsCache cache = new StatisticsCache(cacheFile);
+        StatisticsCollector collector = parseWithCache(cache);
+
+        // Then
+        assertEquals(Map.of("KBP", 2L, "LHR", 1L), collector.getStatistics());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    void testParse_ReparsesFilesForNewAttributes() throws IOException {
+        // Given
+        parseWithCache();
+        StatisticsCache cache = new StatisticsCache(cacheFile);
+        StatisticsCollector collector = new StatisticsCollector();
+        FlightDataParser parser = new FlightDataParser(dataDirectory.toString(), 2, "destination", collector);
+        parser.setStatisticsCache(cache);
+
+        // When
+        parser.parse();
+
+        // Then
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void testParse_KeepsCachedAttributesWhenAddingOthers() throws IOException {
+        // Given
+        parseWithCache();
+        StatisticsCollector destinations = new StatisticsCollector();
+        FlightDataParser parser = new FlightDataParser(dataDirectory.toString(), 2, "destination", destinations);
+        parser.setStatisticsCache(new StatisticsCache(cacheFile));
+        parser.parse();
+
+        // When
+        StatisticsCache cache = new StatisticsCache(cacheFile);
+        StatisticsCollector collector = parseWithCache(cache);
+
+        // Then
+        assertEquals(Map.of("KBP", 2L, "LHR", 1L), collector.getStatistics());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    void testParse_RejectsSplittingAndBoundedCollectors() throws IOException {
+        // Given
+        FlightDataParser splitting = new FlightDataParser(dataDirectory.toString(), 2, "departure",
+                new StatisticsCollector());
+        splitting.setStatisticsCache(new StatisticsCache(cacheFile));
+        splitting.setChunkSize(FlightDataParser.DEFAULT_CHUNK_SIZE);
+        FlightDataParser topK = new FlightDataParser(dataDirectory.toString(), 2, "departure",
+                new TopKStatisticsCollector(10));
+        topK.setStatisticsCache(new StatisticsCache(cacheFile));
+
+        // When & Then
+        assertThrows(IllegalStateException.class, splitting::parse);
+        assertThrows(IllegalStateException.class, topK::parse);
+        assertFalse(Files.exists(cacheFile));
+    }
+
+    private StatisticsCollector parseWithCache() throws IOException {
+        return parseWithCache(new StatisticsCache(cacheFile));
+    }
+
+    private StatisticsCollector parseWithCache(StatisticsCache cache) throws IOException {
+        StatisticsCollector collector = new StatisticsCollector();
+        FlightDataParser parser = new FlightDataParser(dataDirectory.toString(), 2, "departure", collector);
+        parser.setStatisticsCache(cache);
+        parser.parse();
+        return collector;
+    }
+}
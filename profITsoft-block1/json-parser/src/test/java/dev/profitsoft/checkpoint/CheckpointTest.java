@@ -0,0 +1,244 @@
+package dev.profitsoft.checkpoint;
+
+import dev.profitsoft.collector.SpillingStatisticsCollector;
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.TimeBucket;
+import dev.profitsoft.collector.TimeBucketStatisticsCollector;
+import dev.profitsoft.parser.FileSegment;
+import dev.profitsoft.parser.FlightDataParser;
+import dev.profitsoft.parser.InputFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    private Path dataDirectory;
+
+    private Path checkpointFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Given
+        dataDirectory = Files.createDirectory(tempDirectory.resolve("data"));
+        checkpointFile = tempDirectory.resolve("checkpoint.json");
+        Files.writeString(dataDirectory.resolve("flight1.json"), "[{\"departure\":\"KBP\"},{\"departure\":\"LHR\"}]");
+        Files.writeString(dataDirectory.resolve("flight2.json"), "[{\"departure\":\"KBP\"}]");
+    }
+
+    @Test
+    void testParse_ResumesWithoutParsingRecordedFilesAgain() throws IOException {
+        // Given
+        parse(false, 0, FlightDataParser.DEFAULT_TIMEOUT);
+        Files.writeString(dataDirectory.resolve("flight3.json"), "[{\"departure\":\"WAW\"}]");
+
+        // When
+        StatisticsCollector collector = parse(true, 0, FlightDataParser.DEFAULT_TIMEOUT);
+
+        // Then
+        assertEquals(Map.of("KBP", 2L, "LHR", 1L, "WAW", 1L), collector.getStatistics());
+        Checkpoint checkpoint = new Checkpoint(checkpointFile, Map.of("departure", new StatisticsCollector()),
+                Checkpoint.DEFAULT_INTERVAL);
+        assertTrue(checkpoint.resume());
+        assertEquals(3, checkpoint.getFileCount());
+    }
+
+    @Test
+    void testParse_ResumesAfterTimeoutWithExactCounts() throws IOException {
+        // Given
+        for (int i = 3; i < 40; i++) {
+            Files.writeString(dataDirectory.resolve("flight" + i + ".json"), "[{\"departure\":\"WAW\"}]");
+        }
+
+        // When
+        assertThrows(IOException.class, () -> parse(false, 0, Duration.ZERO));
+        StatisticsCollector collector = parse(true, 0, FlightDataParser.DEFAULT_TIMEOUT);
+
+        // Then
+        assertEquals(Map.of("KBP", 2L, "LHR", 1L, "WAW", 37L), collector.getStatistics());
+    }
+
+    @Test
+    void testIsCompleted_RecordsSegmentsOfSplitFiles() throws IOException {
+        // Given
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            lines.append("{\"departure\":\"KBP\"}\n");
+        }
+        Path file = dataDirectory.resolve("flights.ndjson");
+        Files.writeString(file, lines);
+        parse(false, 100, FlightDataParser.DEFAULT_TIMEOUT);
+
+        // When
+        Checkpoint checkpoint = new Checkpoint(checkpointFile, Map.of("departure", new StatisticsCollector()),
+                Checkpoint.DEFAULT_INTERVAL);
+        checkpoint.resume();
+
+        // Then
+        assertFalse(checkpoint.isFileCompleted(file));
+        assertTrue(checkpoint.isCompleted(new FileSegment(file, 0, 100, InputFormat.NDJSON)));
+        assertThrows(IllegalStateException.class, () -> checkpoint.isCompleted(FileSegment.wholeFile(file)));
+        Files.writeString(file, "{\"departure\":\"KBP\"}\n");
+        assertThrows(IllegalStateException.class, () -> checkpoint.isFileCompleted(file));
+    }
+
+    @Test
+    void testResume_MergesTimeBucketLabels() throws IOException {
+        // Given
+        TimeBucketStatisticsCollector collector = new TimeBucketStatisticsCollector(TimeBucket.HOUR);
+        collector.accept("2024-04-18T01:10:00");
+        new Checkpoint(checkpointFile, Map.of("departureTime", collector), Checkpoint.DEFAULT_INTERVAL).save();
+
+        // When
+        TimeBucketStatisticsCollector resumed = new TimeBucketStatisticsCollector(TimeBucket.HOUR);
+        new Checkpoint(checkpointFile, Map.of("departureTime", resumed), Checkpoint.DEFAULT_INTERVAL).resume();
+        resumed.accept("2024-04-18T01:45:00");
+
+        // Then
+        assertEquals(Map.of("2024-04-18T01", 2L), resumed.getStatistics());
+    }
+
+    @Test
+    void testParse_FailsOnFileChangedSinceTheCheckpoint() throws IOException {
+        // Given
+        parse(false, 0, FlightDataParser.DEFAULT_TIMEOUT);
+        Files.writeString(dataDirectory.resolve("flight2.json"), "[{\"departure\":\"WAW\"},{\"departure\":\"KBP\"}]");
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> parse(true, 0, FlightDataParser.DEFAULT_TIMEOUT));
+    }
+
+    @Test
+    void testParse_KeepsSavingAfterAFileFails() throws IOException {
+        // Given
+        Files.writeString(dataDirectory.resolve("flight3.json"), "[{\"departure\":\"WAW\"},{\"depar");
+        parse(false, 0, FlightDataParser.DEFAULT_TIMEOUT);
+        Files.writeString(dataDirectory.resolve("flight4.json"), "[{\"departure\":\"LHR\"}]");
+
+        // When
+        StatisticsCollector collector = parse(true, 0, FlightDataParser.DEFAULT_TIMEOUT);
+
+        // Then
+        assertEquals(Map.of("KBP", 2L, "LHR", 2L, "WAW", 1L), collector.getStatistics());
+        Checkpoint checkpoint = new Checkpoint(checkpointFile, Map.of("departure", new StatisticsCollector()),
+                Checkpoint.DEFAULT_INTERVAL);
+        assertTrue(checkpoint.resume());
+        assertTrue(checkpoint.isFileCompleted(dataDirectory.resolve("flight3.json")));
+        assertEquals(4, checkpoint.getFileCount());
+    }
+
+    @Test
+    void testEndSegment_DoesNotRecordInterruptedSegmentsNorSaveAgain() throws IOException {
+        // Given
+        Path file = dataDirectory.resolve("flight1.json");
+        Checkpoint checkpoint = new Checkpoint(checkpointFile, Map.of("departure", new StatisticsCollector()),
+                Checkpoint.DEFAULT_INTERVAL);
+        checkpoint.beginSegment();
+        checkpoint.endSegment(FileSegment.wholeFile(file), false);
+        assertTrue(checkpoint.save());
+
+        // When
+        checkpoint.beginSegment();
+        checkpoint.endSegment(FileSegment.wholeFile(dataDirectory.resolve("flight2.json")), true);
+
+        // Then
+        assertFalse(checkpoint.save());
+        Checkpoint resumed = new Checkpoint(checkpointFile, Map.of("departure", new StatisticsCollector()),
+                Checkpoint.DEFAULT_INTERVAL);
+        assertTrue(resumed.resume());
+        assertEquals(1, resumed.getFileCount());
+        assertTrue(resumed.isFileCompleted(file));
+    }
+
+    @Test
+    void testSeal_KeepsLastSaveWhenSegmentDoesNotFinishInTime() throws Exception {
+        // Given
+        StatisticsCollector collector = new StatisticsCollector();
+        Checkpoint checkpoint = new Checkpoint(checkpointFile, Map.of("departure", collector),
+                Checkpoint.DEFAULT_INTERVAL);
+        collector.accept("KBP");
+        checkpoint.save();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread worker = Thread.ofPlatform().start(() -> {
+            try {
+                checkpoint.beginSegment();
+                collector.accept("LHR");
+                started.countDown();
+                release.await();
+                checkpoint.endSegment(FileSegment.wholeFile(dataDirectory.resolve("flight1.json")), false);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        started.await();
+
+        // When
+        long start = System.nanoTime();
+        boolean sealed = checkpoint.seal(Duration.ofMillis(100));
+        long elapsed = System.nanoTime() - start;
+        release.countDown();
+        worker.join();
+
+        // Then
+        assertFalse(sealed);
+        assertTrue(elapsed < Duration.ofSeconds(5).toNanos());
+        assertThrows(IOException.class, checkpoint::beginSegment);
+        StatisticsCollector resumed = new StatisticsCollector();
+        new Checkpoint(checkpointFile, Map.of("departure", resumed), Checkpoint.DEFAULT_INTERVAL).resume();
+        assertEquals(Map.of("KBP", 1L), resumed.getStatistics());
+    }
+
+    @Test
+    void testSave_StreamsSpilledStatisticsAndKeepsTheRuns() throws IOException {
+        // Given
+        Map<String, Long> expected = new HashMap<>();
+        try (SpillingStatisticsCollector collector = new SpillingStatisticsCollector(1000, tempDirectory)) {
+            for (int i = 0; i < 500; i++) {
+                collector.accept("FN" + i % 200);
+                expected.merge("FN" + i % 200, 1L, Long::sum);
+            }
+            Checkpoint checkpoint = new Checkpoint(checkpointFile, Map.of("flightNumber", collector),
+                    Checkpoint.DEFAULT_INTERVAL);
+
+            // When
+            checkpoint.save();
+            collector.accept("FN0");
+
+            // Then
+            assertTrue(collector.getRunCount() > 0);
+            StatisticsCollector resumed = new StatisticsCollector();
+            new Checkpoint(checkpointFile, Map.of("flightNumber", resumed), Checkpoint.DEFAULT_INTERVAL).resume();
+            assertEquals(expected, resumed.getStatistics());
+            expected.merge("FN0", 1L, Long::sum);
+            assertEquals(expected, collector.getStatistics());
+        }
+    }
+
+    private StatisticsCollector parse(boolean resume, long chunkSize, Duration timeout) throws IOException {
+        StatisticsCollector collector = new StatisticsCollector();
+        Checkpoint checkpoint = new Checkpoint(checkpointFile, Map.of("departure", collector), Duration.ofMillis(10));
+        if (resume) {
+            checkpoint.resume();
+        }
+        FlightDataParser parser = new FlightDataParser(dataDirectory.toString(), 2, "departure", collector);
+        parser.setChunkSize(chunkSize);
+        parser.setCheckpoint(checkpoint);
+        parser.setTimeout(timeout);
+        parser.parse();
+        return collector;
+    }
+}
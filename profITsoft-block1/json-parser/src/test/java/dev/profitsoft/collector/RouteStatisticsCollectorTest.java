@@ -0,0 +1,97 @@
+package dev.profitsoft.collector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteStatisticsCollectorTest {
+
+    @Test
+    void testEndRecord_CountsPairsOfEachFlight() {
+        // Given
+        RouteStatisticsCollector collector = new RouteStatisticsCollector();
+        char[] buffer = "KBPLWOZZZAAAKyivX".toCharArray();
+
+        // When
+        collector.accept(0, buffer, 0, 3);
+        collector.accept(1, buffer, 3, 3);
+        collector.endRecord();
+        collector.accept(1, buffer, 3, 3);
+        collector.accept(0, buffer, 0, 3);
+        collector.endRecord();
+        collector.accept(0, buffer, 6, 3);
+        collector.accept(1, buffer, 9, 3);
+        collector.endRecord();
+        collector.accept(0, buffer, 12, 4);
+        collector.accept(1, buffer, 0, 3);
+        collector.endRecord();
+        collector.accept(0, buffer, 0, 3);
+        collector.endRecord();
+        collector.accept(1, buffer, 16, 1);
+        collector.endRecord();
+        collector.accept("ZZZ-AAA");
+        collector.accept("unknown");
+
+        // Then
+        assertEquals(List.of("departure", "destination"), collector.getAttributes());
+        assertEquals(Map.of("KBP-LWO", 2L, "ZZZ-AAA", 2L, "Kyiv-KBP", 1L, "unknown", 1L),
+                collector.getStatistics());
+    }
+
+    @Test
+    void testGetStatistics_MergesThreads() throws Exception {
+        // Given
+        RouteStatisticsCollector collector = new RouteStatisticsCollector();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 26 * 26; i++) {
+                    char[] codes = {'A', (char) ('A' + i / 26), (char) ('A' + i % 26), 'Z', 'Z', 'Z'};
+                    collector.accept(0, codes, 0, 3);
+                    collector.accept(1, codes, 3, 3);
+                    collector.endRecord();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        // When
+        Map<String, Long> statistics = collector.getStatistics();
+
+        // Then
+        assertEquals(26 * 26, statistics.size());
+        assertEquals(4L, statistics.get("AAA-ZZZ"));
+        assertEquals(4L, statistics.get("AZZ-ZZZ"));
+        assertEquals(statistics, new HashMap<>(collector.getStatistics()));
+    }
+
+    @Test
+    void testIntLongHashMap_GrowsAndKeepsCounts() {
+        // Given
+        IntLongHashMap map = new IntLongHashMap();
+
+        // When
+        for (int key = 0; key < 10_000; key++) {
+            map.add(key << 15, key);
+            map.add(key << 15, 1);
+        }
+
+        // Then
+        assertEquals(10_000, map.size());
+        assertEquals(1L, map.get(0));
+        assertEquals(10_000L, map.get(9_999 << 15));
+        assertEquals(0L, map.get(1));
+        long[] total = new long[1];
+        map.forEach((key, count) -> total[0] += count);
+        assertEquals(10_000L * 9_999 / 2 + 10_000, total[0]);
+        assertThrows(IllegalArgumentException.class, () -> map.add(-1, 1));
+    }
+}
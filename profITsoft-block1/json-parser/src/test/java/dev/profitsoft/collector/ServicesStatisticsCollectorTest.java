@@ -0,0 +1,55 @@
+package dev.profitsoft.collector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServicesStatisticsCollectorTest {
+
+    private final ServicesStatisticsCollector collector = new ServicesStatisticsCollector();
+
+    @Test
+    void testAccept_CountsKnownServicesFromBuffer() {
+        // Given
+        char[] buffer = "xxWi-Fi, Meals ,Business Classxx".toCharArray();
+
+        // When
+        collector.accept(buffer, 2, buffer.length - 4);
+        collector.accept("Meals");
+
+        // Then
+        assertEquals(Map.of("Wi-Fi", 1L, "Meals", 2L, "Business Class", 1L), collector.getStatistics());
+    }
+
+    @Test
+    void testAccept_FallsBackToMapForUnknownServices() {
+        // When
+        collector.accept("Lounge Access, Meals,,");
+        collector.accept(" Lounge Access ");
+
+        // Then
+        assertEquals(Map.of("Lounge Access", 1L, " Lounge Access ", 1L, "Meals", 1L), collector.getStatistics());
+    }
+
+    @Test
+    void testGetStatistics_MergesCountersOfAllThreads() throws InterruptedException {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 1000; i++) {
+            executor.submit(() -> collector.accept("Meals,Wi-Fi"));
+        }
+
+        // When
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        // Then
+        assertEquals(Map.of("Meals", 1000L, "Wi-Fi", 1000L), collector.getStatistics());
+        assertEquals(Map.of("Meals", 1000L, "Wi-Fi", 1000L), collector.getStatistics());
+    }
+}
@@ -0,0 +1,42 @@
+package dev.profitsoft.collector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedStatisticsCollectorTest {
+
+    private final ShardedStatisticsCollector collector = new ShardedStatisticsCollector();
+
+    @Test
+    void testAccept_SplitsCommaSeparatedValues() {
+        // When
+        collector.accept("A, B");
+        collector.accept("B");
+
+        // Then
+        assertEquals(Map.of("A", 1L, "B", 2L), collector.getStatistics());
+    }
+
+    @Test
+    void testGetStatistics_ReducesShardsOfAllThreads() throws InterruptedException {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            executor.submit(() -> collector.accept("A,B"));
+        }
+
+        // When
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        // Then
+        assertEquals(Map.of("A", 1000L, "B", 1000L), collector.getStatistics());
+        assertEquals(Map.of("A", 1000L, "B", 1000L), collector.getStatistics());
+    }
+}
@@ -0,0 +1,94 @@
+package dev.profitsoft.collector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillingStatisticsCollectorTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void testGetStatistics_WithoutSpilling() {
+        // Given
+        SpillingStatisticsCollector collector = new SpillingStatisticsCollector(1 << 20, tempDirectory);
+
+        // When
+        collector.accept("A, B");
+        collector.accept("B");
+
+        // Then
+        assertEquals(Map.of("A", 1L, "B", 2L), collector.getStatistics());
+        assertEquals(0, collector.getRunCount());
+    }
+
+    @Test
+    void testIterateByCount_MergesSpilledRunsOfAllThreads() throws Exception {
+        // Given
+        SpillingStatisticsCollector collector = new SpillingStatisticsCollector(1000, tempDirectory);
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            expected.put("FN" + i, (long) (i % 7 + 1) * 4);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++) {
+            executor.submit(() -> expected.forEach((value, count) -> {
+                for (int i = 0; i < count / 4; i++) {
+                    collector.accept(value);
+                }
+            }));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        // When
+        Map<String, Long> statistics = new HashMap<>();
+        String previousValue = null;
+        long previousCount = Long.MAX_VALUE;
+        try (StatisticsIterator entries = collector.iterateByCount()) {
+            while (entries.next()) {
+                assertTrue(entries.getCount() < previousCount
+                        || entries.getCount() == previousCount && entries.getValue().compareTo(previousValue) > 0);
+                previousValue = entries.getValue();
+                previousCount = entries.getCount();
+                statistics.put(entries.getValue(), entries.getCount());
+            }
+        }
+
+        // Then
+        assertTrue(collector.getRunCount() > 0);
+        assertEquals(expected, statistics);
+        assertEquals(expected, collector.getStatistics());
+    }
+
+    @Test
+    void testClose_DeletesRuns() throws IOException {
+        // Given
+        SpillingStatisticsCollector collector = new SpillingStatisticsCollector(500, tempDirectory);
+        for (int i = 0; i < 100; i++) {
+            collector.accept("FN" + i);
+        }
+        collector.getStatistics();
+
+        // When
+        collector.close();
+
+        // Then
+        try (Stream<Path> files = Files.list(tempDirectory)) {
+            assertEquals(0, files.count());
+        }
+        assertTrue(collector.getStatistics().isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+package dev.profitsoft.collector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThreadShardsTest {
+
+    private final ThreadShards<long[]> shards = new ThreadShards<>(() -> new long[1]);
+
+    @Test
+    void testGet_KeepsOneShardPerSlotForShortLivedThreads() {
+        // Given
+        Semaphore permits = new Semaphore(2);
+
+        // When
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 500; i++) {
+                executor.submit(() -> {
+                    permits.acquire();
+                    boolean bound = ShardSlot.bind();
+                    try {
+                        shards.get()[0]++;
+                    } finally {
+                        if (bound) {
+                            ShardSlot.unbind();
+                        }
+                        permits.release();
+                    }
+                    return null;
+                });
+            }
+        }
+
+        // Then
+        long total = 0;
+        for (long[] shard : shards) {
+            total += shard[0];
+        }
+        assertEquals(500, total);
+        assertTrue(shards.size() <= 2, "shards: " + shards.size());
+    }
+
+    @Test
+    void testGet_UsesTheShardOfTheThreadWithoutSlot() {
+        // When
+        long[] threadShard = shards.get();
+        boolean bound = ShardSlot.bind();
+        long[] slotShard;
+        try {
+            assertFalse(ShardSlot.bind());
+            slotShard = shards.get();
+        } finally {
+            ShardSlot.unbind();
+        }
+
+        // Then
+        assertTrue(bound);
+        assertSame(threadShard, shards.get());
+        assertNotSame(threadShard, slotShard);
+        assertEquals(2, shards.size());
+    }
+}
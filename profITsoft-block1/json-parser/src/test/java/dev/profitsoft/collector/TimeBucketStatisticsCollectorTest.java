@@ -0,0 +1,90 @@
+package dev.profitsoft.collector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeBucketStatisticsCollectorTest {
+
+    @Test
+    void testAccept_CountsPerBucketFromCharBuffer() {
+        // Given
+        TimeBucketStatisticsCollector minutes = new TimeBucketStatisticsCollector(TimeBucket.MINUTE);
+        TimeBucketStatisticsCollector days = new TimeBucketStatisticsCollector(TimeBucket.DAY);
+        TimeBucketStatisticsCollector weekdays = new TimeBucketStatisticsCollector(TimeBucket.WEEKDAY);
+        char[] buffer = "xx2024-02-29T21:05:29.7672837,2024-03-01 00:00:00".toCharArray();
+
+        // When
+        for (TimeBucketStatisticsCollector collector : List.of(minutes, days, weekdays)) {
+            collector.accept(buffer, 2, 27);
+            collector.accept(buffer, 30, 19);
+            collector.accept("1969-12-31T23:59");
+            collector.accept("2024-02-30T10:00");
+        }
+
+        // Then
+        assertEquals(Map.of("2024-02-29T21:05", 1L, "2024-03-01T00:00", 1L, "1969-12-31T23:59", 1L,
+                "2024-02-30T10:00", 1L), minutes.getStatistics());
+        assertEquals(Map.of("2024-02-29", 1L, "2024-03-01", 1L, "1969-12-31", 1L, "2024-02-30T10:00", 1L),
+                days.getStatistics());
+        assertEquals(Map.of("THURSDAY", 1L, "FRIDAY", 1L, "WEDNESDAY", 1L, "2024-02-30T10:00", 1L),
+                weekdays.getStatistics());
+    }
+
+    @Test
+    void testIterateByTime_MergesThreadsInTimeOrder() throws Exception {
+        // Given
+        TimeBucketStatisticsCollector collector = new TimeBucketStatisticsCollector(TimeBucket.HOUR);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++) {
+            int day = 10 + thread * 5;
+            executor.submit(() -> {
+                for (int hour = 0; hour < 24; hour++) {
+                    collector.accept(String.format("2024-01-%02dT%02d:30:00", day, hour));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        collector.merge(Map.of("2024-01-10T00:59:00", 2L, "unknown", 3L));
+
+        // When
+        List<String> values = new ArrayList<>();
+        long total = 0;
+        try (StatisticsIterator entries = collector.iterateByTime()) {
+            while (entries.next()) {
+                values.add(entries.getValue());
+                total += entries.getCount();
+            }
+        }
+
+        // Then
+        assertEquals(4 * 24 + 1, values.size());
+        assertEquals("2024-01-10T00", values.get(0));
+        assertEquals("2024-01-25T23", values.get(4 * 24 - 1));
+        assertEquals("unknown", values.get(4 * 24));
+        assertEquals(4 * 24 + 5, total);
+        assertEquals(3L, collector.getStatistics().get("2024-01-10T00"));
+    }
+
+    @Test
+    void testAccept_FallsBackToMapBeyondMaximumSpan() {
+        // Given
+        TimeBucketStatisticsCollector collector = new TimeBucketStatisticsCollector(TimeBucket.MINUTE);
+
+        // When
+        collector.accept("2024-01-01T00:00");
+        collector.accept("1900-01-01T00:00");
+        collector.accept("2024-01-01T00:00");
+
+        // Then
+        assertEquals(Map.of("2024-01-01T00:00", 2L, "1900-01-01T00:00", 1L), collector.getStatistics());
+    }
+}
@@ -0,0 +1,75 @@
+package dev.profitsoft.collector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKStatisticsCollectorTest {
+
+    @Test
+    void testGetStatistics_ExactWhenValuesFitIntoSummary() {
+        // Given
+        TopKStatisticsCollector collector = new TopKStatisticsCollector(2, 0.1);
+
+        // When
+        collector.accept("A, B");
+        collector.accept("A");
+        collector.accept("C");
+        collector.accept("A");
+
+        Map<String, Long> statistics = collector.getStatistics();
+
+        // Then
+        assertEquals(2, statistics.size());
+        assertEquals(3L, statistics.get("A"));
+        assertEquals(1L, statistics.getOrDefault("B", statistics.get("C")));
+        assertEquals(0, collector.getMaximumError());
+        assertTrue(collector.isEstimated());
+    }
+
+    @Test
+    void testGetStatistics_FindsHeavyHittersAmongManyDistinctValues() throws InterruptedException {
+        // Given
+        TopKStatisticsCollector collector = new TopKStatisticsCollector(3, 0.01);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 40_000; i++) {
+            int index = i;
+            executor.submit(() -> {
+                collector.accept("unique" + index);
+                if (index % 4 == 0) {
+                    collector.accept("HH1");
+                }
+                if (index % 8 == 0) {
+                    collector.accept("HH2");
+                }
+                if (index % 16 == 0) {
+                    collector.accept("HH3");
+                }
+            });
+        }
+
+        // When
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        Map<String, Long> statistics = collector.getStatistics();
+        long maximumError = collector.getMaximumError();
+
+        // Then
+        assertEquals(3, statistics.size());
+        assertTrue(maximumError <= (40_000 + 10_000 + 5_000 + 2_500) / 100);
+        assertCount(10_000, statistics.get("HH1"), maximumError);
+        assertCount(5_000, statistics.get("HH2"), maximumError);
+        assertCount(2_500, statistics.get("HH3"), maximumError);
+    }
+
+    private void assertCount(long expected, Long actual, long maximumError) {
+        assertNotNull(actual);
+        assertTrue(actual >= expected && actual <= expected + maximumError,
+                () -> "Count " + actual + " is not within " + maximumError + " of " + expected);
+    }
+}
@@ -0,0 +1,137 @@
+package dev.profitsoft.engine;
+
+import dev.profitsoft.writer.OutputFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryEngineTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    private Path dataDirectory;
+
+    private Path outputDirectory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Given
+        dataDirectory = Files.createDirectory(tempDirectory.resolve("data"));
+        outputDirectory = Files.createDirectory(tempDirectory.resolve("output"));
+        Files.writeString(dataDirectory.resolve("flight1.json"),
+                "[{\"departure\":\"KBP\",\"arrival\":\"LHR\"},{\"departure\":\"LWO\",\"arrival\":\"LHR\"}]");
+        Files.writeString(dataDirectory.resolve("flight2.json"), "[{\"departure\":\"KBP\",\"arrival\":\"WAW\"}]");
+    }
+
+    @Test
+    void testExecute_RunsQueriesOnTheSameEngine() throws IOException {
+        try (QueryEngine engine = new QueryEngine(2, outputDirectory)) {
+            // When
+            QueryResult first = engine.execute(Query.of(dataDirectory, List.of("departure")));
+            QueryResult second = engine.execute(Query.parse(dataDirectory + " arrival,departure"
+                    + " --filter=departure=KBP --output=csv"));
+
+            // Then
+            assertTrue(first.getLatencyNanos() >= first.getParseNanos() + first.getWriteNanos());
+            assertEquals(List.of(OutputFormat.CSV), second.getQuery().getFormats());
+            assertTrue(Files.readString(outputDirectory.resolve("statistics_by_departure.xml"))
+                    .contains("<item><value>KBP</value><count>2</count></item>"));
+            List<String> arrivals = Files.readAllLines(outputDirectory.resolve("statistics_by_arrival.csv"));
+            assertEquals(3, arrivals.size());
+            assertTrue(arrivals.containsAll(List.of("value,count", "LHR,1", "WAW,1")));
+            assertEquals(List.of("value,count", "KBP,2"),
+                    Files.readAllLines(outputDirectory.resolve("statistics_by_departure.csv")));
+            assertEquals(2, engine.getLatencies().getCount());
+            assertTrue(engine.latencySummary().startsWith("Queries: 2, latency ms: p50="));
+        }
+    }
+
+    @Test
+    void testSubmit_QueuesQueriesAndReportsFailures() throws Exception {
+        // Given
+        QueryEngine engine = new QueryEngine(1, outputDirectory);
+        CompletableFuture<QueryResult> missing = engine.submit(Query.of(tempDirectory.resolve("missing"),
+                List.of("departure")));
+        CompletableFuture<QueryResult> queued = engine.submit(Query.of(dataDirectory, List.of("arrival")));
+
+        // When
+        engine.close();
+
+        // Then
+        assertThrows(IllegalStateException.class, () -> engine.submit(Query.of(dataDirectory, List.of("arrival"))));
+        ExecutionException failure = assertThrows(ExecutionException.class, missing::get);
+        assertInstanceOf(NoSuchFileException.class, failure.getCause());
+        assertTrue(queued.get().getQueuedNanos() >= 0);
+        assertTrue(Files.exists(outputDirectory.resolve("statistics_by_arrival.xml")));
+        assertEquals(1, engine.getLatencies().getCount());
+    }
+
+    @Test
+    void testExecute_KeepsOutputInsideTheOutputDirectoryOfTheEngine() throws IOException {
+        try (QueryEngine engine = new QueryEngine(1, outputDirectory)) {
+            // When
+            engine.execute(Query.parse(dataDirectory + " departure --output-dir=nested"));
+            engine.execute(Query.parse(dataDirectory + " arrival --output-dir=" + outputDirectory.resolve("nested")));
+
+            // Then
+            assertTrue(Files.exists(outputDirectory.resolve("nested").resolve("statistics_by_departure.xml")));
+            assertTrue(Files.exists(outputDirectory.resolve("nested").resolve("statistics_by_arrival.xml")));
+            assertThrows(IllegalArgumentException.class,
+                    () -> engine.execute(Query.parse(dataDirectory + " departure --output-dir=../data")));
+            assertThrows(IllegalArgumentException.class,
+                    () -> engine.execute(Query.parse(dataDirectory + " departure --output-dir=" + tempDirectory)));
+            assertFalse(Files.exists(dataDirectory.resolve("statistics_by_departure.xml")));
+            assertFalse(Files.exists(tempDirectory.resolve("statistics_by_departure.xml")));
+        }
+    }
+
+    @Test
+    void testExecute_FailsWhenStatisticsCannotBeWritten() throws IOException {
+        // Given
+        Path blocked = Files.createDirectories(outputDirectory.resolve("statistics_by_departure.xml"));
+        Files.writeString(blocked.resolve("file"), "");
+        Files.writeString(outputDirectory.resolve("file"), "");
+
+        try (QueryEngine engine = new QueryEngine(1, outputDirectory)) {
+            // When & Then
+            assertThrows(IOException.class,
+                    () -> engine.execute(Query.parse(dataDirectory + " departure,arrival --output=xml,csv")));
+            assertThrows(IOException.class,
+                    () -> engine.execute(Query.parse(dataDirectory + " departure --output-dir=file")));
+            assertTrue(Files.exists(outputDirectory.resolve("statistics_by_arrival.xml")));
+            assertEquals(0, engine.getLatencies().getCount());
+        }
+    }
+
+    @Test
+    void testParse_KeepsWhitespaceBetweenQuotes() {
+        // When
+        Query query = Query.parse("  \"data dir\"  departure,arrival --output-dir=\"my \\\"stats\\\"\"\t--top-k=5 ");
+
+        // Then
+        assertEquals(Path.of("data dir"), query.getDirectory());
+        assertEquals(List.of("departure", "arrival"), query.getAttributes());
+        assertEquals(Path.of("my \"stats\""), query.getOutputDirectory());
+        assertEquals(5, query.getTopK());
+    }
+
+    @Test
+    void testParse_RejectsInvalidQueries() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> Query.parse(dataDirectory.toString()));
+        assertThrows(IllegalArgumentException.class, () -> Query.parse(dataDirectory + " departure --unknown"));
+        assertThrows(IllegalArgumentException.class, () -> Query.parse(dataDirectory + " departure --output=pdf"));
+        assertThrows(IllegalArgumentException.class, () -> Query.parse("\"" + dataDirectory + " departure"));
+    }
+}
@@ -0,0 +1,99 @@
+package dev.profitsoft.engine;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryServerTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    private Path dataDirectory;
+
+    private Path outputDirectory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Given
+        dataDirectory = Files.createDirectory(tempDirectory.resolve("data"));
+        outputDirectory = Files.createDirectory(tempDirectory.resolve("output"));
+        Files.writeString(dataDirectory.resolve("flight1.json"), "[{\"departure\":\"KBP\"}]");
+    }
+
+    @Test
+    void testServe_AnswersEachCommandUntilQuit() throws IOException {
+        // Given
+        String commands = dataDirectory + " departure --output=json\n"
+                + "\n"
+                + "stats\n"
+                + dataDirectory + "\n"
+                + "quit\n"
+                + dataDirectory + " arrival\n";
+        StringWriter answers = new StringWriter();
+
+        // When
+        try (QueryEngine engine = new QueryEngine(1, outputDirectory)) {
+            new QueryServer(engine).serve(new BufferedReader(new StringReader(commands)), new PrintWriter(answers));
+        }
+
+        // Then
+        String[] lines = answers.toString().split("\\R");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].matches("OK [0-9.]+ ms \\(queued [0-9.]+ ms, parse [0-9.]+ ms, write [0-9.]+ ms\\)"));
+        assertTrue(lines[1].startsWith("OK Queries: 1, latency ms: p50="));
+        assertTrue(lines[2].startsWith("ERROR Query requires"));
+        assertTrue(Files.exists(outputDirectory.resolve("statistics_by_departure.json")));
+        assertFalse(Files.exists(outputDirectory.resolve("statistics_by_arrival.xml")));
+    }
+
+    @Test
+    void testListen_AnswersClientsOfTheSocket() throws Exception {
+        // Given
+        try (QueryEngine engine = new QueryEngine(1, outputDirectory)) {
+            ServerSocket serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+            Thread listener = Thread.ofVirtual().start(() -> {
+                try {
+                    new QueryServer(engine).listen(serverSocket);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            // When
+            String answer;
+            try (
+                    Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+                    PrintWriter output = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+                    BufferedReader input = new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+            ) {
+                output.println(dataDirectory + " departure");
+                answer = input.readLine();
+                output.println("quit");
+            } finally {
+                serverSocket.close();
+            }
+            listener.join();
+
+            // Then
+            assertTrue(answer.startsWith("OK "));
+            assertTrue(Files.readString(outputDirectory.resolve("statistics_by_departure.xml")).contains("KBP"));
+        }
+    }
+}
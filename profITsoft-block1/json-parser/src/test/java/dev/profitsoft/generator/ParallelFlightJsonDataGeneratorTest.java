@@ -0,0 +1,78 @@
+package dev.profitsoft.generator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.parser.FlightDataParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static dev.profitsoft.entity.Flight.AVAILABLE_SERVICES;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelFlightJsonDataGeneratorTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void testGenerateFilesWithFlights_sameSeedGivesSameFilesWithAnyNumberOfThreads() throws IOException {
+        // Given
+        ParallelFlightJsonDataGenerator sequential = new ParallelFlightJsonDataGenerator(tempDirectory.resolve("a"), 7);
+        sequential.setNumberOfThreads(1);
+        ParallelFlightJsonDataGenerator parallel = new ParallelFlightJsonDataGenerator(tempDirectory.resolve("b"), 7);
+        parallel.setNumberOfThreads(4);
+        ParallelFlightJsonDataGenerator otherSeed = new ParallelFlightJsonDataGenerator(tempDirectory.resolve("c"), 8);
+
+        // When
+        sequential.generateFilesWithFlights(3, 500);
+        parallel.generateFilesWithFlights(3, 500);
+        otherSeed.generateFilesWithFlights(3, 500);
+
+        // Then
+        for (int i = 0; i < 3; i++) {
+            String file = "flights" + i + ".json";
+            assertArrayEquals(Files.readAllBytes(tempDirectory.resolve("a").resolve(file)),
+                    Files.readAllBytes(tempDirectory.resolve("b").resolve(file)));
+            assertFalse(Files.readString(tempDirectory.resolve("a").resolve(file))
+                    .equals(Files.readString(tempDirectory.resolve("c").resolve(file))));
+        }
+        JsonNode flights = new ObjectMapper().readTree(tempDirectory.resolve("a").resolve("flights0.json").toFile());
+        assertEquals(500, flights.size());
+        for (JsonNode flight : flights) {
+            assertTrue(flight.get("flightNumber").asText().matches("[A-Z]{2}[0-9]{3}"));
+            assertTrue(flight.get("departure").asText().matches("[A-Z]{3}"));
+            assertTrue(flight.get("destination").asText().matches("[A-Z]{3}"));
+            LocalDateTime departureTime = LocalDateTime.parse(flight.get("departureTime").asText());
+            LocalDateTime arrivalTime = LocalDateTime.parse(flight.get("arrivalTime").asText());
+            assertTrue(departureTime.isAfter(ParallelFlightJsonDataGenerator.DEFAULT_START_TIME));
+            assertTrue(arrivalTime.isAfter(departureTime));
+            String[] services = flight.get("services").asText().split(",");
+            assertTrue(services.length >= 2 && services.length < AVAILABLE_SERVICES.size());
+            assertTrue(AVAILABLE_SERVICES.containsAll(List.of(services)));
+        }
+    }
+
+    @Test
+    void testGenerateFilesWithFlights_withCompressedNdjson() throws IOException {
+        // Given
+        ParallelFlightJsonDataGenerator generator = new ParallelFlightJsonDataGenerator(tempDirectory, 1);
+        generator.setNdjson(true);
+        generator.setGzip(true);
+        StatisticsCollector collector = new StatisticsCollector();
+
+        // When
+        generator.generateFilesWithFlights(2, 1000);
+        new FlightDataParser(tempDirectory.toString(), 2, "departure", collector).parse();
+
+        // Then
+        assertTrue(Files.exists(tempDirectory.resolve("flights1.ndjson.gz")));
+        assertEquals(2000, collector.getStatistics().values().stream().mapToLong(Long::longValue).sum());
+    }
+}
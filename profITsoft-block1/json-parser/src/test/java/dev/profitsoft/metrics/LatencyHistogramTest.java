@@ -0,0 +1,40 @@
+package dev.profitsoft.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testGetValueAtPercentile_WithinPrecision() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // When
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1_000);
+        }
+        histogram.record(-5);
+
+        // Then
+        assertEquals(10_001, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(5_000_000, histogram.getValueAtPercentile(50), 5_000_000 / 64.0);
+        assertEquals(9_900_000, histogram.getValueAtPercentile(99), 9_900_000 / 64.0);
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100));
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(50));
+    }
+
+    @Test
+    void testIndexOf_BucketsAreContiguous() {
+        // When & Then
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value <= LatencyHistogram.highestValueOf(index));
+            assertTrue(index == 0 || value > LatencyHistogram.highestValueOf(index - 1));
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+    }
+}
@@ -0,0 +1,67 @@
+package dev.profitsoft.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    void testSummary_ReportsStagesWorkersAndBottleneck() throws Exception {
+        // Given
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.segmentsQueued(3);
+        Thread worker = new Thread(() -> registry.segmentProcessed(2048, 20, 1_000_000, 0, 4_000_000), "worker-1");
+
+        // When
+        registry.segmentProcessed(1024, 10, 6_000_000, 1_000_000, 8_000_000);
+        worker.start();
+        worker.join();
+        registry.segmentFailed(Path.of("broken.json"), new IOException("broken"));
+        registry.collectorMerged("departure", 7);
+        registry.stageCompleted("process", 12_000_000);
+        String summary = registry.summary();
+
+        // Then
+        assertEquals(2, registry.getSegments().sum());
+        assertEquals(30, registry.getRecords().sum());
+        assertEquals(0, registry.getPendingSegments());
+        assertEquals(2, registry.getLatencies().getCount());
+        assertEquals(2, registry.getWorkers().size());
+        assertEquals(20, registry.getWorkers().get("worker-1").getRecords().sum());
+        assertTrue(summary.contains("Stage process: 12.0 ms"), summary);
+        assertTrue(summary.contains("Segments: 2, records: 30, bytes: 0.0 MB, errors: 1, collector merges: 1 (7 values)"),
+                summary);
+        assertTrue(summary.contains("Worker worker-1: 1 segments, 20 records, 5000 records/s"), summary);
+        assertTrue(summary.contains("read 7.0 ms (58%), wait 1.0 ms (8%), parse 4.0 ms (33%), I/O-bound"), summary);
+    }
+
+    @Test
+    void testClose_PrintsProgressAndSummary() throws Exception {
+        // Given
+        MetricsRegistry registry = new MetricsRegistry();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        registry.segmentsQueued(2);
+        registry.segmentProcessed(1024, 10, 0, 0, 1_000_000);
+
+        // When
+        ProgressReporter reporter = new ProgressReporter(registry, new PrintStream(output), Duration.ofMillis(10));
+        try {
+            Thread.sleep(100);
+        } finally {
+            reporter.close();
+        }
+
+        // Then
+        String report = output.toString(StandardCharsets.UTF_8);
+        assertTrue(report.contains("Progress: 1 segments done, 1 pending, 0 errors, 10 records"), report);
+        assertTrue(report.contains("CPU-bound"), report);
+    }
+}
@@ -0,0 +1,160 @@
+package dev.profitsoft.parser;
+
+import dev.profitsoft.collector.StatisticsCollector;
+import io.airlift.compress.zstd.ZstdOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedInputTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    private final ExecutorService decompressors = CompressedInput.newDecompressionPool(4);
+
+    @Test
+    void testParse_withCompressedFiles() throws IOException {
+        // Given
+        byte[] content = flights(1000);
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(tempDirectory.resolve("flights1.json.gz")))) {
+            output.write(content);
+        }
+        try (OutputStream output = new ZstdOutputStream(Files.newOutputStream(tempDirectory.resolve("flights2.json.zst")))) {
+            output.write(content);
+        }
+        Files.write(tempDirectory.resolve("flights3.json.gz"), bgzf(content, 1000));
+        Files.writeString(tempDirectory.resolve("flights4.txt.gz"), "ignored");
+        StatisticsCollector collector = new StatisticsCollector();
+
+        // When
+        new FlightDataParser(tempDirectory.toString(), 2, "departure", collector).parse();
+
+        // Then
+        assertEquals(Map.of("KBP", 1500L, "LWO", 1500L), collector.getStatistics());
+    }
+
+    @Test
+    void testOpen_decompressesBgzfGroupsInParallelInOrder() throws IOException {
+        // Given
+        byte[] content = flights(1000);
+        Path file = tempDirectory.resolve("flights.json.gz");
+        Files.write(file, bgzf(content, 1000));
+
+        // When
+        int groups = CompressedInput.findBgzfGroups(file, 2000).size();
+        byte[] decompressed;
+        try (InputStream input = CompressedInput.open(file, decompressors, 4, 2000)) {
+            decompressed = input.readAllBytes();
+        }
+
+        // Then
+        assertTrue(groups > 1);
+        assertArrayEquals(content, decompressed);
+    }
+
+    @Test
+    void testOpen_sharesTheBoundedPoolBetweenFiles() throws Exception {
+        // Given
+        byte[] content = flights(1000);
+        Path bgzfFile = tempDirectory.resolve("flights1.json.gz");
+        Files.write(bgzfFile, bgzf(content, 1000));
+        Path zstdFile = tempDirectory.resolve("flights2.json.zst");
+        try (OutputStream output = new ZstdOutputStream(Files.newOutputStream(zstdFile))) {
+            output.write(content);
+        }
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) CompressedInput.newDecompressionPool(2);
+
+        // When
+        List<byte[]> decompressed = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            try (InputStream bgzf = CompressedInput.open(bgzfFile, pool, 4, 2000);
+                 InputStream zstd = CompressedInput.open(zstdFile, pool, 4)) {
+                decompressed.add(bgzf.readAllBytes());
+                decompressed.add(zstd.readAllBytes());
+            }
+        }
+        try (InputStream abandoned = CompressedInput.open(zstdFile, pool, 4)) {
+            assertEquals('[', abandoned.read());
+        }
+
+        // Then
+        for (byte[] bytes : decompressed) {
+            assertArrayEquals(content, bytes);
+        }
+        assertTrue(pool.getLargestPoolSize() <= 2);
+        assertFalse(pool.isShutdown());
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testFindBgzfGroups_withPlainGzip() throws IOException {
+        // Given
+        Path file = tempDirectory.resolve("flights.json.gz");
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(file))) {
+            output.write(flights(10));
+        }
+
+        // When & Then
+        assertTrue(CompressedInput.findBgzfGroups(file, 1).isEmpty());
+    }
+
+    private static byte[] flights(int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"flightNumber\":\"FN").append(i)
+                    .append("\",\"departure\":\"").append(i % 2 == 0 ? "KBP" : "LWO").append("\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bgzf(byte[] content, int blockSize) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int offset = 0; offset < content.length; offset += blockSize) {
+            writeBgzfBlock(output, Arrays.copyOfRange(content, offset, Math.min(offset + blockSize, content.length)));
+        }
+        writeBgzfBlock(output, new byte[0]);
+        return output.toByteArray();
+    }
+
+    private static void writeBgzfBlock(ByteArrayOutputStream output, byte[] data) throws IOException {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = new byte[data.length + 64];
+        int compressedLength = deflater.deflate(buffer);
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer block = ByteBuffer.allocate(18 + compressedLength + 8).order(ByteOrder.LITTLE_ENDIAN);
+        block.put(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff});
+        block.putShort((short) 6).put((byte) 'B').put((byte) 'C').putShort((short) 2);
+        block.putShort((short) (block.capacity() - 1));
+        block.put(buffer, 0, compressedLength);
+        block.putInt((int) crc.getValue()).putInt(data.length);
+        output.write(block.array());
+    }
+}
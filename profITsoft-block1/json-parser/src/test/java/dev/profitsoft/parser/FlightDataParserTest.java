@@ -1,5 +1,11 @@
 package dev.profitsoft.parser;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import dev.profitsoft.collector.RouteStatisticsCollector;
+import dev.profitsoft.collector.ServicesStatisticsCollector;
+import dev.profitsoft.collector.ShardSlot;
+import dev.profitsoft.collector.ShardedStatisticsCollector;
+import dev.profitsoft.metrics.MetricsRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -11,7 +17,13 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import static org.mockito.Mockito.*;
@@ -92,6 +104,438 @@ public class FlightDataParserTest {
         assertTrue(((ExecutorService) getExecutorService(flightDataParser)).isShutdown());
     }
 
+    @Test
+    public void testParseFiles_withSplitFile() throws Exception {
+        // Given
+        Files.writeString(tempDirectory.resolve("flight2.json"), "[{\"flightNumber\":\"AB100\"},"
+                + "{\"flightNumber\":\"AB200\",\"note\":\"a,\\\"},{\"},"
+                + "{\"flightNumber\":\"AB300\",\"nested\":[{\"x\":1},{\"x\":2}]}]");
+        flightDataParser.setChunkSize(1);
+
+        // When
+        flightDataParser.parse();
+
+        // Then
+        verify(valueConsumer, times(1)).accept("12345");
+        verify(valueConsumer, times(1)).accept("AB100");
+        verify(valueConsumer, times(1)).accept("AB200");
+        verify(valueConsumer, times(1)).accept("AB300");
+    }
+
+    @Test
+    public void testParseFiles_withStreamedInput() throws Exception {
+        // Given
+        Files.writeString(tempDirectory.resolve("flight3.json"), "[{\"flightNumber\":\"AB100\"},{\"flightNumber\":\"AB200\"}]");
+        flightDataParser.setMappingLimit(0);
+        flightDataParser.setChunkSize(1);
+
+        // When
+        flightDataParser.parse();
+
+        // Then
+        verify(valueConsumer, times(1)).accept("12345");
+        verify(valueConsumer, times(1)).accept("AB100");
+        verify(valueConsumer, times(1)).accept("AB200");
+    }
+
+    @Test
+    public void testParseFiles_withVirtualThreads() throws Exception {
+        // Given
+        Files.writeString(tempDirectory.resolve("flight3.json"), "[{\"flightNumber\":\"AB100\"},{\"flightNumber\":\"AB200\"}]");
+        flightDataParser.setVirtualThreads(true);
+        flightDataParser.setMaxOpenFiles(1);
+        flightDataParser.setChunkSize(1);
+
+        // When
+        flightDataParser.parse();
+
+        // Then
+        verify(valueConsumer, times(1)).accept("12345");
+        verify(valueConsumer, times(1)).accept("67890");
+        verify(valueConsumer, times(1)).accept("AB100");
+        verify(valueConsumer, times(1)).accept("AB200");
+        assertTrue(((ExecutorService) getExecutorService(flightDataParser)).isShutdown());
+    }
+
+    @Test
+    public void testParseFiles_withSharedPool() throws Exception {
+        // Given
+        ForkJoinPool pool = new ForkJoinPool(2);
+        flightDataParser.setSharedPool(pool);
+        flightDataParser.setChunkSize(1);
+        Consumer<String> otherConsumer = mock(Consumer.class);
+        FlightDataParser otherParser = new FlightDataParser(tempDirectory.toString(), 2,
+                Map.of("flightNumber", otherConsumer), null, new JsonFactory());
+        otherParser.setSharedPool(pool);
+
+        try {
+            // When
+            flightDataParser.parse();
+            otherParser.parse();
+
+            // Then
+            verify(valueConsumer, times(1)).accept("12345");
+            verify(valueConsumer, times(1)).accept("67890");
+            verify(otherConsumer, times(1)).accept("12345");
+            verify(otherConsumer, times(1)).accept("67890");
+            assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseFiles_withSharedPoolBindsShardSlotsWhileProcessing() throws Exception {
+        // Given
+        ForkJoinPool pool = new ForkJoinPool(2);
+        AtomicInteger valuesWithoutSlot = new AtomicInteger();
+        AtomicInteger values = new AtomicInteger();
+        FlightDataParser parser = new FlightDataParser(tempDirectory.toString(), 2, Map.of("flightNumber", value -> {
+            values.incrementAndGet();
+            if (ShardSlot.bind()) {
+                ShardSlot.unbind();
+                valuesWithoutSlot.incrementAndGet();
+            }
+        }), null, new JsonFactory());
+        parser.setSharedPool(pool);
+
+        try {
+            // When
+            parser.parse();
+            boolean workerHasSlot = !pool.submit(() -> {
+                boolean bound = ShardSlot.bind();
+                if (bound) {
+                    ShardSlot.unbind();
+                }
+                return bound;
+            }).get();
+
+            // Then
+            assertEquals(2, values.get());
+            assertEquals(0, valuesWithoutSlot.get());
+            assertFalse(workerHasSlot);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseFiles_withSharedPoolAndTimeout() throws Exception {
+        // Given
+        ForkJoinPool pool = new ForkJoinPool(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        flightDataParser.setSharedPool(pool);
+        flightDataParser.setTimeout(Duration.ZERO);
+
+        try {
+            // When & Then
+            assertThrows(IOException.class, flightDataParser::parse);
+            release.countDown();
+            pool.submit(() -> { }).get();
+            verify(valueConsumer, never()).accept(anyString());
+            assertFalse(pool.isShutdown());
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseFiles_withCharBufferConsumer() throws Exception {
+        // Given
+        Files.writeString(tempDirectory.resolve("flight3.json"),
+                "[{\"services\":\"Meals,Wi-Fi\"},{\"services\":\"Meals\"},{\"flightNumber\":\"AB100\"}]");
+        ServicesStatisticsCollector collector = new ServicesStatisticsCollector();
+
+        // When
+        new FlightDataParser(tempDirectory.toString(), 2, "services", collector).parse();
+
+        // Then
+        assertEquals(Map.of("Meals", 2L, "Wi-Fi", 1L), collector.getStatistics());
+    }
+
+    @Test
+    public void testParseFiles_withSeveralAttributes(@Mock Consumer<String> departureConsumer) throws Exception {
+        // Given
+        Files.writeString(tempDirectory.resolve("flight3.json"),
+                "[{\"flightNumber\":\"AB100\",\"departure\":\"KBP\",\"destination\":\"LHR\"}]");
+        FlightDataParser parser = new FlightDataParser(tempDirectory.toString(), 2,
+                Map.of("flightNumber", valueConsumer, "departure", departureConsumer));
+
+        // When
+        parser.parse();
+
+        // Then
+        verify(valueConsumer, times(1)).accept("12345");
+        verify(valueConsumer, times(1)).accept("67890");
+        verify(valueConsumer, times(1)).accept("AB100");
+        verify(departureConsumer, times(1)).accept("KBP");
+        verifyNoMoreInteractions(valueConsumer, departureConsumer);
+    }
+
+    @Test
+    public void testParseFiles_skipsNestedValuesOfOtherFields() throws Exception {
+        // Given
+        Files.writeString(tempDirectory.resolve("flight3.json"), "[{\"payload\":{\"flightNumber\":\"XX000\","
+                + "\"legs\":[{\"flightNumber\":\"XX001\"}]},\"flightNumber\":\"AB100\"},"
+                + "{\"flightNumber\":{\"code\":\"XX002\"}},{\"flightNumber\":[\"AB200\",{\"code\":\"XX003\"}]}]");
+
+        // When
+        flightDataParser.parse();
+
+        // Then
+        verify(valueConsumer, times(1)).accept("12345");
+        verify(valueConsumer, times(1)).accept("67890");
+        verify(valueConsumer, times(1)).accept("AB100");
+        verify(valueConsumer, times(1)).accept("AB200");
+        verifyNoMoreInteractions(valueConsumer);
+    }
+
+    @Test
+    public void testParseFiles_stopsAfterAllAttributes() throws Exception {
+        // Given
+        Files.writeString(tempDirectory.resolve("flight3.json"),
+                "[{\"flightNumber\":\"AB100\",\"payload\":[1,{\"a\":2}],\"flightNumber\":\"AB200\"},"
+                        + "{\"flightNumber\":\"AB300\"}]");
+        flightDataParser.setStopAfterAllAttributes(true);
+
+        // When
+        flightDataParser.parse();
+
+        // Then
+        verify(valueConsumer, times(1)).accept("AB100");
+        verify(valueConsumer, never()).accept("AB200");
+        verify(valueConsumer, times(1)).accept("AB300");
+    }
+
+    @Test
+    public void testSplitFile_cutsAtTopLevelCommasOnly() throws Exception {
+        // Given
+        Path file = tempDirectory.resolve("flight3.json");
+        String content = "[{\"a\":\"x,\\\"],\"}, {\"b\":[1,2]} ,{\"c\":3}]";
+        Files.writeString(file, content);
+
+        // When
+        List<FileSegment> segments = new JsonArraySplitter(1).split(file);
+
+        // Then
+        assertEquals(3, segments.size());
+        assertEquals("{\"a\":\"x,\\\"],\"}", readSegment(content, segments.get(0)));
+        assertEquals(" {\"b\":[1,2]} ", readSegment(content, segments.get(1)));
+        assertEquals("{\"c\":3}", readSegment(content, segments.get(2)));
+    }
+
+    @Test
+    public void testSplitFile_withSmallFile() throws Exception {
+        // When
+        List<FileSegment> segments = new JsonArraySplitter(1024).split(tempDirectory.resolve("flight1.json"));
+
+        // Then
+        assertEquals(List.of(FileSegment.wholeFile(tempDirectory.resolve("flight1.json"))), segments);
+    }
+
+    @Test
+    public void testParseFiles_withNdjsonSkipsMalformedLines() throws Exception {
+        // Given
+        Files.writeString(tempDirectory.resolve("flight3.jsonl"), "{\"flightNumber\":\"AB100\"}\n"
+                + "{\"flightNumber\":\"XX000\",\"departure\":\n"
+                + "\r\n"
+                + "[{\"flightNumber\":\"XX001\"}]\n"
+                + "{\"flightNumber\":\"XX002\"} {\"flightNumber\":\"XX003\"}\n"
+                + "{\"flightNumber\":\"AB200\"}");
+        Files.writeString(tempDirectory.resolve("flight4.json"), "\n{\"flightNumber\":\"AB300\"}\r\n");
+
+        // When
+        flightDataParser.parse();
+
+        // Then
+        verify(valueConsumer, times(1)).accept("12345");
+        verify(valueConsumer, times(1)).accept("67890");
+        verify(valueConsumer, times(1)).accept("AB100");
+        verify(valueConsumer, times(1)).accept("AB200");
+        verify(valueConsumer, times(1)).accept("AB300");
+        verifyNoMoreInteractions(valueConsumer);
+        assertEquals(3, flightDataParser.getMalformedLineCount());
+    }
+
+    @Test
+    public void testParseFiles_splitsNdjsonAtLineEnds() throws Exception {
+        // Given
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append("{\"flightNumber\":\"FN").append(i).append("\"}\n");
+        }
+        Path file = tempDirectory.resolve("flight3.ndjson");
+        Files.writeString(file, content);
+        flightDataParser.setChunkSize(100);
+
+        // When
+        List<FileSegment> segments = new NdjsonSplitter(100).split(file);
+        flightDataParser.parse();
+
+        // Then
+        assertTrue(segments.size() > 1);
+        long offset = 0;
+        for (FileSegment segment : segments) {
+            assertEquals(offset, segment.getOffset());
+            assertEquals('\n', content.charAt((int) (segment.getOffset() + segment.getLength() - 1)));
+            offset += segment.getLength();
+        }
+        assertEquals(content.length(), offset);
+        for (int i = 0; i < 100; i++) {
+            verify(valueConsumer, times(1)).accept("FN" + i);
+        }
+        assertEquals(0, flightDataParser.getMalformedLineCount());
+    }
+
+    @Test
+    public void testParseFiles_withRouteAndItsAttributes(@Mock Consumer<String> departureConsumer) throws Exception {
+        // Given
+        Files.writeString(tempDirectory.resolve("flight3.json"), "[{\"departure\":\"KBP\",\"destination\":\"LWO\"},"
+                + "{\"destination\":\"LWO\",\"departure\":\"KBP\"},{\"departure\":\"KBP\"},"
+                + "{\"departure\":\"Kyiv\",\"destination\":\"ODS\"}]");
+        Files.writeString(tempDirectory.resolve("flight4.jsonl"), "{\"departure\":\"LWO\",\"destination\":\"KBP\"}\n"
+                + "{\"departure\":\"ODS\",\"destination\":\n"
+                + "{\"destination\":\"ODS\"}\n");
+        RouteStatisticsCollector routes = new RouteStatisticsCollector();
+        FlightDataParser parser = new FlightDataParser(tempDirectory.toString(), 2,
+                Map.of(RouteStatisticsCollector.ATTRIBUTE, routes, "departure", departureConsumer));
+        parser.setStopAfterAllAttributes(true);
+
+        // When
+        parser.parse();
+
+        // Then
+        assertEquals(Map.of("KBP-LWO", 2L, "LWO-KBP", 1L, "Kyiv-ODS", 1L), routes.getStatistics());
+        verify(departureConsumer, times(3)).accept("KBP");
+        verify(departureConsumer, times(1)).accept("LWO");
+        verify(departureConsumer, times(1)).accept("Kyiv");
+        verifyNoMoreInteractions(departureConsumer);
+        assertThrows(IllegalStateException.class, () -> parser.parseSnapshot(tempDirectory));
+    }
+
+    @Test
+    public void testParseFiles_withRouteAfterMalformedObject() throws Exception {
+        // Given
+        Files.writeString(tempDirectory.resolve("flight3.json"), "[{\"departure\":\"KBP\",\"destination\":\"LWO\"},"
+                + "{\"departure\":\"ODS\",\"destination\":}]");
+        Files.writeString(tempDirectory.resolve("flight4.json"), "[{\"destination\":\"LWO\"},"
+                + "{\"departure\":\"LWO\",\"destination\":\"KBP\"}]");
+        RouteStatisticsCollector routes = new RouteStatisticsCollector();
+        FlightDataParser parser = new FlightDataParser(tempDirectory.toString(), 1,
+                Map.of(RouteStatisticsCollector.ATTRIBUTE, routes));
+
+        // When
+        parser.parse();
+
+        // Then
+        assertEquals(Map.of("KBP-LWO", 1L, "LWO-KBP", 1L), routes.getStatistics());
+    }
+
+    @Test
+    public void testParseFiles_withFilter() throws Exception {
+        // Given
+        Files.writeString(tempDirectory.resolve("flight3.json"), "[{\"flightNumber\":\"AB100\",\"departure\":\"KBP\","
+                + "\"departureTime\":\"2024-04-17T10:00\",\"services\":[\"Meals\"]},"
+                + "{\"services\":[\"Wi-Fi\"],\"departure\":\"LWO\",\"departureTime\":\"2024-04-17T11:00\"},"
+                + "{\"departure\":\"KBP\",\"departureTime\":\"2024-04-18T10:00\",\"services\":[\"Lounge\"]},"
+                + "{\"flightNumber\":\"AB200\",\"services\":[\"Meals\",\"Wi-Fi\"],\"departure\":\"ODS\"},"
+                + "{\"departure\":[\"KBP\"],\"departureTime\":\"2024-04-17T23:59\",\"services\":[\"Wi-Fi\"]}]");
+        Files.writeString(tempDirectory.resolve("flight4.jsonl"),
+                "{\"departureTime\":\"2024-04-17T00:00\",\"services\":[\"Meals\"],\"departure\":\"LWO\"}\n"
+                        + "{\"departure\":\"KBP\",\"departureTime\":\"2024-04-17T05:00\",\"services\":[\"Meals\"]\n");
+        ServicesStatisticsCollector services = new ServicesStatisticsCollector();
+        FlightDataParser parser = new FlightDataParser(tempDirectory.toString(), 2, Map.of("services", services),
+                FlightFilter.parse("departure=KBP,LWO;departureTime>=2024-04-17;departureTime<2024-04-18"));
+
+        // When
+        parser.parse();
+
+        // Then
+        assertEquals(Map.of("Meals", 2L, "Wi-Fi", 2L), services.getStatistics());
+        assertEquals(1, parser.getMalformedLineCount());
+        assertThrows(IllegalStateException.class, () -> parser.parseSnapshot(tempDirectory));
+    }
+
+    @Test
+    public void testParseFiles_withMetrics() throws Exception {
+        // Given
+        Files.writeString(tempDirectory.resolve("flight3.jsonl"), "{\"flightNumber\":\"AB100\"}\n{\"flightNumber\":\"AB200\"}\n");
+        Files.writeString(tempDirectory.resolve("flight4.json"), "[{");
+        MetricsRegistry registry = new MetricsRegistry();
+        flightDataParser.setMetrics(registry);
+
+        // When
+        flightDataParser.parse();
+
+        // Then
+        assertEquals(4, registry.getQueuedSegments().sum());
+        assertEquals(3, registry.getSegments().sum());
+        assertEquals(1, registry.getErrors().sum());
+        assertEquals(4, registry.getRecords().sum());
+        assertEquals(Files.size(tempDirectory.resolve("flight1.json")) + Files.size(tempDirectory.resolve("flight2.json"))
+                + Files.size(tempDirectory.resolve("flight3.jsonl")), registry.getBytes().sum());
+        assertEquals(3, registry.getLatencies().getCount());
+        assertTrue(registry.getStages().containsKey("list"));
+        assertTrue(registry.getStages().containsKey("process"));
+        assertEquals(0, registry.getPendingSegments());
+    }
+
+    @Test
+    public void testParseFiles_reportsCollectorShardMerges() throws Exception {
+        // Given
+        ShardedStatisticsCollector collector = new ShardedStatisticsCollector();
+        FlightDataParser parser = new FlightDataParser(tempDirectory.toString(), 2, "flightNumber", collector);
+        MetricsRegistry registry = new MetricsRegistry();
+        parser.setMetrics(registry);
+
+        // When
+        parser.parse();
+
+        // Then
+        assertEquals(1, registry.getMerges().sum());
+        assertEquals(2, registry.getMergedValues().sum());
+        assertTrue(registry.summary().contains("collector merges: 1 (2 values)"), registry.summary());
+        assertEquals(Map.of("12345", 1L, "67890", 1L), collector.getStatistics());
+    }
+
+    @Test
+    public void testParseFiles_largestFileFirstAndStolenInSegments() throws Exception {
+        // Given
+        StringBuilder content = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            content.append(i == 0 ? "" : ",").append("{\"flightNumber\":\"FN").append(i).append("\"}");
+        }
+        Path large = tempDirectory.resolve("flight3.json");
+        Files.writeString(large, content.append("]"));
+        Path medium = tempDirectory.resolve("flight4.json");
+        Files.writeString(medium, "[{\"flightNumber\":\"AB100\"},{\"flightNumber\":\"AB200\"}]");
+        flightDataParser.setChunkSize(256);
+
+        // When
+        List<Path> order = List.copyOf(FlightDataParser.largestFirst(flightDataParser.findJsonFiles()).keySet());
+        flightDataParser.parse();
+
+        // Then
+        assertEquals(List.of(large, medium), order.subList(0, 2));
+        for (int i = 0; i < 200; i++) {
+            verify(valueConsumer, times(1)).accept("FN" + i);
+        }
+        verify(valueConsumer, times(1)).accept("AB200");
+        verify(valueConsumer, times(1)).accept("12345");
+    }
+
+    private String readSegment(String content, FileSegment segment) {
+        return content.substring((int) segment.getOffset(), (int) (segment.getOffset() + segment.getLength()));
+    }
+
     private Object getExecutorService(Object object) throws Exception {
         Field field = object.getClass().getDeclaredField("executorService");
         field.setAccessible(true);
@@ -0,0 +1,95 @@
+package dev.profitsoft.parser;
+
+import dev.profitsoft.collector.ShardedStatisticsCollector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightDataWatcherTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    public void testRun_updatesStatisticsWithNewFiles() throws Exception {
+        // Given
+        Path dataDirectory = Files.createDirectory(tempDirectory.resolve("data"));
+        Path statisticsDirectory = Files.createDirectory(tempDirectory.resolve("statistics"));
+        Path statisticsFile = statisticsDirectory.resolve("statistics_by_departure.xml");
+        Files.writeString(dataDirectory.resolve("flight1.json"), "[{\"departure\":\"KBP\"}]");
+        Map<String, ShardedStatisticsCollector> collectors = Map.of("departure", new ShardedStatisticsCollector());
+        FlightDataParser parser = new FlightDataParser(dataDirectory.toString(), 1, collectors);
+        FlightDataWatcher watcher = new FlightDataWatcher(parser, collectors, statisticsDirectory);
+        watcher.setSettleMillis(50);
+        watcher.setWriteIntervalMillis(50);
+
+        // When
+        CompletableFuture<Void> run = CompletableFuture.runAsync(() -> {
+            try {
+                watcher.run();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        waitForContent(statisticsFile, "<value>KBP</value><count>1</count>");
+        Files.writeString(dataDirectory.resolve("flight2.tmp"), "[{\"departure\":\"KBP\"},{\"departure\":\"LWO\"}]");
+        Files.move(dataDirectory.resolve("flight2.tmp"), dataDirectory.resolve("flight2.json"));
+        Files.writeString(Files.createDirectory(dataDirectory.resolve("2024")).resolve("flight3.json"),
+                "[{\"departure\":\"LWO\"}]");
+
+        // Then
+        waitForContent(statisticsFile, "<value>KBP</value><count>2</count>");
+        waitForContent(statisticsFile, "<value>LWO</value><count>2</count>");
+        watcher.close();
+        run.get();
+        assertTrue(Files.readString(statisticsFile).endsWith("</Statistics>"));
+    }
+
+    @Test
+    public void testRun_waitsForFilesBeingWrittenAtStart() throws Exception {
+        // Given
+        Path dataDirectory = Files.createDirectory(tempDirectory.resolve("data"));
+        Path statisticsDirectory = Files.createDirectory(tempDirectory.resolve("statistics"));
+        Path statisticsFile = statisticsDirectory.resolve("statistics_by_departure.xml");
+        Path file = dataDirectory.resolve("flight1.json");
+        Files.writeString(file, "[{\"departure\":\"LWO\"},");
+        Map<String, ShardedStatisticsCollector> collectors = Map.of("departure", new ShardedStatisticsCollector());
+        FlightDataParser parser = new FlightDataParser(dataDirectory.toString(), 1, collectors);
+        FlightDataWatcher watcher = new FlightDataWatcher(parser, collectors, statisticsDirectory);
+        watcher.setSettleMillis(1000);
+        watcher.setWriteIntervalMillis(50);
+
+        // When
+        CompletableFuture<Void> run = CompletableFuture.runAsync(() -> {
+            try {
+                watcher.run();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        waitForContent(statisticsFile, "</Statistics>");
+        Files.writeString(file, "[{\"departure\":\"LWO\"},{\"departure\":\"LWO\"}]");
+
+        // Then
+        waitForContent(statisticsFile, "<value>LWO</value><count>2</count>");
+        watcher.close();
+        run.get();
+    }
+
+    private static void waitForContent(Path file, String content) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            if (Files.exists(file) && Files.readString(file).contains(content)) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("Statistics were not updated with " + content);
+    }
+}
@@ -0,0 +1,43 @@
+package dev.profitsoft.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightFilterTest {
+
+    @Test
+    void testParse_ChecksEqualitySetsAndRanges() {
+        // Given
+        FlightFilter filter = FlightFilter.parse(
+                "departure=KBP, LWO; departureTime>=2024-04-17T00:00;departureTime<2024-04-18T00:00;");
+        char[] buffer = "xKBPxLHRx2024-04-17T21:05:29.767x2024-04-18T00:00:00x2024-04-17T00:00".toCharArray();
+        long departure = filter.conditionsOf("departure");
+        long departureTime = filter.conditionsOf("departureTime");
+
+        // When & Then
+        assertEquals(List.of("departure", "departureTime"), filter.getAttributes());
+        assertEquals(0b111L, filter.getAllConditions());
+        assertEquals(0b1L, departure);
+        assertEquals(0b110L, departureTime);
+        assertEquals(0L, filter.conditionsOf("destination"));
+        assertEquals(departure, filter.test(departure, buffer, 1, 3));
+        assertEquals(0L, filter.test(departure, buffer, 5, 3));
+        assertEquals(0L, filter.test(departure, buffer, 1, 2));
+        assertEquals(departureTime, filter.test(departureTime, buffer, 9, 23));
+        assertEquals(0b010L, filter.test(departureTime, buffer, 33, 19));
+        assertEquals(departureTime, filter.test(departureTime, buffer, 53, 16));
+    }
+
+    @Test
+    void testParse_RejectsMalformedExpressions() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> FlightFilter.parse(" ; "));
+        assertThrows(IllegalArgumentException.class, () -> FlightFilter.parse("departure"));
+        assertThrows(IllegalArgumentException.class, () -> FlightFilter.parse("=KBP"));
+        assertThrows(IllegalArgumentException.class, () -> FlightFilter.parse("departure=="));
+        assertThrows(IllegalArgumentException.class, () -> FlightFilter.parse("departure<"));
+    }
+}
@@ -0,0 +1,85 @@
+package dev.profitsoft.parser;
+
+import dev.profitsoft.collector.ServicesStatisticsCollector;
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.snapshot.ColumnarSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotConverterTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void testParseSnapshot_matchesParsingJson() throws IOException {
+        // Given
+        Path data = Files.createDirectories(tempDirectory.resolve("data"));
+        Files.writeString(data.resolve("flights1.json"), "[{\"flightNumber\":\"AB100\",\"departure\":\"KBP\","
+                + "\"destination\":\"LWO\",\"departureTime\":\"2024-04-17T21:05:00\",\"services\":\"Meals,Wi-Fi\"},"
+                + "{\"flightNumber\":\"AB200\",\"departure\":\"KBP\",\"gate\":{\"code\":\"A1\"},\"services\":[\"Meals\"]}]");
+        Files.writeString(data.resolve("flights2.ndjson"), "{\"flightNumber\":\"AB100\",\"departure\":\"ODS\"}\n"
+                + "{\"flightNumber\":\"AB300\",\"destination\":\"KBP\",\"services\":\"First Class\"}\n");
+        Path snapshot = tempDirectory.resolve("snapshot");
+
+        // When
+        long rows = new SnapshotConverter(1).convert(data, snapshot);
+        Map<String, StatisticsCollector> fromJson = collectors();
+        new FlightDataParser(data.toString(), 1, fromJson).parse();
+        Map<String, StatisticsCollector> fromSnapshot = collectors();
+        new FlightDataParser(data.toString(), 1, fromSnapshot).parseSnapshot(snapshot);
+
+        // Then
+        assertEquals(4, rows);
+        for (String attribute : fromJson.keySet()) {
+            assertEquals(fromJson.get(attribute).getStatistics(), fromSnapshot.get(attribute).getStatistics());
+        }
+        assertEquals(Map.of("2024-04-17T21:05", 1L), new ColumnarSnapshot(snapshot)
+                .aggregate("departureTime"));
+    }
+
+    @Test
+    void testIsCurrent_DetectsChangedAddedAndRemovedFiles() throws IOException {
+        // Given
+        Path data = Files.createDirectories(tempDirectory.resolve("data"));
+        Path file = Files.writeString(data.resolve("flights1.json"), "[{\"departure\":\"KBP\"}]");
+        Path snapshot = tempDirectory.resolve("snapshot");
+        boolean beforeConversion = SnapshotConverter.isCurrent(data, snapshot);
+        new SnapshotConverter(1).convert(data, snapshot);
+
+        // When
+        boolean afterConversion = SnapshotConverter.isCurrent(data, snapshot);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 60_000));
+        boolean afterChange = SnapshotConverter.isCurrent(data, snapshot);
+        new SnapshotConverter(1).convert(data, snapshot);
+        Path added = Files.writeString(data.resolve("flights2.json"), "[]");
+        boolean afterAddition = SnapshotConverter.isCurrent(data, snapshot);
+        Files.delete(added);
+        boolean afterRemoval = SnapshotConverter.isCurrent(data, snapshot);
+
+        // Then
+        assertFalse(beforeConversion);
+        assertTrue(afterConversion);
+        assertFalse(afterChange);
+        assertFalse(afterAddition);
+        assertTrue(afterRemoval);
+    }
+
+    private static Map<String, StatisticsCollector> collectors() {
+        Map<String, StatisticsCollector> collectors = new LinkedHashMap<>();
+        collectors.put("flightNumber", new StatisticsCollector());
+        collectors.put("departure", new StatisticsCollector());
+        collectors.put("destination", new StatisticsCollector());
+        collectors.put("services", new ServicesStatisticsCollector());
+        return collectors;
+    }
+}
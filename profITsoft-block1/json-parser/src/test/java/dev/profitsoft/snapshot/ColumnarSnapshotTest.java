@@ -0,0 +1,77 @@
+package dev.profitsoft.snapshot;
+
+import dev.profitsoft.entity.Flight;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarSnapshotTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void testAggregate_eachColumnType() throws IOException {
+        // Given
+        LocalDateTime time = LocalDateTime.of(2024, 4, 17, 21, 5, 29);
+        try (ColumnarSnapshotWriter writer = new ColumnarSnapshotWriter(tempDirectory)) {
+            writer.add(new Flight("AB100", "KBP", "LWO", time, time.plusHours(2), "Meals,Wi-Fi"));
+            writer.add(new Flight("AB200", "KBP", null, time.plusSeconds(20), null, "Meals, Spa"));
+            writer.add(new Flight("AB100", "LWO, ODS", "KBP", null, time, null));
+        }
+        ColumnarSnapshot snapshot = new ColumnarSnapshot(tempDirectory);
+
+        // When & Then
+        assertTrue(ColumnarSnapshot.exists(tempDirectory));
+        assertEquals(Map.of("AB100", 2L, "AB200", 1L), snapshot.aggregate("flightNumber"));
+        assertEquals(Map.of("KBP", 2L, "LWO", 1L, "ODS", 1L), snapshot.aggregate("departure"));
+        assertEquals(Map.of("LWO", 1L, "KBP", 1L), snapshot.aggregate("destination"));
+        assertEquals(Map.of("2024-04-17T21:05", 2L), snapshot.aggregate("departureTime"));
+        assertEquals(Map.of("2024-04-17T23:05", 1L, "2024-04-17T21:05", 1L), snapshot.aggregate("arrivalTime"));
+        assertEquals(Map.of("Meals", 2L, "Wi-Fi", 1L, "Spa", 1L), snapshot.aggregate("services"));
+        try (Stream<Path> files = Files.list(tempDirectory)) {
+            assertTrue(files.allMatch(file -> file.toString().endsWith(".col")
+                    || file.endsWith(ColumnarSnapshotWriter.SOURCES_FILE)));
+        }
+    }
+
+    @Test
+    void testAggregate_withWideDictionaryAndManyRows() throws IOException {
+        // Given
+        try (ColumnarSnapshotWriter writer = new ColumnarSnapshotWriter(tempDirectory)) {
+            for (int i = 0; i < 70_000; i++) {
+                writer.add(new Flight("FN" + i, "A" + i % 300, null, null, null, "Meals"));
+            }
+        }
+        ColumnarSnapshot snapshot = new ColumnarSnapshot(tempDirectory);
+
+        // When
+        Map<String, Long> flightNumbers = snapshot.aggregate("flightNumber");
+        Map<String, Long> departures = snapshot.aggregate("departure");
+
+        // Then
+        assertEquals(70_000, flightNumbers.size());
+        assertEquals(1L, flightNumbers.get("FN69999"));
+        assertEquals(300, departures.size());
+        assertEquals(234L, departures.get("A0"));
+        assertEquals(Map.of("Meals", 70_000L), snapshot.aggregate("services"));
+        assertTrue(snapshot.aggregate("destination").isEmpty());
+    }
+
+    @Test
+    void testAggregate_withUnknownAttribute() throws IOException {
+        // Given
+        new ColumnarSnapshotWriter(tempDirectory).close();
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> new ColumnarSnapshot(tempDirectory).aggregate("gate"));
+    }
+}
@@ -0,0 +1,86 @@
+package dev.profitsoft.writer;
+
+import dev.profitsoft.collector.StatisticsIterator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedStatisticsTest {
+
+    @Test
+    void testSortedStatistics_SortsByCountKeepingTiesInSourceOrder() throws IOException {
+        // Given
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        statistics.put("C", 1L);
+        statistics.put("A", 5L);
+        statistics.put("D", 3L);
+        statistics.put("B", 1L);
+        statistics.put("E", 3L);
+        statistics.put("F", Long.MAX_VALUE);
+        statistics.put("G", 1L);
+
+        // When
+        SortedStatistics sorted = new SortedStatistics(statistics);
+
+        // Then
+        assertEquals(7, sorted.size());
+        assertEquals(List.of("F", "A", "D", "E", "C", "B", "G"), valuesOf(sorted.iterator()));
+        assertEquals(Long.MAX_VALUE, sorted.getCount(0));
+        assertEquals(5L, sorted.getCount(1));
+        assertEquals(1L, sorted.getCount(6));
+    }
+
+    @Test
+    void testIterator_ReturnsIndependentIterators() throws IOException {
+        // Given
+        SortedStatistics sorted = new SortedStatistics(Map.of("A", 2L, "B", 1L));
+        StatisticsIterator first = sorted.iterator();
+        StatisticsIterator second = sorted.iterator();
+
+        // When
+        assertTrue(first.next());
+        assertTrue(first.next());
+
+        // Then
+        assertTrue(second.next());
+        assertEquals("A", second.getValue());
+        assertEquals("B", first.getValue());
+        assertFalse(first.next());
+        assertEquals(0, new SortedStatistics(Map.of()).size());
+        assertFalse(new SortedStatistics(Map.of()).iterator().next());
+    }
+
+    @Test
+    void testCopyOf_KeepsTheOrderOfTheIterator() throws IOException {
+        // Given
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        for (int i = 0; i < 40; i++) {
+            statistics.put("V" + i, (long) i % 3);
+        }
+        StatisticsIterator source = new SortedStatistics(statistics).iterator();
+
+        // When
+        SortedStatistics copy = SortedStatistics.copyOf(source);
+
+        // Then
+        assertEquals(valuesOf(new SortedStatistics(statistics).iterator()), valuesOf(copy.iterator()));
+        assertEquals(valuesOf(copy.iterator()), valuesOf(copy.iterator()));
+        assertEquals(40, copy.size());
+        assertEquals("V2", copy.getValue(0));
+        assertEquals(2L, copy.getCount(0));
+    }
+
+    private static List<String> valuesOf(StatisticsIterator iterator) throws IOException {
+        List<String> values = new ArrayList<>();
+        while (iterator.next()) {
+            values.add(iterator.getValue());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,90 @@
+package dev.profitsoft.writer;
+
+import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.TimeBucket;
+import dev.profitsoft.collector.TimeBucketStatisticsCollector;
+import dev.profitsoft.collector.TopKStatisticsCollector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatisticsSinkTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void testWriteStatistics_WritesAllFormatsFromOneSnapshot() throws IOException {
+        // Given
+        StatisticsCollector collector = new StatisticsCollector();
+        collector.accept("KBP");
+        collector.accept("LWO");
+        collector.accept("KBP");
+        collector.accept("Kyiv \"Boryspil\"");
+        XMLStatisticsWriter writer = new XMLStatisticsWriter(collector, tempDirectory,
+                OutputFormat.createSinks("xml,json,csv,binary"));
+
+        // When
+        writer.writeStatistics("departure");
+
+        // Then
+        assertTrue(Files.readString(tempDirectory.resolve("statistics_by_departure.xml"))
+                .contains("<item><item><value>KBP</value><count>2</count></item>"));
+        assertTrue(Files.readString(tempDirectory.resolve("statistics_by_departure.json"))
+                .startsWith("{\"items\":[{\"value\":\"KBP\",\"count\":2},"));
+        List<String> lines = Files.readAllLines(tempDirectory.resolve("statistics_by_departure.csv"));
+        assertEquals("value,count", lines.get(0));
+        assertEquals("KBP,2", lines.get(1));
+        assertTrue(lines.contains("\"Kyiv \"\"Boryspil\"\"\",1"));
+        try (InputStream input = Files.newInputStream(tempDirectory.resolve("statistics_by_departure.bin"))) {
+            Map<String, Long> statistics = BinaryStatisticsSink.read(input);
+            assertEquals(collector.getStatistics(), statistics);
+            assertEquals("KBP", statistics.keySet().iterator().next());
+        }
+        try (var files = Files.list(tempDirectory)) {
+            assertEquals(4, files.count());
+        }
+    }
+
+    @Test
+    void testWrite_DescribesEstimatedCountsAndTimeSeries() throws IOException {
+        // Given
+        TopKStatisticsCollector topK = new TopKStatisticsCollector(1, 0.5);
+        topK.accept("A,A,B");
+        TimeBucketStatisticsCollector timeSeries = new TimeBucketStatisticsCollector(TimeBucket.HOUR);
+        timeSeries.accept("2024-04-18T01:10:00");
+        StatisticsCollector large = new StatisticsCollector();
+        for (int i = 0; i < 300; i++) {
+            large.accept("A");
+        }
+
+        // When
+        String estimatedJson = write(new JsonStatisticsSink(), topK, new SortedStatistics(topK.getStatistics()));
+        String timeSeriesJson = write(new JsonStatisticsSink(), timeSeries, new SortedStatistics(timeSeries.getStatistics()));
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        new BinaryStatisticsSink().write(binary, topK, new SortedStatistics(large.getStatistics()).iterator());
+
+        // Then
+        assertTrue(estimatedJson.startsWith("{\"estimated\":true,\"maxError\":1,\"items\":[{\"value\":\"A\",\"count\":2}"));
+        assertTrue(timeSeriesJson.startsWith("{\"bucket\":\"hour\",\"items\":["));
+        assertEquals(Map.of("A", 300L), BinaryStatisticsSink.read(new ByteArrayInputStream(binary.toByteArray())));
+        assertThrows(IOException.class, () -> BinaryStatisticsSink.read(new ByteArrayInputStream("FSTX".getBytes())));
+    }
+
+    private static String write(StatisticsSink sink, StatisticsCollector collector, SortedStatistics statistics)
+            throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        sink.write(output, collector, statistics.iterator());
+        return output.toString();
+    }
+}
@@ -1,7 +1,11 @@
 package dev.profitsoft.writer;
 
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import dev.profitsoft.collector.SpillingStatisticsCollector;
 import dev.profitsoft.collector.StatisticsCollector;
+import dev.profitsoft.collector.TimeBucket;
+import dev.profitsoft.collector.TimeBucketStatisticsCollector;
+import dev.profitsoft.collector.TopKStatisticsCollector;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,6 +20,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -145,6 +150,78 @@ class XMLStatisticsWriterTest {
         assertTrue(fileContents.indexOf("<value>B</value>") < fileContents.indexOf("<value>C</value>"));
     }
 
+    @Test
+    void testWriteAll_WritesFilePerAttribute(@TempDir Path outputDirectory) throws IOException {
+        // Given
+        StatisticsCollector departureCollector = new StatisticsCollector();
+        departureCollector.accept("KBP");
+        StatisticsCollector destinationCollector = new StatisticsCollector();
+        destinationCollector.accept("LHR");
+
+        // When
+        XMLStatisticsWriter.writeAll(Map.of("departure", departureCollector, "destination", destinationCollector),
+                outputDirectory);
+
+        // Then
+        assertTrue(readFileContents(outputDirectory.resolve("statistics_by_departure.xml").toFile())
+                .contains("<value>KBP</value>"));
+        assertTrue(readFileContents(outputDirectory.resolve("statistics_by_destination.xml").toFile())
+                .contains("<value>LHR</value>"));
+    }
+
+    @Test
+    void testWriteStatistics_MarksEstimatedCounts(@TempDir Path outputDirectory) throws IOException {
+        // Given
+        TopKStatisticsCollector collector = new TopKStatisticsCollector(1, 0.5);
+        collector.accept("A,A,B");
+
+        // When
+        new XMLStatisticsWriter(collector, outputDirectory).writeStatistics("topK");
+
+        // Then
+        String fileContents = readFileContents(outputDirectory.resolve("statistics_by_topK.xml").toFile());
+        assertTrue(fileContents.contains("<Statistics estimated=\"true\" maxError=\"1\">"));
+        assertTrue(fileContents.contains("<value>A</value><count>2</count>"));
+        assertFalse(fileContents.contains("<value>B</value>"));
+    }
+
+    @Test
+    void testWriteStatistics_StreamsSpilledStatistics(@TempDir Path outputDirectory) throws IOException {
+        // Given
+        try (SpillingStatisticsCollector collector = new SpillingStatisticsCollector(300, outputDirectory)) {
+            collector.accept("C,A,B,A,D,A,B");
+
+            // When
+            new XMLStatisticsWriter(collector, outputDirectory).writeStatistics("spilled");
+
+            // Then
+            assertTrue(collector.getRunCount() > 0);
+            String fileContents = readFileContents(outputDirectory.resolve("statistics_by_spilled.xml").toFile());
+            assertTrue(fileContents.contains("<item><item><value>A</value><count>3</count></item>"
+                    + "<item><value>B</value><count>2</count></item>"
+                    + "<item><value>C</value><count>1</count></item>"
+                    + "<item><value>D</value><count>1</count></item></item>"));
+        }
+    }
+
+    @Test
+    void testWriteStatistics_WritesTimeSeriesInTimeOrder(@TempDir Path outputDirectory) throws IOException {
+        // Given
+        TimeBucketStatisticsCollector collector = new TimeBucketStatisticsCollector(TimeBucket.HOUR);
+        collector.accept("2024-04-18T01:10:00");
+        collector.accept("2024-04-17T23:59:59.999");
+        collector.accept("2024-04-18T01:45:00");
+
+        // When
+        new XMLStatisticsWriter(collector, outputDirectory).writeStatistics("departureTime");
+
+        // Then
+        String fileContents = readFileContents(outputDirectory.resolve("statistics_by_departureTime.xml").toFile());
+        assertTrue(fileContents.contains("<Statistics bucket=\"hour\"><item>"
+                + "<item><value>2024-04-17T23</value><count>1</count></item>"
+                + "<item><value>2024-04-18T01</value><count>2</count></item></item>"));
+    }
+
     @Test
     void testFileLocationResolution() {
         // When